@@ -34,6 +34,10 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    testOptions {
+        // Local tests run the analytics classes, which log through android.util.Log
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -53,6 +57,10 @@ dependencies {
     implementation("androidx.lifecycle:lifecycle-livedata:2.8.4")
     implementation("androidx.lifecycle:lifecycle-common-java8:2.8.4")
 
+    // Room - on-device mirror of cashbooks and transactions
+    implementation("androidx.room:room-runtime:2.6.0")
+    annotationProcessor("androidx.room:room-compiler:2.6.0")
+
     // Firebase Bill of Materials
     implementation(platform("com.google.firebase:firebase-bom:33.2.0"))
     implementation("com.google.firebase:firebase-auth")
@@ -32,6 +32,8 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.satvik.artham.analytics.RecurringDetector;
+import com.satvik.artham.db.DataRepository;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.material.textfield.TextInputEditText;
@@ -42,6 +44,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Locale;
 
 public class CashInOutActivity extends AppCompatActivity {
@@ -76,6 +79,9 @@ public class CashInOutActivity extends AppCompatActivity {
     private ImageView removeAttachedImage, removeAttachedQr, removeAttachedPdf;
 
     private CashInOutViewModel viewModel;
+    private RecurringDetector recurringDetector;
+    private List<RecurringDetector.Series> recurringSeries = new ArrayList<>();
+    private final RecurringDetector.Listener recurringListener = series -> recurringSeries = series;
     private String currentCashbookId;
 
     // State Variables
@@ -115,6 +121,13 @@ public class CashInOutActivity extends AppCompatActivity {
             return;
         }
 
+        viewModel.watchBudgets(currentCashbookId);
+        // Toasts outlive the activity, so alerts raised by "Save" still show after finish()
+        viewModel.getBudgetAlert().observe(this, event -> {
+            String message = event.consume();
+            if (message != null) Toast.makeText(getApplicationContext(), message, Toast.LENGTH_LONG).show();
+        });
+
         String transactionType = getIntent().getStringExtra("transaction_type");
         fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
 
@@ -126,6 +139,7 @@ public class CashInOutActivity extends AppCompatActivity {
 
         startRealTimeClock();
         updateAttachmentVisibility();
+        startRecurringDetector();
 
         Log.d(TAG, "CashInOutActivity initialized for cashbook: " + currentCashbookId);
     }
@@ -664,15 +678,60 @@ public class CashInOutActivity extends AppCompatActivity {
     }
 
     private void showMenuOptions() {
-        String[] options = {"Duplicate Entry", "Save as Template"};
+        // Detected recurring entries follow "Duplicate Entry" as one-tap templates
+        List<String> options = new ArrayList<>();
+        options.add("Duplicate Entry");
+        for (RecurringDetector.Series series : recurringSeries) options.add(describeSeries(series));
+        if (recurringSeries.isEmpty()) options.add("No recurring entries found yet");
+
         new AlertDialog.Builder(this)
                 .setTitle("Menu Options")
-                .setItems(options, (dialog, which) -> {
-                    Toast.makeText(this, "Feature coming soon", Toast.LENGTH_SHORT).show();
+                .setItems(options.toArray(new String[0]), (dialog, which) -> {
+                    if (which > 0 && which <= recurringSeries.size()) {
+                        applyTemplate(recurringSeries.get(which - 1).getTemplate());
+                    } else if (which == 0) {
+                        Toast.makeText(this, "Feature coming soon", Toast.LENGTH_SHORT).show();
+                    }
                 })
                 .show();
     }
 
+    private void startRecurringDetector() {
+        recurringDetector = DataRepository.getInstance(getApplication()).getRecurringDetector(currentCashbookId);
+        if (recurringDetector != null) recurringDetector.observe(recurringListener);
+    }
+
+    private String describeSeries(RecurringDetector.Series series) {
+        TransactionModel template = series.getTemplate();
+        String name = !TextUtils.isEmpty(template.getPartyName()) ? template.getPartyName()
+                : template.getTransactionCategory();
+        return String.format(Locale.US, "%s · ₹%.0f · %s", name, template.getAmount(), series.getCadence());
+    }
+
+    /**
+     * Fills the form from a recurring entry; the date stays at now.
+     */
+    private void applyTemplate(TransactionModel template) {
+        double amount = template.getAmount();
+        amountEditText.setText(amount == Math.rint(amount)
+                ? String.format(Locale.US, "%.0f", amount) : String.format(Locale.US, "%.2f", amount));
+        amountEditText.setSelection(amountEditText.getText().length());
+
+        if ("OUT".equals(template.getType())) radioOut.setChecked(true); else radioIn.setChecked(true);
+        if ("Cash".equals(template.getPaymentMode())) radioCash.setChecked(true); else radioOnline.setChecked(true);
+
+        if (!TextUtils.isEmpty(template.getTransactionCategory())) {
+            selectedCategory = template.getTransactionCategory();
+            selectedCategoryTextView.setText(selectedCategory);
+        }
+        if (!TextUtils.isEmpty(template.getPartyName())) {
+            selectedParty = template.getPartyName();
+            partyTextView.setText(selectedParty);
+        }
+        remarkEditText.setText(template.getRemark());
+        Toast.makeText(this, "Template applied", Toast.LENGTH_SHORT).show();
+    }
+
     private void saveTransaction(boolean addNew) {
         if (!validateForm()) {
             return;
@@ -768,5 +827,6 @@ public class CashInOutActivity extends AppCompatActivity {
         if (timeHandler != null && timeRunnable != null) {
             timeHandler.removeCallbacks(timeRunnable);
         }
+        if (recurringDetector != null) recurringDetector.removeObserver(recurringListener);
     }
 }
\ No newline at end of file
@@ -4,9 +4,16 @@ import android.app.Application;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
 
+import com.satvik.artham.analytics.BudgetMonitor;
 import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.utils.Event;
+
+import java.util.List;
 
 /**
  * CashInOutViewModel - ViewModel for handling transaction creation and editing
@@ -16,6 +23,9 @@ public class CashInOutViewModel extends AndroidViewModel {
     private static final String TAG = "CashInOutViewModel";
 
     private final DataRepository repository;
+    private final MutableLiveData<Event<String>> budgetAlert = new MutableLiveData<>();
+    private BudgetMonitor budgetMonitor;
+    private final BudgetMonitor.Listener budgetListener = monitor -> { };
 
     public CashInOutViewModel(@NonNull Application application) {
         super(application);
@@ -23,17 +33,47 @@ public class CashInOutViewModel extends AndroidViewModel {
         Log.d(TAG, "CashInOutViewModel initialized for authenticated user.");
     }
 
+    /**
+     * Budget alerts raised by saves, one event per crossed threshold.
+     */
+    public LiveData<Event<String>> getBudgetAlert() {
+        return budgetAlert;
+    }
+
+    /**
+     * Loads the cashbook's budgets and month counters ahead of the first save, so the
+     * check on save is a lookup.
+     */
+    public void watchBudgets(String cashbookId) {
+        if (budgetMonitor != null) budgetMonitor.removeObserver(budgetListener);
+        budgetMonitor = repository.getBudgetMonitor(cashbookId);
+        if (budgetMonitor != null) budgetMonitor.observe(budgetListener);
+    }
+
     public void saveTransaction(String cashbookId, TransactionModel transaction) {
+        saveTransaction(cashbookId, transaction, null);
+    }
+
+    /**
+     * Adds a transaction after checking it against the budgets. The callback, if any,
+     * receives the final outcome of the write, or false if the transaction is invalid.
+     */
+    public void saveTransaction(String cashbookId, TransactionModel transaction,
+                                @Nullable DataRepository.DataCallback<Boolean> callback) {
         if (!isTransactionValid(transaction, false)) {
             Log.e(TAG, "Invalid transaction. Save aborted.");
+            if (callback != null) callback.onCallback(false);
             return;
         }
 
         if (cashbookId == null || cashbookId.isEmpty()) {
             Log.e(TAG, "Cashbook ID is null or empty, cannot save Firebase transaction");
+            if (callback != null) callback.onCallback(false);
             return;
         }
 
+        checkBudgets(null, transaction);
+
         repository.addTransaction(cashbookId, transaction, new DataRepository.DataCallback<Boolean>() {
             @Override
             public void onCallback(Boolean success) {
@@ -42,6 +82,7 @@ public class CashInOutViewModel extends AndroidViewModel {
                 } else {
                     Log.e(TAG, "Failed to save Firebase transaction");
                 }
+                if (callback != null) callback.onCallback(success);
             }
         });
     }
@@ -68,17 +109,28 @@ public class CashInOutViewModel extends AndroidViewModel {
         saveTransaction(cashbookId, newTransaction);
     }
 
-    public void updateTransaction(String cashbookId, TransactionModel transaction) {
+    /**
+     * Updates a transaction. The original (stored) copy lets the budget check move the
+     * counters by the difference; without it the edit is checked as if it were new. The
+     * callback, if any, receives the final outcome of the write, or false if the
+     * transaction is invalid.
+     */
+    public void updateTransaction(String cashbookId, @Nullable TransactionModel original, TransactionModel transaction,
+                                  @Nullable DataRepository.DataCallback<Boolean> callback) {
         if (!isTransactionValid(transaction, true)) {
             Log.e(TAG, "Invalid transaction, update aborted.");
+            if (callback != null) callback.onCallback(false);
             return;
         }
 
         if (cashbookId == null || cashbookId.isEmpty()) {
             Log.e(TAG, "Cashbook ID is null or empty, cannot update Firebase transaction");
+            if (callback != null) callback.onCallback(false);
             return;
         }
 
+        checkBudgets(original, transaction);
+
         repository.updateTransaction(cashbookId, transaction, new DataRepository.DataCallback<Boolean>() {
             @Override
             public void onCallback(Boolean success) {
@@ -87,6 +139,7 @@ public class CashInOutViewModel extends AndroidViewModel {
                 } else {
                     Log.e(TAG, "Failed to update Firebase transaction");
                 }
+                if (callback != null) callback.onCallback(success);
             }
         });
     }
@@ -114,6 +167,15 @@ public class CashInOutViewModel extends AndroidViewModel {
         });
     }
 
+    private void checkBudgets(@Nullable TransactionModel before, TransactionModel after) {
+        if (budgetMonitor == null || !budgetMonitor.isReady()) return;
+        List<BudgetMonitor.Alert> alerts = budgetMonitor.evaluate(before, after);
+        for (BudgetMonitor.Alert alert : alerts) {
+            Log.d(TAG, alert.getMessage());
+            budgetAlert.setValue(new Event<>(alert.getMessage()));
+        }
+    }
+
     public boolean isTransactionValid(TransactionModel transaction, boolean isUpdate) {
         if (transaction == null) {
             Log.w(TAG, "Transaction validation failed: transaction is null");
@@ -149,6 +211,7 @@ public class CashInOutViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        if (budgetMonitor != null) budgetMonitor.removeObserver(budgetListener);
         Log.d(TAG, "CashInOutViewModel cleared");
     }
 }
\ No newline at end of file
@@ -21,6 +21,8 @@ import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.satvik.artham.adapters.CashbookAdapter;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.models.CashbookSummary;
 import com.satvik.artham.utils.ErrorHandler;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
@@ -31,11 +33,11 @@ import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class CashbookSwitchActivity extends AppCompatActivity {
@@ -76,7 +78,12 @@ public class CashbookSwitchActivity extends AppCompatActivity {
     private FirebaseAuth mAuth;
     private DatabaseReference userCashbooksRef;
     private ValueEventListener cashbooksListener;
+    private ValueEventListener summariesListener;
     private FirebaseUser currentUser;
+    private DataRepository repository;
+
+    // Balance and count per cashbook, read from the summary node instead of the transactions
+    private Map<String, CashbookSummary> summaries; // null until the first snapshot
 
     // State
     private boolean isLoading = false;
@@ -101,8 +108,9 @@ public class CashbookSwitchActivity extends AppCompatActivity {
             return;
         }
 
-        userCashbooksRef = FirebaseDatabase.getInstance().getReference()
-                .child("users").child(currentUser.getUid()).child("cashbooks");
+        repository = DataRepository.getInstance(getApplication());
+        // Metadata index only; the transactions under "cashbooks" are never read here
+        userCashbooksRef = repository.getCashbookMetaRef();
 
         initViews();
         setupRecyclerView();
@@ -246,10 +254,7 @@ public class CashbookSwitchActivity extends AppCompatActivity {
                             cashbook.setCashbookId(snapshot.getKey());
                             cashbook.setCurrent(cashbook.getCashbookId().equals(currentCashbookId));
 
-                            // Calculate stats from transactions
-                            DataSnapshot transactionsSnapshot = snapshot.child("transactions");
-                            calculateStatsForCashbook(cashbook, transactionsSnapshot);
-
+                            repository.applySummary(cashbook, summaries);
                             allCashbooks.add(cashbook);
                         }
                     } catch (Exception e) {
@@ -272,32 +277,22 @@ public class CashbookSwitchActivity extends AppCompatActivity {
                 ErrorHandler.handleFirebaseError(CashbookSwitchActivity.this, error);
             }
         };
-        userCashbooksRef.addValueEventListener(cashbooksListener);
+        ValueEventListener listener = cashbooksListener;
+        repository.ensureCashbookMeta(() -> {
+            if (listener == cashbooksListener) userCashbooksRef.addValueEventListener(listener);
+        });
+        listenForSummaries();
     }
 
-    private void calculateStatsForCashbook(CashbookModel cashbook, DataSnapshot transactionsSnapshot) {
-        double totalIncome = 0;
-        double totalExpense = 0;
-        int count = 0;
-
-        for (DataSnapshot txnSnapshot : transactionsSnapshot.getChildren()) {
-            try {
-                TransactionModel transaction = txnSnapshot.getValue(TransactionModel.class);
-                if (transaction != null) {
-                    count++;
-                    if ("IN".equalsIgnoreCase(transaction.getType())) {
-                        totalIncome += transaction.getAmount();
-                    } else {
-                        totalExpense += transaction.getAmount();
-                    }
-                }
-            } catch (Exception e) {
-                Log.w(TAG, "Error parsing transaction for stats", e);
+    private void listenForSummaries() {
+        if (summariesListener != null) return;
+        summariesListener = repository.observeCashbookSummaries(latest -> {
+            summaries = latest;
+            for (CashbookModel cashbook : allCashbooks) {
+                repository.applySummary(cashbook, summaries);
             }
-        }
-
-        cashbook.setTotalBalance(totalIncome - totalExpense);
-        cashbook.setTransactionCount(count);
+            applyFiltersAndSort();
+        });
     }
 
     private void handleAddNewCashbook() {
@@ -351,25 +346,16 @@ public class CashbookSwitchActivity extends AppCompatActivity {
             return;
         }
 
-        String cashbookId = userCashbooksRef.push().getKey();
-        if (cashbookId == null) {
-            showSnackbar("Error generating cashbook ID");
-            return;
-        }
-
-        CashbookModel newCashbook = new CashbookModel(cashbookId, name);
-        newCashbook.setDescription(description);
-        newCashbook.setUserId(currentUser.getUid());
-
-        userCashbooksRef.child(cashbookId).setValue(newCashbook)
-                .addOnSuccessListener(aVoid -> {
-                    showSnackbar("Cashbook created successfully!");
-                    Log.d(TAG, "Cashbook created: " + name);
-                })
-                .addOnFailureListener(e -> {
-                    showSnackbar("Failed to create cashbook: " + e.getMessage());
-                    Log.e(TAG, "Error creating cashbook", e);
-                });
+        // The repository writes the summary and rollups flag along with the meta entry
+        repository.createNewCashbook(name, description, cashbookId -> {
+            if (cashbookId != null) {
+                showSnackbar("Cashbook created successfully!");
+                Log.d(TAG, "Cashbook created: " + name);
+            }
+        }, error -> {
+            showSnackbar("Failed to create cashbook: " + error);
+            Log.e(TAG, "Error creating cashbook: " + error);
+        });
     }
 
     private void updateCashbook(CashbookModel cashbook, String newName, String newDescription) {
@@ -465,15 +451,13 @@ public class CashbookSwitchActivity extends AppCompatActivity {
     }
 
     private void deleteCashbookFromFirebase(CashbookModel cashbook) {
-        userCashbooksRef.child(cashbook.getCashbookId()).removeValue()
-                .addOnSuccessListener(aVoid -> {
-                    showSnackbar("Cashbook deleted successfully");
-                    Log.d(TAG, "Cashbook deleted: " + cashbook.getName());
-                })
-                .addOnFailureListener(e -> {
-                    showSnackbar("Failed to delete cashbook");
-                    Log.e(TAG, "Error deleting cashbook", e);
-                });
+        // Goes through the repository so the cashbook's summary is removed with it
+        repository.deleteCashbook(cashbook.getCashbookId(), success -> {
+            if (success) {
+                showSnackbar("Cashbook deleted successfully");
+                Log.d(TAG, "Cashbook deleted: " + cashbook.getName());
+            }
+        }, error -> showSnackbar("Failed to delete cashbook"));
     }
 
     private void showSortOptions() {
@@ -611,6 +595,9 @@ public class CashbookSwitchActivity extends AppCompatActivity {
             userCashbooksRef.removeEventListener(cashbooksListener);
             Log.d(TAG, "Firebase listener removed");
         }
+        if (summariesListener != null && repository != null) {
+            repository.removeSummaryListener(null, summariesListener);
+        }
         Log.d(TAG, "CashbookSwitchActivity destroyed");
     }
 }
\ No newline at end of file
@@ -21,14 +21,10 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.satvik.artham.utils.ErrorHandler; // [FIX] Added ErrorHandler
+import com.satvik.artham.analytics.FacetCounter;
+import com.satvik.artham.db.DataRepository;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -49,9 +45,10 @@ public class CategoryFilterFragment extends Fragment {
     private EditText searchEditText;
     private ImageView clearSearchButton; // [FIX] Added clear search button
 
-    private DatabaseReference mDatabase;
     private FirebaseUser currentUser;
     private String currentCashbookId;
+    private FacetCounter facetCounter;
+    private final FacetCounter.Listener facetListener = counter -> showCategories();
 
     // Interface to communicate back to the FiltersActivity
     public interface CategoryFilterListener {
@@ -90,7 +87,6 @@ public class CategoryFilterFragment extends Fragment {
 
         // [FIX] Get Firebase user and cashbook ID
         currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        mDatabase = FirebaseDatabase.getInstance().getReference();
         if (getActivity() != null) {
             currentCashbookId = getActivity().getIntent().getStringExtra("cashbook_id");
         }
@@ -169,37 +165,31 @@ public class CategoryFilterFragment extends Fragment {
             return;
         }
 
-        DatabaseReference transactionsRef = mDatabase.child("users")
-                .child(currentUser.getUid())
-                .child("cashbooks")
-                .child(currentCashbookId)
-                .child("transactions");
+        // Counted in memory from the cashbook's shared store, kept current as entries change
+        facetCounter = DataRepository.getInstance(requireActivity().getApplication())
+                .getFacetCounter(currentCashbookId);
+        if (facetCounter == null) {
+            updateUI();
+            return;
+        }
+        adapter.setFacetCounts(facetCounter, FacetCounter.Dimension.CATEGORY);
+        facetCounter.observe(facetListener);
+    }
 
-        transactionsRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Set<String> categorySet = new HashSet<>();
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    TransactionModel transaction = snapshot.getValue(TransactionModel.class);
-                    if (transaction != null &&
-                            transaction.getTransactionCategory() != null &&
-                            !transaction.getTransactionCategory().equals("No Category")) {
-
-                        categorySet.add(transaction.getTransactionCategory());
-                    }
-                }
-                allCategories.clear();
-                allCategories.addAll(categorySet);
-                filterCategories(""); // Load all categories initially
+    private void showCategories() {
+        allCategories.clear();
+        for (FacetCounter.Facet facet : facetCounter.getFacets(FacetCounter.Dimension.CATEGORY)) {
+            if (!facet.getValue().equals("No Category")) {
+                allCategories.add(facet.getValue());
             }
+        }
+        filterCategories(searchEditText.getText().toString());
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                if (getContext() != null) {
-                    ErrorHandler.handleFirebaseError(getContext(), databaseError);
-                }
-            }
-        });
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (facetCounter != null) facetCounter.removeObserver(facetListener);
     }
 
     private void filterCategories(String query) {
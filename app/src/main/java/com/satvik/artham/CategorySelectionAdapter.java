@@ -6,20 +6,36 @@ import android.view.ViewGroup;
 import android.widget.CheckBox;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.RecyclerView;
+
+import com.satvik.artham.analytics.FacetCounter;
+
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 public class CategorySelectionAdapter extends RecyclerView.Adapter<CategorySelectionAdapter.CategoryViewHolder> {
 
     private final List<String> categoryList;
     private final Set<String> selectedCategories;
+    private FacetCounter facetCounter;
+    private FacetCounter.Dimension dimension = FacetCounter.Dimension.CATEGORY;
 
     public CategorySelectionAdapter(List<String> categoryList, Set<String> selectedCategories) {
         this.categoryList = categoryList;
         this.selectedCategories = selectedCategories;
     }
 
+    /**
+     * Shows next to each option how many entries it covers. The same adapter lists
+     * parties too, so the dimension says which counts apply.
+     */
+    public void setFacetCounts(@Nullable FacetCounter counter, FacetCounter.Dimension dimension) {
+        this.facetCounter = counter;
+        this.dimension = dimension;
+    }
+
     @NonNull
     @Override
     public CategoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -41,16 +57,26 @@ public class CategorySelectionAdapter extends RecyclerView.Adapter<CategorySelec
     class CategoryViewHolder extends RecyclerView.ViewHolder {
         CheckBox categoryCheckbox;
         TextView categoryName;
+        TextView categoryCount;
 
         public CategoryViewHolder(@NonNull View itemView) {
             super(itemView);
             categoryCheckbox = itemView.findViewById(R.id.category_checkbox);
             categoryName = itemView.findViewById(R.id.category_name);
+            categoryCount = itemView.findViewById(R.id.category_count);
         }
 
         void bind(final String category) {
             categoryName.setText(category);
 
+            FacetCounter.Facet facet = facetCounter != null ? facetCounter.getFacet(dimension, category) : null;
+            if (facet != null) {
+                categoryCount.setText(String.format(Locale.US, "%d", facet.getCount()));
+                categoryCount.setVisibility(View.VISIBLE);
+            } else {
+                categoryCount.setVisibility(View.GONE);
+            }
+
             // [FIX] Set listener to null before changing checked state
             // This prevents the listener from firing during view recycling
             categoryCheckbox.setOnCheckedChangeListener(null);
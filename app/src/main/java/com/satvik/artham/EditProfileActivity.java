@@ -16,19 +16,15 @@ import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.bumptech.glide.Glide;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.db.UserProfileStore;
 import com.satvik.artham.models.Users; // [FIX] Ensure correct model import
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
 
@@ -49,7 +45,8 @@ public class EditProfileActivity extends AppCompatActivity {
     private Button cancelButton, saveProfileButton;
 
     private FirebaseAuth mAuth;
-    private DatabaseReference userDatabaseRef;
+    private UserProfileStore profileStore;
+    private DataRepository.DataCallback<Users> profileObserver;
     private StorageReference storageReference;
     private FirebaseUser currentUser;
 
@@ -82,7 +79,7 @@ public class EditProfileActivity extends AppCompatActivity {
             return;
         }
 
-        userDatabaseRef = FirebaseDatabase.getInstance().getReference("users").child(currentUser.getUid());
+        profileStore = UserProfileStore.getInstance(getApplication());
         storageReference = FirebaseStorage.getInstance().getReference("profile_pictures");
 
         initializeUI();
@@ -126,40 +123,45 @@ public class EditProfileActivity extends AppCompatActivity {
             displayEmail.setText(currentUser.getEmail());
         }
 
-        // Load other data from Realtime Database
-        userDatabaseRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                Users user = snapshot.getValue(Users.class);
-                if (user != null) {
-                    editFullName.setText(user.getUserName());
-
-                    // [FIX] Load phone number
-                    if (user.getPhoneNumber() != null) {
-                        editPhoneNumber.setText(user.getPhoneNumber());
-                    }
-
-                    // [FIX] Load date of birth
-                    if (user.getDateOfBirthTimestamp() > 0) {
-                        updateDobText(user.getDateOfBirthTimestamp());
-                    }
-
-                    // Load profile image using Glide
-                    if (user.getProfile() != null && !user.getProfile().isEmpty()) {
-                        Glide.with(EditProfileActivity.this)
-                                .load(user.getProfile())
-                                .placeholder(R.drawable.ic_person_placeholder) // Fallback
-                                .error(R.drawable.ic_person_placeholder) // On error
-                                .into(profileImageView);
-                    }
-                }
-            }
+        // Load other data from the shared profile cache (backed by the small profile node).
+        // The cached copy is delivered immediately, the remote one once it arrives.
+        profileObserver = this::bindUserProfile;
+        profileStore.observe(profileObserver);
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Toast.makeText(EditProfileActivity.this, "Failed to load profile.", Toast.LENGTH_SHORT).show();
-            }
-        });
+    private void bindUserProfile(Users user) {
+        if (user == null || isFinishing()) return;
+        // Don't clobber anything the user has already started typing
+        if (TextUtils.isEmpty(editFullName.getText())) {
+            editFullName.setText(user.getUserName());
+        }
+
+        // [FIX] Load phone number
+        if (user.getPhoneNumber() != null && TextUtils.isEmpty(editPhoneNumber.getText())) {
+            editPhoneNumber.setText(user.getPhoneNumber());
+        }
+
+        // [FIX] Load date of birth
+        if (user.getDateOfBirthTimestamp() > 0) {
+            updateDobText(user.getDateOfBirthTimestamp());
+        }
+
+        // Load profile image using Glide, unless a new one was just picked
+        if (imageUri == null && user.getProfile() != null && !user.getProfile().isEmpty()) {
+            Glide.with(EditProfileActivity.this)
+                    .load(user.getProfile())
+                    .placeholder(R.drawable.ic_person_placeholder) // Fallback
+                    .error(R.drawable.ic_person_placeholder) // On error
+                    .into(profileImageView);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (profileObserver != null) {
+            profileStore.removeObserver(profileObserver);
+        }
     }
 
     private void showDatePicker() {
@@ -233,14 +235,13 @@ public class EditProfileActivity extends AppCompatActivity {
             profileUpdates.put("profile", imageUrl);
         }
 
-        userDatabaseRef.updateChildren(profileUpdates)
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        Toast.makeText(EditProfileActivity.this, "Profile updated successfully!", Toast.LENGTH_SHORT).show();
-                        finish();
-                    } else {
-                        Toast.makeText(EditProfileActivity.this, "Failed to update profile.", Toast.LENGTH_SHORT).show();
-                    }
-                });
+        profileStore.updateProfile(profileUpdates, success -> {
+            if (success) {
+                Toast.makeText(EditProfileActivity.this, "Profile updated successfully!", Toast.LENGTH_SHORT).show();
+                finish();
+            } else {
+                Toast.makeText(EditProfileActivity.this, "Failed to update profile.", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -17,24 +17,23 @@ import android.widget.PopupMenu;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
+import com.satvik.artham.db.DataRepository;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 
 public class EditTransactionActivity extends AppCompatActivity {
 
@@ -52,10 +51,13 @@ public class EditTransactionActivity extends AppCompatActivity {
 
     // Firebase
     private FirebaseAuth mAuth;
-    private DatabaseReference transactionRef;
+    private DataRepository repository;
+    private CashInOutViewModel viewModel;
 
     // Data
     private TransactionModel currentTransaction;
+    // The transaction as stored, before this screen's edits; the budget check needs both
+    private TransactionModel storedTransaction;
     private String cashbookId;
     private Calendar calendar;
 
@@ -97,12 +99,18 @@ public class EditTransactionActivity extends AppCompatActivity {
             return;
         }
 
-        transactionRef = FirebaseDatabase.getInstance().getReference("users")
-                .child(currentUser.getUid())
-                .child("cashbooks")
-                .child(cashbookId)
-                .child("transactions")
-                .child(currentTransaction.getTransactionId());
+        // Writes go through the repository so the cashbook summary stays in step, and
+        // saves through the view model so they are checked against the budgets
+        repository = DataRepository.getInstance(getApplication());
+        viewModel = new ViewModelProvider(this, new CashInOutViewModelFactory(getApplication()))
+                .get(CashInOutViewModel.class);
+        storedTransaction = copyOf(currentTransaction);
+        viewModel.watchBudgets(cashbookId);
+        // Toasts outlive the activity, so alerts raised by "Save" still show after finish()
+        viewModel.getBudgetAlert().observe(this, event -> {
+            String message = event.consume();
+            if (message != null) Toast.makeText(getApplicationContext(), message, Toast.LENGTH_LONG).show();
+        });
 
         initializeUI();
         populateData();
@@ -315,25 +323,24 @@ public class EditTransactionActivity extends AppCompatActivity {
                 return;
             }
 
-            Map<String, Object> updates = new HashMap<>();
-            updates.put("amount", amount);
-            updates.put("remark", remarkEditText.getText().toString());
-            updates.put("timestamp", calendar.getTimeInMillis());
-            updates.put("type", radioIn.isChecked() ? "IN" : "OUT");
-            updates.put("paymentMode", radioCash.isChecked() ? "Cash" : "Online");
-            updates.put("transactionCategory", selectedCategoryTextView.getText().toString());
-            updates.put("partyName", partyTextView.getText().toString());
-
-            transactionRef.updateChildren(updates)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "Transaction updated successfully");
-                        showSnackbar("Transaction updated successfully");
-                        finish();
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to update transaction", e);
-                        showSnackbar("Failed to update transaction");
-                    });
+            currentTransaction.setAmount(amount);
+            currentTransaction.setRemark(remarkEditText.getText().toString());
+            currentTransaction.setTimestamp(calendar.getTimeInMillis());
+            currentTransaction.setType(radioIn.isChecked() ? "IN" : "OUT");
+            currentTransaction.setPaymentMode(radioCash.isChecked() ? "Cash" : "Online");
+            currentTransaction.setTransactionCategory(selectedCategoryTextView.getText().toString());
+            currentTransaction.setPartyName(partyTextView.getText().toString());
+
+            viewModel.updateTransaction(cashbookId, storedTransaction, currentTransaction, success -> {
+                if (success) {
+                    Log.d(TAG, "Transaction updated successfully");
+                    showSnackbar("Transaction updated successfully");
+                    finish();
+                } else {
+                    Log.e(TAG, "Failed to update transaction");
+                    showSnackbar("Failed to update transaction");
+                }
+            });
 
         } catch (NumberFormatException e) {
             Log.e(TAG, "Invalid amount format", e);
@@ -351,16 +358,16 @@ public class EditTransactionActivity extends AppCompatActivity {
     }
 
     private void deleteTransaction() {
-        transactionRef.removeValue()
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Transaction deleted successfully");
-                    showSnackbar("Transaction deleted");
-                    finish();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Failed to delete transaction", e);
-                    showSnackbar("Failed to delete transaction");
-                });
+        repository.deleteTransaction(cashbookId, currentTransaction.getTransactionId(), success -> {
+            if (success) {
+                Log.d(TAG, "Transaction deleted successfully");
+                showSnackbar("Transaction deleted");
+                finish();
+            } else {
+                Log.e(TAG, "Failed to delete transaction");
+                showSnackbar("Failed to delete transaction");
+            }
+        });
     }
 
     private void duplicateTransaction() {
@@ -374,16 +381,16 @@ public class EditTransactionActivity extends AppCompatActivity {
             duplicatedTransaction.setTransactionCategory(selectedCategoryTextView.getText().toString());
             duplicatedTransaction.setPartyName(partyTextView.getText().toString());
 
-            transactionRef.getParent().push().setValue(duplicatedTransaction)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "Transaction duplicated successfully");
-                        showSnackbar("Transaction duplicated successfully");
-                        finish();
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Failed to duplicate transaction", e);
-                        showSnackbar("Failed to duplicate transaction");
-                    });
+            viewModel.saveTransaction(cashbookId, duplicatedTransaction, success -> {
+                if (success) {
+                    Log.d(TAG, "Transaction duplicated successfully");
+                    showSnackbar("Transaction duplicated successfully");
+                    finish();
+                } else {
+                    Log.e(TAG, "Failed to duplicate transaction");
+                    showSnackbar("Failed to duplicate transaction");
+                }
+            });
 
         } catch (Exception e) {
             Log.e(TAG, "Error duplicating transaction", e);
@@ -391,6 +398,19 @@ public class EditTransactionActivity extends AppCompatActivity {
         }
     }
 
+    private static TransactionModel copyOf(TransactionModel transaction) {
+        TransactionModel copy = new TransactionModel();
+        copy.setTransactionId(transaction.getTransactionId());
+        copy.setAmount(transaction.getAmount());
+        copy.setType(transaction.getType());
+        copy.setTransactionCategory(transaction.getTransactionCategory());
+        copy.setPaymentMode(transaction.getPaymentMode());
+        copy.setPartyName(transaction.getPartyName());
+        copy.setRemark(transaction.getRemark());
+        copy.setTimestamp(transaction.getTimestamp());
+        return copy;
+    }
+
     private void showSnackbar(String message) {
         Snackbar.make(findViewById(android.R.id.content), message, Snackbar.LENGTH_SHORT).show();
     }
@@ -2,23 +2,36 @@ package com.satvik.artham;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.res.ColorStateList;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.text.InputType;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.satvik.artham.analytics.BudgetMonitor;
+import com.satvik.artham.analytics.CategoryMonthCube;
+import com.satvik.artham.analytics.ConsolidatedAnalytics;
+import com.satvik.artham.analytics.ForecastEngine;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.models.MonthlyRollup;
 import com.satvik.artham.utils.CustomPieChartValueFormatter;
 import com.satvik.artham.utils.ErrorHandler;
+import com.satvik.artham.utils.TimeBuckets;
 import com.github.mikephil.charting.charts.PieChart;
 import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.data.PieData;
@@ -28,21 +41,17 @@ import com.github.mikephil.charting.highlight.Highlight;
 import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnChartValueSelectedListener {
 
@@ -51,16 +60,32 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
     private PieChart fullScreenPieChart;
     private RecyclerView monthlyCardsRecyclerView, detailedLegendRecyclerView;
     private ImageButton closeButton;
+    private TextView analyticsTitle, scopeToggleButton;
+    private LinearLayout budgetSection, budgetList;
 
-    private List<TransactionModel> allTransactions = new ArrayList<>();
     private List<MonthlyExpense> monthlyExpenses;
     private MonthlyExpense currentSelectedMonth;
     private LegendAdapter legendAdapter;
     private MonthlyCardAdapter monthlyAdapter;
 
     private String cashbookId;
-    private DatabaseReference transactionsRef;
-    private ValueEventListener transactionsListener;
+    private DataRepository repository;
+    private ValueEventListener rollupsListener;
+    private Map<String, MonthlyRollup> bookRollups = new HashMap<>();
+
+    // All cashbooks at once instead of this one; budgets and forecast are per book, so hidden
+    private boolean consolidated = false;
+    private ConsolidatedAnalytics consolidatedAnalytics;
+    // Filled from the rollups, so the charts read slices without touching transactions
+    private final CategoryMonthCube rollupCube = new CategoryMonthCube();
+    private ForecastEngine forecastEngine;
+    private ForecastEngine.Forecast bookForecast;
+    private final ForecastEngine.Listener forecastListener = forecast -> {
+        bookForecast = forecast;
+        if (!consolidated) monthlyAdapter.setForecast(forecast);
+    };
+    private BudgetMonitor budgetMonitor;
+    private final BudgetMonitor.Listener budgetListener = monitor -> renderBudgets();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -79,15 +104,15 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
             return;
         }
 
-        transactionsRef = FirebaseDatabase.getInstance().getReference("users")
-                .child(currentUser.getUid()).child("cashbooks")
-                .child(cashbookId).child("transactions");
+        repository = DataRepository.getInstance(getApplication());
 
         initializeUI();
         setupRecyclerViews();
         setupClickListeners();
         setupPieChart();
-        loadTransactionData();
+        loadMonthlyRollups();
+        startForecast();
+        startBudgets();
     }
 
     private void initializeUI() {
@@ -95,6 +120,10 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
         monthlyCardsRecyclerView = findViewById(R.id.monthlyCardsRecyclerView);
         detailedLegendRecyclerView = findViewById(R.id.detailedLegendRecyclerView);
         closeButton = findViewById(R.id.closeButton);
+        budgetSection = findViewById(R.id.budgetSection);
+        budgetList = findViewById(R.id.budgetList);
+        analyticsTitle = findViewById(R.id.analyticsTitle);
+        scopeToggleButton = findViewById(R.id.scopeToggleButton);
     }
 
     private void setupPieChart() {
@@ -137,50 +166,77 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
     @Override
     public void onNothingSelected() {}
 
-    private void loadTransactionData() {
-        if (transactionsRef == null) return;
-
-        transactionsListener = transactionsRef.addValueEventListener(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                allTransactions.clear();
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    TransactionModel transaction = snapshot.getValue(TransactionModel.class);
-                    if (transaction != null) {
-                        allTransactions.add(transaction);
-                    }
-                }
-                processTransactionData();
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                ErrorHandler.handleFirebaseError(ExpenseAnalyticsActivity.this, databaseError);
-            }
-        });
+    private void loadMonthlyRollups() {
+        // Only the per-month rollups are read, never the transactions themselves
+        rollupsListener = repository.observeMonthlyRollups(cashbookId, rollups -> {
+            bookRollups = rollups;
+            if (!consolidated) processRollups(rollups);
+        }, error -> ErrorHandler.showLoadingError(this, "load analytics"));
     }
 
-    private void processTransactionData() {
-        if (allTransactions == null || allTransactions.isEmpty()) {
-            if(monthlyAdapter != null) monthlyAdapter.updateData(new ArrayList<>());
-            if(legendAdapter != null) legendAdapter.updateData(new ArrayList<>());
-            fullScreenPieChart.clear();
-            fullScreenPieChart.invalidate();
+    /**
+     * Switches between this cashbook and all of them. The consolidated view is loaded once
+     * per switch and fills in book by book as each one arrives.
+     */
+    @SuppressLint("SetTextI18n")
+    private void toggleScope() {
+        consolidated = !consolidated;
+        scopeToggleButton.setText(consolidated ? "This Book" : "All Books");
+
+        if (!consolidated) {
+            if (consolidatedAnalytics != null) consolidatedAnalytics.cancel();
+            analyticsTitle.setText("Expense Analytics");
+            processRollups(bookRollups);
+            monthlyAdapter.setForecast(bookForecast);
             return;
         }
 
-        Map<String, List<TransactionModel>> transactionsByMonth = allTransactions.stream()
-                .filter(t -> "OUT".equalsIgnoreCase(t.getType()))
-                .collect(Collectors.groupingBy(t -> {
-                    Calendar cal = Calendar.getInstance();
-                    cal.setTimeInMillis(t.getTimestamp());
-                    return new SimpleDateFormat("yyyy-MM", Locale.getDefault()).format(cal.getTime());
-                }));
+        monthlyAdapter.setForecast(null);
+        budgetSection.setVisibility(View.GONE);
+        analyticsTitle.setText("All Books");
+        if (consolidatedAnalytics == null) consolidatedAnalytics = new ConsolidatedAnalytics(repository);
+        repository.getCashbooks(cashbooks -> {
+            if (!consolidated || isFinishing()) return;
+            List<String> cashbookIds = new ArrayList<>();
+            for (CashbookModel cashbook : cashbooks) {
+                if (cashbook.getCashbookId() != null) cashbookIds.add(cashbook.getCashbookId());
+            }
+            consolidatedAnalytics.load(cashbookIds, report -> {
+                if (!consolidated) return;
+                processRollups(report.getRollups());
+                analyticsTitle.setText(report.isComplete()
+                        ? "All Books"
+                        : String.format(Locale.US, "All Books (%d/%d)",
+                        report.getBooksLoaded() + report.getBooksFailed(), report.getBooksTotal()));
+                if (report.isComplete() && report.getBooksFailed() > 0) {
+                    Toast.makeText(this, report.getBooksFailed() + " cashbook(s) could not be loaded",
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
+        }, error -> ErrorHandler.showLoadingError(this, "load cashbooks"));
+    }
+
+    private void startForecast() {
+        // Shared with later visits, so only the months that changed since are recomputed
+        forecastEngine = repository.getForecastEngine(cashbookId);
+        if (forecastEngine != null) forecastEngine.observe(forecastListener);
+    }
+
+    private void startBudgets() {
+        budgetMonitor = repository.getBudgetMonitor(cashbookId);
+        if (budgetMonitor != null) budgetMonitor.observe(budgetListener);
+    }
 
+    private void processRollups(Map<String, MonthlyRollup> rollups) {
         monthlyExpenses = new ArrayList<>();
-        for (Map.Entry<String, List<TransactionModel>> entry : transactionsByMonth.entrySet()) {
-            double total = entry.getValue().stream().mapToDouble(TransactionModel::getAmount).sum();
-            monthlyExpenses.add(new MonthlyExpense(entry.getKey(), total, entry.getValue()));
+        rollupCube.clear();
+        for (Map.Entry<String, MonthlyRollup> entry : rollups.entrySet()) {
+            MonthlyRollup rollup = entry.getValue();
+            int monthKey = TimeBuckets.parseMonthKey(entry.getKey());
+            if (monthKey < 0 || rollup.getTotalOut() <= 0) continue; // Months without expenses have no chart
+
+            rollupCube.putRollup(monthKey, rollup);
+            monthlyExpenses.add(new MonthlyExpense(entry.getKey(), monthKey, rollup.getTotalOut()));
         }
 
         monthlyExpenses.sort(Comparator.comparing(MonthlyExpense::getMonth).reversed());
@@ -207,23 +263,18 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
         monthlyCardsRecyclerView.setAdapter(monthlyAdapter);
 
         detailedLegendRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        legendAdapter = new LegendAdapter(new ArrayList<>());
+        legendAdapter = new LegendAdapter(new ArrayList<>(), this::showBudgetDialog);
         detailedLegendRecyclerView.setAdapter(legendAdapter);
     }
 
     private void setupClickListeners() {
         closeButton.setOnClickListener(v -> finish());
+        scopeToggleButton.setOnClickListener(v -> toggleScope());
     }
 
     private void updatePieChartForMonth(MonthlyExpense monthlyExpense) {
         currentSelectedMonth = monthlyExpense;
 
-        Map<String, Double> expenseByCategory = monthlyExpense.getTransactions().stream()
-                .collect(Collectors.groupingBy(
-                        t -> t.getTransactionCategory() != null ? t.getTransactionCategory() : "Others",
-                        Collectors.summingDouble(TransactionModel::getAmount)
-                ));
-
         ArrayList<PieEntry> entries = new ArrayList<>();
         ArrayList<LegendItem> legendItems = new ArrayList<>();
 
@@ -242,15 +293,20 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
         colors.add(Color.parseColor("#7C4DFF"));
         colors.add(Color.parseColor("#B2FF59"));
 
+        // One slice of the cube: a read per category, nothing re-aggregated
+        int monthKey = monthlyExpense.getMonthKey();
         int colorIndex = 0;
-        for (Map.Entry<String, Double> entry : expenseByCategory.entrySet()) {
-            float amount = entry.getValue().floatValue();
+        for (int id = 0; id < rollupCube.getCategoryCount(); id++) {
+            double out = rollupCube.getOut(monthKey, id);
+            if (out <= 0) continue;
+            float amount = (float) out;
+            String category = rollupCube.getCategoryName(id);
             // PieEntry label is "Category Name"
-            entries.add(new PieEntry(amount, entry.getKey()));
+            entries.add(new PieEntry(amount, category));
 
             int color = colors.get(colorIndex % colors.size());
             legendItems.add(new LegendItem(
-                    entry.getKey(),
+                    category,
                     amount,
                     (float) (amount / monthlyExpense.getTotalExpense() * 100),
                     color
@@ -299,14 +355,89 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
         fullScreenPieChart.invalidate();
 
         legendAdapter.updateData(legendItems);
+        renderBudgets();
+    }
+
+    /**
+     * Progress of every budget in the selected month, read from the monitor's running
+     * counters (the same ones checked when saving).
+     */
+    @SuppressLint("SetTextI18n")
+    private void renderBudgets() {
+        if (consolidated || budgetMonitor == null || !budgetMonitor.isReady() || budgetMonitor.getBudgets().isEmpty()) {
+            budgetSection.setVisibility(View.GONE);
+            return;
+        }
+        int monthKey = currentSelectedMonth != null ? currentSelectedMonth.getMonthKey()
+                : TimeBuckets.getDefault().monthKey(System.currentTimeMillis());
+
+        int balanceColor = ThemeUtil.getThemeAttrColor(this, R.attr.balanceColor);
+        int expenseColor = ThemeUtil.getThemeAttrColor(this, R.attr.expenseColor);
+        int warningColor = Color.parseColor("#FFB300");
+
+        budgetList.removeAllViews();
+        for (Map.Entry<String, Double> budget : new TreeMap<>(budgetMonitor.getBudgets()).entrySet()) {
+            double limit = budget.getValue();
+            double spent = budgetMonitor.getSpent(monthKey, budget.getKey());
+            double share = spent / limit;
+
+            View row = getLayoutInflater().inflate(R.layout.item_budget_progress, budgetList, false);
+            ((TextView) row.findViewById(R.id.budgetCategoryName)).setText(budget.getKey());
+            ((TextView) row.findViewById(R.id.budgetAmounts)).setText(
+                    String.format(Locale.US, "₹%.0f / ₹%.0f", spent, limit));
+            ProgressBar progressBar = row.findViewById(R.id.budgetProgressBar);
+            progressBar.setProgress((int) Math.min(100, Math.round(share * 100)));
+            int color = share >= 1 ? expenseColor : share >= BudgetMonitor.WARNING_SHARE ? warningColor : balanceColor;
+            progressBar.setProgressTintList(ColorStateList.valueOf(color));
+            row.setOnClickListener(v -> showBudgetDialog(budget.getKey()));
+            budgetList.addView(row);
+        }
+        budgetSection.setVisibility(View.VISIBLE);
+    }
+
+    private void showBudgetDialog(String category) {
+        if (budgetMonitor == null) return;
+        if (consolidated) {
+            Toast.makeText(this, "Budgets are set per cashbook", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Double current = budgetMonitor.getBudgets().get(category);
+
+        final EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL);
+        input.setHint("Monthly limit");
+        if (current != null) input.setText(String.format(Locale.US, "%.0f", current));
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle("Budget for " + category)
+                .setView(input)
+                .setPositiveButton("Save", (dialog, which) -> {
+                    try {
+                        saveBudget(category, Double.parseDouble(input.getText().toString().trim()));
+                    } catch (NumberFormatException e) {
+                        Toast.makeText(this, "Please enter a valid amount", Toast.LENGTH_SHORT).show();
+                    }
+                })
+                .setNegativeButton("Cancel", (dialog, which) -> dialog.cancel());
+        if (current != null) builder.setNeutralButton("Remove", (dialog, which) -> saveBudget(category, 0));
+        builder.show();
+    }
+
+    private void saveBudget(String category, double limit) {
+        repository.setCategoryBudget(cashbookId, category, limit, success -> {
+            if (!success) Toast.makeText(this, "Failed to save budget", Toast.LENGTH_SHORT).show();
+        });
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (transactionsListener != null && transactionsRef != null) {
-            transactionsRef.removeEventListener(transactionsListener);
+        if (rollupsListener != null) {
+            repository.removeRollupsListener(cashbookId, rollupsListener);
         }
+        if (forecastEngine != null) forecastEngine.removeObserver(forecastListener);
+        if (budgetMonitor != null) budgetMonitor.removeObserver(budgetListener);
+        if (consolidatedAnalytics != null) consolidatedAnalytics.cancel();
     }
 
     // ... (Inner classes remain the same) ...
@@ -315,13 +446,13 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
     // but ensure you keep them in the file.
 
     static class MonthlyExpense {
-        private String month; private double totalExpense; private List<TransactionModel> transactions;
-        public MonthlyExpense(String month, double totalExpense, List<TransactionModel> transactions) {
-            this.month = month; this.totalExpense = totalExpense; this.transactions = transactions;
+        private String month; private int monthKey; private double totalExpense;
+        public MonthlyExpense(String month, int monthKey, double totalExpense) {
+            this.month = month; this.monthKey = monthKey; this.totalExpense = totalExpense;
         }
         public String getMonth() { return month; }
+        public int getMonthKey() { return monthKey; }
         public double getTotalExpense() { return totalExpense; }
-        public List<TransactionModel> getTransactions() { return transactions; }
     }
 
     static class LegendItem {
@@ -337,6 +468,7 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
         private List<MonthlyExpense> monthlyExpenses;
         private OnMonthClickListener clickListener;
         private int selectedPosition = -1;
+        private ForecastEngine.Forecast forecast;
 
         MonthlyCardAdapter(List<MonthlyExpense> monthlyExpenses, OnMonthClickListener listener) {
             this.monthlyExpenses = monthlyExpenses; this.clickListener = listener;
@@ -349,6 +481,19 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
             notifyDataSetChanged();
         }
 
+        /**
+         * Shows the projection on the card of the month it is for, if that card exists.
+         */
+        public void setForecast(@Nullable ForecastEngine.Forecast forecast) {
+            ForecastEngine.Forecast previous = this.forecast;
+            this.forecast = forecast;
+            for (int i = 0; i < monthlyExpenses.size(); i++) {
+                int monthKey = monthlyExpenses.get(i).getMonthKey();
+                if ((forecast != null && monthKey == forecast.getMonthKey())
+                        || (previous != null && monthKey == previous.getMonthKey())) notifyItemChanged(i);
+            }
+        }
+
         public void setSelectedPosition(int position) {
             int oldPosition = selectedPosition; selectedPosition = position;
             notifyItemChanged(oldPosition); notifyItemChanged(selectedPosition);
@@ -364,7 +509,8 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
             MonthlyExpense monthlyExpense = monthlyExpenses.get(position);
-            holder.bind(monthlyExpense, position == selectedPosition);
+            boolean forecastMonth = forecast != null && forecast.getMonthKey() == monthlyExpense.getMonthKey();
+            holder.bind(monthlyExpense, position == selectedPosition, forecastMonth ? forecast : null);
             holder.itemView.setOnClickListener(v -> {
                 if (clickListener != null) clickListener.onMonthClick(monthlyExpense);
                 int oldPosition = selectedPosition;
@@ -377,44 +523,61 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
         public int getItemCount() { return monthlyExpenses.size(); }
 
         static class ViewHolder extends RecyclerView.ViewHolder {
-            TextView monthName, totalExpense; LinearLayout cardContainer;
-            int primaryTextColor, balanceColor, surfaceColor, expenseColor;
+            TextView monthName, totalExpense, projectedExpense; LinearLayout cardContainer;
+            int primaryTextColor, secondaryTextColor, balanceColor, surfaceColor, expenseColor;
 
             ViewHolder(@NonNull View itemView) {
                 super(itemView);
                 monthName = itemView.findViewById(R.id.monthNameTextView);
                 totalExpense = itemView.findViewById(R.id.totalExpenseTextView);
+                projectedExpense = itemView.findViewById(R.id.projectedExpenseTextView);
                 cardContainer = itemView.findViewById(R.id.cardContainer);
 
                 primaryTextColor = ThemeUtil.getThemeAttrColor(itemView.getContext(), R.attr.textColorPrimary);
+                secondaryTextColor = ThemeUtil.getThemeAttrColor(itemView.getContext(), R.attr.textColorSecondary);
                 balanceColor = ThemeUtil.getThemeAttrColor(itemView.getContext(), R.attr.balanceColor);
                 surfaceColor = ThemeUtil.getThemeAttrColor(itemView.getContext(), R.attr.surfaceColor);
                 expenseColor = ThemeUtil.getThemeAttrColor(itemView.getContext(), R.attr.expenseColor);
             }
 
-            void bind(MonthlyExpense data, boolean isSelected) {
+            void bind(MonthlyExpense data, boolean isSelected, ForecastEngine.Forecast forecast) {
                 try {
-                    SimpleDateFormat parser = new SimpleDateFormat("yyyy-MM", Locale.getDefault());
+                    SimpleDateFormat parser = new SimpleDateFormat("yyyy-MM", Locale.US);
                     SimpleDateFormat formatter = new SimpleDateFormat("MMM yyyy", Locale.getDefault());
                     monthName.setText(formatter.format(parser.parse(data.getMonth())));
                 } catch (ParseException e) { monthName.setText(data.getMonth()); }
 
                 totalExpense.setText(String.format(Locale.US, "₹%.0f", data.getTotalExpense()));
 
+                // Only the month in progress has a projection
+                if (forecast != null && forecast.getDaysElapsed() < forecast.getDaysInMonth()) {
+                    projectedExpense.setText(String.format(Locale.US, "Proj. ₹%.0f", forecast.getProjected()));
+                    projectedExpense.setVisibility(View.VISIBLE);
+                } else {
+                    projectedExpense.setVisibility(View.GONE);
+                }
+
                 if (isSelected) {
                     cardContainer.setBackgroundColor(balanceColor);
                     monthName.setTextColor(Color.WHITE); totalExpense.setTextColor(Color.WHITE);
+                    projectedExpense.setTextColor(Color.WHITE);
                 } else {
                     cardContainer.setBackgroundColor(surfaceColor);
                     monthName.setTextColor(primaryTextColor); totalExpense.setTextColor(expenseColor);
+                    projectedExpense.setTextColor(secondaryTextColor);
                 }
             }
         }
     }
 
+    interface OnCategoryClickListener { void onCategoryClick(String category); }
+
     static class LegendAdapter extends RecyclerView.Adapter<LegendAdapter.ViewHolder> {
         private List<LegendItem> legendItems;
-        LegendAdapter(List<LegendItem> items) { this.legendItems = items; }
+        private final OnCategoryClickListener clickListener;
+        LegendAdapter(List<LegendItem> items, OnCategoryClickListener listener) {
+            this.legendItems = items; this.clickListener = listener;
+        }
 
         @SuppressLint("NotifyDataSetChanged")
         public void updateData(List<LegendItem> newItems) {
@@ -430,7 +593,12 @@ public class ExpenseAnalyticsActivity extends AppCompatActivity implements OnCha
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            holder.bind(legendItems.get(position));
+            LegendItem item = legendItems.get(position);
+            holder.bind(item);
+            // Tapping a category sets or edits its monthly budget
+            holder.itemView.setOnClickListener(v -> {
+                if (clickListener != null) clickListener.onCategoryClick(item.category);
+            });
         }
 
         @Override
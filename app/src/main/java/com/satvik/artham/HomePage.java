@@ -6,7 +6,6 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Color;
 import android.graphics.Typeface;
-import android.icu.util.Calendar;
 import android.os.Bundle;
 import android.text.InputType;
 import android.util.Log;
@@ -32,12 +31,16 @@ import androidx.cardview.widget.CardView;
 import com.satvik.artham.databinding.ActivityHomePageBinding;
 import com.satvik.artham.databinding.ComponentBalanceCardBinding;
 import com.satvik.artham.databinding.LayoutBottomNavigationBinding;
+import com.satvik.artham.analytics.AggregationEngine;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.db.TransactionStore;
+import com.satvik.artham.db.UserProfileStore;
+import com.satvik.artham.models.CashbookSummary;
 import com.satvik.artham.utils.DateTimeUtils;
 import com.satvik.artham.utils.ErrorHandler;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
@@ -46,7 +49,6 @@ import com.google.firebase.database.ValueEventListener;
 import java.io.Serializable;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -74,12 +76,18 @@ public class HomePage extends AppCompatActivity {
     // Firebase
     private FirebaseAuth mAuth;
     private DatabaseReference mDatabase;
-    private ValueEventListener transactionsListener, cashbooksListener;
+    private ValueEventListener cashbooksListener;
+    private TransactionStore transactionStore;
+    private AggregationEngine aggregationEngine;
     private FirebaseUser currentUser;
     private DatabaseReference userRef;
+    private DataRepository repository;
+    private ValueEventListener summaryListener;
+    private String summaryCashbookId;
 
     // Data
-    private ArrayList<TransactionModel> allTransactions = new ArrayList<>();
+    // Today's rows read from the on-device mirror, shown until the running totals are ready
+    private final ArrayList<TransactionModel> cachedTodayTransactions = new ArrayList<>();
     private List<CashbookModel> cashbooks = new ArrayList<>();
 
     // State
@@ -130,6 +138,7 @@ public class HomePage extends AppCompatActivity {
 
         currentUserId = currentUser.getUid();
         userRef = mDatabase.child("users").child(currentUserId);
+        repository = DataRepository.getInstance(getApplication());
         currencyFormat = NumberFormat.getCurrencyInstance(new Locale("en", "IN"));
         currentCashbookId = getIntent().getStringExtra("cashbook_id");
 
@@ -186,45 +195,36 @@ public class HomePage extends AppCompatActivity {
     private void loadCashbooksForBadge() {
         if (userRef == null) return;
         if (cashbooksListener != null) {
-            userRef.child("cashbooks").removeEventListener(cashbooksListener);
+            repository.removeCashbooksListener(cashbooksListener);
         }
 
-        cashbooksListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                cashbooks.clear();
-                boolean activeCashbookFound = false;
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    CashbookModel cashbook = snapshot.getValue(CashbookModel.class);
-                    if (cashbook != null) {
-                        cashbook.setCashbookId(snapshot.getKey());
-                        cashbooks.add(cashbook);
-                        if (cashbook.getCashbookId().equals(currentCashbookId)) {
-                            activeCashbookFound = true;
-                        }
-                    }
-                }
-
-                if (!activeCashbookFound && !cashbooks.isEmpty()) {
-                    currentCashbookId = cashbooks.get(0).getCashbookId();
-                    saveActiveCashbookId(currentCashbookId);
-                } else if (cashbooks.isEmpty()) {
-                    setLoadingState(false);
-                    showCreateFirstCashbookDialog();
-                    return;
+        // Reads the metadata index only; transactions are fetched per cashbook below
+        cashbooksListener = repository.observeCashbooks(loadedCashbooks -> {
+            cashbooks.clear();
+            boolean activeCashbookFound = false;
+            for (CashbookModel cashbook : loadedCashbooks) {
+                cashbooks.add(cashbook);
+                if (cashbook.getCashbookId().equals(currentCashbookId)) {
+                    activeCashbookFound = true;
                 }
-
-                updateUserUI();
-                startListeningForTransactions();
             }
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                Log.e(TAG, "Failed to load cashbooks", databaseError.toException());
+
+            if (!activeCashbookFound && !cashbooks.isEmpty()) {
+                currentCashbookId = cashbooks.get(0).getCashbookId();
+                saveActiveCashbookId(currentCashbookId);
+            } else if (cashbooks.isEmpty()) {
                 setLoadingState(false);
-                ErrorHandler.handleFirebaseError(HomePage.this, databaseError);
+                showCreateFirstCashbookDialog();
+                return;
             }
-        };
-        userRef.child("cashbooks").addValueEventListener(cashbooksListener);
+
+            updateUserUI();
+            startListeningForTransactions();
+        }, error -> {
+            Log.e(TAG, "Failed to load cashbooks: " + error);
+            setLoadingState(false);
+            showSnackbar("Failed to load cashbooks");
+        });
     }
 
     private void setupUI() {
@@ -295,6 +295,8 @@ public class HomePage extends AppCompatActivity {
     }
 
     private void signOutUser() {
+        UserProfileStore.getInstance(getApplication()).clearCache();
+        DataRepository.getInstance(getApplication()).clearLocalMirror();
         mAuth.signOut();
         Intent intent = new Intent(this, SigninActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -311,50 +313,95 @@ public class HomePage extends AppCompatActivity {
     }
 
     private void startListeningForTransactions() {
-        if (transactionsListener != null && currentCashbookId != null && userRef != null) {
-            userRef.child("cashbooks").child(currentCashbookId).child("transactions")
-                    .removeEventListener(transactionsListener);
-        }
+        stopObservingTransactions();
+
+        listenForSummary();
 
         if (currentCashbookId == null) {
             setLoadingState(false);
-            allTransactions.clear();
+            cachedTodayTransactions.clear();
             updateTransactionTableAndSummary();
             return;
         }
 
-        DatabaseReference transactionsRef = userRef.child("cashbooks")
-                .child(currentCashbookId).child("transactions");
+        transactionStore = repository.getTransactionStore(currentCashbookId);
+        if (transactionStore == null) {
+            setLoadingState(false);
+            return;
+        }
+
+        // Render today's rows from the on-device mirror while the shared store loads
+        final TransactionStore store = transactionStore;
+        final String mirroredCashbookId = currentCashbookId;
+        long now = System.currentTimeMillis();
+        cachedTodayTransactions.clear();
+        if (!store.isLoaded()) {
+            repository.getMirroredTransactionsInRange(mirroredCashbookId,
+                    DateTimeUtils.getDayStart(now), DateTimeUtils.getDayEnd(now), cached -> {
+                if (store.isLoaded() || cached.isEmpty() || store != transactionStore) return;
+                cachedTodayTransactions.addAll(cached);
+                updateTransactionTableAndSummary();
+            });
+        }
 
-        transactionsListener = transactionsRef.addValueEventListener(new ValueEventListener() {
+        // Totals move with each change; today rolls over on its own at midnight
+        aggregationEngine = new AggregationEngine(store);
+        aggregationEngine.start(new AggregationEngine.Listener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                try {
-                    allTransactions.clear();
-                    for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                        TransactionModel transaction = snapshot.getValue(TransactionModel.class);
-                        if (transaction != null) {
-                            transaction.setTransactionId(snapshot.getKey());
-                            allTransactions.add(transaction);
-                        }
-                    }
-                    Collections.sort(allTransactions, (t1, t2) -> Long.compare(t2.getTimestamp(), t1.getTimestamp()));
-                    updateTransactionTableAndSummary();
-                    setLoadingState(false);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error processing transactions", e);
-                    showSnackbar("Error loading transactions");
-                    setLoadingState(false);
-                }
+            public void onAggregatesChanged(AggregationEngine engine) {
+                updateTransactionTableAndSummary();
+                updateBalanceCard(engine.getBalance(), engine.getTotalIn(), engine.getTotalOut());
+                setLoadingState(false);
             }
+
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onCancelled(DatabaseError databaseError) {
                 setLoadingState(false);
                 ErrorHandler.handleFirebaseError(HomePage.this, databaseError);
             }
         });
     }
 
+    private void stopObservingTransactions() {
+        if (aggregationEngine != null) {
+            aggregationEngine.stop();
+            aggregationEngine = null;
+        }
+    }
+
+    /**
+     * The all-time totals on the balance card come from the cashbook's summary node,
+     * which is kept current on every write, instead of being summed from transactions.
+     */
+    private void listenForSummary() {
+        if (summaryListener != null) {
+            repository.removeSummaryListener(summaryCashbookId, summaryListener);
+            summaryListener = null;
+        }
+
+        summaryCashbookId = currentCashbookId;
+        if (currentCashbookId == null) {
+            updateBalanceCard(new CashbookSummary());
+            return;
+        }
+        // Paints the card until the local totals are ready; they are fresher from then on
+        summaryListener = repository.observeCashbookSummary(currentCashbookId, summary -> {
+            if (aggregationEngine == null || !aggregationEngine.isReady()) updateBalanceCard(summary);
+        });
+    }
+
+    private void updateBalanceCard(CashbookSummary summary) {
+        updateBalanceCard(summary.getBalance(), summary.getTotalIn(), summary.getTotalOut());
+    }
+
+    private void updateBalanceCard(double balance, double totalIn, double totalOut) {
+        if (balanceCardBinding == null) return;
+        balanceCardBinding.balanceText.setText(formatCurrency(balance));
+        balanceCardBinding.moneyIn.setText(formatCurrency(totalIn));
+        balanceCardBinding.moneyOut.setText(formatCurrency(totalOut));
+        balanceCardBinding.balanceText.setTextColor(Color.WHITE);
+    }
+
     private void updateUserUI() {
         if (currentUser != null && binding != null) {
             try {
@@ -405,24 +452,20 @@ public class HomePage extends AppCompatActivity {
                 transactionTable.removeAllViews();
             }
 
-            // [1] Calculate GLOBAL Balance (All Time) for the Top Card
-            double globalTotalIncome = 0, globalTotalExpense = 0;
-            for (TransactionModel transaction : allTransactions) {
-                if ("IN".equalsIgnoreCase(transaction.getType())) {
-                    globalTotalIncome += transaction.getAmount();
-                } else {
-                    globalTotalExpense += transaction.getAmount();
-                }
-            }
-            double globalBalance = globalTotalIncome - globalTotalExpense;
+            // [1] GLOBAL Balance (All Time) for the Top Card is driven by listenForSummary()
 
-            // [2] Calculate TODAY'S Income, Expense & Net Balance
+            // [2] TODAY'S Income, Expense & Net Balance come from the running totals;
+            // before they are ready, only the mirrored rows of today are on hand
             double todayIncome = 0, todayExpense = 0;
-            List<TransactionModel> todaysTransactions = new ArrayList<>();
+            List<TransactionModel> todaysTransactions;
 
-            for (TransactionModel transaction : allTransactions) {
-                if (isToday(transaction.getTimestamp())) {
-                    todaysTransactions.add(transaction);
+            if (aggregationEngine != null && aggregationEngine.isReady()) {
+                todaysTransactions = aggregationEngine.getTodaysTransactions();
+                todayIncome = aggregationEngine.getTodayIn();
+                todayExpense = aggregationEngine.getTodayOut();
+            } else {
+                todaysTransactions = cachedTodayTransactions;
+                for (TransactionModel transaction : cachedTodayTransactions) {
                     if ("IN".equalsIgnoreCase(transaction.getType())) {
                         todayIncome += transaction.getAmount();
                     } else {
@@ -433,12 +476,6 @@ public class HomePage extends AppCompatActivity {
 
             double todayBalance = todayIncome - todayExpense;
 
-            // Update Balance Card (Global Stats)
-            balanceCardBinding.balanceText.setText(formatCurrency(globalBalance));
-            balanceCardBinding.moneyIn.setText(formatCurrency(globalTotalIncome));
-            balanceCardBinding.moneyOut.setText(formatCurrency(globalTotalExpense));
-            balanceCardBinding.balanceText.setTextColor(Color.WHITE);
-
             // Update Daily Header Text (Date & Net Balance)
             if (dailyDateText != null) {
                 dailyDateText.setText(DateTimeUtils.formatDate(System.currentTimeMillis(), "dd MMM yyyy"));
@@ -475,14 +512,6 @@ public class HomePage extends AppCompatActivity {
         }
     }
 
-    private boolean isToday(long timestamp) {
-        Calendar transactionCal = Calendar.getInstance();
-        transactionCal.setTimeInMillis(timestamp);
-        Calendar todayCal = Calendar.getInstance();
-        return transactionCal.get(Calendar.YEAR) == todayCal.get(Calendar.YEAR) &&
-                transactionCal.get(Calendar.DAY_OF_YEAR) == todayCal.get(Calendar.DAY_OF_YEAR);
-    }
-
     private String formatCurrency(double amount) {
         if(currencyFormat == null) return "₹" + amount;
         return currencyFormat.format(amount);
@@ -565,29 +594,18 @@ public class HomePage extends AppCompatActivity {
 
     private void createNewCashbook(String name) {
         if (currentUserId == null || userRef == null) return;
-        DatabaseReference cashbooksRef = userRef.child("cashbooks");
-        String cashbookId = cashbooksRef.push().getKey();
-        if (cashbookId != null) {
-            CashbookModel newCashbook = new CashbookModel(cashbookId, name);
-            newCashbook.setUserId(currentUserId);
-            cashbooksRef.child(cashbookId).setValue(newCashbook)
-                    .addOnSuccessListener(aVoid -> {
-                        Toast.makeText(this, "Cashbook '" + name + "' created", Toast.LENGTH_SHORT).show();
-                        switchCashbook(cashbookId);
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(this, "Failed to create cashbook", Toast.LENGTH_SHORT).show();
-                    });
-        }
+        repository.createNewCashbook(name, cashbookId -> {
+            if (cashbookId != null) {
+                Toast.makeText(this, "Cashbook '" + name + "' created", Toast.LENGTH_SHORT).show();
+                switchCashbook(cashbookId);
+            }
+        }, error -> Toast.makeText(this, "Failed to create cashbook", Toast.LENGTH_SHORT).show());
     }
 
     private void switchCashbook(String newCashbookId) {
         if (currentUserId == null) return;
 
-        if (transactionsListener != null && currentCashbookId != null && userRef != null) {
-            userRef.child("cashbooks").child(currentCashbookId).child("transactions")
-                    .removeEventListener(transactionsListener);
-        }
+        stopObservingTransactions();
 
         currentCashbookId = newCashbookId;
         saveActiveCashbookId(currentCashbookId);
@@ -618,15 +636,15 @@ public class HomePage extends AppCompatActivity {
     private void removeFirebaseListeners() {
         if (userRef == null) return;
         try {
-            if (transactionsListener != null && currentCashbookId != null) {
-                userRef.child("cashbooks").child(currentCashbookId).child("transactions")
-                        .removeEventListener(transactionsListener);
-                transactionsListener = null;
-            }
+            stopObservingTransactions();
             if (cashbooksListener != null) {
-                userRef.child("cashbooks").removeEventListener(cashbooksListener);
+                repository.removeCashbooksListener(cashbooksListener);
                 cashbooksListener = null;
             }
+            if (summaryListener != null) {
+                repository.removeSummaryListener(summaryCashbookId, summaryListener);
+                summaryListener = null;
+            }
         } catch (Exception e) {
             Log.e(TAG, "Error removing listeners", e);
         }
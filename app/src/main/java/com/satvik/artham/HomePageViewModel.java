@@ -10,17 +10,18 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.db.TransactionStore;
+import com.satvik.artham.db.UserProfileStore;
 import com.satvik.artham.models.Users; // [FIX] Corrected package
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class HomePageViewModel extends AndroidViewModel {
@@ -29,6 +30,8 @@ public class HomePageViewModel extends AndroidViewModel {
 
     // Firebase
     private final DatabaseReference userDatabaseRef;
+    private final UserProfileStore profileStore;
+    private final DataRepository repository;
     private String currentCashbookId;
     private String currentUserId; // [FIX] Added user ID field
 
@@ -41,11 +44,26 @@ public class HomePageViewModel extends AndroidViewModel {
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
 
     // Listeners
-    private ValueEventListener transactionsListener;
+    private final TransactionStore.Listener transactionsListener = new TransactionStore.Listener() {
+        @Override
+        public void onTransactionsChanged(List<TransactionModel> snapshot) {
+            transactions.setValue(snapshot);
+            Log.d(TAG, "Loaded " + snapshot.size() + " transactions");
+            isLoading.setValue(false);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            Log.e(TAG, "Transactions listener cancelled", error.toException());
+            errorMessage.setValue("Error: " + error.getMessage());
+            isLoading.setValue(false);
+        }
+    };
     private ValueEventListener cashbooksListener;
-    private ValueEventListener userProfileListener;
+    private DataRepository.DataCallback<Users> userProfileObserver;
 
-    private DatabaseReference previousTransactionsRef;
+    // Shared, newest-first copy of the active cashbook's transactions
+    private TransactionStore transactionStore;
 
     public HomePageViewModel(@NonNull Application application) {
         super(application);
@@ -53,6 +71,8 @@ public class HomePageViewModel extends AndroidViewModel {
         this.cashbooks.setValue(new ArrayList<>());
 
         Log.d(TAG, "ViewModel initialized.");
+        profileStore = UserProfileStore.getInstance(application);
+        repository = DataRepository.getInstance(application);
 
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
 
@@ -108,21 +128,12 @@ public class HomePageViewModel extends AndroidViewModel {
     private void loadUserProfile() {
         if (userDatabaseRef == null) return;
 
-        userProfileListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                Users user = snapshot.getValue(Users.class);
-                userProfile.setValue(user);
-                Log.d(TAG, "User profile loaded.");
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "User profile loading cancelled", error.toException());
-                errorMessage.setValue("Error: " + error.getMessage());
-            }
+        // Profile comes from its own small node via the shared cache, never from users/{uid}
+        userProfileObserver = user -> {
+            userProfile.setValue(user);
+            Log.d(TAG, "User profile loaded.");
         };
-        userDatabaseRef.addValueEventListener(userProfileListener);
+        profileStore.observe(userProfileObserver);
     }
 
     // ============================================
@@ -134,56 +145,42 @@ public class HomePageViewModel extends AndroidViewModel {
 
         isLoading.setValue(true);
 
-        cashbooksListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                List<CashbookModel> cashbookList = new ArrayList<>();
-                for (DataSnapshot cashbookSnapshot : snapshot.getChildren()) {
-                    CashbookModel cashbook = cashbookSnapshot.getValue(CashbookModel.class);
-                    if (cashbook != null) {
-                        cashbook.setCashbookId(cashbookSnapshot.getKey());
-                        cashbookList.add(cashbook);
-                    }
-                }
-                cashbooks.setValue(cashbookList);
-                Log.d(TAG, "Loaded " + cashbookList.size() + " cashbooks");
-
-                // Get the last active cashbook ID from SharedPreferences
-                currentCashbookId = getActiveCashbookIdFromPrefs();
-
-                boolean activeCashbookFound = false;
-                if (currentCashbookId != null) {
-                    for (CashbookModel book : cashbookList) {
-                        if (book.getCashbookId().equals(currentCashbookId)) {
-                            activeCashbookFound = true;
-                            break;
-                        }
-                    }
-                }
+        // Only the metadata index is listened to; it holds no transactions
+        cashbooksListener = repository.observeCashbooks(cashbookList -> {
+            cashbooks.setValue(cashbookList);
+            Log.d(TAG, "Loaded " + cashbookList.size() + " cashbooks");
 
-                if (!activeCashbookFound && !cashbookList.isEmpty()) {
-                    // Default to the first cashbook if last active one isn't found or isn't set
-                    currentCashbookId = cashbookList.get(0).getCashbookId();
-                    saveActiveCashbookIdToPrefs(currentCashbookId);
-                }
+            // Get the last active cashbook ID from SharedPreferences
+            currentCashbookId = getActiveCashbookIdFromPrefs();
 
-                if (currentCashbookId != null) {
-                    switchCashbook(currentCashbookId);
-                } else {
-                    // This is a new user with no cashbooks
-                    isLoading.setValue(false);
-                    // HomePage will detect this and show the "Create First Cashbook" dialog
+            boolean activeCashbookFound = false;
+            if (currentCashbookId != null) {
+                for (CashbookModel book : cashbookList) {
+                    if (book.getCashbookId().equals(currentCashbookId)) {
+                        activeCashbookFound = true;
+                        break;
+                    }
                 }
             }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Cashbooks listener cancelled", error.toException());
-                errorMessage.setValue("Error: " + error.getMessage());
+            if (!activeCashbookFound && !cashbookList.isEmpty()) {
+                // Default to the first cashbook if last active one isn't found or isn't set
+                currentCashbookId = cashbookList.get(0).getCashbookId();
+                saveActiveCashbookIdToPrefs(currentCashbookId);
+            }
+
+            if (currentCashbookId != null) {
+                switchCashbook(currentCashbookId);
+            } else {
+                // This is a new user with no cashbooks
                 isLoading.setValue(false);
+                // HomePage will detect this and show the "Create First Cashbook" dialog
             }
-        };
-        userDatabaseRef.child("cashbooks").addValueEventListener(cashbooksListener);
+        }, error -> {
+            Log.e(TAG, "Cashbooks listener cancelled: " + error);
+            errorMessage.setValue("Error: " + error);
+            isLoading.setValue(false);
+        });
     }
 
     public void switchCashbook(String cashbookId) {
@@ -206,44 +203,19 @@ public class HomePageViewModel extends AndroidViewModel {
             }
         }
 
-        // Detach the old listener if it exists
-        if (previousTransactionsRef != null && transactionsListener != null) {
-            previousTransactionsRef.removeEventListener(transactionsListener);
-            Log.d(TAG, "Removed previous transactions listener");
+        // Stop observing the previous cashbook; its store lingers briefly in case it comes back
+        if (transactionStore != null) {
+            transactionStore.removeObserver(transactionsListener);
+            Log.d(TAG, "Removed previous transactions observer");
         }
 
-        // Attach new listener
-        DatabaseReference newTransactionsRef = userDatabaseRef.child("cashbooks").child(cashbookId).child("transactions");
-        previousTransactionsRef = newTransactionsRef;
-
-        transactionsListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                List<TransactionModel> transactionList = new ArrayList<>();
-                for (DataSnapshot transactionSnapshot : snapshot.getChildren()) {
-                    TransactionModel transaction = transactionSnapshot.getValue(TransactionModel.class);
-                    if (transaction != null) {
-                        transaction.setTransactionId(transactionSnapshot.getKey());
-                        transactionList.add(transaction);
-                    }
-                }
-                // Sort transactions by timestamp (newest first)
-                Collections.sort(transactionList, (t1, t2) ->
-                        Long.compare(t2.getTimestamp(), t1.getTimestamp()));
-
-                transactions.setValue(transactionList);
-                Log.d(TAG, "Loaded " + transactionList.size() + " transactions");
-                isLoading.setValue(false);
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Transactions listener cancelled", error.toException());
-                errorMessage.setValue("Error: " + error.getMessage());
-                isLoading.setValue(false);
-            }
-        };
-        newTransactionsRef.addValueEventListener(transactionsListener);
+        // The store is shared with every other screen on this cashbook
+        transactionStore = repository.getTransactionStore(cashbookId);
+        if (transactionStore == null) {
+            isLoading.setValue(false);
+            return;
+        }
+        transactionStore.observe(transactionsListener);
     }
 
     // ============================================
@@ -270,16 +242,16 @@ public class HomePageViewModel extends AndroidViewModel {
         try {
             if (userDatabaseRef != null) {
                 if (cashbooksListener != null) {
-                    userDatabaseRef.child("cashbooks").removeEventListener(cashbooksListener);
+                    repository.removeCashbooksListener(cashbooksListener);
                     Log.d(TAG, "Removed cashbooks listener");
                 }
-                if (transactionsListener != null && previousTransactionsRef != null) {
-                    previousTransactionsRef.removeEventListener(transactionsListener);
-                    Log.d(TAG, "Removed transactions listener");
+                if (transactionStore != null) {
+                    transactionStore.removeObserver(transactionsListener);
+                    Log.d(TAG, "Removed transactions observer");
                 }
-                if (userProfileListener != null) {
-                    userDatabaseRef.removeEventListener(userProfileListener);
-                    Log.d(TAG, "Removed user profile listener");
+                if (userProfileObserver != null) {
+                    profileStore.removeObserver(userProfileObserver);
+                    Log.d(TAG, "Removed user profile observer");
                 }
             }
             Log.d(TAG, "ViewModel cleaned up successfully");
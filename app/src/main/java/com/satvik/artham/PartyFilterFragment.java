@@ -1,5 +1,6 @@
 package com.satvik.artham;
 
+import android.annotation.SuppressLint;
 import android.content.Context;
 import android.os.Bundle;
 import android.util.Log;
@@ -16,14 +17,10 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.satvik.artham.utils.ErrorHandler;
+import com.satvik.artham.analytics.FacetCounter;
+import com.satvik.artham.db.DataRepository;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -35,16 +32,18 @@ public class PartyFilterFragment extends Fragment {
     private static final String TAG = "PartyFilterFragment";
 
     private RecyclerView partiesRecyclerView;
-    // private PartySelectionAdapter adapter; // [FIX] You need to create this adapter
+    // Same checkbox rows as the category filter
+    private CategorySelectionAdapter adapter;
     private List<String> allParties = new ArrayList<>();
     private Set<String> selectedParties = new HashSet<>();
 
     private LinearLayout emptyStateLayout;
     private Button addNewPartyButton;
 
-    private DatabaseReference mDatabase;
     private FirebaseUser currentUser;
     private String currentCashbookId;
+    private FacetCounter facetCounter;
+    private final FacetCounter.Listener facetListener = counter -> showParties();
 
     // Interface to communicate back to the FiltersActivity
     public interface PartyFilterListener {
@@ -85,7 +84,6 @@ public class PartyFilterFragment extends Fragment {
 
         // [FIX] Get Firebase user and cashbook ID
         currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        mDatabase = FirebaseDatabase.getInstance().getReference();
         if (getActivity() != null) {
             currentCashbookId = getActivity().getIntent().getStringExtra("cashbook_id");
         }
@@ -125,10 +123,8 @@ public class PartyFilterFragment extends Fragment {
 
     private void setupRecyclerView() {
         partiesRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        // [FIX] You need to create an adapter similar to CategorySelectionAdapter
-        // adapter = new PartySelectionAdapter(allParties, selectedParties);
-        // partiesRecyclerView.setAdapter(adapter);
-        Log.w(TAG, "RecyclerView setup is incomplete. 'PartySelectionAdapter.java' is missing.");
+        adapter = new CategorySelectionAdapter(allParties, selectedParties);
+        partiesRecyclerView.setAdapter(adapter);
     }
 
     private void loadParties() {
@@ -138,42 +134,33 @@ public class PartyFilterFragment extends Fragment {
             return;
         }
 
-        DatabaseReference transactionsRef = mDatabase.child("users")
-                .child(currentUser.getUid())
-                .child("cashbooks")
-                .child(currentCashbookId)
-                .child("transactions");
-
-        transactionsRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Set<String> partySet = new HashSet<>();
-                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    TransactionModel transaction = snapshot.getValue(TransactionModel.class);
-                    if (transaction != null &&
-                            transaction.getPartyName() != null &&
-                            !transaction.getPartyName().isEmpty() &&
-                            !transaction.getPartyName().equals("Select Party (Customer/Supplier)")) {
-
-                        partySet.add(transaction.getPartyName());
-                    }
-                }
-                allParties.clear();
-                allParties.addAll(partySet);
-                updateUI();
-                // [FIX] If adapter existed, you would update it here:
-                // if (adapter != null) {
-                //     adapter.notifyDataSetChanged();
-                // }
-            }
+        // Counted in memory from the cashbook's shared store, kept current as entries change
+        facetCounter = DataRepository.getInstance(requireActivity().getApplication())
+                .getFacetCounter(currentCashbookId);
+        if (facetCounter == null) {
+            updateUI();
+            return;
+        }
+        adapter.setFacetCounts(facetCounter, FacetCounter.Dimension.PARTY);
+        facetCounter.observe(facetListener);
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                if (getContext() != null) {
-                    ErrorHandler.handleFirebaseError(getContext(), databaseError);
-                }
+    @SuppressLint("NotifyDataSetChanged")
+    private void showParties() {
+        allParties.clear();
+        for (FacetCounter.Facet facet : facetCounter.getFacets(FacetCounter.Dimension.PARTY)) {
+            if (!facet.getValue().equals("Select Party (Customer/Supplier)")) {
+                allParties.add(facet.getValue());
             }
-        });
+        }
+        updateUI();
+        adapter.notifyDataSetChanged();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (facetCounter != null) facetCounter.removeObserver(facetListener);
     }
 
     private void updateUI() {
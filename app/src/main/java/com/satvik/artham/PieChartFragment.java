@@ -15,6 +15,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import com.satvik.artham.analytics.CategoryMonthCube;
+import com.satvik.artham.db.DataRepository;
 import com.satvik.artham.utils.CustomPieChartValueFormatter;
 import com.github.mikephil.charting.charts.PieChart;
 import com.github.mikephil.charting.components.Legend;
@@ -36,6 +38,26 @@ public class PieChartFragment extends Fragment {
     private static final String PREFS_NAME = "AppPrefs";
     private static final String KEY_SHOW_CHART = "show_pie_chart";
 
+    // Set when the chart shows one month of a cashbook straight from the shared cube
+    private CategoryMonthCube categoryCube;
+    private int monthKey;
+    private final CategoryMonthCube.Listener cubeListener = cube -> {
+        if (pieChart != null && getContext() != null) loadPieChartData();
+    };
+
+    /**
+     * Chart of one month's expenses (monthKey as yyyyMM) read from the cashbook's shared
+     * category cube; follows changes while started.
+     */
+    public static PieChartFragment newInstance(String cashbookId, int monthKey) {
+        PieChartFragment fragment = new PieChartFragment();
+        Bundle args = new Bundle();
+        args.putString("cashbook_id", cashbookId);
+        args.putInt("month_key", monthKey);
+        fragment.setArguments(args);
+        return fragment;
+    }
+
     public static PieChartFragment newInstance(ArrayList<TransactionModel> transactions) {
         PieChartFragment fragment = new PieChartFragment();
         Bundle args = new Bundle();
@@ -53,7 +75,12 @@ public class PieChartFragment extends Fragment {
         toggleButton = view.findViewById(R.id.togglePieChartButton);
         statsLayout = view.findViewById(R.id.statsLayout);
 
-        if (getArguments() != null) {
+        if (getArguments() != null && getArguments().containsKey("cashbook_id")) {
+            monthKey = getArguments().getInt("month_key");
+            categoryCube = DataRepository.getInstance(requireActivity().getApplication())
+                    .getCategoryMonthCube(getArguments().getString("cashbook_id"));
+        }
+        if (getArguments() != null && categoryCube == null) {
             try {
                 transactions = (List<TransactionModel>) getArguments().getSerializable("transactions");
             } catch (Exception e) {
@@ -69,6 +96,26 @@ public class PieChartFragment extends Fragment {
         return view;
     }
 
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (categoryCube != null) categoryCube.observe(cubeListener);
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        if (categoryCube != null) categoryCube.removeObserver(cubeListener);
+    }
+
+    /**
+     * Switches the month shown from the cube; just reads another slice.
+     */
+    public void showMonth(int monthKey) {
+        this.monthKey = monthKey;
+        if (pieChart != null && getContext() != null) loadPieChartData();
+    }
+
     // ... (setupToggleLogic, updateChartVisibility remain same) ...
     private void setupToggleLogic() {
         if (getContext() == null) return;
@@ -127,7 +174,14 @@ public class PieChartFragment extends Fragment {
         int secondaryTextColor = ThemeUtil.getThemeAttrColor(getContext(), R.attr.textColorSecondary);
 
         ArrayList<PieEntry> entries = new ArrayList<>();
-        if (transactions != null && !transactions.isEmpty()) {
+        if (categoryCube != null) {
+            if (categoryCube.isReady()) {
+                for (int id = 0; id < categoryCube.getCategoryCount(); id++) {
+                    double out = categoryCube.getOut(monthKey, id);
+                    if (out > 0) entries.add(new PieEntry((float) out, categoryCube.getCategoryName(id)));
+                }
+            }
+        } else if (transactions != null && !transactions.isEmpty()) {
             java.util.Map<String, Double> categoryTotals = new java.util.HashMap<>();
             for (TransactionModel transaction : transactions) {
                 if ("OUT".equalsIgnoreCase(transaction.getType())) {
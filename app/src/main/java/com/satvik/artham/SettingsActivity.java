@@ -15,6 +15,8 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import com.bumptech.glide.Glide;
 import com.satvik.artham.databinding.ActivitySettingsBinding;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.db.UserProfileStore;
 import com.satvik.artham.models.Users;
 import com.satvik.artham.utils.ErrorHandler;
 import com.google.firebase.auth.FirebaseAuth;
@@ -44,9 +46,10 @@ public class SettingsActivity extends AppCompatActivity {
     private DatabaseReference mDatabase;
     private FirebaseUser currentUser;
     private DatabaseReference userRef;
+    private UserProfileStore profileStore;
 
     // Listeners
-    private ValueEventListener userProfileListener;
+    private DataRepository.DataCallback<Users> userProfileObserver;
     private ValueEventListener cashbookNameListener;
     private ValueEventListener cashbooksListener;
 
@@ -65,6 +68,7 @@ public class SettingsActivity extends AppCompatActivity {
         mAuth = FirebaseAuth.getInstance();
         currentUser = mAuth.getCurrentUser();
         mDatabase = FirebaseDatabase.getInstance().getReference();
+        profileStore = UserProfileStore.getInstance(getApplication());
 
         currentCashbookId = getIntent().getStringExtra("cashbook_id");
 
@@ -183,56 +187,59 @@ public class SettingsActivity extends AppCompatActivity {
 
     private void startListeningForUserProfile() {
         if (userRef == null) return;
-        userProfileListener = new ValueEventListener() {
-            @SuppressLint("SetTextI18n")
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Users userProfile = dataSnapshot.getValue(Users.class);
-                if (userProfile != null && !TextUtils.isEmpty(userProfile.getUserName())) {
-                    binding.primarySettingsLayout.userName.setText(userProfile.getUserName());
-                } else if (currentUser.getDisplayName() != null && !currentUser.getDisplayName().isEmpty()) {
-                    binding.primarySettingsLayout.userName.setText(currentUser.getDisplayName());
-                } else {
-                    binding.primarySettingsLayout.userName.setText("CashFlow User");
-                }
+        if (userProfileObserver != null) profileStore.removeObserver(userProfileObserver);
 
-                if (userProfile != null && userProfile.getProfile() != null && !userProfile.getProfile().isEmpty()) {
-                    Glide.with(SettingsActivity.this)
-                            .load(userProfile.getProfile())
-                            .placeholder(R.drawable.ic_person_placeholder)
-                            .error(R.drawable.ic_person_placeholder)
-                            .into(binding.primarySettingsLayout.profileImg);
-                }
+        // Cached profile renders immediately; the shared store listens to the small profile node only
+        userProfileObserver = this::bindUserProfile;
+        profileStore.observe(userProfileObserver);
 
-                binding.primarySettingsLayout.uidText.setText("UID: " + currentUser.getUid().substring(0, 8) + "...");
+        Users cached = profileStore.getCachedProfile();
+        if (cached == null) {
+            bindUserProfile(null);
+        }
+    }
 
-                if (currentUser.getMetadata() != null) {
-                    SimpleDateFormat sdf = new SimpleDateFormat("dd MMM, yyyy", Locale.getDefault());
-                    String creationDate = sdf.format(new Date(currentUser.getMetadata().getCreationTimestamp()));
-                    binding.primarySettingsLayout.createdDate.setText("Created on " + creationDate);
-                }
-            }
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                ErrorHandler.handleFirebaseError(SettingsActivity.this, databaseError);
-            }
-        };
-        userRef.addValueEventListener(userProfileListener);
+    @SuppressLint("SetTextI18n")
+    private void bindUserProfile(Users userProfile) {
+        if (binding == null) return;
+        if (userProfile != null && !TextUtils.isEmpty(userProfile.getUserName())) {
+            binding.primarySettingsLayout.userName.setText(userProfile.getUserName());
+        } else if (currentUser.getDisplayName() != null && !currentUser.getDisplayName().isEmpty()) {
+            binding.primarySettingsLayout.userName.setText(currentUser.getDisplayName());
+        } else {
+            binding.primarySettingsLayout.userName.setText("CashFlow User");
+        }
+
+        if (userProfile != null && userProfile.getProfile() != null && !userProfile.getProfile().isEmpty()) {
+            Glide.with(SettingsActivity.this)
+                    .load(userProfile.getProfile())
+                    .placeholder(R.drawable.ic_person_placeholder)
+                    .error(R.drawable.ic_person_placeholder)
+                    .into(binding.primarySettingsLayout.profileImg);
+        }
+
+        binding.primarySettingsLayout.uidText.setText("UID: " + currentUser.getUid().substring(0, 8) + "...");
+
+        if (currentUser.getMetadata() != null) {
+            SimpleDateFormat sdf = new SimpleDateFormat("dd MMM, yyyy", Locale.getDefault());
+            String creationDate = sdf.format(new Date(currentUser.getMetadata().getCreationTimestamp()));
+            binding.primarySettingsLayout.createdDate.setText("Created on " + creationDate);
+        }
     }
 
     private void startListeningForCashbookName(String cashbookId) {
         if (userRef == null) return;
 
         if (cashbookNameListener != null) {
-            userRef.child("cashbooks").child(cashbookId).removeEventListener(cashbookNameListener);
+            userRef.child(DataRepository.CASHBOOK_META_NODE).child(cashbookId).child("name").removeEventListener(cashbookNameListener);
         }
 
         cashbookNameListener = new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                CashbookModel cashbook = dataSnapshot.getValue(CashbookModel.class);
-                if (cashbook != null) {
-                    binding.primarySettingsLayout.activeCashbookName.setText(cashbook.getName());
+                String name = dataSnapshot.getValue(String.class);
+                if (name != null) {
+                    binding.primarySettingsLayout.activeCashbookName.setText(name);
                 }
             }
             @Override
@@ -240,10 +247,14 @@ public class SettingsActivity extends AppCompatActivity {
                 ErrorHandler.handleFirebaseError(SettingsActivity.this, databaseError);
             }
         };
-        userRef.child("cashbooks").child(cashbookId).addValueEventListener(cashbookNameListener);
+        // Only the name is needed, so read it from the metadata index rather than the whole cashbook
+        userRef.child(DataRepository.CASHBOOK_META_NODE).child(cashbookId).child("name")
+                .addValueEventListener(cashbookNameListener);
     }
 
     private void logoutUser() {
+        profileStore.clearCache();
+        DataRepository.getInstance(getApplication()).clearLocalMirror();
         mAuth.signOut();
         Toast.makeText(this, "Logged out", Toast.LENGTH_SHORT).show();
         Intent intent = new Intent(this, SigninActivity.class);
@@ -273,6 +284,9 @@ public class SettingsActivity extends AppCompatActivity {
     private void deleteUserAccount() {
         if (currentUser == null || userRef == null) return;
 
+        // Detach the profile listener first so the removal isn't treated as a legacy account
+        profileStore.clearCache();
+        DataRepository.getInstance(getApplication()).clearLocalMirror();
         userRef.removeValue()
                 .addOnSuccessListener(aVoid -> {
                     currentUser.delete().addOnCompleteListener(task -> {
@@ -294,11 +308,12 @@ public class SettingsActivity extends AppCompatActivity {
     private void removeFirebaseListeners() {
         if (userRef == null) return;
 
-        if (userProfileListener != null) {
-            userRef.removeEventListener(userProfileListener);
+        if (userProfileObserver != null) {
+            profileStore.removeObserver(userProfileObserver);
+            userProfileObserver = null;
         }
         if (cashbookNameListener != null && currentCashbookId != null) {
-            userRef.child("cashbooks").child(currentCashbookId).removeEventListener(cashbookNameListener);
+            userRef.child(DataRepository.CASHBOOK_META_NODE).child(currentCashbookId).child("name").removeEventListener(cashbookNameListener);
         }
     }
 
@@ -15,6 +15,7 @@ import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
 
+import com.satvik.artham.db.UserProfileStore;
 import com.satvik.artham.models.Users; // [FIX] Import the correct Users model
 import com.google.android.gms.auth.api.signin.GoogleSignIn;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
@@ -213,9 +214,8 @@ public class SignupActivity extends AppCompatActivity {
         newUser.setUserName(username != null ? username : "CashFlow User");
         newUser.setProfile(""); // Empty profile pic URL by default
 
-        mDatabase.child("users").child(userId).setValue(newUser)
-                .addOnSuccessListener(aVoid -> Log.d(TAG, "New user data saved to database."))
-                .addOnFailureListener(e -> Log.e(TAG, "Failed to save new user data", e));
+        // Stored in the dedicated profile node, not over the whole users/{uid} subtree
+        UserProfileStore.getInstance(getApplication()).saveProfile(userId, newUser);
     }
 
     private void togglePasswordVisibility() {
@@ -19,11 +19,13 @@ import android.text.TextWatcher;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.View;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
@@ -34,13 +36,22 @@ import com.satvik.artham.databinding.ActivityTransactionBinding;
 import com.satvik.artham.databinding.LayoutBottomNavigationBinding;
 import com.satvik.artham.databinding.LayoutPieChartBinding;
 import com.satvik.artham.databinding.LayoutSearchBarBinding;
+import com.satvik.artham.analytics.CategoryMonthCube;
+import com.satvik.artham.analytics.RunningBalanceIndex;
+import com.satvik.artham.analytics.TopKAggregator;
 import com.satvik.artham.databinding.LayoutSummaryCardsBinding;
+import com.satvik.artham.databinding.LayoutTopPayeesBinding;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.db.TransactionStore;
+import com.satvik.artham.models.MonthlyRollup;
 import com.satvik.artham.utils.CustomPieChartValueFormatter;
+import com.satvik.artham.utils.TimeBuckets;
 import com.github.mikephil.charting.data.PieData;
 import com.github.mikephil.charting.data.PieDataSet;
 import com.github.mikephil.charting.data.PieEntry;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.ChildEventListener;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.Element;
 import com.itextpdf.text.Font;
@@ -74,6 +85,7 @@ public class TransactionActivity extends AppCompatActivity {
     // [NEW] Preference Keys
     private static final String PREFS_NAME = "AppPrefs";
     private static final String KEY_SHOW_CHART = "show_pie_chart";
+    private static final int TOP_PAYEES_SHOWN = 5;
 
     // Data
     private List<TransactionModel> allTransactions = new ArrayList<>();
@@ -82,12 +94,24 @@ public class TransactionActivity extends AppCompatActivity {
     private ActivityTransactionBinding binding;
     private LayoutSummaryCardsBinding summaryBinding;
     private LayoutPieChartBinding pieChartBinding;
+    private LayoutTopPayeesBinding topPayeesBinding;
     private LayoutSearchBarBinding searchBinding;
     private LayoutBottomNavigationBinding bottomNavBinding;
 
     private TransactionItemFragment transactionFragment;
 
     private TransactionViewModel viewModel;
+    private RunningBalanceIndex balanceIndex;
+    // Monthly rollups of the cashbook; they total the month on screen for the chart and
+    // sum up everything before it for the balances
+    private final CategoryMonthCube rollupCube = new CategoryMonthCube();
+    private ChildEventListener rollupListener;
+    private String rollupCashbookId;
+    private boolean rollupsLoaded = false;
+    // Top categories and payees of the loaded month
+    private final TopKAggregator topKAggregator = new TopKAggregator();
+    private List<TransactionModel> currentMonthTransactions = new ArrayList<>();
+    private int currentMonthKey;
 
     // Firebase
     private FirebaseAuth mAuth;
@@ -119,6 +143,7 @@ public class TransactionActivity extends AppCompatActivity {
         initializeUI();
         initViewModel();
         setupTransactionFragment();
+        startBalanceIndex();
         setupClickListeners();
         setupBottomNavigation();
         setupLaunchers();
@@ -133,6 +158,7 @@ public class TransactionActivity extends AppCompatActivity {
     private void initializeUI() {
         summaryBinding = binding.summaryCards;
         pieChartBinding = binding.pieChartComponent;
+        topPayeesBinding = binding.topPayeesComponent;
         searchBinding = binding.searchBarContainer;
         bottomNavBinding = binding.bottomNavCard;
     }
@@ -151,6 +177,13 @@ public class TransactionActivity extends AppCompatActivity {
             displayDataForCurrentMonth();
         });
 
+        // The unfiltered list is paged on demand; totals and the chart still use the whole month
+        viewModel.getPagedTransactions().observe(this, page -> {
+            if (!viewModel.isFiltering() && transactionFragment != null) {
+                transactionFragment.updateTransactions(page);
+            }
+        });
+
         viewModel.getIsLoading().observe(this, isLoading -> {
             if (transactionFragment != null) {
                 transactionFragment.showLoading(isLoading);
@@ -201,6 +234,83 @@ public class TransactionActivity extends AppCompatActivity {
                 .commit();
     }
 
+    /**
+     * Running balances for the month on screen: its loaded rows on top of the balance
+     * before it, summed from the monthly rollups, so nothing outside the month is read.
+     * The same rollups drive the chart.
+     */
+    private void startBalanceIndex() {
+        stopBalanceIndex();
+        // Rows show no running balance until the rollups are in
+        if (transactionFragment != null) transactionFragment.setBalanceIndex(null);
+        balanceIndex = new RunningBalanceIndex();
+        balanceIndex.start(index -> {
+            if (transactionFragment != null) transactionFragment.setBalanceIndex(index);
+        });
+
+        rollupCube.clear();
+        rollupsLoaded = false;
+        rollupCashbookId = currentCashbookId;
+        rollupListener = DataRepository.getInstance(getApplication()).observeRollupChanges(currentCashbookId,
+                new DataRepository.RollupChangeCallback() {
+                    @Override
+                    public void onRollupChanged(String month, @Nullable MonthlyRollup rollup) {
+                        int monthKey = TimeBuckets.parseMonthKey(month);
+                        if (monthKey < 0) return;
+                        rollupCube.putRollup(monthKey, rollup != null ? rollup : new MonthlyRollup());
+                        if (rollupsLoaded) onRollupsChanged();
+                    }
+
+                    @Override
+                    public void onRollupsLoaded() {
+                        rollupsLoaded = true;
+                        onRollupsChanged();
+                    }
+                }, null);
+    }
+
+    private void onRollupsChanged() {
+        loadBalanceIndex();
+        renderPieChart();
+    }
+
+    private void stopBalanceIndex() {
+        if (balanceIndex != null) balanceIndex.stop();
+        balanceIndex = null;
+        DataRepository.getInstance(getApplication()).removeRollupChangesListener(rollupCashbookId, rollupListener);
+        rollupListener = null;
+    }
+
+    /**
+     * Indexes the loaded rows of the month on screen once the rollups before it are in.
+     */
+    private void loadBalanceIndex() {
+        if (balanceIndex == null || !rollupsLoaded || currentMonthKey == 0) return;
+        double openingBalance = 0;
+        for (int monthKey : rollupCube.getActiveMonths()) {
+            if (monthKey < currentMonthKey) {
+                openingBalance += rollupCube.getMonthIn(monthKey) - rollupCube.getMonthOut(monthKey);
+            }
+        }
+        balanceIndex.load(loadedMonthRows(), openingBalance);
+    }
+
+    /**
+     * The unfiltered rows of the month on screen, as loaded by the view model.
+     */
+    private List<TransactionModel> loadedMonthRows() {
+        List<TransactionModel> monthRows = new ArrayList<>();
+        List<TransactionModel> loaded = viewModel != null ? viewModel.getAllTransactions().getValue() : null;
+        if (loaded == null) return monthRows;
+
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        // The loaded range may still be the previous month's; its rows are left out
+        for (TransactionModel transaction : loaded) {
+            if (buckets.monthKey(transaction.getTimestamp()) == currentMonthKey) monthRows.add(transaction);
+        }
+        return monthRows;
+    }
+
     private void setupBottomNavigation() {
         bottomNavBinding.btnTransactions.setSelected(true);
 
@@ -251,6 +361,7 @@ public class TransactionActivity extends AppCompatActivity {
     }
 
     private void switchCashbook(String newCashbookId, String cashbookName) {
+        stopBalanceIndex();
         currentCashbookId = newCashbookId;
         showToast("Switched to: " + cashbookName);
         Log.d(TAG, "Switched to cashbook: " + cashbookName);
@@ -259,6 +370,7 @@ public class TransactionActivity extends AppCompatActivity {
 
         initViewModel();
         observeViewModel();
+        startBalanceIndex();
     }
 
     private void saveActiveCashbookId(String cashbookId) {
@@ -353,64 +465,139 @@ public class TransactionActivity extends AppCompatActivity {
         SimpleDateFormat sdf = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
         pieChartBinding.monthTitle.setText(sdf.format(currentMonthCalendar.getTime()));
 
-        List<TransactionModel> monthlyTransactions = allTransactions.stream()
-                .filter(t -> {
-                    Calendar transactionCal = Calendar.getInstance();
-                    transactionCal.setTimeInMillis(t.getTimestamp());
-                    return transactionCal.get(Calendar.YEAR) == currentMonthCalendar.get(Calendar.YEAR) &&
-                            transactionCal.get(Calendar.MONTH) == currentMonthCalendar.get(Calendar.MONTH);
-                }).collect(Collectors.toList());
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        int monthKey = buckets.monthKey(currentMonthCalendar.getTimeInMillis());
 
-        updateTotals(monthlyTransactions);
-        setupStyledPieChart(monthlyTransactions);
+        // Fetch only this month from the server; a no-op if it is already loaded
+        if (viewModel != null) {
+            viewModel.loadRange(buckets.monthStart(monthKey), buckets.monthEnd(monthKey));
+        }
 
-        if (transactionFragment != null) {
-            transactionFragment.updateTransactions(monthlyTransactions);
+        List<TransactionModel> monthlyTransactions = new ArrayList<>();
+        for (TransactionModel transaction : allTransactions) {
+            if (buckets.monthKey(transaction.getTimestamp()) == monthKey) {
+                monthlyTransactions.add(transaction);
+            }
         }
-    }
 
-    @SuppressLint("SetTextI18n")
-    private void updateTotals(List<TransactionModel> transactions) {
-        double totalIncome = 0, totalExpense = 0;
-        for (TransactionModel transaction : transactions) {
-            if ("IN".equalsIgnoreCase(transaction.getType())) {
-                totalIncome += transaction.getAmount();
+        currentMonthKey = monthKey;
+        currentMonthTransactions = monthlyTransactions;
+        loadBalanceIndex();
+        topKAggregator.load(loadedMonthRows());
+        renderPieChart();
+
+        if (transactionFragment != null) {
+            if (viewModel != null && !viewModel.isFiltering()) {
+                transactionFragment.setOnLoadMoreListener(viewModel::loadNextPage);
+                List<TransactionModel> paged = viewModel.getPagedTransactions().getValue();
+                transactionFragment.updateTransactions(paged != null ? paged : new ArrayList<>());
             } else {
-                totalExpense += transaction.getAmount();
+                transactionFragment.setOnLoadMoreListener(null);
+                transactionFragment.updateTransactions(monthlyTransactions);
             }
         }
+    }
 
-        summaryBinding.incomeText.setText("₹" + String.format(Locale.US, "%.2f", totalIncome));
-        summaryBinding.expenseText.setText("₹" + String.format(Locale.US, "%.2f", totalExpense));
-        summaryBinding.balanceText.setText("₹" + String.format(Locale.US, "%.2f", totalIncome - totalExpense));
+    /**
+     * Totals and chart for the month on screen. Unfiltered views read the month's rollup;
+     * filtered views (or rollups still loading) sum the filtered rows.
+     */
+    private void renderPieChart() {
+        if (pieChartBinding == null || currentMonthKey == 0) return;
+        boolean filtering = viewModel != null && viewModel.isFiltering();
+        boolean useRollup = rollupsLoaded && !filtering;
 
-        TypedValue typedValue = new TypedValue();
+        Map<String, Float> expenseByCategory = new HashMap<>();
+        if (useRollup) {
+            for (int id = 0; id < rollupCube.getCategoryCount(); id++) {
+                double out = rollupCube.getOut(currentMonthKey, id);
+                if (out > 0) expenseByCategory.put(rollupCube.getCategoryName(id), (float) out);
+            }
+            updateTotals(rollupCube.getMonthIn(currentMonthKey), rollupCube.getMonthOut(currentMonthKey));
+        } else {
+            double totalIncome = 0, totalExpense = 0;
+            for (TransactionModel transaction : currentMonthTransactions) {
+                if ("IN".equalsIgnoreCase(transaction.getType())) {
+                    totalIncome += transaction.getAmount();
+                } else {
+                    totalExpense += transaction.getAmount();
+                    String category = transaction.getTransactionCategory() != null ?
+                            transaction.getTransactionCategory() : CategoryMonthCube.UNCATEGORIZED;
+                    expenseByCategory.put(category,
+                            expenseByCategory.getOrDefault(category, 0f) + (float) transaction.getAmount());
+                }
+            }
+            updateTotals(totalIncome, totalExpense);
+        }
+        setupStyledPieChart(expenseByCategory);
+        updateStatsRow(expenseByCategory, filtering);
+        renderTopPayees();
     }
 
-    private void setupStyledPieChart(List<TransactionModel> transactionsForMonth) {
-        Map<String, Float> expenseByCategory = new HashMap<>();
-        float totalExpense = 0f;
+    /**
+     * Category count and highest expense of the month. Unfiltered views ask the top-K
+     * aggregator; filtered views (or an aggregator still loading) use the chart's map.
+     */
+    private void updateStatsRow(Map<String, Float> expenseByCategory, boolean filtering) {
+        int categories;
         String highestCategory = "-";
-        float maxExpense = 0f;
-
-        for (TransactionModel transaction : transactionsForMonth) {
-            if ("OUT".equalsIgnoreCase(transaction.getType())) {
-                String category = transaction.getTransactionCategory() != null ?
-                        transaction.getTransactionCategory() : "Other";
-                float amount = (float) transaction.getAmount();
-                expenseByCategory.put(category,
-                        expenseByCategory.getOrDefault(category, 0f) + amount);
-
-                if (expenseByCategory.get(category) > maxExpense) {
-                    maxExpense = expenseByCategory.get(category);
-                    highestCategory = category;
+        if (!filtering && topKAggregator.isReady()) {
+            TimeBuckets buckets = TimeBuckets.getDefault();
+            TopKAggregator.Result top = topKAggregator.top(TopKAggregator.Dimension.CATEGORY,
+                    TopKAggregator.Metric.SPEND, buckets.monthStart(currentMonthKey), buckets.monthEnd(currentMonthKey), 1);
+            categories = top.getDistinctKeys();
+            if (top.getFirst() != null) highestCategory = top.getFirst().getKey();
+        } else {
+            float maxExpense = 0f;
+            for (Map.Entry<String, Float> entry : expenseByCategory.entrySet()) {
+                if (entry.getValue() > maxExpense) {
+                    maxExpense = entry.getValue();
+                    highestCategory = entry.getKey();
                 }
-                totalExpense += amount;
             }
+            categories = expenseByCategory.size();
         }
 
-        pieChartBinding.categoriesCount.setText(String.valueOf(expenseByCategory.size()));
+        pieChartBinding.categoriesCount.setText(String.valueOf(categories));
         pieChartBinding.highestCategory.setText(highestCategory);
+    }
+
+    /**
+     * Biggest payees of the month on screen, from the aggregator's party totals.
+     */
+    @SuppressLint("SetTextI18n")
+    private void renderTopPayees() {
+        if (topPayeesBinding == null || !topKAggregator.isReady()) return;
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        List<TopKAggregator.Entry> payees = topKAggregator.top(TopKAggregator.Dimension.PARTY,
+                TopKAggregator.Metric.SPEND, buckets.monthStart(currentMonthKey), buckets.monthEnd(currentMonthKey),
+                TOP_PAYEES_SHOWN).getEntries();
+
+        topPayeesBinding.topPayeesList.removeAllViews();
+        topPayeesBinding.topPayeesEmptyText.setVisibility(payees.isEmpty() ? View.VISIBLE : View.GONE);
+        for (int i = 0; i < payees.size(); i++) {
+            TopKAggregator.Entry payee = payees.get(i);
+            View row = getLayoutInflater().inflate(R.layout.item_top_payee, topPayeesBinding.topPayeesList, false);
+            ((TextView) row.findViewById(R.id.payeeRank)).setText(String.valueOf(i + 1));
+            ((TextView) row.findViewById(R.id.payeeName)).setText(payee.getKey());
+            ((TextView) row.findViewById(R.id.payeeCount)).setText(payee.getCount()
+                    + (payee.getCount() == 1 ? " entry" : " entries"));
+            ((TextView) row.findViewById(R.id.payeeAmount)).setText(
+                    "₹" + String.format(Locale.US, "%.2f", payee.getSpend()));
+            topPayeesBinding.topPayeesList.addView(row);
+        }
+    }
+
+    @SuppressLint("SetTextI18n")
+    private void updateTotals(double totalIncome, double totalExpense) {
+        summaryBinding.incomeText.setText("₹" + String.format(Locale.US, "%.2f", totalIncome));
+        summaryBinding.expenseText.setText("₹" + String.format(Locale.US, "%.2f", totalExpense));
+        summaryBinding.balanceText.setText("₹" + String.format(Locale.US, "%.2f", totalIncome - totalExpense));
+    }
+
+    private void setupStyledPieChart(Map<String, Float> expenseByCategory) {
+        float totalExpense = 0f;
+        for (Float amount : expenseByCategory.values()) totalExpense += amount;
 
         TypedValue typedValue = new TypedValue();
         getTheme().resolveAttribute(R.attr.textColorPrimary, typedValue, true);
@@ -574,6 +761,21 @@ public class TransactionActivity extends AppCompatActivity {
 
     private void exportTransactionsToPdf(long startDate, long endDate,
                                          String entryType, String paymentMode) {
+        // A loaded store answers any range with two binary searches over its timestamps
+        DataRepository repository = DataRepository.getInstance(getApplication());
+        TransactionStore store = repository.getTransactionStore(currentCashbookId);
+        if (store != null && store.isLoaded()) {
+            writePdfReport(store.getRange(startDate, endDate), startDate, endDate, entryType, paymentMode);
+            return;
+        }
+        // The export range can reach outside the month on screen, so query it directly
+        repository.getTransactionsInRange(currentCashbookId, startDate, endDate,
+                transactions -> writePdfReport(transactions, startDate, endDate, entryType, paymentMode),
+                error -> showToast("Error exporting PDF: " + error));
+    }
+
+    private void writePdfReport(List<TransactionModel> rangeTransactions, long startDate, long endDate,
+                                String entryType, String paymentMode) {
         try {
             // Create a folder named after the user's email
             String userFolder = "CashFlow";
@@ -620,10 +822,20 @@ public class TransactionActivity extends AppCompatActivity {
                 String dateRange = "Date Range: " + sdf.format(new Date(startDate)) +
                         " to " + sdf.format(new Date(endDate));
                 document.add(new Paragraph(dateRange));
+                TimeBuckets buckets = TimeBuckets.getDefault();
+                if (balanceIndex != null && balanceIndex.isReady() && currentMonthKey != 0
+                        && startDate >= buckets.monthStart(currentMonthKey)
+                        && endDate <= buckets.monthEnd(currentMonthKey)) {
+                    // Whole-cashbook balances around the range, independent of the type filters
+                    // below; only the month on screen is indexed
+                    document.add(new Paragraph("Opening Balance: ₹" + String.format(Locale.US, "%.2f",
+                            balanceIndex.balanceAt(startDate - 1))));
+                    document.add(new Paragraph("Closing Balance: ₹" + String.format(Locale.US, "%.2f",
+                            balanceIndex.balanceAt(endDate))));
+                }
                 document.add(new Paragraph(" "));
 
-                List<TransactionModel> filteredTransactions = allTransactions.stream()
-                        .filter(t -> t.getTimestamp() >= startDate && t.getTimestamp() <= endDate)
+                List<TransactionModel> filteredTransactions = rangeTransactions.stream()
                         .filter(t -> entryType == null || entryType.equals("All") ||
                                 t.getType().equals(entryType))
                         .filter(t -> paymentMode == null || paymentMode.equals("All") ||
@@ -702,6 +914,7 @@ public class TransactionActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        stopBalanceIndex();
         Log.d(TAG, "TransactionActivity destroyed");
     }
 
@@ -14,6 +14,8 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.DiffUtil; // [FIX] Added for DiffUtil
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.satvik.artham.analytics.RunningBalanceIndex;
+
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -26,6 +28,7 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
     private static final String TAG = "TransactionAdapter";
     private List<TransactionModel> transactionList;
     private final OnItemClickListener listener;
+    private RunningBalanceIndex balanceIndex;
 
     // [FIX] Define constants for the two view types
     private static final int VIEW_TYPE_IN = 1;
@@ -83,6 +86,14 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
         return transactionList != null ? transactionList.size() : 0;
     }
 
+    /**
+     * Shows the balance after each row. Pass null to hide the column.
+     */
+    public void setBalanceIndex(RunningBalanceIndex balanceIndex) {
+        this.balanceIndex = balanceIndex;
+        notifyItemRangeChanged(0, getItemCount());
+    }
+
     // [FIX] Replaced with DiffUtil for better performance
     public void updateTransactions(List<TransactionModel> newTransactions) {
         if (newTransactions == null) {
@@ -99,7 +110,7 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
 
     class TransactionViewHolder extends RecyclerView.ViewHolder {
         TextView titleTextView, amountTextView, partyTextView, dateTextView,
-                remarkTextView, paymentModeTextView, transactionTimeTextView;
+                remarkTextView, paymentModeTextView, transactionTimeTextView, runningBalanceTextView;
         View transactionTypeIndicator, remarkLayout;
         ImageButton editButton, copyButton, deleteButton; // [FIX] Added buttons
 
@@ -116,6 +127,7 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
             remarkTextView = itemView.findViewById(R.id.remarkTextView);
             paymentModeTextView = itemView.findViewById(R.id.paymentModeTextView);
             transactionTimeTextView = itemView.findViewById(R.id.transactionTimeTextView);
+            runningBalanceTextView = itemView.findViewById(R.id.runningBalanceTextView);
             transactionTypeIndicator = itemView.findViewById(R.id.transactionTypeIndicator);
             remarkLayout = itemView.findViewById(R.id.remarkLayout);
 
@@ -158,6 +170,18 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
                 transactionTimeTextView.setText(new SimpleDateFormat("hh:mm a", Locale.US).format(date));
             }
 
+            // Running balance: one binary search in the index, no summing per row
+            if (runningBalanceTextView != null) {
+                double balance = balanceIndex != null && balanceIndex.isReady()
+                        ? balanceIndex.balanceAfter(transaction) : Double.NaN;
+                if (!Double.isNaN(balance)) {
+                    runningBalanceTextView.setText("Bal ₹" + String.format(Locale.US, "%.2f", balance));
+                    runningBalanceTextView.setVisibility(View.VISIBLE);
+                } else {
+                    runningBalanceTextView.setVisibility(View.GONE);
+                }
+            }
+
             // Handle remark visibility
             String remark = transaction.getRemark();
             if (!TextUtils.isEmpty(remark) && remarkLayout != null) {
@@ -16,16 +16,27 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.satvik.artham.analytics.RunningBalanceIndex;
+
 import java.util.ArrayList;
 import java.util.List;
 
 public class TransactionItemFragment extends Fragment {
 
     private static final String TAG = "TransactionItemFragment";
+    // Ask for the next page once this many rows remain below the last visible one
+    private static final int PREFETCH_DISTANCE = 10;
+
     private RecyclerView transactionRecyclerView;
     private TransactionAdapter transactionAdapter;
     private List<TransactionModel> transactionList;
     private TransactionAdapter.OnItemClickListener clickListener;
+    private OnLoadMoreListener loadMoreListener;
+    private RunningBalanceIndex balanceIndex;
+
+    public interface OnLoadMoreListener {
+        void onLoadMore();
+    }
 
     // [FIX] Added views from the layout
     private LinearLayout emptyStateLayout;
@@ -92,8 +103,16 @@ public class TransactionItemFragment extends Fragment {
 
         // [FIX] Use the existing clickListener if it was set before adapter was created
         transactionAdapter = new TransactionAdapter(transactionList, clickListener);
+        transactionAdapter.setBalanceIndex(balanceIndex);
         transactionRecyclerView.setAdapter(transactionAdapter);
 
+        transactionRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0) maybeLoadMore();
+            }
+        });
+
         // Update empty state
         updateEmptyState();
 
@@ -107,11 +126,32 @@ public class TransactionItemFragment extends Fragment {
             if (transactionAdapter != null) {
                 transactionAdapter.updateTransactions(newTransactions);
                 updateEmptyState();
+                // A short first page may not fill the screen, so no scroll would ever ask for more
+                transactionRecyclerView.post(this::maybeLoadMore);
                 Log.d(TAG, "Transactions updated: " + newTransactions.size() + " items");
             }
         }
     }
 
+    private void maybeLoadMore() {
+        if (loadMoreListener == null || transactionAdapter == null) return;
+        RecyclerView.LayoutManager layoutManager = transactionRecyclerView.getLayoutManager();
+        if (!(layoutManager instanceof LinearLayoutManager)) return;
+
+        int lastVisible = ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+        if (lastVisible >= transactionAdapter.getItemCount() - PREFETCH_DISTANCE) {
+            loadMoreListener.onLoadMore();
+        }
+    }
+
+    /**
+     * Enables on-demand paging; the listener is called as the user nears the end of the list.
+     * Pass null when the list is complete (e.g. filtered results).
+     */
+    public void setOnLoadMoreListener(OnLoadMoreListener listener) {
+        this.loadMoreListener = listener;
+    }
+
     private void updateEmptyState() {
         if (transactionList == null || transactionList.isEmpty()) {
             emptyStateLayout.setVisibility(View.VISIBLE);
@@ -142,12 +182,24 @@ public class TransactionItemFragment extends Fragment {
         }
     }
 
+    /**
+     * Index used for the running-balance column; also call it again to refresh the column
+     * after the index changed.
+     */
+    public void setBalanceIndex(RunningBalanceIndex balanceIndex) {
+        this.balanceIndex = balanceIndex;
+        if (transactionAdapter != null) {
+            transactionAdapter.setBalanceIndex(balanceIndex);
+        }
+    }
+
     public void setOnItemClickListener(TransactionAdapter.OnItemClickListener listener) {
         this.clickListener = listener;
         // [FIX] If adapter already exists, just update its listener
         if (transactionAdapter != null) {
             // This is not ideal, but TransactionAdapter doesn't have a setter, so we re-create
             transactionAdapter = new TransactionAdapter(transactionList, listener);
+            transactionAdapter.setBalanceIndex(balanceIndex);
             transactionRecyclerView.setAdapter(transactionAdapter);
         }
     }
@@ -12,6 +12,7 @@ public class TransactionModel implements Serializable {
     private String paymentMode; // e.g., "Cash", "Online"
     private String remark;
     private long timestamp;
+    private long lastModified; // Server time of the last write, used for delta sync
 
     // A default constructor is required for Firebase to work correctly.
     public TransactionModel() {
@@ -83,6 +84,14 @@ public class TransactionModel implements Serializable {
         this.timestamp = timestamp;
     }
 
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
     // [FIX] This was in your original file but returned null.
     // It's likely an error from an older version.
     // It is safe to remove, but I will keep it commented out.
@@ -1,6 +1,8 @@
 package com.satvik.artham;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -8,16 +10,31 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.satvik.artham.analytics.TransactionSearchIndex;
 import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.db.TransactionStore;
+import com.satvik.artham.db.TransactionPager;
+import com.satvik.artham.utils.DateTimeUtils;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TransactionViewModel extends AndroidViewModel {
 
     private static final String TAG = "TransactionViewModel";
+    // Typing faster than this re-filters once, after the last key
+    private static final long FILTER_DEBOUNCE_MS = 150;
+    // How often a running filter checks whether a newer one replaced it
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+
+    // One filter at a time across all screens; a newer one cancels the one running
+    private static final ExecutorService FILTER_EXECUTOR = Executors.newSingleThreadExecutor();
 
     private final DataRepository repository;
     private final String cashbookId;
@@ -28,6 +45,49 @@ public class TransactionViewModel extends AndroidViewModel {
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>();
 
+    // Time range currently loaded from the server (inclusive bounds)
+    private long rangeStart;
+    private long rangeEnd;
+
+    // Paged list for the unfiltered view; grows one page at a time as the user scrolls
+    private final MutableLiveData<List<TransactionModel>> pagedTransactions = new MutableLiveData<>();
+    private TransactionPager pager;
+    private boolean filtering = false;
+
+    // Word index over the whole cashbook, so searching never lowercases every transaction.
+    // Built on the first search, since it loads the whole book
+    private TransactionSearchIndex searchIndex;
+
+    // Filter pipeline: every request bumps the generation, results of older ones are dropped
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger filterGeneration = new AtomicInteger();
+    private Runnable pendingFilter;
+    private Future<?> runningFilter;
+    // Criteria last asked for; run again over each reload of the range. Null once cleared
+    private FilterRequest activeFilter;
+
+    /**
+     * The arguments of one {@link #filter} call.
+     */
+    private static class FilterRequest {
+        final String query;
+        final long startDate;
+        final long endDate;
+        final String entryType;
+        final List<String> categories;
+        final List<String> paymentModes;
+
+        FilterRequest(String query, long startDate, long endDate, String entryType,
+                      List<String> categories, List<String> paymentModes) {
+            this.query = query;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.entryType = entryType;
+            this.categories = categories;
+            this.paymentModes = paymentModes;
+        }
+    }
+
     public TransactionViewModel(@NonNull Application application, String cashbookId) {
         super(application);
         this.repository = DataRepository.getInstance(application);
@@ -38,7 +98,11 @@ public class TransactionViewModel extends AndroidViewModel {
         allTransactions.setValue(new ArrayList<>());
         filteredTransactions.setValue(new ArrayList<>());
 
+        long now = System.currentTimeMillis();
+        rangeStart = DateTimeUtils.getMonthStart(now);
+        rangeEnd = DateTimeUtils.getMonthEnd(now);
         loadTransactions();
+        resetPager();
     }
 
     // --- Public Getters for LiveData ---
@@ -46,6 +110,18 @@ public class TransactionViewModel extends AndroidViewModel {
         return filteredTransactions;
     }
 
+    public LiveData<List<TransactionModel>> getPagedTransactions() {
+        return pagedTransactions;
+    }
+
+    /**
+     * True while search or filter criteria are applied; the list then shows the
+     * filtered month instead of the paged list.
+     */
+    public boolean isFiltering() {
+        return filtering;
+    }
+
     public LiveData<List<TransactionModel>> getAllTransactions() {
         return allTransactions;
     }
@@ -63,7 +139,45 @@ public class TransactionViewModel extends AndroidViewModel {
     }
 
     /**
-     * Loads transactions from repository
+     * Switches the loaded window, e.g. when the month view moves. Nothing is fetched
+     * if the range is already loaded.
+     */
+    public void loadRange(long from, long to) {
+        if (from == rangeStart && to == rangeEnd) return;
+        rangeStart = from;
+        rangeEnd = to;
+        loadTransactions();
+        resetPager();
+    }
+
+    /**
+     * Starts paging the current range again from its newest transaction.
+     */
+    private void resetPager() {
+        pager = repository.createTransactionPager(cashbookId, rangeStart, rangeEnd, TransactionPager.DEFAULT_PAGE_SIZE);
+        pagedTransactions.setValue(new ArrayList<>());
+        loadNextPage();
+    }
+
+    /**
+     * Requests the next older page; ignored while one is loading or at the end of the range.
+     */
+    public void loadNextPage() {
+        final TransactionPager current = pager;
+        if (current == null) return;
+        current.loadNextPage(page -> {
+            if (current != pager) return; // Range moved on meanwhile
+            List<TransactionModel> merged = new ArrayList<>();
+            List<TransactionModel> loaded = pagedTransactions.getValue();
+            if (loaded != null) merged.addAll(loaded);
+            merged.addAll(page);
+            pagedTransactions.setValue(merged);
+        }, error -> errorMessage.postValue(error));
+    }
+
+    /**
+     * Loads the transactions of the current range from repository. Mirrored rows and the
+     * server result may each arrive; every arrival goes through the active filter, if any.
      */
     private void loadTransactions() {
         Log.d(TAG, "Loading transactions...");
@@ -75,12 +189,22 @@ public class TransactionViewModel extends AndroidViewModel {
             return;
         }
 
-        repository.getAllTransactions(cashbookId,
+        final long requestedStart = rangeStart;
+        // Mirrored rows render first, the server result follows
+        repository.loadTransactionsInRange(cashbookId, rangeStart, rangeEnd,
                 transactions -> {
+                    if (requestedStart != rangeStart) return; // Range moved on meanwhile
                     Log.d(TAG, "Transactions loaded successfully: " + transactions.size() + " items");
-                    allTransactions.postValue(transactions);
-                    filteredTransactions.postValue(transactions); // Initially, show all
+                    allTransactions.setValue(transactions);
                     isLoading.postValue(false);
+                    // A filter of the old list must not land on the new one
+                    int generation = cancelFilter();
+                    if (activeFilter != null) {
+                        startFilter(generation, activeFilter, transactions);
+                    } else {
+                        filtering = false;
+                        filteredTransactions.setValue(transactions);
+                    }
                 },
                 error -> {
                     Log.e(TAG, "Error loading transactions: " + error);
@@ -98,6 +222,7 @@ public class TransactionViewModel extends AndroidViewModel {
     public void refreshTransactions() {
         Log.d(TAG, "Refreshing transactions...");
         loadTransactions();
+        resetPager();
     }
 
     /**
@@ -136,69 +261,152 @@ public class TransactionViewModel extends AndroidViewModel {
     }
 
     /**
-     * Filters transactions based on multiple criteria
+     * Filters transactions based on multiple criteria. The work is debounced and runs on
+     * a background thread; only the result of the latest call is published.
      */
     public void filter(String query, long startDate, long endDate, String entryType,
                        List<String> categories, List<String> paymentModes) {
+        int generation = cancelFilter();
+        if (query != null && !query.trim().isEmpty()) startSearchIndex();
+        FilterRequest request = new FilterRequest(query, startDate, endDate, entryType, categories, paymentModes);
+        activeFilter = request;
+        pendingFilter = () -> {
+            pendingFilter = null;
+            startFilter(generation, request, allTransactions.getValue());
+        };
+        mainHandler.postDelayed(pendingFilter, FILTER_DEBOUNCE_MS);
+    }
+
+    /**
+     * Starts indexing the cashbook; until the index is ready, filters test rows one by one.
+     */
+    private void startSearchIndex() {
+        if (searchIndex != null) return;
+        TransactionStore store = repository.getTransactionStore(cashbookId);
+        if (store == null) return;
+        searchIndex = new TransactionSearchIndex(store);
+        searchIndex.start();
+    }
+
+    /**
+     * Drops the pending and the running filter.
+     *
+     * @return the generation of the next filter
+     */
+    private int cancelFilter() {
+        if (pendingFilter != null) {
+            mainHandler.removeCallbacks(pendingFilter);
+            pendingFilter = null;
+        }
+        if (runningFilter != null) {
+            runningFilter.cancel(true);
+            runningFilter = null;
+        }
+        return filterGeneration.incrementAndGet();
+    }
+
+    private void startFilter(int generation, FilterRequest request, List<TransactionModel> originalList) {
+        if (generation != filterGeneration.get()) return;
+        String query = request.query;
+        long startDate = request.startDate;
+        long endDate = request.endDate;
+        String entryType = request.entryType;
+        List<String> categories = request.categories;
+        List<String> paymentModes = request.paymentModes;
 
-        List<TransactionModel> originalList = allTransactions.getValue();
         if (originalList == null) {
             Log.w(TAG, "No transactions to filter");
-            filteredTransactions.postValue(new ArrayList<>());
+            publishFilter(generation, false, new ArrayList<>());
             return;
         }
 
         Log.d(TAG, "Applying filters - Query: " + query + ", Type: " + entryType);
 
-        try {
-            String searchQuery = (query != null) ? query.toLowerCase(Locale.getDefault()).trim() : "";
-            List<String> safeCategories = (categories != null) ? categories : new ArrayList<>();
-            List<String> safePaymentModes = (paymentModes != null) ? paymentModes : new ArrayList<>();
-
-            List<TransactionModel> filteredList = originalList.stream()
-                    .filter(transaction -> {
-                        if (transaction == null) return false;
-
-                        // Search Query Filter
-                        boolean matchesSearch = searchQuery.isEmpty() ||
-                                (transaction.getTransactionCategory() != null &&
-                                        transaction.getTransactionCategory().toLowerCase(Locale.getDefault()).contains(searchQuery)) ||
-                                (transaction.getPartyName() != null &&
-                                        transaction.getPartyName().toLowerCase(Locale.getDefault()).contains(searchQuery)) ||
-                                (transaction.getRemark() != null &&
-                                        transaction.getRemark().toLowerCase(Locale.getDefault()).contains(searchQuery));
-
-                        // Date Filter (0 means no filter)
-                        boolean matchesDate = (startDate == 0 && endDate == 0) ||
-                                (transaction.getTimestamp() >= startDate && transaction.getTimestamp() <= endDate);
-
-                        // Entry Type Filter
-                        boolean matchesEntryType = "All".equalsIgnoreCase(entryType) || (entryType == null) ||
-                                (entryType.equalsIgnoreCase(transaction.getType()));
-
-                        // Category Filter
-                        boolean matchesCategory = safeCategories.isEmpty() ||
-                                safeCategories.contains(transaction.getTransactionCategory());
-
-                        // Payment Mode Filter
-                        boolean matchesPaymentMode = safePaymentModes.isEmpty() ||
-                                safePaymentModes.contains(transaction.getPaymentMode());
-
-                        return matchesSearch && matchesDate && matchesEntryType && matchesCategory && matchesPaymentMode;
-                    })
-                    .collect(Collectors.toList());
-
-            Log.d(TAG, "Filter applied: " + filteredList.size() + " transactions match criteria");
-            filteredTransactions.postValue(filteredList);
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error applying filters", e);
-            filteredTransactions.postValue(originalList); // On error, show all
-        }
+        boolean active = (query != null && !query.trim().isEmpty())
+                || startDate != 0 || endDate != 0
+                || (entryType != null && !"All".equalsIgnoreCase(entryType))
+                || (categories != null && !categories.isEmpty())
+                || (paymentModes != null && !paymentModes.isEmpty() && !paymentModes.contains("All"));
+
+        String searchQuery = (query != null) ? query.trim() : "";
+        // The index answers text and facets with bitmap operations on the filter thread,
+        // against a snapshot taken here; the snapshot is reused until the index changes
+        TransactionSearchIndex.Snapshot index = (searchIndex != null && searchIndex.isReady())
+                ? searchIndex.snapshot() : null;
+        long from = Math.max(rangeStart, (startDate == 0 && endDate == 0) ? Long.MIN_VALUE : startDate);
+        long to = Math.min(rangeEnd, (startDate == 0 && endDate == 0) ? Long.MAX_VALUE : endDate);
+        Set<String> safeCategories = (categories != null) ? new HashSet<>(categories) : new HashSet<>();
+        Set<String> safePaymentModes = (paymentModes != null) ? new HashSet<>(paymentModes) : new HashSet<>();
+        safePaymentModes.remove("All");
+
+        runningFilter = FILTER_EXECUTOR.submit(() -> {
+            try {
+                if (index != null) {
+                    TransactionSearchIndex.Match match = index.search(searchQuery, entryType, safeCategories, safePaymentModes);
+                    if (Thread.currentThread().isInterrupted() || generation != filterGeneration.get()) {
+                        return; // Replaced by a newer filter
+                    }
+                    List<TransactionModel> filteredList = match.materialize(from, to);
+                    Log.d(TAG, "Filter applied: " + filteredList.size() + " transactions match criteria");
+                    publishFilter(generation, active, filteredList);
+                    return;
+                }
+
+                // Index not loaded yet: cut the date range by binary search, test the rest row by row
+                List<TransactionModel> candidates = TransactionStore.sliceByTime(originalList, from, to);
+                List<TransactionModel> filteredList = new ArrayList<>();
+                for (int i = 0; i < candidates.size(); i++) {
+                    if (i % CANCEL_CHECK_INTERVAL == 0
+                            && (Thread.currentThread().isInterrupted() || generation != filterGeneration.get())) {
+                        return; // Replaced by a newer filter
+                    }
+                    TransactionModel transaction = candidates.get(i);
+                    if (transaction == null) continue;
+
+                    // Search Query Filter: words of category, party and remark starting with the typed words
+                    boolean matchesSearch = TransactionSearchIndex.matches(transaction, searchQuery);
+
+                    // Entry Type Filter
+                    boolean matchesEntryType = "All".equalsIgnoreCase(entryType) || (entryType == null) ||
+                            (entryType.equalsIgnoreCase(transaction.getType()));
+
+                    // Category Filter
+                    boolean matchesCategory = safeCategories.isEmpty() ||
+                            safeCategories.contains(transaction.getTransactionCategory());
+
+                    // Payment Mode Filter
+                    boolean matchesPaymentMode = safePaymentModes.isEmpty() ||
+                            safePaymentModes.contains(transaction.getPaymentMode());
+
+                    if (matchesSearch && matchesEntryType && matchesCategory && matchesPaymentMode) {
+                        filteredList.add(transaction);
+                    }
+                }
+
+                Log.d(TAG, "Filter applied: " + filteredList.size() + " transactions match criteria");
+                publishFilter(generation, active, filteredList);
+
+            } catch (Exception e) {
+                Log.e(TAG, "Error applying filters", e);
+                publishFilter(generation, false, originalList); // On error, show all
+            }
+        });
+    }
+
+    private void publishFilter(int generation, boolean active, List<TransactionModel> result) {
+        mainHandler.post(() -> {
+            if (generation != filterGeneration.get()) return; // A newer filter or reload is on its way
+            runningFilter = null;
+            filtering = active;
+            filteredTransactions.setValue(result);
+        });
     }
 
     public void clearFilters() {
         Log.d(TAG, "Clearing all filters");
+        cancelFilter();
+        activeFilter = null;
+        filtering = false;
         List<TransactionModel> originalList = allTransactions.getValue();
         if (originalList != null) {
             filteredTransactions.postValue(originalList);
@@ -212,6 +420,9 @@ public class TransactionViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        if (searchIndex != null) searchIndex.stop();
+        searchIndex = null;
+        cancelFilter();
         Log.d(TAG, "TransactionViewModel cleared");
     }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+package com.satvik.artham.analytics;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.TransactionStore;
+import com.satvik.artham.utils.DateTimeUtils;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AggregationEngine - Running totals over one cashbook's {@link TransactionStore}.
+ * The totals (all time, today, this month and per category) are built once from the
+ * first snapshot and then moved by each add, edit or delete delta in constant time.
+ * When the day ends a scheduled tick re-windows "today" (and "this month" when it
+ * changes) from a binary-searched slice of the snapshot instead of rescanning the book.
+ * Main thread only.
+ */
+public class AggregationEngine {
+
+    private static final String TAG = "AggregationEngine";
+
+    public interface Listener {
+        void onAggregatesChanged(AggregationEngine engine);
+
+        default void onCancelled(DatabaseError error) {
+        }
+    }
+
+    /**
+     * Money in and out for one category.
+     */
+    public static class Totals {
+        private double in;
+        private double out;
+
+        public double getIn() {
+            return in;
+        }
+
+        public double getOut() {
+            return out;
+        }
+
+        public double getNet() {
+            return in - out;
+        }
+    }
+
+    private final TransactionStore store;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable midnightTick = this::onMidnight;
+    private final Map<String, Totals> categoryTotals = new HashMap<>();
+
+    private Listener listener;
+    private boolean ready = false;
+
+    private long count;
+    private double totalIn, totalOut;
+    private long dayStart, dayEnd;
+    private long todayCount;
+    private double todayIn, todayOut;
+    private long monthStart, monthEnd;
+    private double monthIn, monthOut;
+
+    private final TransactionStore.Listener storeListener = new TransactionStore.Listener() {
+        @Override
+        public void onTransactionsReloaded(List<TransactionModel> snapshot) {
+            rebuild(snapshot);
+            notifyListener();
+        }
+
+        @Override
+        public void onTransactionsChanged(List<TransactionModel> snapshot) {
+            // The deltas just before this have already moved the totals
+            notifyListener();
+        }
+
+        @Override
+        public void onTransactionDelta(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+            if (!ready) return;
+            apply(before, -1);
+            apply(after, 1);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            if (listener != null) listener.onCancelled(error);
+        }
+    };
+
+    public AggregationEngine(TransactionStore store) {
+        this.store = store;
+    }
+
+    public void start(Listener listener) {
+        this.listener = listener;
+        setWindows(System.currentTimeMillis());
+        scheduleMidnightTick();
+        store.observe(storeListener);
+    }
+
+    public void stop() {
+        listener = null;
+        mainHandler.removeCallbacks(midnightTick);
+        store.removeObserver(storeListener);
+    }
+
+    /**
+     * False until the store has delivered its first snapshot.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getTotalIn() {
+        return totalIn;
+    }
+
+    public double getTotalOut() {
+        return totalOut;
+    }
+
+    public double getBalance() {
+        return totalIn - totalOut;
+    }
+
+    public long getTodayCount() {
+        return todayCount;
+    }
+
+    public double getTodayIn() {
+        return todayIn;
+    }
+
+    public double getTodayOut() {
+        return todayOut;
+    }
+
+    public double getMonthIn() {
+        return monthIn;
+    }
+
+    public double getMonthOut() {
+        return monthOut;
+    }
+
+    public Map<String, Totals> getCategoryTotals() {
+        return Collections.unmodifiableMap(categoryTotals);
+    }
+
+    /**
+     * Today's transactions, newest first, sliced from the store's snapshot.
+     */
+    public List<TransactionModel> getTodaysTransactions() {
+        return store.getRange(dayStart, dayEnd);
+    }
+
+    private void rebuild(List<TransactionModel> snapshot) {
+        count = 0;
+        totalIn = totalOut = 0;
+        todayCount = 0;
+        todayIn = todayOut = 0;
+        monthIn = monthOut = 0;
+        categoryTotals.clear();
+        for (TransactionModel transaction : snapshot) apply(transaction, 1);
+        ready = true;
+        Log.d(TAG, "Aggregated " + count + " transactions");
+    }
+
+    /**
+     * Adds (sign 1) or removes (sign -1) one transaction from every running total.
+     */
+    private void apply(@Nullable TransactionModel transaction, int sign) {
+        if (transaction == null) return;
+        boolean income = "IN".equalsIgnoreCase(transaction.getType());
+        double amount = sign * transaction.getAmount();
+        long timestamp = transaction.getTimestamp();
+
+        count += sign;
+        if (income) totalIn += amount; else totalOut += amount;
+
+        if (timestamp >= dayStart && timestamp <= dayEnd) {
+            todayCount += sign;
+            if (income) todayIn += amount; else todayOut += amount;
+        }
+        if (timestamp >= monthStart && timestamp <= monthEnd) {
+            if (income) monthIn += amount; else monthOut += amount;
+        }
+
+        String category = transaction.getTransactionCategory();
+        if (category != null) {
+            Totals totals = categoryTotals.get(category);
+            if (totals == null) {
+                totals = new Totals();
+                categoryTotals.put(category, totals);
+            }
+            if (income) totals.in += amount; else totals.out += amount;
+        }
+    }
+
+    private void setWindows(long now) {
+        dayStart = DateTimeUtils.getDayStart(now);
+        dayEnd = DateTimeUtils.getDayEnd(now);
+        monthStart = DateTimeUtils.getMonthStart(now);
+        monthEnd = DateTimeUtils.getMonthEnd(now);
+    }
+
+    private void scheduleMidnightTick() {
+        mainHandler.removeCallbacks(midnightTick);
+        // One millisecond past the end of today. Handler delays pause in deep sleep, so
+        // the tick may arrive late but never skips a day boundary.
+        long delay = Math.max(1, dayEnd + 1 - System.currentTimeMillis());
+        mainHandler.postDelayed(midnightTick, delay);
+    }
+
+    private void onMidnight() {
+        long now = System.currentTimeMillis();
+        if (now <= dayEnd) {
+            // Early because the clock was moved back; try again at the real boundary
+            scheduleMidnightTick();
+            return;
+        }
+
+        boolean monthChanged = now > monthEnd;
+        setWindows(now);
+        if (ready) {
+            todayCount = 0;
+            todayIn = todayOut = 0;
+            for (TransactionModel transaction : store.getRange(dayStart, dayEnd)) {
+                todayCount++;
+                if ("IN".equalsIgnoreCase(transaction.getType())) todayIn += transaction.getAmount();
+                else todayOut += transaction.getAmount();
+            }
+            if (monthChanged) {
+                monthIn = monthOut = 0;
+                for (TransactionModel transaction : store.getRange(monthStart, monthEnd)) {
+                    if ("IN".equalsIgnoreCase(transaction.getType())) monthIn += transaction.getAmount();
+                    else monthOut += transaction.getAmount();
+                }
+            }
+        }
+        Log.d(TAG, "Rolled over to a new day");
+        scheduleMidnightTick();
+        notifyListener();
+    }
+
+    private void notifyListener() {
+        if (listener != null) listener.onAggregatesChanged(this);
+    }
+}
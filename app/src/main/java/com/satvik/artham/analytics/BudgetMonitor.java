@@ -0,0 +1,243 @@
+package com.satvik.artham.analytics;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.models.MonthlyRollup;
+import com.satvik.artham.utils.FirebaseKeyUtils;
+import com.satvik.artham.utils.TimeBuckets;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * BudgetMonitor - Monthly spending limits per category of one cashbook, checked against
+ * running month totals. The limits live at cashbooks/{id}/budgets and the totals are the
+ * category counters of the monthly rollups, so a save is checked by comparing one counter
+ * before and after the change instead of summing the month's transactions.
+ * <p>
+ * Shared per cashbook (see DataRepository#getBudgetMonitor); it follows the database
+ * while anyone observes it. Main thread only.
+ */
+public class BudgetMonitor {
+
+    private static final String TAG = "BudgetMonitor";
+    // Share of a budget at which a warning is raised, before the limit itself
+    public static final double WARNING_SHARE = 0.8;
+
+    public interface Listener {
+        void onBudgetsChanged(BudgetMonitor monitor);
+    }
+
+    /**
+     * A threshold (80% or 100% of a budget) crossed by a save.
+     */
+    public static class Alert {
+        private final String category;
+        private final double spent;
+        private final double limit;
+        private final boolean exceeded;
+
+        Alert(String category, double spent, double limit, boolean exceeded) {
+            this.category = category;
+            this.spent = spent;
+            this.limit = limit;
+            this.exceeded = exceeded;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public double getSpent() {
+            return spent;
+        }
+
+        public double getLimit() {
+            return limit;
+        }
+
+        /**
+         * True when the limit itself was passed, false for the early warning.
+         */
+        public boolean isExceeded() {
+            return exceeded;
+        }
+
+        public String getMessage() {
+            return exceeded
+                    ? String.format(Locale.US, "%s budget exceeded: ₹%.0f of ₹%.0f", category, spent, limit)
+                    : String.format(Locale.US, "%s budget %.0f%% used: ₹%.0f of ₹%.0f", category,
+                    WARNING_SHARE * 100, spent, limit);
+        }
+    }
+
+    private final DataRepository repository;
+    private final String cashbookId;
+    private final List<Listener> listeners = new ArrayList<>();
+    private ValueEventListener budgetsListener;
+    private ChildEventListener rollupListener;
+
+    private boolean budgetsLoaded = false;
+    private boolean rollupsLoaded = false;
+    private Map<String, Double> budgets = new HashMap<>();
+    // Month key (yyyyMM) -> category -> money out, mirrored from the rollups
+    private final Map<Integer, Map<String, Double>> spendByMonth = new HashMap<>();
+
+    public BudgetMonitor(DataRepository repository, String cashbookId) {
+        this.repository = repository;
+        this.cashbookId = cashbookId;
+    }
+
+    /**
+     * Starts following budgets and rollups on the first observer. Observers joining
+     * later are called back right away when both have already loaded.
+     */
+    public void observe(Listener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (budgetsListener == null) {
+            budgetsListener = repository.observeBudgets(cashbookId, loaded -> {
+                budgets = loaded;
+                budgetsLoaded = true;
+                if (isReady()) notifyListeners();
+            }, error -> Log.w(TAG, "Budgets unavailable: " + error));
+            rollupListener = repository.observeRollupChanges(cashbookId, new DataRepository.RollupChangeCallback() {
+                @Override
+                public void onRollupChanged(String month, @Nullable MonthlyRollup rollup) {
+                    BudgetMonitor.this.onRollupChanged(month, rollup);
+                }
+
+                @Override
+                public void onRollupsLoaded() {
+                    rollupsLoaded = true;
+                    if (isReady()) notifyListeners();
+                }
+            }, error -> Log.w(TAG, "Rollups unavailable: " + error));
+        } else if (isReady()) {
+            listener.onBudgetsChanged(this);
+        }
+    }
+
+    public void removeObserver(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) detach();
+    }
+
+    public void detach() {
+        if (budgetsListener != null) {
+            repository.removeBudgetsListener(cashbookId, budgetsListener);
+            budgetsListener = null;
+        }
+        if (rollupListener != null) {
+            repository.removeRollupChangesListener(cashbookId, rollupListener);
+            rollupListener = null;
+        }
+        budgetsLoaded = false;
+        rollupsLoaded = false;
+        // Months removed while detached would never be reported again
+        spendByMonth.clear();
+    }
+
+    /**
+     * True once the budgets and the month counters have both loaded; until then a check
+     * would compare against spending that has not arrived yet.
+     */
+    public boolean isReady() {
+        return budgetsLoaded && rollupsLoaded;
+    }
+
+    /**
+     * Budgeted categories and their monthly limits.
+     */
+    public Map<String, Double> getBudgets() {
+        return Collections.unmodifiableMap(budgets);
+    }
+
+    /**
+     * Money out of the category in the month so far.
+     */
+    public double getSpent(int monthKey, String category) {
+        Map<String, Double> month = spendByMonth.get(monthKey);
+        Double spent = month != null ? month.get(category) : null;
+        return spent != null ? spent : 0;
+    }
+
+    /**
+     * Checks a save against the budgets and books it into the counters right away, so
+     * back-to-back saves see each other before the rollups echo back. Pass the stored
+     * copy as before for an edit (null for an add) and the new copy as after.
+     *
+     * @return the thresholds this change crossed upwards, possibly none
+     */
+    public List<Alert> evaluate(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+        List<Alert> alerts = new ArrayList<>();
+        if (!isReady()) return alerts;
+
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        book(buckets, before, -1, null);
+        book(buckets, after, 1, alerts);
+        notifyListeners();
+        return alerts;
+    }
+
+    private void book(TimeBuckets buckets, @Nullable TransactionModel transaction, int sign,
+                      @Nullable List<Alert> alerts) {
+        if (transaction == null || "IN".equalsIgnoreCase(transaction.getType())) return;
+        String category = categoryOf(transaction);
+        int monthKey = buckets.monthKey(transaction.getTimestamp());
+
+        Map<String, Double> month = spendByMonth.get(monthKey);
+        if (month == null) {
+            month = new HashMap<>();
+            spendByMonth.put(monthKey, month);
+        }
+        double spentBefore = month.getOrDefault(category, 0.0);
+        double spentAfter = spentBefore + sign * transaction.getAmount();
+        month.put(category, spentAfter);
+
+        Double limit = budgets.get(category);
+        if (alerts == null || limit == null || limit <= 0) return;
+        if (spentBefore < limit && spentAfter >= limit) {
+            alerts.add(new Alert(category, spentAfter, limit, true));
+        } else if (spentBefore < limit * WARNING_SHARE && spentAfter >= limit * WARNING_SHARE) {
+            alerts.add(new Alert(category, spentAfter, limit, false));
+        }
+    }
+
+    private void onRollupChanged(String month, @Nullable MonthlyRollup rollup) {
+        int monthKey = TimeBuckets.parseMonthKey(month);
+        if (monthKey < 0) return;
+
+        // The rollup is the authority; it replaces whatever was booked ahead of it
+        Map<String, Double> spend = new HashMap<>();
+        if (rollup != null) {
+            for (Map.Entry<String, MonthlyRollup.CategoryTotals> entry : rollup.getCategories().entrySet()) {
+                spend.put(FirebaseKeyUtils.decodeKey(entry.getKey()), entry.getValue().getOut());
+            }
+        }
+        spendByMonth.put(monthKey, spend);
+        if (isReady()) notifyListeners();
+    }
+
+    private void notifyListeners() {
+        for (Listener listener : new ArrayList<>(listeners)) listener.onBudgetsChanged(this);
+    }
+
+    /**
+     * Same bucket the rollups book the transaction under.
+     */
+    public static String categoryOf(TransactionModel transaction) {
+        String category = transaction.getTransactionCategory();
+        return category != null && !category.isEmpty() ? category : CategoryMonthCube.UNCATEGORIZED;
+    }
+}
@@ -0,0 +1,328 @@
+package com.satvik.artham.analytics;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.TransactionStore;
+import com.satvik.artham.models.MonthlyRollup;
+import com.satvik.artham.utils.FirebaseKeyUtils;
+import com.satvik.artham.utils.TimeBuckets;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CategoryMonthCube - Money in and out per category per month, in flat double arrays.
+ * Category names are dictionary-encoded to small ids and months are counted from the
+ * first month seen, so a cell is one array read and a month's chart is one slice.
+ * <p>
+ * A cube bound to a {@link TransactionStore} (see DataRepository#getCategoryMonthCube)
+ * is built from the first snapshot and then moved by each add, edit or delete delta; it
+ * is shared by every chart of that cashbook. A cube created without a store can be
+ * filled from monthly rollups instead. Main thread only.
+ */
+public class CategoryMonthCube {
+
+    private static final String TAG = "CategoryMonthCube";
+    // Same bucket the rollups use for uncategorised transactions
+    public static final String UNCATEGORIZED = "Others";
+    private static final int INITIAL_CATEGORIES = 16;
+    private static final int MONTH_SLACK = 12;
+    // Sums moved by deltas drift by rounding; anything smaller than this is zero
+    private static final double EPSILON = 1e-6;
+
+    public interface Listener {
+        void onCubeChanged(CategoryMonthCube cube);
+
+        default void onCancelled(DatabaseError error) {
+        }
+    }
+
+    @Nullable
+    private final TransactionStore store;
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean ready = false;
+    private long count;
+
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private final List<String> categoryNames = new ArrayList<>();
+
+    // Cell (month, category) lives at (month - firstMonth) * stride + category
+    private int firstMonth;
+    private int monthCount;
+    private int stride = INITIAL_CATEGORIES;
+    private double[] cellIn = new double[0];
+    private double[] cellOut = new double[0];
+    private double[] monthIn = new double[0];
+    private double[] monthOut = new double[0];
+    private int[] monthEntries = new int[0];
+
+    private TimeBuckets buckets = TimeBuckets.getDefault();
+
+    // Package-private so tests can play the store
+    final TransactionStore.Listener storeListener = new TransactionStore.Listener() {
+        @Override
+        public void onTransactionsReloaded(List<TransactionModel> snapshot) {
+            rebuild(snapshot);
+            notifyListeners();
+        }
+
+        @Override
+        public void onTransactionsChanged(List<TransactionModel> snapshot) {
+            notifyListeners();
+        }
+
+        @Override
+        public void onTransactionDelta(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+            if (!ready) return;
+            apply(before, -1);
+            apply(after, 1);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            for (Listener listener : new ArrayList<>(listeners)) listener.onCancelled(error);
+        }
+    };
+
+    /**
+     * A cube filled by hand, e.g. from rollups.
+     */
+    public CategoryMonthCube() {
+        this(null);
+    }
+
+    public CategoryMonthCube(@Nullable TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Starts following the store on the first observer. Observers joining later are
+     * called back right away when the cube is already built.
+     */
+    public void observe(Listener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (store == null) return;
+        if (listeners.size() == 1) {
+            store.observe(storeListener);
+        } else if (ready) {
+            listener.onCubeChanged(this);
+        }
+    }
+
+    public void removeObserver(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) detach();
+    }
+
+    /**
+     * Stops following the store. Deltas missed while detached could leave the cells
+     * wrong, so the next snapshot rebuilds from scratch.
+     */
+    public void detach() {
+        if (store == null) return;
+        store.removeObserver(storeListener);
+        ready = false;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // --- Reads ---
+
+    public int getCategoryCount() {
+        return categoryNames.size();
+    }
+
+    public String getCategoryName(int categoryId) {
+        return categoryNames.get(categoryId);
+    }
+
+    /**
+     * Id of the category, or -1 if nothing was ever booked under it.
+     */
+    public int getCategoryId(String category) {
+        Integer id = categoryIds.get(category);
+        return id != null ? id : -1;
+    }
+
+    public double getIn(int monthKey, int categoryId) {
+        int row = rowOf(monthKey);
+        return row < 0 ? 0 : cellIn[row * stride + categoryId];
+    }
+
+    public double getOut(int monthKey, int categoryId) {
+        int row = rowOf(monthKey);
+        return row < 0 ? 0 : cellOut[row * stride + categoryId];
+    }
+
+    public double getMonthIn(int monthKey) {
+        int row = rowOf(monthKey);
+        return row < 0 ? 0 : monthIn[row];
+    }
+
+    public double getMonthOut(int monthKey) {
+        int row = rowOf(monthKey);
+        return row < 0 ? 0 : monthOut[row];
+    }
+
+    /**
+     * Month keys (yyyyMM) that have any entries, newest first.
+     */
+    public List<Integer> getActiveMonths() {
+        List<Integer> months = new ArrayList<>();
+        for (int row = monthCount - 1; row >= 0; row--) {
+            if (monthEntries[row] > 0) months.add(monthKeyOf(firstMonth + row));
+        }
+        return months;
+    }
+
+    // --- Writes ---
+
+    public void clear() {
+        count = 0;
+        categoryIds.clear();
+        categoryNames.clear();
+        monthCount = 0;
+        stride = INITIAL_CATEGORIES;
+        cellIn = new double[0];
+        cellOut = new double[0];
+        monthIn = new double[0];
+        monthOut = new double[0];
+        monthEntries = new int[0];
+    }
+
+    /**
+     * Replaces one month with the totals of its rollup.
+     */
+    public void putRollup(int monthKey, MonthlyRollup rollup) {
+        int row = ensureMonth(monthKey);
+        Arrays.fill(cellIn, row * stride, (row + 1) * stride, 0);
+        Arrays.fill(cellOut, row * stride, (row + 1) * stride, 0);
+        for (Map.Entry<String, MonthlyRollup.CategoryTotals> entry : rollup.getCategories().entrySet()) {
+            int category = ensureCategory(FirebaseKeyUtils.decodeKey(entry.getKey()));
+            row = rowOf(monthKey); // Adding a category may have moved the rows
+            cellIn[row * stride + category] = entry.getValue().getIn();
+            cellOut[row * stride + category] = entry.getValue().getOut();
+        }
+        monthIn[row] = rollup.getTotalIn();
+        monthOut[row] = rollup.getTotalOut();
+        monthEntries[row] = (int) rollup.getCount();
+        ready = true;
+    }
+
+    /**
+     * Notifies observers of a cube filled by hand.
+     */
+    public void notifyListeners() {
+        for (Listener listener : new ArrayList<>(listeners)) listener.onCubeChanged(this);
+    }
+
+    private void rebuild(List<TransactionModel> snapshot) {
+        clear();
+        buckets = TimeBuckets.getDefault();
+        for (TransactionModel transaction : snapshot) apply(transaction, 1);
+        ready = true;
+        Log.d(TAG, "Built " + monthCount + " months x " + categoryNames.size() + " categories from "
+                + count + " transactions");
+    }
+
+    private void apply(@Nullable TransactionModel transaction, int sign) {
+        if (transaction == null) return;
+        String category = transaction.getTransactionCategory();
+        if (category == null || category.isEmpty()) category = UNCATEGORIZED;
+
+        int categoryId = ensureCategory(category);
+        int row = ensureMonth(buckets.monthKey(transaction.getTimestamp()));
+        int cell = row * stride + categoryId;
+        double amount = sign * transaction.getAmount();
+
+        if ("IN".equalsIgnoreCase(transaction.getType())) {
+            cellIn[cell] = settle(cellIn[cell] + amount);
+            monthIn[row] = settle(monthIn[row] + amount);
+        } else {
+            cellOut[cell] = settle(cellOut[cell] + amount);
+            monthOut[row] = settle(monthOut[row] + amount);
+        }
+        monthEntries[row] += sign;
+        count += sign;
+    }
+
+    // --- Layout ---
+
+    private int ensureCategory(String category) {
+        Integer id = categoryIds.get(category);
+        if (id != null) return id;
+
+        id = categoryNames.size();
+        if (id == stride) relayout(firstMonth, monthCount, stride * 2);
+        categoryIds.put(category, id);
+        categoryNames.add(category);
+        return id;
+    }
+
+    private int ensureMonth(int monthKey) {
+        int ordinal = ordinalOf(monthKey);
+        if (monthCount == 0) {
+            relayout(ordinal - MONTH_SLACK + 1, MONTH_SLACK, stride);
+        } else if (ordinal < firstMonth) {
+            int newFirst = ordinal - MONTH_SLACK + 1;
+            relayout(newFirst, firstMonth + monthCount - newFirst, stride);
+        } else if (ordinal >= firstMonth + monthCount) {
+            relayout(firstMonth, ordinal - firstMonth + MONTH_SLACK, stride);
+        }
+        return ordinal - firstMonth;
+    }
+
+    private void relayout(int newFirstMonth, int newMonthCount, int newStride) {
+        double[] newIn = new double[newMonthCount * newStride];
+        double[] newOut = new double[newMonthCount * newStride];
+        double[] newMonthIn = new double[newMonthCount];
+        double[] newMonthOut = new double[newMonthCount];
+        int[] newEntries = new int[newMonthCount];
+
+        int shift = firstMonth - newFirstMonth;
+        for (int row = 0; row < monthCount; row++) {
+            int target = row + shift;
+            System.arraycopy(cellIn, row * stride, newIn, target * newStride, stride);
+            System.arraycopy(cellOut, row * stride, newOut, target * newStride, stride);
+            newMonthIn[target] = monthIn[row];
+            newMonthOut[target] = monthOut[row];
+            newEntries[target] = monthEntries[row];
+        }
+
+        firstMonth = newFirstMonth;
+        monthCount = newMonthCount;
+        stride = newStride;
+        cellIn = newIn;
+        cellOut = newOut;
+        monthIn = newMonthIn;
+        monthOut = newMonthOut;
+        monthEntries = newEntries;
+    }
+
+    private int rowOf(int monthKey) {
+        int row = ordinalOf(monthKey) - firstMonth;
+        return row >= 0 && row < monthCount ? row : -1;
+    }
+
+    private static int ordinalOf(int monthKey) {
+        return (monthKey / 100) * 12 + monthKey % 100 - 1;
+    }
+
+    private static int monthKeyOf(int ordinal) {
+        return (ordinal / 12) * 100 + ordinal % 12 + 1;
+    }
+
+    private static double settle(double value) {
+        return Math.abs(value) < EPSILON ? 0 : value;
+    }
+}
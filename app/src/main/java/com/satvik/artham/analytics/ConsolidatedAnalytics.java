@@ -0,0 +1,178 @@
+package com.satvik.artham.analytics;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.models.MonthlyRollup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ConsolidatedAnalytics - Monthly rollups of every cashbook of the account, merged into
+ * one report. Each book's rollups are requested at once and parsed on a small bounded
+ * pool, so the report takes about as long as the slowest book rather than the sum of
+ * all of them. Partial reports are merged with {@link Report#combine}, which does not
+ * care about order, and the running merge is published as each book completes.
+ */
+public class ConsolidatedAnalytics {
+
+    private static final String TAG = "ConsolidatedAnalytics";
+    private static final int POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(POOL_SIZE);
+
+    public interface Listener {
+        void onReportUpdated(Report report);
+    }
+
+    /**
+     * Merged monthly rollups of the books loaded so far. Immutable; combining two
+     * reports builds a new one.
+     */
+    public static class Report {
+        private final Map<String, MonthlyRollup> rollups;
+        private final int booksLoaded;
+        private final int booksFailed;
+        private final int booksTotal;
+
+        Report(Map<String, MonthlyRollup> rollups, int booksLoaded, int booksFailed, int booksTotal) {
+            this.rollups = Collections.unmodifiableMap(rollups);
+            this.booksLoaded = booksLoaded;
+            this.booksFailed = booksFailed;
+            this.booksTotal = booksTotal;
+        }
+
+        static Report empty(int booksTotal) {
+            return new Report(new HashMap<>(), 0, 0, booksTotal);
+        }
+
+        static Report loaded(Map<String, MonthlyRollup> rollups) {
+            return new Report(new HashMap<>(rollups), 1, 0, 0);
+        }
+
+        static Report failed() {
+            return new Report(new HashMap<>(), 0, 1, 0);
+        }
+
+        /**
+         * Rollups keyed by yyyy-MM, category keys still encoded, as DataRepository
+         * delivers them for one book.
+         */
+        public Map<String, MonthlyRollup> getRollups() {
+            return rollups;
+        }
+
+        public int getBooksLoaded() {
+            return booksLoaded;
+        }
+
+        public int getBooksFailed() {
+            return booksFailed;
+        }
+
+        public int getBooksTotal() {
+            return booksTotal;
+        }
+
+        public boolean isComplete() {
+            return booksLoaded + booksFailed >= booksTotal;
+        }
+
+        /**
+         * Sums two reports month by month and category by category. Associative and
+         * commutative, so books can be merged in whatever order they finish.
+         */
+        public static Report combine(Report a, Report b) {
+            Map<String, MonthlyRollup> merged = new HashMap<>(a.rollups);
+            for (Map.Entry<String, MonthlyRollup> month : b.rollups.entrySet()) {
+                MonthlyRollup existing = merged.get(month.getKey());
+                merged.put(month.getKey(), existing == null ? month.getValue() : sum(existing, month.getValue()));
+            }
+            return new Report(merged, a.booksLoaded + b.booksLoaded, a.booksFailed + b.booksFailed,
+                    Math.max(a.booksTotal, b.booksTotal));
+        }
+
+        private static MonthlyRollup sum(MonthlyRollup a, MonthlyRollup b) {
+            MonthlyRollup total = new MonthlyRollup();
+            total.setTotalIn(a.getTotalIn() + b.getTotalIn());
+            total.setTotalOut(a.getTotalOut() + b.getTotalOut());
+            total.setCount(a.getCount() + b.getCount());
+            addCategories(total, a);
+            addCategories(total, b);
+            return total;
+        }
+
+        private static void addCategories(MonthlyRollup total, MonthlyRollup part) {
+            for (Map.Entry<String, MonthlyRollup.CategoryTotals> entry : part.getCategories().entrySet()) {
+                MonthlyRollup.CategoryTotals category = total.getCategories().get(entry.getKey());
+                if (category == null) {
+                    category = new MonthlyRollup.CategoryTotals();
+                    total.getCategories().put(entry.getKey(), category);
+                }
+                category.setIn(category.getIn() + entry.getValue().getIn());
+                category.setOut(category.getOut() + entry.getValue().getOut());
+            }
+        }
+    }
+
+    private final DataRepository repository;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped by every load and by cancel, so books of an older run are dropped
+    private int generation;
+    // Books in the last published report; merges can finish out of order across threads
+    private int publishedBooks;
+
+    public ConsolidatedAnalytics(DataRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Loads and merges the rollups of the given cashbooks. The listener is called on the
+     * main thread once right away and again as each book completes; the last call has
+     * {@link Report#isComplete()} set. Main thread only.
+     */
+    public void load(List<String> cashbookIds, Listener listener) {
+        int run = ++generation;
+        publishedBooks = 0;
+        AtomicReference<Report> accumulated = new AtomicReference<>(Report.empty(cashbookIds.size()));
+        listener.onReportUpdated(accumulated.get());
+
+        long startedAt = System.currentTimeMillis();
+        for (String cashbookId : cashbookIds) {
+            repository.loadMonthlyRollups(cashbookId, EXECUTOR,
+                    rollups -> publish(run, accumulated.accumulateAndGet(Report.loaded(rollups), Report::combine),
+                            listener, startedAt),
+                    error -> {
+                        Log.w(TAG, "Could not load rollups of cashbook " + cashbookId + ": " + error);
+                        publish(run, accumulated.accumulateAndGet(Report.failed(), Report::combine), listener, startedAt);
+                    });
+        }
+    }
+
+    /**
+     * Drops the results of the current load, e.g. when the screen goes away.
+     */
+    public void cancel() {
+        generation++;
+    }
+
+    private void publish(int run, Report report, Listener listener, long startedAt) {
+        mainHandler.post(() -> {
+            int books = report.getBooksLoaded() + report.getBooksFailed();
+            if (run != generation || books <= publishedBooks) return;
+            publishedBooks = books;
+            if (report.isComplete()) {
+                Log.d(TAG, "Consolidated " + report.getBooksLoaded() + " cashbooks in "
+                        + (System.currentTimeMillis() - startedAt) + " ms");
+            }
+            listener.onReportUpdated(report);
+        });
+    }
+}
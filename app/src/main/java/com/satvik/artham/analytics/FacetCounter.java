@@ -0,0 +1,183 @@
+package com.satvik.artham.analytics;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.TransactionStore;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FacetCounter - Distinct categories, parties and payment modes of a cashbook, each with
+ * the number of entries and the money in and out under it. Counted once from the store's
+ * first snapshot and then moved by its deltas, so the filter screens list their options
+ * (with counts) straight from memory instead of scanning or downloading the book.
+ * <p>
+ * Shared per cashbook (see DataRepository#getFacetCounter); it follows the store while
+ * anyone observes it. Main thread only.
+ */
+public class FacetCounter {
+
+    private static final String TAG = "FacetCounter";
+
+    public enum Dimension {
+        CATEGORY, PARTY, PAYMENT_MODE
+    }
+
+    public interface Listener {
+        void onFacetsChanged(FacetCounter counter);
+    }
+
+    /**
+     * One value of a dimension and the entries under it.
+     */
+    public static class Facet {
+        private final String value;
+        private int count;
+        private double in;
+        private double out;
+
+        Facet(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getIn() {
+            return in;
+        }
+
+        public double getOut() {
+            return out;
+        }
+    }
+
+    private final TransactionStore store;
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Map<Dimension, Map<String, Facet>> facets = new EnumMap<>(Dimension.class);
+    private boolean ready = false;
+
+    // Package-private so tests can play the store
+    final TransactionStore.Listener storeListener = new TransactionStore.Listener() {
+        @Override
+        public void onTransactionsReloaded(List<TransactionModel> snapshot) {
+            rebuild(snapshot);
+            onTransactionsChanged(snapshot);
+        }
+
+        @Override
+        public void onTransactionsChanged(List<TransactionModel> snapshot) {
+            for (Listener listener : new ArrayList<>(listeners)) listener.onFacetsChanged(FacetCounter.this);
+        }
+
+        @Override
+        public void onTransactionDelta(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+            if (!ready) return;
+            if (before != null) book(before, -1);
+            if (after != null) book(after, 1);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            Log.w(TAG, "Store cancelled: " + error.getMessage());
+        }
+    };
+
+    public FacetCounter(TransactionStore store) {
+        this.store = store;
+        for (Dimension dimension : Dimension.values()) facets.put(dimension, new HashMap<>());
+    }
+
+    /**
+     * Starts following the store on the first observer. Observers joining later are
+     * called back right away when the counts are already there.
+     */
+    public void observe(Listener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (listeners.size() == 1) {
+            store.observe(storeListener);
+        } else if (ready) {
+            listener.onFacetsChanged(this);
+        }
+    }
+
+    public void removeObserver(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) detach();
+    }
+
+    /**
+     * Stops following the store. Deltas missed while detached are not replayed, so the
+     * next snapshot counts again.
+     */
+    public void detach() {
+        store.removeObserver(storeListener);
+        ready = false;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Values of the dimension, most used first.
+     */
+    public List<Facet> getFacets(Dimension dimension) {
+        List<Facet> result = new ArrayList<>(facets.get(dimension).values());
+        result.sort((a, b) -> a.count != b.count ? Integer.compare(b.count, a.count) : a.value.compareTo(b.value));
+        return Collections.unmodifiableList(result);
+    }
+
+    @Nullable
+    public Facet getFacet(Dimension dimension, String value) {
+        return facets.get(dimension).get(value);
+    }
+
+    private void rebuild(List<TransactionModel> snapshot) {
+        for (Map<String, Facet> values : facets.values()) values.clear();
+        for (TransactionModel transaction : snapshot) {
+            if (transaction != null) book(transaction, 1);
+        }
+        ready = true;
+        Log.d(TAG, "Counted facets of " + snapshot.size() + " transactions");
+    }
+
+    private void book(TransactionModel transaction, int sign) {
+        book(Dimension.CATEGORY, transaction.getTransactionCategory(), transaction, sign);
+        book(Dimension.PARTY, transaction.getPartyName(), transaction, sign);
+        book(Dimension.PAYMENT_MODE, transaction.getPaymentMode(), transaction, sign);
+    }
+
+    private void book(Dimension dimension, @Nullable String value, TransactionModel transaction, int sign) {
+        if (value == null || value.isEmpty()) return;
+        Map<String, Facet> values = facets.get(dimension);
+        Facet facet = values.get(value);
+        if (facet == null) {
+            if (sign < 0) return;
+            facet = new Facet(value);
+            values.put(value, facet);
+        }
+        facet.count += sign;
+        if ("IN".equalsIgnoreCase(transaction.getType())) {
+            facet.in += sign * transaction.getAmount();
+        } else {
+            facet.out += sign * transaction.getAmount();
+        }
+        if (facet.count <= 0) values.remove(value);
+    }
+}
@@ -0,0 +1,335 @@
+package com.satvik.artham.analytics;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.models.MonthlyRollup;
+import com.satvik.artham.utils.FirebaseKeyUtils;
+import com.satvik.artham.utils.TimeBuckets;
+import com.google.firebase.database.ChildEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * ForecastEngine - Projects a cashbook's end-of-month spend, overall and per category.
+ * Each category keeps an exponentially weighted moving average of its monthly spend over
+ * the closed months, and the projection blends that average with the month-to-date run
+ * rate, leaning on the run rate as the month goes on.
+ * <p>
+ * The engine is fed month by month from the rollups: each changed rollup is diffed with
+ * the previous copy of that month and only the difference moves the averages, so the
+ * state survives between screens (see DataRepository#getForecastEngine) and reopening
+ * analytics costs one diff per month instead of a recomputation. All state lives on a
+ * background thread; forecasts are delivered on the main thread.
+ */
+public class ForecastEngine {
+
+    private static final String TAG = "ForecastEngine";
+    // Weight of the latest closed month; older months fade by (1 - ALPHA) each
+    private static final double ALPHA = 0.3;
+    private static final double DECAY = 1 - ALPHA;
+
+    // Shared by every engine, so all forecast state is confined to this one thread
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    public interface Listener {
+        void onForecastChanged(Forecast forecast);
+    }
+
+    /**
+     * Projection for the current month. Immutable, safe to hand to the UI.
+     */
+    public static class Forecast {
+        private final int monthKey;
+        private final int daysElapsed;
+        private final int daysInMonth;
+        private final double monthToDate;
+        private final double average;
+        private final double projected;
+        private final Map<String, Double> categoryProjections;
+
+        Forecast(int monthKey, int daysElapsed, int daysInMonth, double monthToDate, double average,
+                 double projected, Map<String, Double> categoryProjections) {
+            this.monthKey = monthKey;
+            this.daysElapsed = daysElapsed;
+            this.daysInMonth = daysInMonth;
+            this.monthToDate = monthToDate;
+            this.average = average;
+            this.projected = projected;
+            this.categoryProjections = Collections.unmodifiableMap(categoryProjections);
+        }
+
+        public int getMonthKey() {
+            return monthKey;
+        }
+
+        public int getDaysElapsed() {
+            return daysElapsed;
+        }
+
+        public int getDaysInMonth() {
+            return daysInMonth;
+        }
+
+        /**
+         * Spend booked in the month so far.
+         */
+        public double getMonthToDate() {
+            return monthToDate;
+        }
+
+        /**
+         * Weighted average monthly spend of the closed months, 0 without history.
+         */
+        public double getAverage() {
+            return average;
+        }
+
+        /**
+         * Expected spend by the end of the month.
+         */
+        public double getProjected() {
+            return projected;
+        }
+
+        public Map<String, Double> getCategoryProjections() {
+            return categoryProjections;
+        }
+    }
+
+    private final DataRepository repository;
+    private final String cashbookId;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Main thread
+    private final List<Listener> listeners = new ArrayList<>();
+    private ChildEventListener rollupListener;
+    private Forecast latest;
+
+    // Worker thread. Months are ordinals (year * 12 + month - 1) so they can be subtracted.
+    private final Map<Integer, Map<String, Double>> spendByMonth = new HashMap<>();
+    private final Map<String, Double> weightedSums = new HashMap<>();
+    private double weightTotal;
+    private int firstMonth = Integer.MAX_VALUE;
+    private int currentMonth = Integer.MIN_VALUE;
+    private boolean publishPending = false;
+
+    public ForecastEngine(DataRepository repository, String cashbookId) {
+        this.repository = repository;
+        this.cashbookId = cashbookId;
+    }
+
+    /**
+     * Starts following the rollups on the first observer. The last forecast, if any, is
+     * delivered right away and refreshed for today's date.
+     */
+    public void observe(Listener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (latest != null) listener.onForecastChanged(latest);
+        if (rollupListener == null) {
+            rollupListener = repository.observeRollupChanges(cashbookId,
+                    (month, rollup) -> EXECUTOR.execute(() -> onRollupChanged(month, rollup)),
+                    error -> Log.w(TAG, "Rollups unavailable: " + error));
+        }
+        requestPublish();
+    }
+
+    public void removeObserver(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) detach();
+    }
+
+    /**
+     * Stops following the rollups but keeps the averages. Rollups are never deleted, so
+     * reattaching replays every month and the diffs pick up whatever changed meanwhile.
+     */
+    public void detach() {
+        if (rollupListener != null) {
+            repository.removeRollupChangesListener(cashbookId, rollupListener);
+            rollupListener = null;
+        }
+    }
+
+    // --- Worker thread ---
+
+    private void onRollupChanged(String month, @Nullable MonthlyRollup rollup) {
+        int currentMonthKey = TimeBuckets.getDefault().monthKey(System.currentTimeMillis());
+        if (applyRollup(currentMonthKey, month, rollup)) requestPublish();
+    }
+
+    /**
+     * Diffs a month's rollup with its previous copy and moves the averages by the
+     * difference, as of the given current month.
+     *
+     * @return false if the month key cannot be read
+     */
+    boolean applyRollup(int currentMonthKey, String month, @Nullable MonthlyRollup rollup) {
+        int monthKey = TimeBuckets.parseMonthKey(month);
+        if (monthKey < 0) return false;
+        int ordinal = ordinalOf(monthKey);
+        // Close any months that ended first, so the change lands on the current weights
+        advanceTo(ordinalOf(currentMonthKey));
+
+        Map<String, Double> spend = new HashMap<>();
+        if (rollup != null) {
+            for (Map.Entry<String, MonthlyRollup.CategoryTotals> entry : rollup.getCategories().entrySet()) {
+                double out = entry.getValue().getOut();
+                if (out != 0) spend.put(FirebaseKeyUtils.decodeKey(entry.getKey()), out);
+            }
+        }
+        Map<String, Double> previous = spendByMonth.put(ordinal, spend);
+        if (previous == null) previous = Collections.emptyMap();
+        if (ordinal < firstMonth && !spend.isEmpty()) extendHistory(ordinal);
+        if (ordinal == firstMonth && spend.isEmpty()) {
+            // History now starts at a later month; its weights cannot be taken out one
+            // by one, so the averages are rebuilt from the stored months
+            recompute();
+            return true;
+        }
+
+        Set<String> categories = new HashSet<>(spend.keySet());
+        categories.addAll(previous.keySet());
+        for (String category : categories) {
+            double delta = spend.getOrDefault(category, 0.0) - previous.getOrDefault(category, 0.0);
+            if (delta != 0) applyDelta(ordinal, category, delta);
+        }
+        return true;
+    }
+
+    /**
+     * Moves one month's change of a category into its weighted sum. The current and
+     * future months are not averaged yet; they are read directly when projecting.
+     */
+    private void applyDelta(int month, String category, double delta) {
+        if (month >= currentMonth) return;
+        double weight = Math.pow(DECAY, currentMonth - 1 - month);
+        weightedSums.put(category, weightedSums.getOrDefault(category, 0.0) + weight * delta);
+    }
+
+    /**
+     * Adds the weights of the months between a newly seen first month and the old one.
+     */
+    private void extendHistory(int month) {
+        int oldFirst = Math.min(firstMonth, currentMonth);
+        for (int m = month; m < oldFirst; m++) {
+            weightTotal += Math.pow(DECAY, currentMonth - 1 - m);
+        }
+        firstMonth = month;
+    }
+
+    /**
+     * Closes months up to the given one: every weighted sum decays by one step and takes
+     * in the spend of the month that just ended.
+     */
+    private void advanceTo(int month) {
+        if (currentMonth == Integer.MIN_VALUE) {
+            currentMonth = month;
+            return;
+        }
+        if (month < currentMonth) {
+            // The clock went back; start the chain over from the stored months
+            currentMonth = month;
+            recompute();
+            return;
+        }
+        while (currentMonth < month) {
+            Map<String, Double> closing = spendByMonth.getOrDefault(currentMonth, Collections.emptyMap());
+            for (Map.Entry<String, Double> entry : weightedSums.entrySet()) {
+                entry.setValue(entry.getValue() * DECAY);
+            }
+            for (Map.Entry<String, Double> entry : closing.entrySet()) {
+                weightedSums.put(entry.getKey(), weightedSums.getOrDefault(entry.getKey(), 0.0) + entry.getValue());
+            }
+            if (currentMonth >= firstMonth) weightTotal = weightTotal * DECAY + 1;
+            currentMonth++;
+        }
+    }
+
+    void recompute() {
+        weightedSums.clear();
+        weightTotal = 0;
+        firstMonth = Integer.MAX_VALUE;
+        for (Map.Entry<Integer, Map<String, Double>> month : spendByMonth.entrySet()) {
+            if (month.getValue().isEmpty()) continue;
+            if (month.getKey() < firstMonth) firstMonth = month.getKey();
+            for (Map.Entry<String, Double> entry : month.getValue().entrySet()) {
+                applyDelta(month.getKey(), entry.getKey(), entry.getValue());
+            }
+        }
+        for (int m = firstMonth; m < currentMonth; m++) {
+            weightTotal += Math.pow(DECAY, currentMonth - 1 - m);
+        }
+        Log.d(TAG, "Recomputed averages over " + spendByMonth.size() + " months");
+    }
+
+    private void requestPublish() {
+        // Queued behind any pending rollups, so a burst of months is published once
+        EXECUTOR.execute(() -> {
+            if (publishPending) return;
+            publishPending = true;
+            EXECUTOR.execute(this::publish);
+        });
+    }
+
+    private void publish() {
+        publishPending = false;
+        long now = System.currentTimeMillis();
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        int monthKey = buckets.monthKey(now);
+        advanceTo(ordinalOf(monthKey));
+
+        int firstDay = buckets.dayKey(buckets.monthStart(monthKey));
+        int daysInMonth = buckets.dayKey(buckets.monthEnd(monthKey)) - firstDay + 1;
+        int daysElapsed = buckets.dayKey(now) - firstDay + 1;
+        Forecast forecast = project(monthKey, daysElapsed, daysInMonth);
+
+        mainHandler.post(() -> {
+            latest = forecast;
+            for (Listener listener : new ArrayList<>(listeners)) listener.onForecastChanged(forecast);
+        });
+    }
+
+    Forecast project(int monthKey, int daysElapsed, int daysInMonth) {
+        Map<String, Double> monthToDate = spendByMonth.getOrDefault(ordinalOf(monthKey), Collections.emptyMap());
+        Set<String> categories = new HashSet<>(weightedSums.keySet());
+        categories.addAll(monthToDate.keySet());
+
+        // The run rate is trusted in proportion to how much of the month has passed
+        double runRateShare = (double) daysElapsed / daysInMonth;
+        int daysLeft = daysInMonth - daysElapsed;
+
+        Map<String, Double> projections = new HashMap<>();
+        double totalToDate = 0, totalAverage = 0, totalProjected = 0;
+        for (String category : categories) {
+            double spent = monthToDate.getOrDefault(category, 0.0);
+            double average = weightTotal > 0 ? weightedSums.getOrDefault(category, 0.0) / weightTotal : 0;
+            double dailyRate = weightTotal > 0
+                    ? runRateShare * spent / daysElapsed + (1 - runRateShare) * average / daysInMonth
+                    : spent / daysElapsed;
+            double projected = spent + Math.max(0, dailyRate) * daysLeft;
+
+            if (projected > 0) projections.put(category, projected);
+            totalToDate += spent;
+            totalAverage += average;
+            totalProjected += projected;
+        }
+        return new Forecast(monthKey, daysElapsed, daysInMonth, totalToDate, totalAverage, totalProjected, projections);
+    }
+
+    private static int ordinalOf(int monthKey) {
+        return (monthKey / 100) * 12 + monthKey % 100 - 1;
+    }
+}
@@ -0,0 +1,318 @@
+package com.satvik.artham.analytics;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.TransactionStore;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * RecurringDetector - Finds entries that repeat at a steady interval (rent, salaries,
+ * supplier invoices) so they can be offered as templates. Entries are grouped by type,
+ * category, party and an amount band about 15% wide; each group keeps only the times of
+ * its last few entries, and at most {@link #MAX_GROUPS} groups are kept (least recently
+ * touched first out), so memory stays bounded however large the cashbook grows.
+ * <p>
+ * Built once from the store's first snapshot and moved by its deltas afterwards. All
+ * state lives on a background thread; results are delivered on the main thread.
+ */
+public class RecurringDetector {
+
+    private static final String TAG = "RecurringDetector";
+    private static final int WINDOW = 8;
+    private static final int MAX_GROUPS = 256;
+    private static final int MAX_SERIES = 10;
+    private static final int MIN_OCCURRENCES = 3;
+    private static final double BAND_RATIO = Math.log(1.15);
+    private static final double DAY_MS = 86_400_000d;
+    // Gaps may drift from the typical one by this share, or by MIN_SLACK_DAYS if larger
+    private static final double GAP_TOLERANCE = 0.2;
+    private static final double MIN_SLACK_DAYS = 2;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    public interface Listener {
+        void onSeriesChanged(List<Series> series);
+    }
+
+    /**
+     * A detected recurring entry. The template fields come from its latest occurrence.
+     */
+    public static class Series {
+        private final TransactionModel template;
+        private final int intervalDays;
+        private final int occurrences;
+        private final long nextDue;
+
+        Series(TransactionModel template, int intervalDays, int occurrences, long nextDue) {
+            this.template = template;
+            this.intervalDays = intervalDays;
+            this.occurrences = occurrences;
+            this.nextDue = nextDue;
+        }
+
+        public TransactionModel getTemplate() {
+            return template;
+        }
+
+        public int getIntervalDays() {
+            return intervalDays;
+        }
+
+        public int getOccurrences() {
+            return occurrences;
+        }
+
+        /**
+         * When the next occurrence is expected, one interval after the latest.
+         */
+        public long getNextDue() {
+            return nextDue;
+        }
+
+        public String getCadence() {
+            if (Math.abs(intervalDays - 7) <= 1) return "weekly";
+            if (Math.abs(intervalDays - 14) <= 1) return "every 2 weeks";
+            if (intervalDays >= 28 && intervalDays <= 31) return "monthly";
+            if (intervalDays >= 89 && intervalDays <= 92) return "quarterly";
+            if (intervalDays >= 364 && intervalDays <= 366) return "yearly";
+            return String.format(Locale.US, "every %d days", intervalDays);
+        }
+    }
+
+    /**
+     * A group's latest entries, oldest first, each next to its time.
+     */
+    static final class Group {
+        final long[] times = new long[WINDOW];
+        final TransactionModel[] entries = new TransactionModel[WINDOW];
+        int size;
+
+        void add(TransactionModel transaction) {
+            long time = transaction.getTimestamp();
+            int position = size;
+            while (position > 0 && times[position - 1] > time) position--;
+            if (size == WINDOW) {
+                if (position == 0) return; // Older than the whole window
+                // The oldest entry makes room
+                System.arraycopy(times, 1, times, 0, position - 1);
+                System.arraycopy(entries, 1, entries, 0, position - 1);
+                position--;
+            } else {
+                System.arraycopy(times, position, times, position + 1, size - position);
+                System.arraycopy(entries, position, entries, position + 1, size - position);
+                size++;
+            }
+            times[position] = time;
+            entries[position] = transaction;
+        }
+
+        /**
+         * Removes the entry with the transaction's id, if it is in the window. Entries
+         * evicted earlier do not come back.
+         */
+        void remove(TransactionModel transaction) {
+            for (int i = 0; i < size; i++) {
+                if (sameEntry(entries[i], transaction)) {
+                    System.arraycopy(times, i + 1, times, i, size - i - 1);
+                    System.arraycopy(entries, i + 1, entries, i, size - i - 1);
+                    size--;
+                    entries[size] = null;
+                    return;
+                }
+            }
+        }
+
+        @Nullable
+        TransactionModel latest() {
+            return size == 0 ? null : entries[size - 1];
+        }
+    }
+
+    private static boolean sameEntry(TransactionModel a, TransactionModel b) {
+        return a.getTransactionId() != null && a.getTransactionId().equals(b.getTransactionId());
+    }
+
+    private final TransactionStore store;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Main thread
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean ready = false;
+    private List<Series> latestSeries;
+
+    // Worker thread; access order, so the least recently touched group is evicted first
+    private final Map<String, Group> groups = new LinkedHashMap<String, Group>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Group> eldest) {
+            return size() > MAX_GROUPS;
+        }
+    };
+    private boolean publishPending = false;
+
+    private final TransactionStore.Listener storeListener = new TransactionStore.Listener() {
+        @Override
+        public void onTransactionsReloaded(List<TransactionModel> snapshot) {
+            List<TransactionModel> copy = new ArrayList<>(snapshot);
+            ready = true;
+            EXECUTOR.execute(() -> rebuild(copy));
+            requestPublish();
+        }
+
+        @Override
+        public void onTransactionsChanged(List<TransactionModel> snapshot) {
+            requestPublish();
+        }
+
+        @Override
+        public void onTransactionDelta(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+            if (!ready) return;
+            EXECUTOR.execute(() -> {
+                if (before != null) remove(before);
+                if (after != null) add(after);
+            });
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            Log.w(TAG, "Store cancelled: " + error.getMessage());
+        }
+    };
+
+    public RecurringDetector(TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Starts following the store on the first observer. The last result, if any, is
+     * delivered right away.
+     */
+    public void observe(Listener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (latestSeries != null) listener.onSeriesChanged(latestSeries);
+        if (listeners.size() == 1) store.observe(storeListener);
+    }
+
+    public void removeObserver(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) detach();
+    }
+
+    /**
+     * Stops following the store. Deltas missed while detached are not replayed, so the
+     * next snapshot rebuilds the groups.
+     */
+    public void detach() {
+        store.removeObserver(storeListener);
+        ready = false;
+    }
+
+    // --- Worker thread ---
+
+    private void rebuild(List<TransactionModel> snapshot) {
+        groups.clear();
+        for (TransactionModel transaction : snapshot) add(transaction);
+        Log.d(TAG, "Grouped " + snapshot.size() + " transactions into " + groups.size() + " groups");
+    }
+
+    private void add(TransactionModel transaction) {
+        String key = keyOf(transaction);
+        if (key == null) return;
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group();
+            groups.put(key, group);
+        }
+        group.add(transaction);
+    }
+
+    private void remove(TransactionModel transaction) {
+        String key = keyOf(transaction);
+        if (key == null) return;
+        Group group = groups.get(key);
+        if (group == null) return;
+        group.remove(transaction);
+        if (group.size == 0) groups.remove(key);
+    }
+
+    private void requestPublish() {
+        // Queued behind the rebuild or deltas already waiting, so a burst publishes once
+        EXECUTOR.execute(() -> {
+            if (publishPending) return;
+            publishPending = true;
+            EXECUTOR.execute(this::publish);
+        });
+    }
+
+    private void publish() {
+        publishPending = false;
+        long now = System.currentTimeMillis();
+        List<Series> found = new ArrayList<>();
+        for (Group group : groups.values()) {
+            Series series = detect(group, now);
+            if (series != null) found.add(series);
+        }
+        found.sort((a, b) -> Long.compare(a.nextDue, b.nextDue));
+        List<Series> result = Collections.unmodifiableList(
+                new ArrayList<>(found.subList(0, Math.min(MAX_SERIES, found.size()))));
+
+        mainHandler.post(() -> {
+            latestSeries = result;
+            for (Listener listener : new ArrayList<>(listeners)) listener.onSeriesChanged(result);
+        });
+    }
+
+    /**
+     * A group is a series when its gaps all sit close to their median and the latest
+     * entry is recent enough that the next one is still expected.
+     */
+    @Nullable
+    static Series detect(Group group, long now) {
+        if (group.size < MIN_OCCURRENCES) return null;
+
+        double[] gaps = new double[group.size - 1];
+        for (int i = 1; i < group.size; i++) gaps[i - 1] = (group.times[i] - group.times[i - 1]) / DAY_MS;
+        double[] sorted = gaps.clone();
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+        if (median < 1) return null; // Same-day repeats are not a schedule
+
+        double slack = Math.max(MIN_SLACK_DAYS, median * GAP_TOLERANCE);
+        for (double gap : gaps) {
+            if (Math.abs(gap - median) > slack) return null;
+        }
+
+        long last = group.times[group.size - 1];
+        if ((now - last) / DAY_MS > 2 * median + slack) return null; // Stopped recurring
+
+        return new Series(group.latest(), (int) Math.round(median), group.size, last + (long) (median * DAY_MS));
+    }
+
+    @Nullable
+    private static String keyOf(TransactionModel transaction) {
+        if (transaction.getAmount() <= 0) return null;
+        String category = CategoryMonthCube.UNCATEGORIZED;
+        if (transaction.getTransactionCategory() != null && !transaction.getTransactionCategory().isEmpty()) {
+            category = transaction.getTransactionCategory().trim().toLowerCase(Locale.ROOT);
+        }
+        String party = transaction.getPartyName() != null
+                ? transaction.getPartyName().trim().toLowerCase(Locale.ROOT) : "";
+        long band = (long) Math.floor(Math.log(transaction.getAmount()) / BAND_RATIO);
+        return transaction.getType() + "|" + category + "|" + party + "|" + band;
+    }
+}
@@ -0,0 +1,269 @@
+package com.satvik.artham.analytics;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.TransactionStore;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RunningBalanceIndex - Balance of a cashbook as of any moment, by binary search.
+ * Transactions are kept in time order (ties broken by id) in parallel arrays next to a
+ * prefix sum of their signed amounts, so the balance up to an entry or a date is one
+ * lookup instead of a sum from the start of the book. Bound to a {@link TransactionStore},
+ * it is built from the store's first snapshot and kept up to date from its deltas:
+ * appending the newest entry is constant time, back-dated entries shift the tail. Created
+ * without a store, it indexes a slice of the cashbook handed to {@link #load}, on top of
+ * the balance before that slice. Main thread only.
+ */
+public class RunningBalanceIndex {
+
+    private static final String TAG = "RunningBalanceIndex";
+    private static final int INITIAL_CAPACITY = 64;
+
+    public interface Listener {
+        void onBalancesChanged(RunningBalanceIndex index);
+
+        default void onCancelled(DatabaseError error) {
+        }
+    }
+
+    @Nullable
+    private final TransactionStore store;
+    private Listener listener;
+    private boolean ready = false;
+    // Balance before the first indexed entry; zero when the whole cashbook is indexed
+    private double openingBalance;
+
+    private int size;
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private String[] ids = new String[INITIAL_CAPACITY];
+    // prefix[i] is the balance after entries 0..i
+    private double[] prefix = new double[INITIAL_CAPACITY];
+
+    // Package-private so tests can play the store
+    final TransactionStore.Listener storeListener = new TransactionStore.Listener() {
+        @Override
+        public void onTransactionsReloaded(List<TransactionModel> snapshot) {
+            rebuild(snapshot, 0);
+            onTransactionsChanged(snapshot);
+        }
+
+        @Override
+        public void onTransactionsChanged(List<TransactionModel> snapshot) {
+            if (listener != null) listener.onBalancesChanged(RunningBalanceIndex.this);
+        }
+
+        @Override
+        public void onTransactionDelta(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+            if (!ready) return;
+            if (before != null) remove(before);
+            if (after != null) insert(after);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            if (listener != null) listener.onCancelled(error);
+        }
+    };
+
+    /**
+     * An index over a slice of the cashbook, filled through {@link #load}.
+     */
+    public RunningBalanceIndex() {
+        this(null);
+    }
+
+    public RunningBalanceIndex(@Nullable TransactionStore store) {
+        this.store = store;
+    }
+
+    public void start(Listener listener) {
+        this.listener = listener;
+        if (store != null) store.observe(storeListener);
+    }
+
+    public void stop() {
+        listener = null;
+        if (store != null) store.removeObserver(storeListener);
+    }
+
+    /**
+     * Indexes the given transactions, e.g. the month on screen, starting from the balance
+     * before the oldest of them. Balances asked for before the slice are that opening
+     * balance; after it, they leave out anything not handed in.
+     */
+    public void load(List<TransactionModel> transactions, double openingBalance) {
+        rebuild(transactions, openingBalance);
+        if (listener != null) listener.onBalancesChanged(this);
+    }
+
+    /**
+     * False until the store has delivered its first snapshot, or the first slice is loaded.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Current balance of the whole cashbook.
+     */
+    public double getBalance() {
+        return size == 0 ? openingBalance : prefix[size - 1];
+    }
+
+    /**
+     * Balance including every transaction at or before the timestamp.
+     */
+    public double balanceAt(long timestamp) {
+        int count = countUpTo(timestamp);
+        return count == 0 ? openingBalance : prefix[count - 1];
+    }
+
+    /**
+     * Net movement (in minus out) of transactions between the two timestamps, inclusive.
+     */
+    public double netBetween(long from, long to) {
+        if (to < from) return 0;
+        return balanceAt(to) - balanceAt(from - 1);
+    }
+
+    /**
+     * Balance right after the given transaction, or NaN when it is not in the index
+     * (e.g. an unsaved copy).
+     */
+    public double balanceAfter(TransactionModel transaction) {
+        if (transaction == null || transaction.getTransactionId() == null) return Double.NaN;
+        int position = search(transaction.getTimestamp(), transaction.getTransactionId());
+        return position >= 0 ? prefix[position] : Double.NaN;
+    }
+
+    // --- Maintenance ---
+
+    private void rebuild(List<TransactionModel> snapshot, double opening) {
+        List<TransactionModel> sorted = new ArrayList<>(snapshot.size());
+        for (TransactionModel transaction : snapshot) {
+            if (transaction != null && transaction.getTransactionId() != null) sorted.add(transaction);
+        }
+        sorted.sort((a, b) -> compare(a.getTimestamp(), a.getTransactionId(), b.getTimestamp(), b.getTransactionId()));
+
+        size = 0;
+        ensureCapacity(sorted.size());
+        openingBalance = opening;
+        double balance = opening;
+        for (TransactionModel transaction : sorted) {
+            balance += signedAmount(transaction);
+            timestamps[size] = transaction.getTimestamp();
+            ids[size] = transaction.getTransactionId();
+            prefix[size] = balance;
+            size++;
+        }
+        Arrays.fill(ids, size, ids.length, null);
+        ready = true;
+        Log.d(TAG, "Indexed " + size + " transactions");
+    }
+
+    private void insert(TransactionModel transaction) {
+        String id = transaction.getTransactionId();
+        if (id == null) return;
+        long timestamp = transaction.getTimestamp();
+        int position = search(timestamp, id);
+        if (position >= 0) {
+            // Already indexed (e.g. a replayed delta); treat as an edit in place
+            removeAt(position);
+            position = search(timestamp, id);
+        }
+        position = -position - 1;
+
+        ensureCapacity(size + 1);
+        int tail = size - position;
+        if (tail > 0) {
+            System.arraycopy(timestamps, position, timestamps, position + 1, tail);
+            System.arraycopy(ids, position, ids, position + 1, tail);
+            System.arraycopy(prefix, position, prefix, position + 1, tail);
+        }
+        double amount = signedAmount(transaction);
+        timestamps[position] = timestamp;
+        ids[position] = id;
+        prefix[position] = (position == 0 ? openingBalance : prefix[position - 1]) + amount;
+        size++;
+        for (int i = position + 1; i < size; i++) prefix[i] += amount;
+    }
+
+    private void remove(TransactionModel transaction) {
+        if (transaction.getTransactionId() == null) return;
+        int position = search(transaction.getTimestamp(), transaction.getTransactionId());
+        if (position >= 0) removeAt(position);
+    }
+
+    private void removeAt(int position) {
+        double amount = prefix[position] - (position == 0 ? openingBalance : prefix[position - 1]);
+        int tail = size - position - 1;
+        if (tail > 0) {
+            System.arraycopy(timestamps, position + 1, timestamps, position, tail);
+            System.arraycopy(ids, position + 1, ids, position, tail);
+            System.arraycopy(prefix, position + 1, prefix, position, tail);
+        }
+        size--;
+        ids[size] = null;
+        for (int i = position; i < size; i++) prefix[i] -= amount;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= timestamps.length) return;
+        int newCapacity = Math.max(capacity, timestamps.length * 2);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        ids = Arrays.copyOf(ids, newCapacity);
+        prefix = Arrays.copyOf(prefix, newCapacity);
+    }
+
+    // --- Search ---
+
+    /**
+     * Number of entries with a timestamp at or before the given one.
+     */
+    private int countUpTo(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) low = mid + 1; else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Position of the entry, or -(insertion point) - 1 when it is absent.
+     */
+    private int search(long timestamp, String id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int order = compare(timestamps[mid], ids[mid], timestamp, id);
+            if (order < 0) low = mid + 1;
+            else if (order > 0) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    private static int compare(long timestampA, String idA, long timestampB, String idB) {
+        int order = Long.compare(timestampA, timestampB);
+        return order != 0 ? order : idA.compareTo(idB);
+    }
+
+    private static double signedAmount(TransactionModel transaction) {
+        return "IN".equalsIgnoreCase(transaction.getType()) ? transaction.getAmount() : -transaction.getAmount();
+    }
+}
@@ -0,0 +1,291 @@
+package com.satvik.artham.analytics;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.TransactionStore;
+import com.satvik.artham.utils.TimeBuckets;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * TopKAggregator - Top categories and parties of a cashbook over any date window.
+ * Spend, income and entry count are kept per key per local day, moved by the store's
+ * deltas as they stream in. A query merges only the days inside the window and picks the
+ * leaders with a bounded min-heap, so a top 10 over a year touches a few hundred small
+ * buckets instead of every transaction. Windows are whole days in the device time zone.
+ * <p>
+ * Bound to a {@link TransactionStore}, it follows the store while anyone observes it.
+ * Created without one, it aggregates the transactions handed to {@link #load}, e.g. the
+ * range a screen has loaded. Main thread only.
+ */
+public class TopKAggregator {
+
+    private static final String TAG = "TopKAggregator";
+
+    public enum Dimension { CATEGORY, PARTY }
+
+    public enum Metric { SPEND, INCOME, COUNT }
+
+    public interface Listener {
+        void onAggregatesChanged(TopKAggregator aggregator);
+
+        default void onCancelled(DatabaseError error) {
+        }
+    }
+
+    /**
+     * Totals of one category or party.
+     */
+    public static class Entry {
+        private final String key;
+        private double spend;
+        private double income;
+        private int count;
+
+        Entry(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public double getSpend() {
+            return spend;
+        }
+
+        public double getIncome() {
+            return income;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double get(Metric metric) {
+            switch (metric) {
+                case SPEND: return spend;
+                case INCOME: return income;
+                default: return count;
+            }
+        }
+    }
+
+    /**
+     * Leaders of one query, best first, plus how many keys had a non-zero value at all.
+     */
+    public static class Result {
+        private final List<Entry> entries;
+        private final int distinctKeys;
+
+        Result(List<Entry> entries, int distinctKeys) {
+            this.entries = entries;
+            this.distinctKeys = distinctKeys;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public int getDistinctKeys() {
+            return distinctKeys;
+        }
+
+        @Nullable
+        public Entry getFirst() {
+            return entries.isEmpty() ? null : entries.get(0);
+        }
+    }
+
+    @Nullable
+    private final TransactionStore store;
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean ready = false;
+    private long count;
+    private TimeBuckets buckets = TimeBuckets.getDefault();
+
+    // Day key -> per-key totals of that day, one map per dimension
+    private final TreeMap<Integer, Map<String, Entry>> categoryDays = new TreeMap<>();
+    private final TreeMap<Integer, Map<String, Entry>> partyDays = new TreeMap<>();
+
+    // Package-private so tests can play the store
+    final TransactionStore.Listener storeListener = new TransactionStore.Listener() {
+        @Override
+        public void onTransactionsReloaded(List<TransactionModel> snapshot) {
+            rebuild(snapshot);
+            onTransactionsChanged(snapshot);
+        }
+
+        @Override
+        public void onTransactionsChanged(List<TransactionModel> snapshot) {
+            for (Listener listener : new ArrayList<>(listeners)) listener.onAggregatesChanged(TopKAggregator.this);
+        }
+
+        @Override
+        public void onTransactionDelta(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+            if (!ready) return;
+            apply(before, -1);
+            apply(after, 1);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            for (Listener listener : new ArrayList<>(listeners)) listener.onCancelled(error);
+        }
+    };
+
+    /**
+     * An aggregator over the transactions handed to {@link #load}.
+     */
+    public TopKAggregator() {
+        this(null);
+    }
+
+    public TopKAggregator(@Nullable TransactionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Starts following the store on the first observer. Observers joining later are
+     * called back right away when the totals are already there.
+     */
+    public void observe(Listener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (listeners.size() == 1 && store != null) {
+            store.observe(storeListener);
+        } else if (ready) {
+            listener.onAggregatesChanged(this);
+        }
+    }
+
+    public void removeObserver(Listener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) detach();
+    }
+
+    /**
+     * Stops following the store. Deltas missed while detached are not replayed, so the
+     * next snapshot aggregates again.
+     */
+    public void detach() {
+        if (store == null) return;
+        store.removeObserver(storeListener);
+        ready = false;
+    }
+
+    /**
+     * Aggregates the given transactions from scratch and tells the observers.
+     */
+    public void load(List<TransactionModel> transactions) {
+        storeListener.onTransactionsReloaded(transactions);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * The k largest keys by the metric among transactions in [from, to], best first.
+     * Keys whose value is zero are left out.
+     */
+    public Result top(Dimension dimension, Metric metric, long from, long to, int k) {
+        if (k <= 0 || to < from) return new Result(Collections.emptyList(), 0);
+        NavigableMap<Integer, Map<String, Entry>> days = (dimension == Dimension.CATEGORY ? categoryDays : partyDays)
+                .subMap(buckets.dayKey(from), true, buckets.dayKey(to), true);
+
+        Map<String, Entry> merged = new HashMap<>();
+        for (Map<String, Entry> day : days.values()) {
+            for (Entry entry : day.values()) {
+                Entry total = merged.get(entry.key);
+                if (total == null) {
+                    total = new Entry(entry.key);
+                    merged.put(entry.key, total);
+                }
+                total.spend += entry.spend;
+                total.income += entry.income;
+                total.count += entry.count;
+            }
+        }
+
+        PriorityQueue<Entry> heap = new PriorityQueue<>(k + 1,
+                (a, b) -> Double.compare(a.get(metric), b.get(metric)));
+        int distinct = 0;
+        for (Entry entry : merged.values()) {
+            double value = entry.get(metric);
+            if (value <= 0) continue;
+            distinct++;
+            if (heap.size() < k) {
+                heap.add(entry);
+            } else if (value > heap.peek().get(metric)) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+
+        List<Entry> leaders = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) leaders.add(heap.poll());
+        Collections.reverse(leaders);
+        return new Result(leaders, distinct);
+    }
+
+    private void rebuild(List<TransactionModel> snapshot) {
+        categoryDays.clear();
+        partyDays.clear();
+        count = 0;
+        buckets = TimeBuckets.getDefault();
+        for (TransactionModel transaction : snapshot) apply(transaction, 1);
+        ready = true;
+        Log.d(TAG, "Aggregated " + count + " transactions over " + categoryDays.size() + " days");
+    }
+
+    private void apply(@Nullable TransactionModel transaction, int sign) {
+        if (transaction == null) return;
+        int day = buckets.dayKey(transaction.getTimestamp());
+
+        String category = transaction.getTransactionCategory();
+        if (category == null || category.isEmpty()) category = CategoryMonthCube.UNCATEGORIZED;
+        add(categoryDays, day, category, transaction, sign);
+
+        String party = transaction.getPartyName();
+        if (party != null && !party.trim().isEmpty()) {
+            add(partyDays, day, party.trim(), transaction, sign);
+        }
+        count += sign;
+    }
+
+    private static void add(TreeMap<Integer, Map<String, Entry>> days, int day, String key,
+                            TransactionModel transaction, int sign) {
+        Map<String, Entry> entries = days.get(day);
+        if (entries == null) {
+            entries = new HashMap<>();
+            days.put(day, entries);
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            entries.put(key, entry);
+        }
+
+        if ("IN".equalsIgnoreCase(transaction.getType())) entry.income += sign * transaction.getAmount();
+        else entry.spend += sign * transaction.getAmount();
+        entry.count += sign;
+
+        // Drop emptied buckets so deleted data does not linger in every later query
+        if (entry.count <= 0) {
+            entries.remove(key);
+            if (entries.isEmpty()) days.remove(day);
+        }
+    }
+}
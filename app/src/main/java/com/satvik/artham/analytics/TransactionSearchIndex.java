@@ -0,0 +1,434 @@
+package com.satvik.artham.analytics;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.TransactionStore;
+import com.google.firebase.database.DatabaseError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * TransactionSearchIndex - Inverted index over the words of a cashbook's categories,
+ * parties and remarks, plus one bitmap per entry type, payment mode and category. Every
+ * indexed transaction gets an ordinal, and every lowercased word maps to the ascending
+ * list of ordinals that contain it. Words are kept in a sorted dictionary, so all words
+ * starting with a typed prefix are one contiguous range; a query ORs the lists of each
+ * range into a bitset and ANDs the bitsets of its words together. Facet filters are then
+ * ANDed in 64 rows per word operation (selected categories ORed first), and only the
+ * surviving ordinals are turned back into transactions.
+ * <p>
+ * Built from the first snapshot of the cashbook's {@link TransactionStore} and kept up to
+ * date from its deltas. Ordinals only ever grow, so lists stay sorted by appending; a
+ * removed transaction just clears its live bit, and the index is rebuilt once dead
+ * ordinals outnumber live ones. Maintenance runs on the main thread. Queries run against
+ * a {@link Snapshot}, taken on the main thread and searched on any thread; it is reused
+ * until the index changes, so typing into the search box copies nothing.
+ */
+public class TransactionSearchIndex {
+
+    private static final String TAG = "TransactionSearchIndex";
+    private static final int INITIAL_CAPACITY = 256;
+    // Dead ordinals tolerated before compacting, however small the book
+    private static final int MIN_COMPACT_SLACK = 1024;
+    // Filter value meaning "no restriction", as sent by FiltersActivity
+    private static final String ALL = "All";
+
+    /**
+     * Ascending ordinals of the transactions containing one word.
+     */
+    private static final class Postings {
+        int[] ordinals = new int[4];
+        int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) return; // Word repeated in one entry
+            if (size == ordinals.length) ordinals = Arrays.copyOf(ordinals, size * 2);
+            ordinals[size++] = ordinal;
+        }
+
+        /**
+         * The ordinals added so far. Later adds write past this size or into a new array,
+         * so the copy can share the current one.
+         */
+        Postings freeze() {
+            Postings frozen = new Postings();
+            frozen.ordinals = ordinals;
+            frozen.size = size;
+            return frozen;
+        }
+    }
+
+    /**
+     * The index as of one moment, safe to search from any thread while the index moves on.
+     * Postings share their arrays with the index (see {@link Postings#freeze}); the live
+     * bits and facet bitmaps, which change in place, are copied.
+     */
+    public static final class Snapshot {
+        private final TreeMap<String, Postings> dictionary;
+        private final TransactionModel[] transactions;
+        private final long[] timestamps;
+        private final long[] live;
+        private final Map<String, long[]> byType;
+        private final Map<String, long[]> byPaymentMode;
+        private final Map<String, long[]> byCategory;
+
+        private Snapshot(TransactionSearchIndex index) {
+            dictionary = new TreeMap<>(index.dictionary);
+            dictionary.replaceAll((word, postings) -> postings.freeze());
+            transactions = index.transactions;
+            timestamps = index.timestamps;
+            live = index.live.clone();
+            byType = copyOf(index.byType);
+            byPaymentMode = copyOf(index.byPaymentMode);
+            byCategory = copyOf(index.byCategory);
+        }
+
+        /**
+         * Transactions matching the query and every given facet. A null or "All" entry
+         * type and null or empty lists leave that facet open; several categories or
+         * payment modes match any of them.
+         */
+        public Match search(@Nullable String query, @Nullable String entryType,
+                            @Nullable Collection<String> categories, @Nullable Collection<String> paymentModes) {
+            long[] result = live.clone();
+            long[] scratch = new long[live.length];
+
+            for (String word : tokenize(query)) {
+                Arrays.fill(scratch, 0);
+                for (Postings postings : prefixRange(word).values()) {
+                    for (int j = 0; j < postings.size; j++) {
+                        int ordinal = postings.ordinals[j];
+                        scratch[ordinal >>> 6] |= 1L << ordinal;
+                    }
+                }
+                and(result, scratch);
+            }
+
+            if (entryType != null && !ALL.equalsIgnoreCase(entryType)) {
+                and(result, byType.get(typeKey(entryType)));
+            }
+            if (categories != null && !categories.isEmpty()) {
+                and(result, union(byCategory, categories, scratch));
+            }
+            if (paymentModes != null && !paymentModes.isEmpty() && !paymentModes.contains(ALL)) {
+                and(result, union(byPaymentMode, paymentModes, scratch));
+            }
+            return new Match(result, transactions, timestamps);
+        }
+
+        private SortedMap<String, Postings> prefixRange(String prefix) {
+            // Every word with the prefix sorts before the prefix followed by the highest char
+            return dictionary.subMap(prefix, prefix + Character.MAX_VALUE);
+        }
+
+        private static Map<String, long[]> copyOf(Map<String, long[]> facet) {
+            Map<String, long[]> copy = new HashMap<>();
+            for (Map.Entry<String, long[]> entry : facet.entrySet()) copy.put(entry.getKey(), entry.getValue().clone());
+            return copy;
+        }
+    }
+
+    /**
+     * Result of one query. It keeps the transaction arrays of the moment it was made;
+     * the slots it matched are never rewritten, so it stays valid (as of the query) while
+     * the index moves on.
+     */
+    public static final class Match {
+        private final long[] bits;
+        private final TransactionModel[] transactions;
+        private final long[] timestamps;
+
+        Match(long[] bits, TransactionModel[] transactions, long[] timestamps) {
+            this.bits = bits;
+            this.transactions = transactions;
+            this.timestamps = timestamps;
+        }
+
+        /**
+         * Matching transactions with a timestamp in [from, to], newest first.
+         */
+        public List<TransactionModel> materialize(long from, long to) {
+            List<TransactionModel> result = new ArrayList<>();
+            for (int w = 0; w < bits.length; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    int ordinal = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    long timestamp = timestamps[ordinal];
+                    if (timestamp >= from && timestamp <= to) result.add(transactions[ordinal]);
+                }
+            }
+            // Same order as the store: newest first, ties by id
+            result.sort((a, b) -> {
+                int byTime = Long.compare(b.getTimestamp(), a.getTimestamp());
+                return byTime != 0 ? byTime : a.getTransactionId().compareTo(b.getTransactionId());
+            });
+            return result;
+        }
+    }
+
+    private final TransactionStore store;
+    private boolean ready = false;
+
+    private final TreeMap<String, Postings> dictionary = new TreeMap<>();
+    private final Map<String, Integer> ordinalById = new HashMap<>();
+    private int nextOrdinal;
+    private TransactionModel[] transactions = new TransactionModel[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] live = new long[INITIAL_CAPACITY / 64];
+    private int liveCount;
+    // Taken by the last query; null once the index has changed since
+    private Snapshot snapshot;
+
+    // Facet bitmaps, grown on demand; bits past a bitmap's end are clear
+    private final Map<String, long[]> byType = new HashMap<>();
+    private final Map<String, long[]> byPaymentMode = new HashMap<>();
+    private final Map<String, long[]> byCategory = new HashMap<>();
+
+    // Package-private so tests can play the store
+    final TransactionStore.Listener storeListener = new TransactionStore.Listener() {
+        @Override
+        public void onTransactionsReloaded(List<TransactionModel> snapshot) {
+            rebuild(snapshot);
+        }
+
+        @Override
+        public void onTransactionsChanged(List<TransactionModel> snapshot) {
+            // Deltas keep the index current; rebuild only to reclaim the ordinals of
+            // removed entries once they outnumber the live ones
+            if (nextOrdinal - liveCount > Math.max(MIN_COMPACT_SLACK, liveCount)) {
+                rebuild(snapshot);
+            }
+        }
+
+        @Override
+        public void onTransactionDelta(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+            if (!ready) return;
+            if (before != null) remove(before);
+            if (after != null) add(after);
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            Log.w(TAG, "Store cancelled: " + error.getMessage());
+        }
+    };
+
+    public TransactionSearchIndex(TransactionStore store) {
+        this.store = store;
+    }
+
+    public void start() {
+        store.observe(storeListener);
+    }
+
+    public void stop() {
+        store.removeObserver(storeListener);
+        ready = false;
+        snapshot = null;
+    }
+
+    /**
+     * False until the store has delivered its first snapshot.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * The index as it is now, for searching off the main thread. Main thread only.
+     */
+    public Snapshot snapshot() {
+        if (snapshot == null) snapshot = new Snapshot(this);
+        return snapshot;
+    }
+
+    /**
+     * Transactions whose category, party or remark has a word starting with each word of
+     * the query, in any order ("rent jan" finds "January rent"). An empty query matches
+     * everything.
+     */
+    public Match search(String query) {
+        return search(query, null, null, null);
+    }
+
+    /**
+     * {@link Snapshot#search} on the index as it is now. Main thread only.
+     */
+    public Match search(@Nullable String query, @Nullable String entryType,
+                        @Nullable Collection<String> categories, @Nullable Collection<String> paymentModes) {
+        return snapshot().search(query, entryType, categories, paymentModes);
+    }
+
+    /**
+     * The facet bitmaps of the given values ORed into the scratch bitset.
+     */
+    private static long[] union(Map<String, long[]> facet, Collection<String> values, long[] scratch) {
+        Arrays.fill(scratch, 0);
+        for (String value : values) {
+            long[] bitmap = facet.get(value);
+            if (bitmap == null) continue;
+            for (int w = 0; w < bitmap.length; w++) scratch[w] |= bitmap[w];
+        }
+        return scratch;
+    }
+
+    private static void and(long[] result, @Nullable long[] bitmap) {
+        int shared = bitmap != null ? Math.min(result.length, bitmap.length) : 0;
+        for (int w = 0; w < shared; w++) result[w] &= bitmap[w];
+        Arrays.fill(result, shared, result.length, 0);
+    }
+
+    // --- Maintenance ---
+
+    private void rebuild(List<TransactionModel> snapshot) {
+        dictionary.clear();
+        ordinalById.clear();
+        byType.clear();
+        byPaymentMode.clear();
+        byCategory.clear();
+        nextOrdinal = 0;
+        liveCount = 0;
+        this.snapshot = null;
+        // Fresh arrays: matches handed out earlier keep reading the old ones
+        int capacity = Math.max(snapshot.size(), INITIAL_CAPACITY);
+        transactions = new TransactionModel[capacity];
+        timestamps = new long[capacity];
+        live = new long[(capacity + 63) >>> 6];
+        for (TransactionModel transaction : snapshot) {
+            if (transaction != null) add(transaction);
+        }
+        ready = true;
+        Log.d(TAG, "Indexed " + liveCount + " transactions under " + dictionary.size() + " words");
+    }
+
+    private void add(TransactionModel transaction) {
+        String id = transaction.getTransactionId();
+        if (id == null) return;
+        Integer previous = ordinalById.get(id);
+        if (previous != null) kill(previous); // Replayed delta; the newer copy wins
+
+        int ordinal = nextOrdinal++;
+        ensureCapacity(nextOrdinal);
+        snapshot = null;
+        ordinalById.put(id, ordinal);
+        transactions[ordinal] = transaction;
+        timestamps[ordinal] = transaction.getTimestamp();
+        live[ordinal >>> 6] |= 1L << ordinal;
+        liveCount++;
+
+        addWords(transaction.getTransactionCategory(), ordinal);
+        addWords(transaction.getPartyName(), ordinal);
+        addWords(transaction.getRemark(), ordinal);
+        if (transaction.getType() != null) setBit(byType, typeKey(transaction.getType()), ordinal);
+        if (transaction.getPaymentMode() != null) setBit(byPaymentMode, transaction.getPaymentMode(), ordinal);
+        if (transaction.getTransactionCategory() != null) {
+            setBit(byCategory, transaction.getTransactionCategory(), ordinal);
+        }
+    }
+
+    private void remove(TransactionModel transaction) {
+        if (transaction.getTransactionId() == null) return;
+        Integer ordinal = ordinalById.remove(transaction.getTransactionId());
+        if (ordinal != null) kill(ordinal);
+    }
+
+    private void kill(int ordinal) {
+        // Postings and facets keep the ordinal; searches mask it out with the live bits
+        if ((live[ordinal >>> 6] & (1L << ordinal)) == 0) return;
+        snapshot = null;
+        live[ordinal >>> 6] &= ~(1L << ordinal);
+        liveCount--;
+    }
+
+    private void addWords(@Nullable String text, int ordinal) {
+        for (String word : tokenize(text)) {
+            Postings postings = dictionary.get(word);
+            if (postings == null) {
+                postings = new Postings();
+                dictionary.put(word, postings);
+            }
+            postings.add(ordinal);
+        }
+    }
+
+    private void setBit(Map<String, long[]> facet, String value, int ordinal) {
+        long[] bitmap = facet.get(value);
+        int word = ordinal >>> 6;
+        if (bitmap == null || bitmap.length <= word) {
+            bitmap = bitmap == null ? new long[live.length] : Arrays.copyOf(bitmap, live.length);
+            facet.put(value, bitmap);
+        }
+        bitmap[word] |= 1L << ordinal;
+    }
+
+    private void ensureCapacity(int ordinals) {
+        if (ordinals <= transactions.length) return;
+        int capacity = Math.max(ordinals, transactions.length * 2);
+        transactions = Arrays.copyOf(transactions, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        live = Arrays.copyOf(live, (capacity + 63) >>> 6);
+    }
+
+    private static String typeKey(String type) {
+        // Entry types are compared ignoring case
+        return type.toUpperCase(Locale.ROOT);
+    }
+
+    // --- Text ---
+
+    /**
+     * Lowercased runs of letters and digits; everything else separates words.
+     */
+    static String[] tokenize(@Nullable String text) {
+        if (text == null || text.isEmpty()) return new String[0];
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) words.add(word.toString());
+        return words.toArray(new String[0]);
+    }
+
+    /**
+     * The same word test as {@link #search}, on the transaction's own text, for lists
+     * searched before the index is ready.
+     */
+    public static boolean matches(TransactionModel transaction, String query) {
+        String[] queryWords = tokenize(query);
+        if (queryWords.length == 0) return true;
+        List<String> words = new ArrayList<>();
+        words.addAll(Arrays.asList(tokenize(transaction.getTransactionCategory())));
+        words.addAll(Arrays.asList(tokenize(transaction.getPartyName())));
+        words.addAll(Arrays.asList(tokenize(transaction.getRemark())));
+        for (String queryWord : queryWords) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+}
@@ -1,23 +1,44 @@
 package com.satvik.artham.db;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.satvik.artham.CashbookModel;
 import com.satvik.artham.TransactionModel;
+import com.satvik.artham.analytics.BudgetMonitor;
+import com.satvik.artham.analytics.CategoryMonthCube;
+import com.satvik.artham.analytics.FacetCounter;
+import com.satvik.artham.analytics.ForecastEngine;
+import com.satvik.artham.analytics.RecurringDetector;
+import com.satvik.artham.db.local.LocalMirror;
+import com.satvik.artham.models.CashbookSummary;
+import com.satvik.artham.models.MonthlyRollup;
+import com.satvik.artham.utils.FirebaseKeyUtils;
+import com.satvik.artham.utils.TimeBuckets;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * DataRepository - Centralized data access layer for CashFlow app
@@ -27,10 +48,52 @@ import java.util.List;
 public class DataRepository {
 
     private static final String TAG = "DataRepository";
+    // Per-cashbook totals live beside the cashbooks, so listing them never loads transactions
+    public static final String SUMMARIES_NODE = "cashbookSummaries";
+    // Cashbook metadata index, kept apart from the transaction payloads under "cashbooks"
+    public static final String CASHBOOK_META_NODE = "cashbookMeta";
+    // Deleted transaction IDs with their deletion time, so delta syncs can see removals
+    public static final String TOMBSTONES_NODE = "tombstones";
+    // Tombstones older than this are compacted; a mirror this far behind resyncs in full
+    public static final long TOMBSTONE_TTL_MS = TimeUnit.DAYS.toMillis(30);
+    private static final long COMPACTION_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+    private static final String COMPACTION_PREF_PREFIX = "tombstones_compacted_";
+    // Per-month totals of each cashbook, and which cashbooks have had them backfilled
+    public static final String ROLLUPS_NODE = "rollups";
+    private static final String ROLLUPS_BUILT_NODE = "rollupsBuilt";
+    // Monthly limits per category, beside the categories under each cashbook
+    public static final String BUDGETS_NODE = "budgets";
+    private static final String SCHEMA_VERSION_NODE = "schemaVersion";
+    private static final String SCHEMA_PREF_PREFIX = "data_schema_version_";
+    private static final int SCHEMA_VERSION = 2;
+    // Cashbooks written without increments whose totals still have to be rebuilt
+    private static final String BACKFILL_DUE_PREF_PREFIX = "backfill_due_";
     private static volatile DataRepository INSTANCE;
 
     private final DatabaseReference rootRef; // [FIX] Changed to root reference
     private final FirebaseAuth mAuth;
+    private final SharedPreferences prefs;
+    private final LocalMirror localMirror;
+    private final WriteQueue writeQueue;
+    private final Map<String, TransactionStore> transactionStores = new HashMap<>();
+    private final Map<String, CategoryMonthCube> categoryCubes = new HashMap<>();
+    private final Map<String, ForecastEngine> forecastEngines = new HashMap<>();
+    private final Map<String, BudgetMonitor> budgetMonitors = new HashMap<>();
+    private final Map<String, RecurringDetector> recurringDetectors = new HashMap<>();
+    private final Map<String, FacetCounter> facetCounters = new HashMap<>();
+    private String transactionStoresOwner;
+    // Cashbooks whose summary, and whose rollups, are known to be computed from their
+    // transactions; only cashbooks in both get increments, so increments never create
+    // partial totals
+    private final Set<String> backfilledSummaries = new HashSet<>();
+    private final Set<String> builtRollups = new HashSet<>();
+    // Cashbooks whose backfill flags have been read this session
+    private final Set<String> checkedBackfills = new HashSet<>();
+    private final Map<String, ValueEventListener> rollupsBuiltListeners = new HashMap<>();
+    // Backfills in flight, each with whether it has to run once more when it lands
+    private final Map<String, Boolean> runningBackfills = new HashMap<>();
+    private final List<Runnable> pendingMetaReady = new ArrayList<>();
+    private boolean metaMigrationRunning = false;
 
     public interface DataCallback<T> {
         void onCallback(T data);
@@ -40,10 +103,43 @@ public class DataRepository {
         void onError(String error);
     }
 
+    public interface RollupChangeCallback {
+        /**
+         * One month's rollup was added or changed, or removed when rollup is null.
+         */
+        void onRollupChanged(String month, @Nullable MonthlyRollup rollup);
+
+        /**
+         * Every month that existed on attach has been reported.
+         */
+        default void onRollupsLoaded() {
+        }
+    }
+
     private DataRepository(Application application) {
         mAuth = FirebaseAuth.getInstance();
+        prefs = application.getSharedPreferences("AppPrefs", Context.MODE_PRIVATE);
+        localMirror = new LocalMirror(application);
         // [FIX] Get the root reference, user-specific paths will be determined in each method
         rootRef = FirebaseDatabase.getInstance().getReference();
+        writeQueue = new WriteQueue(application, new WriteQueue.Flusher() {
+            @Override
+            public String currentUserId() {
+                return getCurrentUserId();
+            }
+
+            @Override
+            public void flush(List<WriteQueue.PendingWrite> batch, DataCallback<Boolean> done) {
+                flushWrites(batch, done);
+            }
+        });
+        // Writes queued before a sign-out go out once that account is back
+        mAuth.addAuthStateListener(auth -> {
+            if (auth.getCurrentUser() != null) {
+                writeQueue.flushNow();
+                resumeBackfills();
+            }
+        });
     }
 
     public static DataRepository getInstance(Application application) {
@@ -69,6 +165,23 @@ public class DataRepository {
         return null;
     }
 
+    /**
+     * The on-device mirror, bound to the signed-in user.
+     */
+    private LocalMirror mirror() {
+        localMirror.ensureOwner(getCurrentUserId());
+        return localMirror;
+    }
+
+    /**
+     * Drops the on-device mirror and the in-memory transaction stores, e.g. on sign-out
+     * or account deletion.
+     */
+    public void clearLocalMirror() {
+        releaseTransactionStores();
+        localMirror.clear();
+    }
+
     // --- ENHANCED TRANSACTION METHODS ---
 
     public void getAllTransactions(String cashbookId, DataCallback<List<TransactionModel>> callback, ErrorCallback errorCallback) {
@@ -111,6 +224,267 @@ public class DataRepository {
                 });
     }
 
+    /**
+     * Loads only the transactions whose timestamp falls in [from, to], newest first.
+     * The range is evaluated by the server on the timestamp index declared in
+     * database.rules.json, so a month view downloads one month of data.
+     */
+    public void getTransactionsInRange(String cashbookId, long from, long to,
+                                       DataCallback<List<TransactionModel>> callback, ErrorCallback errorCallback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) {
+            if (errorCallback != null) errorCallback.onError("User not authenticated or cashbook missing.");
+            callback.onCallback(new ArrayList<>());
+            return;
+        }
+
+        userDatabase.child("cashbooks").child(cashbookId).child("transactions")
+                .orderByChild("timestamp")
+                .startAt(from)
+                .endAt(to)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        try {
+                            List<TransactionModel> transactions = new ArrayList<>();
+                            for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                                TransactionModel transaction = snapshot.getValue(TransactionModel.class);
+                                if (transaction != null) {
+                                    transaction.setTransactionId(snapshot.getKey());
+                                    transactions.add(transaction);
+                                }
+                            }
+                            // Children arrive oldest first; the UI lists newest first
+                            Collections.reverse(transactions);
+                            mirror().replaceTransactionsInRange(cashbookId, from, to, transactions);
+                            callback.onCallback(transactions);
+                        } catch (Exception e) {
+                            Log.e(TAG, "Error processing ranged transactions", e);
+                            if (errorCallback != null) errorCallback.onError("Failed to process transaction data");
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError databaseError) {
+                        Log.e(TAG, "Ranged transaction query cancelled", databaseError.toException());
+                        callback.onCallback(new ArrayList<>());
+                        if (errorCallback != null) errorCallback.onError("Database connection failed");
+                    }
+                });
+    }
+
+    /**
+     * Local-first variant of {@link #getTransactionsInRange}: the mirrored rows are delivered
+     * straight from disk (if there are any), then the server result replaces them.
+     * The callback may therefore run twice.
+     */
+    public void loadTransactionsInRange(String cashbookId, long from, long to,
+                                        DataCallback<List<TransactionModel>> callback, ErrorCallback errorCallback) {
+        if (getUserDatabaseRef() == null || cashbookId == null) {
+            getTransactionsInRange(cashbookId, from, to, callback, errorCallback);
+            return;
+        }
+
+        // A screen already holding this cashbook in memory answers without any download
+        TransactionStore store = transactionStores.get(cashbookId);
+        if (store != null && store.isLoaded()) {
+            callback.onCallback(new ArrayList<>(store.getRange(from, to)));
+            return;
+        }
+
+        final boolean[] remoteArrived = {false};
+        mirror().readTransactionsInRange(cashbookId, from, to, cached -> {
+            if (!remoteArrived[0] && !cached.isEmpty()) callback.onCallback(cached);
+        });
+        getTransactionsInRange(cashbookId, from, to, transactions -> {
+            remoteArrived[0] = true;
+            callback.onCallback(transactions);
+        }, errorCallback);
+    }
+
+    /**
+     * Mirrored transactions of a cashbook in [from, to], newest first, read from disk only.
+     */
+    public void getMirroredTransactionsInRange(String cashbookId, long from, long to,
+                                               DataCallback<List<TransactionModel>> callback) {
+        if (cashbookId == null) {
+            callback.onCallback(new ArrayList<>());
+            return;
+        }
+        mirror().readTransactionsInRange(cashbookId, from, to, callback);
+    }
+
+    /**
+     * The shared in-memory store for a cashbook, created on first use. Every consumer of
+     * the same cashbook gets the same instance, so there is one listener and one copy.
+     * Returns null if not authenticated.
+     */
+    public TransactionStore getTransactionStore(String cashbookId) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) return null;
+
+        String uid = getCurrentUserId();
+        if (!uid.equals(transactionStoresOwner)) {
+            releaseTransactionStores();
+            transactionStoresOwner = uid;
+        }
+
+        TransactionStore store = transactionStores.get(cashbookId);
+        if (store == null) {
+            store = new TransactionStore(cashbookId, userDatabase.child("cashbooks").child(cashbookId),
+                    FirebaseDatabase.getInstance().getReference(".info/serverTimeOffset"), mirror());
+            transactionStores.put(cashbookId, store);
+            maybeCompactTombstones(cashbookId);
+            // Known before the first write, so writes to this cashbook can increment
+            ensureBackfilled(cashbookId);
+        }
+        return store;
+    }
+
+    /**
+     * The shared category-by-month cube for a cashbook, fed by its transaction store.
+     * Returns null if not authenticated.
+     */
+    public CategoryMonthCube getCategoryMonthCube(String cashbookId) {
+        TransactionStore store = getTransactionStore(cashbookId);
+        if (store == null) return null;
+
+        CategoryMonthCube cube = categoryCubes.get(cashbookId);
+        if (cube == null) {
+            cube = new CategoryMonthCube(store);
+            categoryCubes.put(cashbookId, cube);
+        }
+        return cube;
+    }
+
+    /**
+     * The shared spend forecast for a cashbook, fed by its monthly rollups.
+     * Returns null if not authenticated.
+     */
+    public ForecastEngine getForecastEngine(String cashbookId) {
+        if (getTransactionStore(cashbookId) == null) return null; // Also switches owner on a new account
+
+        ForecastEngine engine = forecastEngines.get(cashbookId);
+        if (engine == null) {
+            engine = new ForecastEngine(this, cashbookId);
+            forecastEngines.put(cashbookId, engine);
+        }
+        return engine;
+    }
+
+    /**
+     * The shared recurring-entry detector for a cashbook, fed by its transaction store.
+     * Returns null if not authenticated.
+     */
+    public RecurringDetector getRecurringDetector(String cashbookId) {
+        TransactionStore store = getTransactionStore(cashbookId);
+        if (store == null) return null;
+
+        RecurringDetector detector = recurringDetectors.get(cashbookId);
+        if (detector == null) {
+            detector = new RecurringDetector(store);
+            recurringDetectors.put(cashbookId, detector);
+        }
+        return detector;
+    }
+
+    /**
+     * The shared facet counts (categories, parties, payment modes) for a cashbook, fed by
+     * its transaction store. Returns null if not authenticated.
+     */
+    public FacetCounter getFacetCounter(String cashbookId) {
+        TransactionStore store = getTransactionStore(cashbookId);
+        if (store == null) return null;
+
+        FacetCounter counter = facetCounters.get(cashbookId);
+        if (counter == null) {
+            counter = new FacetCounter(store);
+            facetCounters.put(cashbookId, counter);
+        }
+        return counter;
+    }
+
+    /**
+     * The shared budget monitor for a cashbook. Returns null if not authenticated.
+     */
+    public BudgetMonitor getBudgetMonitor(String cashbookId) {
+        if (getTransactionStore(cashbookId) == null) return null; // Also switches owner on a new account
+
+        BudgetMonitor monitor = budgetMonitors.get(cashbookId);
+        if (monitor == null) {
+            monitor = new BudgetMonitor(this, cashbookId);
+            budgetMonitors.put(cashbookId, monitor);
+        }
+        return monitor;
+    }
+
+    /**
+     * Removes tombstones past {@link #TOMBSTONE_TTL_MS}, at most once a day per cashbook.
+     * Devices whose mirror is older than that resync in full, so nothing relies on them.
+     */
+    private void maybeCompactTombstones(String cashbookId) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null) return;
+
+        String prefKey = COMPACTION_PREF_PREFIX + getCurrentUserId() + "_" + cashbookId;
+        long now = System.currentTimeMillis();
+        if (now - prefs.getLong(prefKey, 0) < COMPACTION_INTERVAL_MS) return;
+        prefs.edit().putLong(prefKey, now).apply();
+
+        userDatabase.child("cashbooks").child(cashbookId).child(TOMBSTONES_NODE)
+                .orderByChild("deletedAt").endAt(now - TOMBSTONE_TTL_MS)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        if (!dataSnapshot.hasChildren()) return;
+                        Map<String, Object> updates = new HashMap<>();
+                        for (DataSnapshot tombstone : dataSnapshot.getChildren()) {
+                            updates.put(tombstonePath(cashbookId, tombstone.getKey()), null);
+                        }
+                        userDatabase.updateChildren(updates)
+                                .addOnSuccessListener(aVoid -> Log.d(TAG, "Compacted " + updates.size() + " tombstones"))
+                                .addOnFailureListener(e -> Log.e(TAG, "Error compacting tombstones", e));
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error reading tombstones", error.toException());
+                    }
+                });
+    }
+
+    private void releaseTransactionStores() {
+        for (CategoryMonthCube cube : categoryCubes.values()) cube.detach();
+        categoryCubes.clear();
+        for (ForecastEngine engine : forecastEngines.values()) engine.detach();
+        forecastEngines.clear();
+        for (BudgetMonitor monitor : budgetMonitors.values()) monitor.detach();
+        budgetMonitors.clear();
+        for (RecurringDetector detector : recurringDetectors.values()) detector.detach();
+        recurringDetectors.clear();
+        for (FacetCounter counter : facetCounters.values()) counter.detach();
+        facetCounters.clear();
+        for (TransactionStore store : transactionStores.values()) store.detach();
+        transactionStores.clear();
+    }
+
+    /**
+     * Creates a cursor pager over the transactions in [from, to], newest first. It reads
+     * from the cashbook's store whenever some screen holds it loaded.
+     * Returns null if not authenticated.
+     */
+    public TransactionPager createTransactionPager(String cashbookId, long from, long to, int pageSize) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) return null;
+        // Looked up, not created: paging alone must not load the whole cashbook
+        return new TransactionPager(userDatabase.child("cashbooks").child(cashbookId).child("transactions"),
+                transactionStores.get(cashbookId), from, to, pageSize);
+    }
+
+    /**
+     * Queues the new transaction; its id is assigned immediately. Writes made within
+     * {@link WriteQueue#FLUSH_WINDOW_MS} of each other reach Firebase as one update.
+     */
     public void addTransaction(String cashbookId, TransactionModel transaction, DataCallback<Boolean> callback) {
         DatabaseReference userDatabase = getUserDatabaseRef();
         if (userDatabase == null || cashbookId == null) {
@@ -121,16 +495,7 @@ public class DataRepository {
         String transactionId = userDatabase.child("cashbooks").child(cashbookId).child("transactions").push().getKey();
         if (transactionId != null) {
             transaction.setTransactionId(transactionId);
-            userDatabase.child("cashbooks").child(cashbookId).child("transactions").child(transactionId)
-                    .setValue(transaction)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "Transaction added successfully to Firebase");
-                        if (callback != null) callback.onCallback(true);
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error adding transaction to Firebase", e);
-                        if (callback != null) callback.onCallback(false);
-                    });
+            writeQueue.enqueue(WriteQueue.Op.ADD, getCurrentUserId(), cashbookId, transaction, transactionId, callback);
         } else {
             if (callback != null) callback.onCallback(false);
         }
@@ -143,17 +508,8 @@ public class DataRepository {
             return;
         }
 
-        userDatabase.child("cashbooks").child(cashbookId).child("transactions")
-                .child(transaction.getTransactionId())
-                .setValue(transaction)
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Transaction updated successfully in Firebase");
-                    if (callback != null) callback.onCallback(true);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error updating transaction in Firebase", e);
-                    if (callback != null) callback.onCallback(false);
-                });
+        writeQueue.enqueue(WriteQueue.Op.UPDATE, getCurrentUserId(), cashbookId, transaction,
+                transaction.getTransactionId(), callback);
     }
 
     public void deleteTransaction(String cashbookId, String transactionId, DataCallback<Boolean> callback) {
@@ -163,101 +519,1110 @@ public class DataRepository {
             return;
         }
 
-        userDatabase.child("cashbooks").child(cashbookId).child("transactions").child(transactionId)
-                .removeValue()
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Transaction deleted successfully from Firebase");
-                    if (callback != null) callback.onCallback(true);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error deleting transaction from Firebase", e);
-                    if (callback != null) callback.onCallback(false);
-                });
+        writeQueue.enqueue(WriteQueue.Op.DELETE, getCurrentUserId(), cashbookId, null, transactionId, callback);
     }
 
-    // --- ENHANCED CASHBOOK METHODS ---
-
-    public void getCashbooks(DataCallback<List<CashbookModel>> callback, ErrorCallback errorCallback) {
+    /**
+     * Writes one batch from the queue as a single multi-path update: every transaction
+     * body plus one summary increment per cashbook. Edits and deletes back the stored
+     * copy's old amount out of the summary; adds restored from disk are looked up too, in
+     * case they landed before the process died. That copy comes from the loaded store or
+     * else the mirror, so a flush never waits on the network. A cashbook with a write
+     * whose copy is in neither gets no increments and is rebuilt once the batch lands.
+     */
+    private void flushWrites(List<WriteQueue.PendingWrite> batch, DataCallback<Boolean> done) {
         DatabaseReference userDatabase = getUserDatabaseRef();
         if (userDatabase == null) {
-            callback.onCallback(new ArrayList<>());
+            done.onCallback(false);
             return;
         }
 
-        userDatabase.child("cashbooks").addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                try {
-                    List<CashbookModel> cashbooks = new ArrayList<>();
-                    for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                        CashbookModel cashbook = snapshot.getValue(CashbookModel.class);
-                        if (cashbook != null) {
-                            cashbook.setCashbookId(snapshot.getKey());
-                            cashbooks.add(cashbook);
-                        }
-                    }
-                    callback.onCallback(cashbooks);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error processing cashbooks", e);
-                    if (errorCallback != null) errorCallback.onError("Failed to process cashbook data");
-                }
+        Map<String, TransactionModel> previous = new HashMap<>();
+        Set<String> unresolved = new HashSet<>();
+        for (WriteQueue.PendingWrite write : batch) {
+            if (write.op == WriteQueue.Op.ADD && !write.restored) continue;
+            TransactionStore store = transactionStores.get(write.cashbookId);
+            if (store != null && store.isLoaded()) {
+                // A loaded store holds the whole cashbook, so a miss means there is no copy
+                TransactionModel stored = store.getTransaction(write.transactionId);
+                if (stored != null) previous.put(write.transactionId, stored);
+            } else {
+                unresolved.add(write.transactionId);
             }
+        }
+        if (unresolved.isEmpty()) {
+            commitWrites(userDatabase, batch, previous, Collections.emptySet(), done);
+            return;
+        }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Cashbooks query cancelled", error.toException());
-                callback.onCallback(new ArrayList<>());
-                if (errorCallback != null) errorCallback.onError("Database connection failed");
+        mirror().readTransactions(unresolved, mirrored -> {
+            Set<String> rebuild = new HashSet<>();
+            for (WriteQueue.PendingWrite write : batch) {
+                if (!unresolved.contains(write.transactionId)) continue;
+                TransactionModel stored = mirrored.get(write.transactionId);
+                if (stored != null) {
+                    previous.put(write.transactionId, stored);
+                } else {
+                    rebuild.add(write.cashbookId);
+                }
             }
+            commitWrites(userDatabase, batch, previous, rebuild, done);
         });
     }
 
-    public void createNewCashbook(String name, DataCallback<String> callback, ErrorCallback errorCallback) {
-        DatabaseReference userDatabase = getUserDatabaseRef();
-        if (userDatabase == null) {
-            if (errorCallback != null) errorCallback.onError("User not authenticated");
-            callback.onCallback(null);
-            return;
+    /**
+     * Cashbooks in {@code rebuild}, and those whose totals may not take increments yet,
+     * get their bodies written without increments. Their summary and rollups are
+     * recomputed from the transactions once the batch lands.
+     */
+    private void commitWrites(DatabaseReference userDatabase, List<WriteQueue.PendingWrite> batch,
+                              Map<String, TransactionModel> previous, Set<String> rebuild,
+                              DataCallback<Boolean> done) {
+        Set<String> backfill = new HashSet<>(rebuild);
+        for (WriteQueue.PendingWrite write : batch) {
+            if (!canIncrement(write.cashbookId)) backfill.add(write.cashbookId);
         }
+        // Recorded before the write goes out, so a process death in between is not forgotten
+        for (String cashbookId : backfill) markBackfillDue(cashbookId);
 
-        if (name == null || name.trim().isEmpty()) {
-            if (errorCallback != null) errorCallback.onError("Cashbook name cannot be empty");
-            callback.onCallback(null);
-            return;
+        Map<String, Object> updates = new HashMap<>();
+        Map<String, SummaryDelta> deltas = new HashMap<>();
+        Map<String, RollupDelta> rollupDeltas = new HashMap<>();
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        for (WriteQueue.PendingWrite write : batch) {
+            TransactionModel before = previous.get(write.transactionId);
+            TransactionModel after = write.op == WriteQueue.Op.DELETE ? null : write.transaction;
+            if (after != null) {
+                updates.put(transactionPath(write.cashbookId, write.transactionId), toStoredTransaction(after));
+            } else {
+                // Soft delete: the row goes, a tombstone stays behind for other devices' delta syncs
+                updates.put(transactionPath(write.cashbookId, write.transactionId), null);
+                updates.put(tombstonePath(write.cashbookId, write.transactionId) + "/deletedAt", ServerValue.TIMESTAMP);
+            }
+            if (backfill.contains(write.cashbookId)) continue;
+
+            SummaryDelta delta = deltas.get(write.cashbookId);
+            if (delta == null) {
+                delta = new SummaryDelta();
+                deltas.put(write.cashbookId, delta);
+            }
+            delta.remove(before);
+            delta.add(after);
+            applyRollupDelta(rollupDeltas, buckets, write.cashbookId, before, -1);
+            applyRollupDelta(rollupDeltas, buckets, write.cashbookId, after, 1);
+        }
+        for (Map.Entry<String, SummaryDelta> entry : deltas.entrySet()) {
+            putSummaryDelta(updates, entry.getKey(), entry.getValue());
+        }
+        for (RollupDelta rollupDelta : rollupDeltas.values()) {
+            rollupDelta.putInto(updates);
         }
 
-        String cashbookId = userDatabase.child("cashbooks").push().getKey();
-        if (cashbookId != null) {
-            CashbookModel newCashbook = new CashbookModel(cashbookId, name.trim());
-            newCashbook.setUserId(userDatabase.getKey()); // Set the user ID
+        userDatabase.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Wrote " + batch.size() + " transactions to Firebase");
+                    for (WriteQueue.PendingWrite write : batch) {
+                        if (write.op == WriteQueue.Op.DELETE) {
+                            mirror().deleteTransaction(write.transactionId);
+                        } else {
+                            mirror().upsertTransaction(write.cashbookId, write.transaction);
+                        }
+                    }
+                    for (String cashbookId : backfill) {
+                        Log.d(TAG, "Rebuilding totals of cashbook written without increments: " + cashbookId);
+                        backfill(cashbookId);
+                    }
+                    done.onCallback(true);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error writing transactions to Firebase", e);
+                    // Batches sent after this one took their increments against a store that
+                    // still showed it, so totals that took increments are rebuilt
+                    for (String cashbookId : deltas.keySet()) {
+                        markBackfillDue(cashbookId);
+                        backfill(cashbookId);
+                    }
+                    done.onCallback(false);
+                });
+    }
 
-            userDatabase.child("cashbooks").child(cashbookId).setValue(newCashbook)
-                    .addOnSuccessListener(aVoid -> {
-                        Log.d(TAG, "Cashbook created successfully: " + name);
-                        callback.onCallback(cashbookId);
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error creating cashbook: " + name, e);
-                        if (errorCallback != null) errorCallback.onError("Failed to create cashbook");
-                        callback.onCallback(null);
-                    });
-        } else {
-            if (errorCallback != null) errorCallback.onError("Failed to generate cashbook ID");
-            callback.onCallback(null);
+    // --- CASHBOOK SUMMARY METHODS ---
+
+    /**
+     * Net change to one cashbook's summary, accumulated over any number of writes.
+     */
+    private static class SummaryDelta {
+        double in;
+        double out;
+        long count;
+
+        void add(TransactionModel transaction) {
+            apply(transaction, 1);
         }
-    }
 
-    public void deleteCashbook(String cashbookId, DataCallback<Boolean> callback, ErrorCallback errorCallback) {
-        DatabaseReference userDatabase = getUserDatabaseRef();
-        if (userDatabase == null || cashbookId == null) {
-            if (errorCallback != null) errorCallback.onError("Invalid request");
-            if (callback != null) callback.onCallback(false);
-            return;
+        void remove(TransactionModel transaction) {
+            apply(transaction, -1);
         }
 
-        userDatabase.child("cashbooks").child(cashbookId).removeValue()
-                .addOnSuccessListener(aVoid -> {
-                    Log.d(TAG, "Cashbook deleted successfully: " + cashbookId);
+        private void apply(TransactionModel transaction, int sign) {
+            if (transaction == null) return;
+            if (isIncome(transaction)) in += sign * transaction.getAmount();
+            else out += sign * transaction.getAmount();
+            count += sign;
+        }
+    }
+
+    /**
+     * Adds server-side increments for the accumulated delta to a multi-path update.
+     */
+    private void putSummaryDelta(Map<String, Object> updates, String cashbookId, SummaryDelta delta) {
+        String base = summaryPath(cashbookId) + "/";
+        updates.put(base + "totalIn", ServerValue.increment(delta.in));
+        updates.put(base + "totalOut", ServerValue.increment(delta.out));
+        updates.put(base + "balance", ServerValue.increment(delta.in - delta.out));
+        updates.put(base + "count", ServerValue.increment(delta.count));
+        updates.put(base + "lastModified", ServerValue.TIMESTAMP);
+    }
+
+    /**
+     * Increments are only safe on totals that already count every transaction, and that
+     * no rebuild is about to overwrite.
+     */
+    private boolean canIncrement(String cashbookId) {
+        return backfilledSummaries.contains(cashbookId) && builtRollups.contains(cashbookId)
+                && !runningBackfills.containsKey(cashbookId) && !backfillDue().contains(cashbookId);
+    }
+
+    /**
+     * Listens to the summary of a single cashbook. A cashbook without a backfilled summary
+     * is backfilled once; the listener then receives the written value.
+     * Returns the listener so the caller can pass it to {@link #removeSummaryListener}.
+     */
+    public ValueEventListener observeCashbookSummary(String cashbookId, DataCallback<CashbookSummary> callback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) return null;
+
+        // Show the mirrored balance first so a cold start does not wait on the network
+        final boolean[] remoteArrived = {false};
+        mirror().readSummary(cashbookId, cached -> {
+            if (!remoteArrived[0] && cached != null) callback.onCallback(cached);
+        });
+
+        ValueEventListener listener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                CashbookSummary summary = snapshot.getValue(CashbookSummary.class);
+                if (summary == null || !summary.isBackfilled()) {
+                    // Missing, or built by increments alone and so not a total of the cashbook
+                    backfill(cashbookId);
+                    return;
+                }
+                backfilledSummaries.add(cashbookId);
+                remoteArrived[0] = true;
+                mirror().writeSummary(cashbookId, summary);
+                callback.onCallback(summary);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Summary listener cancelled", error.toException());
+            }
+        };
+        userDatabase.child(summaryPath(cashbookId)).addValueEventListener(listener);
+        return listener;
+    }
+
+    /**
+     * Listens to the summaries of all cashbooks at once, keyed by cashbook ID.
+     * This is a handful of numbers per cashbook, independent of transaction volume.
+     * Summaries not yet backfilled are left out, as if missing.
+     */
+    public ValueEventListener observeCashbookSummaries(DataCallback<Map<String, CashbookSummary>> callback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null) return null;
+
+        final boolean[] remoteArrived = {false};
+        mirror().readSummaries(cached -> {
+            if (!remoteArrived[0] && !cached.isEmpty()) callback.onCallback(cached);
+        });
+
+        ValueEventListener listener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                remoteArrived[0] = true;
+                Map<String, CashbookSummary> summaries = new HashMap<>();
+                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                    try {
+                        CashbookSummary summary = snapshot.getValue(CashbookSummary.class);
+                        if (summary != null && summary.isBackfilled()) {
+                            summaries.put(snapshot.getKey(), summary);
+                            backfilledSummaries.add(snapshot.getKey());
+                        }
+                    } catch (Exception e) {
+                        Log.w(TAG, "Skipping unreadable summary: " + snapshot.getKey(), e);
+                    }
+                }
+                mirror().writeSummaries(summaries);
+                callback.onCallback(summaries);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Summaries listener cancelled", error.toException());
+            }
+        };
+        userDatabase.child(SUMMARIES_NODE).addValueEventListener(listener);
+        return listener;
+    }
+
+    public void removeSummaryListener(String cashbookId, ValueEventListener listener) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || listener == null) return;
+        if (cashbookId != null) {
+            userDatabase.child(summaryPath(cashbookId)).removeEventListener(listener);
+        } else {
+            userDatabase.child(SUMMARIES_NODE).removeEventListener(listener);
+        }
+    }
+
+    /**
+     * Copies summary totals onto a cashbook for display. Pass null while the summaries
+     * have not loaded yet. Cashbooks without a summary are backfilled in the background
+     * and shown as empty until it arrives.
+     */
+    public void applySummary(CashbookModel cashbook, Map<String, CashbookSummary> summaries) {
+        if (summaries == null) return;
+        CashbookSummary summary = summaries.get(cashbook.getCashbookId());
+        if (summary == null) {
+            backfill(cashbook.getCashbookId());
+            cashbook.setTotalBalance(0);
+            cashbook.setTransactionCount(0);
+            return;
+        }
+        cashbook.setTotalBalance(summary.getBalance());
+        cashbook.setTransactionCount((int) summary.getCount());
+    }
+
+    private static CashbookSummary summarize(DataSnapshot transactionsSnapshot) {
+        double totalIn = 0, totalOut = 0;
+        long count = 0;
+        for (DataSnapshot snapshot : transactionsSnapshot.getChildren()) {
+            try {
+                TransactionModel transaction = snapshot.getValue(TransactionModel.class);
+                if (transaction == null) continue;
+                if (isIncome(transaction)) totalIn += transaction.getAmount();
+                else totalOut += transaction.getAmount();
+                count++;
+            } catch (Exception e) {
+                Log.w(TAG, "Skipping unreadable transaction: " + snapshot.getKey(), e);
+            }
+        }
+        CashbookSummary summary = new CashbookSummary();
+        summary.setTotalIn(totalIn);
+        summary.setTotalOut(totalOut);
+        summary.setBalance(totalIn - totalOut);
+        summary.setCount(count);
+        summary.setLastModified(System.currentTimeMillis());
+        summary.setBackfilled(true);
+        return summary;
+    }
+
+    /**
+     * Rebuilds a cashbook's summary and rollups, one rebuild per cashbook at a time. Asked
+     * again while one runs, it runs once more after it lands, because the running one may
+     * have read the transactions before the write that asked.
+     */
+    private void backfill(String cashbookId) {
+        if (runningBackfills.containsKey(cashbookId)) {
+            runningBackfills.put(cashbookId, true);
+            return;
+        }
+        runningBackfills.put(cashbookId, false);
+        rebuildTotals(cashbookId, success -> {
+            boolean again = Boolean.TRUE.equals(runningBackfills.remove(cashbookId));
+            if (again) {
+                backfill(cashbookId);
+            } else if (success) {
+                clearBackfillDue(cashbookId);
+            }
+        });
+    }
+
+    /**
+     * Runs the backfills a previous session left due, e.g. after a process death.
+     */
+    private void resumeBackfills() {
+        for (String cashbookId : backfillDue()) backfill(cashbookId);
+    }
+
+    private Set<String> backfillDue() {
+        String uid = getCurrentUserId();
+        if (uid == null) return Collections.emptySet();
+        return new HashSet<>(prefs.getStringSet(BACKFILL_DUE_PREF_PREFIX + uid, Collections.emptySet()));
+    }
+
+    private void markBackfillDue(String cashbookId) {
+        Set<String> due = backfillDue();
+        if (due.add(cashbookId)) saveBackfillDue(due);
+    }
+
+    private void clearBackfillDue(String cashbookId) {
+        Set<String> due = backfillDue();
+        if (due.remove(cashbookId)) saveBackfillDue(due);
+    }
+
+    private void saveBackfillDue(Set<String> due) {
+        String uid = getCurrentUserId();
+        if (uid != null) prefs.edit().putStringSet(BACKFILL_DUE_PREF_PREFIX + uid, due).apply();
+    }
+
+    /**
+     * The summary of a cashbook with no transactions yet, already backfilled.
+     */
+    private static CashbookSummary emptySummary() {
+        CashbookSummary summary = new CashbookSummary();
+        summary.setLastModified(System.currentTimeMillis());
+        summary.setBackfilled(true);
+        return summary;
+    }
+
+    private static boolean isIncome(TransactionModel transaction) {
+        return "IN".equalsIgnoreCase(transaction.getType());
+    }
+
+    private static String transactionPath(String cashbookId, String transactionId) {
+        return "cashbooks/" + cashbookId + "/transactions/" + transactionId;
+    }
+
+    private static String tombstonePath(String cashbookId, String transactionId) {
+        return "cashbooks/" + cashbookId + "/" + TOMBSTONES_NODE + "/" + transactionId;
+    }
+
+    /**
+     * The stored form of a transaction, stamped with the server's write time.
+     */
+    private static Map<String, Object> toStoredTransaction(TransactionModel transaction) {
+        Map<String, Object> stored = new HashMap<>();
+        stored.put("transactionId", transaction.getTransactionId());
+        stored.put("transactionCategory", transaction.getTransactionCategory());
+        stored.put("partyName", transaction.getPartyName());
+        stored.put("amount", transaction.getAmount());
+        stored.put("type", transaction.getType());
+        stored.put("paymentMode", transaction.getPaymentMode());
+        stored.put("remark", transaction.getRemark());
+        stored.put("timestamp", transaction.getTimestamp());
+        stored.put("lastModified", ServerValue.TIMESTAMP);
+        return stored;
+    }
+
+    private static String summaryPath(String cashbookId) {
+        return SUMMARIES_NODE + "/" + cashbookId;
+    }
+
+    // --- MONTHLY ROLLUP METHODS ---
+
+    /**
+     * Net change to one month of one cashbook, accumulated over a batch of writes.
+     */
+    private static class RollupDelta {
+        final String path;
+        double in;
+        double out;
+        long count;
+        final Map<String, double[]> categories = new HashMap<>();
+
+        RollupDelta(String path) {
+            this.path = path;
+        }
+
+        /**
+         * Adds server-side increments for every non-zero field to a multi-path update.
+         */
+        void putInto(Map<String, Object> updates) {
+            if (in != 0) updates.put(path + "/totalIn", ServerValue.increment(in));
+            if (out != 0) updates.put(path + "/totalOut", ServerValue.increment(out));
+            if (count != 0) updates.put(path + "/count", ServerValue.increment(count));
+            for (Map.Entry<String, double[]> entry : categories.entrySet()) {
+                String base = path + "/categories/" + entry.getKey();
+                if (entry.getValue()[0] != 0) updates.put(base + "/in", ServerValue.increment(entry.getValue()[0]));
+                if (entry.getValue()[1] != 0) updates.put(base + "/out", ServerValue.increment(entry.getValue()[1]));
+            }
+        }
+    }
+
+    private static void applyRollupDelta(Map<String, RollupDelta> rollupDeltas, TimeBuckets buckets,
+                                         String cashbookId, TransactionModel transaction, int sign) {
+        if (transaction == null) return;
+        String month = TimeBuckets.formatMonthKey(buckets.monthKey(transaction.getTimestamp()));
+        String path = rollupPath(cashbookId, month);
+        RollupDelta delta = rollupDeltas.get(path);
+        if (delta == null) {
+            delta = new RollupDelta(path);
+            rollupDeltas.put(path, delta);
+        }
+
+        double amount = sign * transaction.getAmount();
+        double[] category = delta.categories.get(rollupCategoryKey(transaction));
+        if (category == null) {
+            category = new double[2];
+            delta.categories.put(rollupCategoryKey(transaction), category);
+        }
+        if (isIncome(transaction)) {
+            delta.in += amount;
+            category[0] += amount;
+        } else {
+            delta.out += amount;
+            category[1] += amount;
+        }
+        delta.count += sign;
+    }
+
+    /**
+     * Observes the monthly rollups of a cashbook, keyed by yyyy-MM. Rollups are kept by
+     * every write; a cashbook from before they existed is backfilled once on first use.
+     */
+    public ValueEventListener observeMonthlyRollups(String cashbookId, DataCallback<Map<String, MonthlyRollup>> callback,
+                                                    ErrorCallback errorCallback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) {
+            callback.onCallback(new HashMap<>());
+            return null;
+        }
+
+        ensureBackfilled(cashbookId);
+        ValueEventListener listener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                Map<String, MonthlyRollup> rollups = new HashMap<>();
+                for (DataSnapshot month : dataSnapshot.getChildren()) {
+                    try {
+                        MonthlyRollup rollup = month.getValue(MonthlyRollup.class);
+                        if (rollup != null) rollups.put(month.getKey(), rollup);
+                    } catch (Exception e) {
+                        Log.w(TAG, "Skipping unreadable rollup: " + month.getKey(), e);
+                    }
+                }
+                callback.onCallback(rollups);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Rollup listener cancelled", error.toException());
+                if (errorCallback != null) errorCallback.onError("Database connection failed");
+            }
+        };
+        userDatabase.child(ROLLUPS_NODE).child(cashbookId).addValueEventListener(listener);
+        return listener;
+    }
+
+    /**
+     * Reads the monthly rollups of a cashbook once. The snapshot is parsed on the given
+     * executor and the callback runs there too; errors are reported on the main thread.
+     */
+    public void loadMonthlyRollups(String cashbookId, Executor executor,
+                                   DataCallback<Map<String, MonthlyRollup>> callback, ErrorCallback errorCallback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) {
+            executor.execute(() -> callback.onCallback(new HashMap<>()));
+            return;
+        }
+
+        ensureBackfilled(cashbookId);
+        userDatabase.child(ROLLUPS_NODE).child(cashbookId).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                executor.execute(() -> {
+                    Map<String, MonthlyRollup> rollups = new HashMap<>();
+                    for (DataSnapshot month : dataSnapshot.getChildren()) {
+                        try {
+                            MonthlyRollup rollup = month.getValue(MonthlyRollup.class);
+                            if (rollup != null) rollups.put(month.getKey(), rollup);
+                        } catch (Exception e) {
+                            Log.w(TAG, "Skipping unreadable rollup: " + month.getKey(), e);
+                        }
+                    }
+                    callback.onCallback(rollups);
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Error loading rollups of cashbook: " + cashbookId, error.toException());
+                if (errorCallback != null) errorCallback.onError("Database connection failed");
+            }
+        });
+    }
+
+    public void removeRollupsListener(String cashbookId, ValueEventListener listener) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null || listener == null) return;
+        userDatabase.child(ROLLUPS_NODE).child(cashbookId).removeEventListener(listener);
+    }
+
+    /**
+     * Observes the monthly rollups of a cashbook one month at a time. Every existing month
+     * is reported once on attach, followed by {@link RollupChangeCallback#onRollupsLoaded},
+     * then only the months that change.
+     */
+    public ChildEventListener observeRollupChanges(String cashbookId, RollupChangeCallback callback,
+                                                   ErrorCallback errorCallback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) return null;
+
+        ensureBackfilled(cashbookId);
+        ChildEventListener listener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                report(snapshot);
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+                report(snapshot);
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                callback.onRollupChanged(snapshot.getKey(), null);
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Rollup change listener cancelled", error.toException());
+                if (errorCallback != null) errorCallback.onError("Database connection failed");
+            }
+
+            private void report(DataSnapshot month) {
+                try {
+                    MonthlyRollup rollup = month.getValue(MonthlyRollup.class);
+                    if (rollup != null) callback.onRollupChanged(month.getKey(), rollup);
+                } catch (Exception e) {
+                    Log.w(TAG, "Skipping unreadable rollup: " + month.getKey(), e);
+                }
+            }
+        };
+        DatabaseReference rollupsRef = userDatabase.child(ROLLUPS_NODE).child(cashbookId);
+        rollupsRef.addChildEventListener(listener);
+        // Value events fire after the child events for the same data, so this one marks
+        // the end of the months present on attach; it is served from the same sync
+        rollupsRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                callback.onRollupsLoaded();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // Reported by the child listener
+            }
+        });
+        return listener;
+    }
+
+    public void removeRollupChangesListener(String cashbookId, ChildEventListener listener) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null || listener == null) return;
+        userDatabase.child(ROLLUPS_NODE).child(cashbookId).removeEventListener(listener);
+    }
+
+    /**
+     * Observes the monthly budgets of a cashbook, keyed by category name.
+     */
+    public ValueEventListener observeBudgets(String cashbookId, DataCallback<Map<String, Double>> callback,
+                                             ErrorCallback errorCallback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) {
+            callback.onCallback(new HashMap<>());
+            return null;
+        }
+
+        ValueEventListener listener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                Map<String, Double> budgets = new HashMap<>();
+                for (DataSnapshot budget : dataSnapshot.getChildren()) {
+                    Double limit = budget.getValue(Double.class);
+                    if (limit != null && limit > 0) budgets.put(FirebaseKeyUtils.decodeKey(budget.getKey()), limit);
+                }
+                callback.onCallback(budgets);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Budget listener cancelled", error.toException());
+                if (errorCallback != null) errorCallback.onError("Database connection failed");
+            }
+        };
+        userDatabase.child("cashbooks").child(cashbookId).child(BUDGETS_NODE).addValueEventListener(listener);
+        return listener;
+    }
+
+    public void removeBudgetsListener(String cashbookId, ValueEventListener listener) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null || listener == null) return;
+        userDatabase.child("cashbooks").child(cashbookId).child(BUDGETS_NODE).removeEventListener(listener);
+    }
+
+    /**
+     * Sets the monthly limit of a category; a limit of zero or less removes the budget.
+     */
+    public void setCategoryBudget(String cashbookId, String category, double limit, DataCallback<Boolean> callback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null || category == null) {
+            if (callback != null) callback.onCallback(false);
+            return;
+        }
+
+        userDatabase.child("cashbooks").child(cashbookId).child(BUDGETS_NODE)
+                .child(FirebaseKeyUtils.encodeKey(category))
+                .setValue(limit > 0 ? limit : null)
+                .addOnSuccessListener(aVoid -> {
+                    if (callback != null) callback.onCallback(true);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error saving budget", e);
+                    if (callback != null) callback.onCallback(false);
+                });
+    }
+
+    /**
+     * Reads whether a cashbook's summary and rollups are backfilled, once per session,
+     * and backfills them if either is not. The rollups flag stays observed afterwards: a
+     * rebuild on any device clears it first, and this device must stop incrementing then.
+     */
+    private void ensureBackfilled(String cashbookId) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || !checkedBackfills.add(cashbookId)) return;
+
+        // Whether the rollups flag and the summary flag have been read yet
+        final boolean[] heard = new boolean[2];
+        ValueEventListener flagListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                boolean set = Boolean.TRUE.equals(snapshot.getValue(Boolean.class));
+                int flag = ROLLUPS_BUILT_NODE.equals(snapshot.getRef().getParent().getKey()) ? 0 : 1;
+                if (flag == 0) {
+                    if (set) builtRollups.add(cashbookId); else builtRollups.remove(cashbookId);
+                } else if (set) {
+                    backfilledSummaries.add(cashbookId);
+                }
+                // Later changes of the flag come from rebuilds, which set it again themselves
+                if (heard[flag]) return;
+                heard[flag] = true;
+                if (!heard[0] || !heard[1]) return;
+                if (!backfilledSummaries.contains(cashbookId) || !builtRollups.contains(cashbookId)) {
+                    backfill(cashbookId);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Error reading backfill state", error.toException());
+                builtRollups.remove(cashbookId);
+                rollupsBuiltListeners.remove(cashbookId);
+                checkedBackfills.remove(cashbookId);
+            }
+        };
+        rollupsBuiltListeners.put(cashbookId, flagListener);
+        userDatabase.child(ROLLUPS_BUILT_NODE).child(cashbookId).addValueEventListener(flagListener);
+        userDatabase.child(summaryPath(cashbookId)).child("backfilled").addListenerForSingleValueEvent(flagListener);
+    }
+
+    /**
+     * Recomputes the summary and every monthly rollup of a cashbook from its transactions,
+     * in one read, and writes them together with both backfilled flags. Needed once for
+     * cashbooks created before summaries or rollups were maintained, for ones written
+     * without increments, and to repair drift. The totals are replaced as a whole, so the
+     * rollups flag is cleared before the transactions are read: every device observes it
+     * and sends no increments for the cashbook until the rebuild sets it again.
+     */
+    public void rebuildTotals(String cashbookId, DataCallback<Boolean> callback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) {
+            if (callback != null) callback.onCallback(false);
+            return;
+        }
+
+        builtRollups.remove(cashbookId);
+        userDatabase.child(ROLLUPS_BUILT_NODE).child(cashbookId).removeValue()
+                .addOnSuccessListener(aVoid -> writeTotals(userDatabase, cashbookId, callback))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error clearing rollups flag of cashbook: " + cashbookId, e);
+                    if (callback != null) callback.onCallback(false);
+                });
+    }
+
+    private void writeTotals(DatabaseReference userDatabase, String cashbookId, DataCallback<Boolean> callback) {
+        userDatabase.child("cashbooks").child(cashbookId).child("transactions")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                        SummaryDelta totals = new SummaryDelta();
+                        Map<String, MonthlyRollup> rollups = new HashMap<>();
+                        TimeBuckets buckets = TimeBuckets.getDefault();
+                        // Rows arrive in push-key (creation) order, so consecutive rows mostly
+                        // share a month; only look the rollup up again when the month changes
+                        int lastMonthKey = 0;
+                        MonthlyRollup rollup = null;
+                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                            try {
+                                TransactionModel transaction = snapshot.getValue(TransactionModel.class);
+                                if (transaction == null) continue;
+                                totals.add(transaction);
+                                int monthKey = buckets.monthKey(transaction.getTimestamp());
+                                if (rollup == null || monthKey != lastMonthKey) {
+                                    String month = TimeBuckets.formatMonthKey(monthKey);
+                                    rollup = rollups.get(month);
+                                    if (rollup == null) {
+                                        rollup = new MonthlyRollup();
+                                        rollups.put(month, rollup);
+                                    }
+                                    lastMonthKey = monthKey;
+                                }
+                                addToRollup(rollup, transaction);
+                            } catch (Exception e) {
+                                Log.w(TAG, "Skipping unreadable transaction: " + snapshot.getKey(), e);
+                            }
+                        }
+
+                        CashbookSummary summary = emptySummary();
+                        summary.setTotalIn(totals.in);
+                        summary.setTotalOut(totals.out);
+                        summary.setBalance(totals.in - totals.out);
+                        summary.setCount(totals.count);
+
+                        Map<String, Object> updates = new HashMap<>();
+                        updates.put(summaryPath(cashbookId), summary);
+                        updates.put(ROLLUPS_NODE + "/" + cashbookId, rollups);
+                        updates.put(ROLLUPS_BUILT_NODE + "/" + cashbookId, true);
+                        userDatabase.updateChildren(updates)
+                                .addOnSuccessListener(aVoid -> {
+                                    Log.d(TAG, "Rebuilt summary and " + rollups.size()
+                                            + " monthly rollups for cashbook: " + cashbookId);
+                                    backfilledSummaries.add(cashbookId);
+                                    builtRollups.add(cashbookId);
+                                    if (callback != null) callback.onCallback(true);
+                                })
+                                .addOnFailureListener(e -> {
+                                    Log.e(TAG, "Error writing totals for cashbook: " + cashbookId, e);
+                                    if (callback != null) callback.onCallback(false);
+                                });
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error reading transactions for totals", error.toException());
+                        if (callback != null) callback.onCallback(false);
+                    }
+                });
+    }
+
+    private static void addToRollup(MonthlyRollup rollup, TransactionModel transaction) {
+        String key = rollupCategoryKey(transaction);
+        MonthlyRollup.CategoryTotals category = rollup.getCategories().get(key);
+        if (category == null) {
+            category = new MonthlyRollup.CategoryTotals();
+            rollup.getCategories().put(key, category);
+        }
+        if (isIncome(transaction)) {
+            rollup.setTotalIn(rollup.getTotalIn() + transaction.getAmount());
+            category.setIn(category.getIn() + transaction.getAmount());
+        } else {
+            rollup.setTotalOut(rollup.getTotalOut() + transaction.getAmount());
+            category.setOut(category.getOut() + transaction.getAmount());
+        }
+        rollup.setCount(rollup.getCount() + 1);
+    }
+
+    private static String rollupCategoryKey(TransactionModel transaction) {
+        String category = transaction.getTransactionCategory();
+        return FirebaseKeyUtils.encodeKey(category != null && !category.isEmpty() ? category : "Others");
+    }
+
+    private static String rollupPath(String cashbookId, String month) {
+        return ROLLUPS_NODE + "/" + cashbookId + "/" + month;
+    }
+
+    // --- ENHANCED CASHBOOK METHODS ---
+
+    /**
+     * Reference to the cashbook metadata index (users/{uid}/cashbookMeta). Every child is a
+     * bare CashbookModel; transactions stay under users/{uid}/cashbooks/{id}/transactions.
+     * Returns null if not authenticated. Callers should go through {@link #ensureCashbookMeta}
+     * before the first read so existing accounts are migrated.
+     */
+    public DatabaseReference getCashbookMetaRef() {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        return userDatabase != null ? userDatabase.child(CASHBOOK_META_NODE) : null;
+    }
+
+    /**
+     * Runs {@code onReady} once the metadata index is populated for the current user.
+     * Accounts created before the index existed are migrated once: their cashbooks are read
+     * in full a single time, and the metadata and summaries are written in one update together
+     * with users/{uid}/schemaVersion. After that, a local flag skips even the version check.
+     */
+    public void ensureCashbookMeta(Runnable onReady) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        String uid = getCurrentUserId();
+        if (userDatabase == null || uid == null) {
+            onReady.run();
+            return;
+        }
+        if (prefs.getInt(SCHEMA_PREF_PREFIX + uid, 0) >= SCHEMA_VERSION) {
+            onReady.run();
+            return;
+        }
+
+        pendingMetaReady.add(onReady);
+        if (metaMigrationRunning) return;
+        metaMigrationRunning = true;
+
+        userDatabase.child(SCHEMA_VERSION_NODE).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                Integer version = snapshot.getValue(Integer.class);
+                if (version != null && version >= SCHEMA_VERSION) {
+                    prefs.edit().putInt(SCHEMA_PREF_PREFIX + uid, version).apply();
+                    finishMetaMigration();
+                } else {
+                    migrateCashbookMeta(userDatabase, uid);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Schema version read cancelled", error.toException());
+                finishMetaMigration();
+            }
+        });
+    }
+
+    private void migrateCashbookMeta(DatabaseReference userDatabase, String uid) {
+        userDatabase.child("cashbooks").addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                Map<String, Object> updates = new HashMap<>();
+                int migrated = 0;
+                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                    try {
+                        CashbookModel cashbook = snapshot.getValue(CashbookModel.class);
+                        if (cashbook == null || cashbook.getName() == null) continue;
+                        cashbook.setCashbookId(snapshot.getKey());
+                        cashbook.setCurrent(false);
+                        updates.put(CASHBOOK_META_NODE + "/" + snapshot.getKey(), cashbook);
+                        // The transactions are already in hand, so seed the summary as well
+                        updates.put(summaryPath(snapshot.getKey()), summarize(snapshot.child("transactions")));
+                        migrated++;
+                    } catch (Exception e) {
+                        Log.e(TAG, "Skipping cashbook during migration: " + snapshot.getKey(), e);
+                    }
+                }
+                updates.put(SCHEMA_VERSION_NODE, SCHEMA_VERSION);
+
+                Log.d(TAG, "Migrating " + migrated + " cashbooks to " + CASHBOOK_META_NODE);
+                userDatabase.updateChildren(updates)
+                        .addOnSuccessListener(aVoid -> {
+                            prefs.edit().putInt(SCHEMA_PREF_PREFIX + uid, SCHEMA_VERSION).apply();
+                            Log.d(TAG, "Cashbook metadata migration complete");
+                        })
+                        .addOnFailureListener(e -> Log.e(TAG, "Cashbook metadata migration failed", e));
+                // Local listeners see the write right away, so readers need not wait for the server
+                finishMetaMigration();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Error reading cashbooks for migration", error.toException());
+                finishMetaMigration();
+            }
+        });
+    }
+
+    private void finishMetaMigration() {
+        metaMigrationRunning = false;
+        List<Runnable> ready = new ArrayList<>(pendingMetaReady);
+        pendingMetaReady.clear();
+        for (Runnable runnable : ready) {
+            runnable.run();
+        }
+    }
+
+    public void getCashbooks(DataCallback<List<CashbookModel>> callback, ErrorCallback errorCallback) {
+        DatabaseReference metaRef = getCashbookMetaRef();
+        if (metaRef == null) {
+            callback.onCallback(new ArrayList<>());
+            return;
+        }
+
+        ensureCashbookMeta(() -> metaRef.addListenerForSingleValueEvent(
+                cashbookListListener(callback, errorCallback, true)));
+    }
+
+    /**
+     * Listens to the cashbook list. Only the metadata index is read, so the cost is
+     * proportional to the number of cashbooks, not the number of transactions.
+     * Returns the listener so it can be passed to {@link #removeCashbooksListener}.
+     */
+    public ValueEventListener observeCashbooks(DataCallback<List<CashbookModel>> callback, ErrorCallback errorCallback) {
+        DatabaseReference metaRef = getCashbookMetaRef();
+        if (metaRef == null) return null;
+
+        // Serve the mirrored list first; an empty mirror is skipped so it never reads as "no cashbooks"
+        final boolean[] remoteArrived = {false};
+        mirror().readCashbooks(cached -> {
+            if (!remoteArrived[0] && !cached.isEmpty()) callback.onCallback(cached);
+        });
+
+        // A cancelled listener reports the error only; an empty list would read as "no cashbooks"
+        ValueEventListener listener = cashbookListListener(cashbooks -> {
+            remoteArrived[0] = true;
+            mirror().replaceCashbooks(cashbooks);
+            callback.onCallback(cashbooks);
+        }, errorCallback, false);
+        ensureCashbookMeta(() -> metaRef.addValueEventListener(listener));
+        return listener;
+    }
+
+    public void removeCashbooksListener(ValueEventListener listener) {
+        DatabaseReference metaRef = getCashbookMetaRef();
+        if (metaRef != null && listener != null) {
+            metaRef.removeEventListener(listener);
+        }
+    }
+
+    private ValueEventListener cashbookListListener(DataCallback<List<CashbookModel>> callback,
+                                                    ErrorCallback errorCallback, boolean emptyOnCancel) {
+        return new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                try {
+                    List<CashbookModel> cashbooks = new ArrayList<>();
+                    for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                        CashbookModel cashbook = snapshot.getValue(CashbookModel.class);
+                        if (cashbook != null) {
+                            cashbook.setCashbookId(snapshot.getKey());
+                            cashbooks.add(cashbook);
+                        }
+                    }
+                    callback.onCallback(cashbooks);
+                } catch (Exception e) {
+                    Log.e(TAG, "Error processing cashbooks", e);
+                    if (errorCallback != null) errorCallback.onError("Failed to process cashbook data");
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Cashbooks query cancelled", error.toException());
+                if (emptyOnCancel) callback.onCallback(new ArrayList<>());
+                if (errorCallback != null) errorCallback.onError("Database connection failed");
+            }
+        };
+    }
+
+    public void updateCashbook(String cashbookId, Map<String, Object> fields, DataCallback<Boolean> callback) {
+        DatabaseReference metaRef = getCashbookMetaRef();
+        if (metaRef == null || cashbookId == null) {
+            if (callback != null) callback.onCallback(false);
+            return;
+        }
+
+        metaRef.child(cashbookId).updateChildren(fields)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Cashbook updated: " + cashbookId);
+                    if (callback != null) callback.onCallback(true);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error updating cashbook: " + cashbookId, e);
+                    if (callback != null) callback.onCallback(false);
+                });
+    }
+
+    public void createNewCashbook(String name, DataCallback<String> callback, ErrorCallback errorCallback) {
+        createNewCashbook(name, null, callback, errorCallback);
+    }
+
+    /**
+     * Creates the cashbook's meta entry together with its empty summary and the
+     * rollupsBuilt flag, so totals are counted from the first write. The callback
+     * receives the new id, or null on failure.
+     */
+    public void createNewCashbook(String name, @Nullable String description, DataCallback<String> callback,
+                                  ErrorCallback errorCallback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null) {
+            if (errorCallback != null) errorCallback.onError("User not authenticated");
+            callback.onCallback(null);
+            return;
+        }
+
+        if (name == null || name.trim().isEmpty()) {
+            if (errorCallback != null) errorCallback.onError("Cashbook name cannot be empty");
+            callback.onCallback(null);
+            return;
+        }
+
+        String cashbookId = userDatabase.child(CASHBOOK_META_NODE).push().getKey();
+        if (cashbookId != null) {
+            CashbookModel newCashbook = new CashbookModel(cashbookId, name.trim());
+            newCashbook.setUserId(userDatabase.getKey()); // Set the user ID
+            if (description != null) newCashbook.setDescription(description);
+
+            // A new cashbook has nothing to backfill
+            Map<String, Object> updates = new HashMap<>();
+            updates.put(CASHBOOK_META_NODE + "/" + cashbookId, newCashbook);
+            updates.put(summaryPath(cashbookId), emptySummary());
+            updates.put(ROLLUPS_BUILT_NODE + "/" + cashbookId, true);
+            backfilledSummaries.add(cashbookId);
+            builtRollups.add(cashbookId);
+            userDatabase.updateChildren(updates)
+                    .addOnSuccessListener(aVoid -> {
+                        Log.d(TAG, "Cashbook created successfully: " + name);
+                        callback.onCallback(cashbookId);
+                    })
+                    .addOnFailureListener(e -> {
+                        Log.e(TAG, "Error creating cashbook: " + name, e);
+                        if (errorCallback != null) errorCallback.onError("Failed to create cashbook");
+                        callback.onCallback(null);
+                    });
+        } else {
+            if (errorCallback != null) errorCallback.onError("Failed to generate cashbook ID");
+            callback.onCallback(null);
+        }
+    }
+
+    public void deleteCashbook(String cashbookId, DataCallback<Boolean> callback, ErrorCallback errorCallback) {
+        DatabaseReference userDatabase = getUserDatabaseRef();
+        if (userDatabase == null || cashbookId == null) {
+            if (errorCallback != null) errorCallback.onError("Invalid request");
+            if (callback != null) callback.onCallback(false);
+            return;
+        }
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(CASHBOOK_META_NODE + "/" + cashbookId, null);
+        updates.put("cashbooks/" + cashbookId, null);
+        updates.put(summaryPath(cashbookId), null);
+        updates.put(ROLLUPS_NODE + "/" + cashbookId, null);
+        updates.put(ROLLUPS_BUILT_NODE + "/" + cashbookId, null);
+
+        userDatabase.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Cashbook deleted successfully: " + cashbookId);
+                    mirror().deleteCashbook(cashbookId);
+                    backfilledSummaries.remove(cashbookId);
+                    builtRollups.remove(cashbookId);
+                    checkedBackfills.remove(cashbookId);
+                    ValueEventListener flagListener = rollupsBuiltListeners.remove(cashbookId);
+                    if (flagListener != null) {
+                        userDatabase.child(ROLLUPS_BUILT_NODE).child(cashbookId).removeEventListener(flagListener);
+                    }
+                    clearBackfillDue(cashbookId);
                     if (callback != null) callback.onCallback(true);
                 })
                 .addOnFailureListener(e -> {
@@ -275,25 +1640,29 @@ public class DataRepository {
             return;
         }
 
-        userDatabase.child("cashbooks").child(originalCashbookId)
+        userDatabase.child(CASHBOOK_META_NODE).child(originalCashbookId)
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                         CashbookModel originalCashbook = dataSnapshot.getValue(CashbookModel.class);
                         if (originalCashbook != null) {
-                            String newCashbookId = userDatabase.child("cashbooks").push().getKey();
+                            String newCashbookId = userDatabase.child(CASHBOOK_META_NODE).push().getKey();
                             if (newCashbookId != null) {
-                                // Create new book based on old one
+                                // Create new book based on old one. Only the metadata is
+                                // copied; the duplicate starts without transactions.
                                 originalCashbook.setCashbookId(newCashbookId);
                                 originalCashbook.setName(newName.trim());
                                 originalCashbook.setCurrent(false);
                                 originalCashbook.setLastModified(System.currentTimeMillis());
                                 originalCashbook.setCreatedDate(System.currentTimeMillis());
-                                // Note: This duplicates transactions, which might not be intended.
-                                // A true duplicate might start with 0 transactions.
-                                // For this code, we'll duplicate everything.
 
-                                userDatabase.child("cashbooks").child(newCashbookId).setValue(originalCashbook)
+                                Map<String, Object> updates = new HashMap<>();
+                                updates.put(CASHBOOK_META_NODE + "/" + newCashbookId, originalCashbook);
+                                updates.put(summaryPath(newCashbookId), emptySummary());
+                                updates.put(ROLLUPS_BUILT_NODE + "/" + newCashbookId, true);
+                                backfilledSummaries.add(newCashbookId);
+                                builtRollups.add(newCashbookId);
+                                userDatabase.updateChildren(updates)
                                         .addOnSuccessListener(aVoid -> {
                                             Log.d(TAG, "Cashbook duplicated successfully: " + newName);
                                             callback.onCallback(newCashbookId);
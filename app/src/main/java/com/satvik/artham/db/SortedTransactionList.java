@@ -0,0 +1,112 @@
+package com.satvik.artham.db;
+
+import com.satvik.artham.TransactionModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SortedTransactionList - In-memory list of transactions kept sorted newest first.
+ * Child events from Firebase are applied one at a time using binary search, so a
+ * single add/edit/remove never re-sorts or re-parses the whole cashbook.
+ * Not thread-safe; callers apply events from the main thread.
+ */
+public class SortedTransactionList {
+
+    private final ArrayList<TransactionModel> items = new ArrayList<>();
+    private final Map<String, TransactionModel> byId = new HashMap<>();
+
+    /**
+     * Inserts a new transaction or replaces an existing one with the same ID.
+     * @return true if the list changed
+     */
+    public boolean upsert(TransactionModel transaction) {
+        if (transaction == null || transaction.getTransactionId() == null) return false;
+
+        TransactionModel existing = byId.get(transaction.getTransactionId());
+        if (existing != null) {
+            int oldIndex = indexOf(existing);
+            if (oldIndex >= 0) items.remove(oldIndex);
+        }
+
+        int insertAt = insertionPoint(transaction);
+        items.add(insertAt, transaction);
+        byId.put(transaction.getTransactionId(), transaction);
+        return true;
+    }
+
+    /**
+     * Removes the transaction with the given ID.
+     * @return the removed transaction, or null if it was not present
+     */
+    public TransactionModel remove(String transactionId) {
+        if (transactionId == null) return null;
+        TransactionModel existing = byId.remove(transactionId);
+        if (existing == null) return null;
+
+        int index = indexOf(existing);
+        if (index >= 0) items.remove(index);
+        return existing;
+    }
+
+    public TransactionModel get(String transactionId) {
+        return transactionId != null ? byId.get(transactionId) : null;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    public void clear() {
+        items.clear();
+        byId.clear();
+    }
+
+    /**
+     * Returns an immutable copy suitable for publishing through LiveData.
+     */
+    public List<TransactionModel> snapshot() {
+        return Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    private int indexOf(TransactionModel transaction) {
+        int low = 0, high = items.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(items.get(mid), transaction);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int insertionPoint(TransactionModel transaction) {
+        int low = 0, high = items.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(items.get(mid), transaction) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Newest first; ties broken by ID so every transaction has a stable position
+    static int compare(TransactionModel a, TransactionModel b) {
+        int byTime = Long.compare(b.getTimestamp(), a.getTimestamp());
+        if (byTime != 0) return byTime;
+        String idA = a.getTransactionId() != null ? a.getTransactionId() : "";
+        String idB = b.getTransactionId() != null ? b.getTransactionId() : "";
+        return idA.compareTo(idB);
+    }
+}
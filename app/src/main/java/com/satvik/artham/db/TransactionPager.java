@@ -0,0 +1,167 @@
+package com.satvik.artham.db;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * TransactionPager - Loads a cashbook's transactions newest first, one page at a time.
+ * Each page is a server query on the timestamp index: limitToLast(pageSize) below a
+ * (timestamp, key) cursor taken from the oldest row of the previous page, bounded to
+ * [from, to]. Only the rows the user actually scrolls to are downloaded.
+ * <p>
+ * While the cashbook's {@link TransactionStore} is loaded, pages are cut from it with the
+ * same cursor instead, so nothing is downloaded; the two can take turns page by page.
+ * Create instances through {@link DataRepository#createTransactionPager}.
+ */
+public class TransactionPager {
+
+    private static final String TAG = "TransactionPager";
+    public static final int DEFAULT_PAGE_SIZE = 30;
+
+    private final DatabaseReference transactionsRef;
+    @Nullable
+    private final TransactionStore store;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final long from;
+    private final long to;
+    private final int pageSize;
+
+    // Cursor: the oldest row delivered so far
+    private Long cursorTimestamp;
+    private String cursorKey;
+    private boolean loading = false;
+    private boolean exhausted = false;
+
+    TransactionPager(DatabaseReference transactionsRef, @Nullable TransactionStore store,
+                     long from, long to, int pageSize) {
+        this.transactionsRef = transactionsRef;
+        this.store = store;
+        this.from = from;
+        this.to = to;
+        this.pageSize = pageSize;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Fetches the next (older) page. The callback receives that page only, newest first;
+     * an empty page means the range is exhausted. Calls made while a page is in flight
+     * or after the end are ignored.
+     */
+    public void loadNextPage(DataRepository.DataCallback<List<TransactionModel>> callback,
+                             DataRepository.ErrorCallback errorCallback) {
+        if (loading || exhausted) return;
+        loading = true;
+
+        if (store != null && store.isLoaded()) {
+            List<TransactionModel> page = pageFromStore(store);
+            // Delivered like a server page, outside the caller's (e.g. scroll) callback
+            mainHandler.post(() -> {
+                loading = false;
+                callback.onCallback(page);
+            });
+            return;
+        }
+
+        Query query = transactionsRef.orderByChild("timestamp").startAt(from);
+        query = (cursorTimestamp == null)
+                ? query.endAt(to)
+                : query.endBefore(cursorTimestamp, cursorKey);
+
+        query.limitToLast(pageSize).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                List<TransactionModel> page = new ArrayList<>();
+                for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
+                    try {
+                        TransactionModel transaction = snapshot.getValue(TransactionModel.class);
+                        if (transaction != null) {
+                            transaction.setTransactionId(snapshot.getKey());
+                            page.add(transaction);
+                        }
+                    } catch (Exception e) {
+                        Log.w(TAG, "Skipping unreadable transaction: " + snapshot.getKey(), e);
+                    }
+                }
+
+                // Children arrive oldest first, so the first row becomes the next cursor
+                if (!page.isEmpty()) {
+                    cursorTimestamp = page.get(0).getTimestamp();
+                    cursorKey = page.get(0).getTransactionId();
+                }
+                if (dataSnapshot.getChildrenCount() < pageSize) {
+                    exhausted = true;
+                }
+                Collections.reverse(page);
+
+                loading = false;
+                Log.d(TAG, "Loaded page of " + page.size() + (exhausted ? " (end of range)" : ""));
+                callback.onCallback(page);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                loading = false;
+                Log.e(TAG, "Page query cancelled", error.toException());
+                if (errorCallback != null) errorCallback.onError("Database connection failed");
+            }
+        });
+    }
+
+    /**
+     * The page the server query would return, cut from the loaded store: the pageSize
+     * greatest (timestamp, key) rows below the cursor, newest first.
+     */
+    private List<TransactionModel> pageFromStore(TransactionStore store) {
+        // Newest first; rows sharing a timestamp are taken as a group, since the store
+        // orders them by id the other way round
+        List<TransactionModel> candidates = store.getRange(from, cursorTimestamp == null ? to : cursorTimestamp);
+        List<TransactionModel> page = new ArrayList<>();
+        for (TransactionModel transaction : candidates) {
+            if (page.size() >= pageSize
+                    && transaction.getTimestamp() < page.get(page.size() - 1).getTimestamp()) break;
+            if (cursorTimestamp != null && transaction.getTimestamp() == cursorTimestamp
+                    && transaction.getTransactionId().compareTo(cursorKey) >= 0) continue; // At or above the cursor
+            page.add(transaction);
+        }
+        page.sort((a, b) -> {
+            int byTime = Long.compare(b.getTimestamp(), a.getTimestamp());
+            return byTime != 0 ? byTime : b.getTransactionId().compareTo(a.getTransactionId());
+        });
+        if (page.size() > pageSize) page = new ArrayList<>(page.subList(0, pageSize));
+
+        if (!page.isEmpty()) {
+            TransactionModel oldest = page.get(page.size() - 1);
+            cursorTimestamp = oldest.getTimestamp();
+            cursorKey = oldest.getTransactionId();
+        }
+        exhausted = page.size() < pageSize;
+        Log.d(TAG, "Cut page of " + page.size() + " from the store" + (exhausted ? " (end of range)" : ""));
+        return page;
+    }
+}
@@ -0,0 +1,492 @@
+package com.satvik.artham.db;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.local.LocalMirror;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionStore - The one in-memory copy of a cashbook's transactions.
+ * Every screen showing the same cashbook shares a single store, obtained through
+ * {@link DataRepository#getTransactionStore}, and with it a single set of listeners.
+ * Observers receive an immutable newest-first snapshot after the first load and again
+ * after every change. The listeners stay attached while anyone observes, plus a short
+ * grace period so moving between screens never starts a fresh download.
+ * <p>
+ * The store is seeded from the local mirror and then only asks the server for what
+ * changed since the mirror's sync mark: transactions with a newer lastModified stamp
+ * and tombstones of deletions. Every change is written back to the mirror together
+ * with the advanced mark. After each sync the mark is raised to the server's clock at
+ * the moment the sync started, so a book nobody edited downloads nothing next time.
+ * Main thread only.
+ */
+public class TransactionStore {
+
+    private static final String TAG = "TransactionStore";
+    // Long enough to cover one activity closing before the next one observes
+    static final long RELEASE_GRACE_MS = 30_000;
+    // Resync in full well before the tombstones after a mark could have been compacted
+    private static final long RESYNC_MARGIN_MS = TimeUnit.DAYS.toMillis(5);
+    // Slack for the estimated server clock; re-reading the last minute is harmless
+    private static final long CLOCK_MARGIN_MS = TimeUnit.MINUTES.toMillis(1);
+
+    public interface Listener {
+        void onTransactionsChanged(List<TransactionModel> snapshot);
+
+        /**
+         * The snapshot as a whole, with no deltas leading up to it: the first load after
+         * attaching, or the loaded snapshot handed to a new observer. Anything kept in
+         * step with the deltas starts over from it. Delivered instead of
+         * {@link #onTransactionsChanged}, which it calls by default.
+         */
+        default void onTransactionsReloaded(List<TransactionModel> snapshot) {
+            onTransactionsChanged(snapshot);
+        }
+
+        /**
+         * One change after the first load, delivered just before the snapshot that
+         * includes it. Either side is null for an insert or a delete.
+         */
+        default void onTransactionDelta(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+        }
+
+        default void onCancelled(DatabaseError error) {
+        }
+    }
+
+    private final String cashbookId;
+    private final DatabaseReference transactionsRef;
+    private final DatabaseReference tombstonesRef;
+    private final DatabaseReference serverTimeOffsetRef;
+    private final LocalMirror mirror;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new ArrayList<>();
+    private final SortedTransactionList transactionList = new SortedTransactionList();
+    private final Runnable detachRunnable = this::detach;
+
+    // Non-null from attach() until detach(); tells late mirror reads they are stale
+    private Object attachGeneration;
+    private Query transactionsQuery;
+    private Query tombstonesQuery;
+    private ChildEventListener transactionsListener;
+    private ChildEventListener tombstonesListener;
+    private ValueEventListener serverTimeOffsetListener;
+    // Server clock minus the device clock, as last reported by the connection
+    private long serverTimeOffset;
+    private List<TransactionModel> snapshot = Collections.emptyList();
+    // Timestamps of the snapshot, position for position, so ranges are found without boxing
+    private long[] snapshotTimestamps = new long[0];
+    private boolean loaded = false;
+
+    // Every change the server stamped before this is applied
+    private long syncMark;
+    // Applied but not yet written to the mirror
+    private final Map<String, TransactionModel> pendingChanged = new HashMap<>();
+    private final Set<String> pendingDeleted = new HashSet<>();
+
+    TransactionStore(String cashbookId, DatabaseReference cashbookRef, DatabaseReference serverTimeOffsetRef,
+                     LocalMirror mirror) {
+        this.cashbookId = cashbookId;
+        this.transactionsRef = cashbookRef.child("transactions");
+        this.tombstonesRef = cashbookRef.child(DataRepository.TOMBSTONES_NODE);
+        this.serverTimeOffsetRef = serverTimeOffsetRef;
+        this.mirror = mirror;
+    }
+
+    public String getCashbookId() {
+        return cashbookId;
+    }
+
+    /**
+     * True once the first full load has arrived.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * The latest snapshot, newest first; empty until loaded.
+     */
+    public List<TransactionModel> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The loaded copy of one transaction, or null if the cashbook has no such transaction.
+     * Only meaningful once loaded.
+     */
+    @Nullable
+    TransactionModel getTransaction(String transactionId) {
+        return transactionList.get(transactionId);
+    }
+
+    /**
+     * Transactions with a timestamp in [from, to], newest first, cut from the snapshot
+     * with two binary searches.
+     */
+    public List<TransactionModel> getRange(long from, long to) {
+        if (to < from) return Collections.emptyList();
+        int start = firstAtOrBefore(snapshotTimestamps, to);
+        int end = from == Long.MIN_VALUE ? snapshotTimestamps.length
+                : firstAtOrBefore(snapshotTimestamps, from - 1);
+        return snapshot.subList(start, end);
+    }
+
+    /**
+     * The part of a newest-first list with a timestamp in [from, to], found by binary
+     * search instead of testing every row. For lists not held by a store, e.g. a month
+     * loaded from the mirror.
+     */
+    public static List<TransactionModel> sliceByTime(List<TransactionModel> newestFirst, long from, long to) {
+        if (to < from) return Collections.emptyList();
+        int start = firstAtOrBefore(newestFirst, to);
+        int end = from == Long.MIN_VALUE ? newestFirst.size() : firstAtOrBefore(newestFirst, from - 1);
+        return newestFirst.subList(start, end);
+    }
+
+    /**
+     * Registers an observer. If the store is already loaded the current snapshot is
+     * delivered straight away, as a reload.
+     */
+    public void observe(Listener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        mainHandler.removeCallbacks(detachRunnable);
+        if (attachGeneration == null) attach();
+        if (loaded) listener.onTransactionsReloaded(snapshot);
+    }
+
+    public void removeObserver(Listener listener) {
+        if (!listeners.remove(listener)) return;
+        if (listeners.isEmpty()) mainHandler.postDelayed(detachRunnable, RELEASE_GRACE_MS);
+    }
+
+    /**
+     * Delivers the loaded snapshot once, waiting for the first load if necessary.
+     */
+    public void get(DataRepository.DataCallback<List<TransactionModel>> callback,
+                    @Nullable DataRepository.ErrorCallback errorCallback) {
+        observe(new Listener() {
+            @Override
+            public void onTransactionsChanged(List<TransactionModel> transactions) {
+                removeObserver(this);
+                callback.onCallback(transactions);
+            }
+
+            @Override
+            public void onCancelled(DatabaseError error) {
+                removeObserver(this);
+                if (errorCallback != null) errorCallback.onError(error.getMessage());
+            }
+        });
+    }
+
+    private void attach() {
+        transactionList.clear();
+        loaded = false;
+        final Object generation = new Object();
+        attachGeneration = generation;
+
+        // Local to the client, so this costs no download
+        serverTimeOffsetListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                Double offset = dataSnapshot.getValue(Double.class);
+                serverTimeOffset = offset != null ? offset.longValue() : 0;
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.w(TAG, "Server time offset unavailable: " + error.getMessage());
+            }
+        };
+        serverTimeOffsetRef.addValueEventListener(serverTimeOffsetListener);
+
+        mirror.readSyncedCopy(cashbookId, copy -> {
+            if (attachGeneration != generation) return; // Detached meanwhile
+            long staleBefore = System.currentTimeMillis() - DataRepository.TOMBSTONE_TTL_MS + RESYNC_MARGIN_MS;
+            if (copy.syncMark <= 0 || copy.syncMark < staleBefore) {
+                // Never synced, or tombstones since the mark may already be compacted
+                attachFull();
+            } else {
+                for (TransactionModel transaction : copy.transactions) transactionList.upsert(transaction);
+                attachDelta(copy.syncMark);
+            }
+        });
+    }
+
+    /**
+     * Downloads the whole cashbook once and keeps listening to every child.
+     */
+    private void attachFull() {
+        Log.d(TAG, "Full sync of " + cashbookId);
+        syncMark = 0;
+        final long startedAt = System.currentTimeMillis();
+        transactionsListener = new SyncListener(false);
+        transactionsQuery = transactionsRef;
+        transactionsQuery.addChildEventListener(transactionsListener);
+
+        // Value events fire after the initial batch of child events, so this marks
+        // the end of the first load and publishes the list once instead of per child.
+        final ChildEventListener attached = transactionsListener;
+        transactionsRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                if (attached != transactionsListener) return; // Detached meanwhile
+                loaded = true;
+                pendingChanged.clear();
+                pendingDeleted.clear();
+                markSynced(startedAt);
+                mirror.replaceSyncedTransactions(cashbookId, transactionList.snapshot(), syncMark);
+                Log.d(TAG, "Loaded " + transactionList.size() + " transactions for " + cashbookId);
+                publish(true);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // Reported through the child listener
+            }
+        });
+    }
+
+    /**
+     * Seeded from the mirror: only rows stamped at or after the mark, and tombstones
+     * written since, are downloaded. Re-reading the boundary millisecond is harmless.
+     */
+    private void attachDelta(long mark) {
+        Log.d(TAG, "Delta sync of " + cashbookId + " since " + mark);
+        syncMark = mark;
+        final long startedAt = System.currentTimeMillis();
+        transactionsListener = new SyncListener(false);
+        transactionsQuery = transactionsRef.orderByChild("lastModified").startAt(mark);
+        transactionsQuery.addChildEventListener(transactionsListener);
+        tombstonesListener = new SyncListener(true);
+        tombstonesQuery = tombstonesRef.orderByChild("deletedAt").startAt(mark);
+        tombstonesQuery.addChildEventListener(tombstonesListener);
+
+        final ChildEventListener attached = transactionsListener;
+        final int[] remaining = {2};
+        ValueEventListener initialLoad = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                if (attached != transactionsListener || --remaining[0] > 0) return;
+                loaded = true;
+                Log.d(TAG, "Synced " + pendingChanged.size() + " changed and " + pendingDeleted.size()
+                        + " deleted transactions for " + cashbookId);
+                markSynced(startedAt);
+                flushToMirror();
+                publish(true);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                // Reported through the child listeners
+            }
+        };
+        transactionsQuery.addListenerForSingleValueEvent(initialLoad);
+        tombstonesQuery.addListenerForSingleValueEvent(initialLoad);
+    }
+
+    /**
+     * Applies child events from either the transactions or the tombstones query.
+     */
+    private class SyncListener implements ChildEventListener {
+        private final boolean tombstones;
+
+        SyncListener(boolean tombstones) {
+            this.tombstones = tombstones;
+        }
+
+        @Override
+        public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            if (tombstones) applyTombstone(snapshot); else applyTransaction(snapshot);
+        }
+
+        @Override
+        public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            if (tombstones) applyTombstone(snapshot); else applyTransaction(snapshot);
+        }
+
+        @Override
+        public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            // A live deletion; the tombstone written with it may still be in flight.
+            // Compacted tombstones also leave the query and must not touch the list.
+            if (tombstones) return;
+            String transactionId = snapshot.getKey();
+            TransactionModel removed = transactionList.remove(transactionId);
+            if (removed != null) {
+                pendingDeleted.add(transactionId);
+                changed(removed, null);
+            }
+        }
+
+        @Override
+        public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+            // Ordering is maintained locally by timestamp
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            Log.e(TAG, "Transactions listener cancelled for " + cashbookId, error.toException());
+            for (Listener listener : new ArrayList<>(listeners)) listener.onCancelled(error);
+            detach();
+        }
+    }
+
+    private void applyTransaction(DataSnapshot snapshot) {
+        TransactionModel transaction = parseTransaction(snapshot);
+        if (transaction == null) return;
+        syncMark = Math.max(syncMark, transaction.getLastModified());
+        TransactionModel previous = transactionList.get(transaction.getTransactionId());
+        if (transactionList.upsert(transaction)) {
+            pendingChanged.put(transaction.getTransactionId(), transaction);
+            pendingDeleted.remove(transaction.getTransactionId());
+            changed(previous, transaction);
+        }
+    }
+
+    private void applyTombstone(DataSnapshot snapshot) {
+        Long deletedAt = snapshot.child("deletedAt").getValue(Long.class);
+        if (deletedAt != null) syncMark = Math.max(syncMark, deletedAt);
+        String transactionId = snapshot.getKey();
+        pendingChanged.remove(transactionId);
+        pendingDeleted.add(transactionId);
+        TransactionModel removed = transactionList.remove(transactionId);
+        if (removed != null) changed(removed, null);
+    }
+
+    /**
+     * Raises the mark to the server's clock when the sync's queries were attached. Every
+     * change they did not return was stamped after that, and arrives through the live
+     * listeners. The stamps applied so far stay as the lower bound.
+     * The offset is known by now: the initial load came from the server.
+     */
+    private void markSynced(long startedAt) {
+        syncMark = Math.max(syncMark, startedAt + serverTimeOffset - CLOCK_MARGIN_MS);
+    }
+
+    private void changed(@Nullable TransactionModel before, @Nullable TransactionModel after) {
+        if (!loaded) return;
+        flushToMirror();
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onTransactionDelta(before, after);
+        }
+        publish(false);
+    }
+
+    /**
+     * Writes everything applied since the last flush to the mirror and advances its mark.
+     */
+    private void flushToMirror() {
+        mirror.applyDelta(cashbookId, new ArrayList<>(pendingChanged.values()), new ArrayList<>(pendingDeleted), syncMark);
+        pendingChanged.clear();
+        pendingDeleted.clear();
+    }
+
+    /**
+     * Drops the listener and the in-memory copy. Also used when the user signs out.
+     */
+    void detach() {
+        mainHandler.removeCallbacks(detachRunnable);
+        attachGeneration = null;
+        if (transactionsListener != null) {
+            transactionsQuery.removeEventListener(transactionsListener);
+            transactionsListener = null;
+            Log.d(TAG, "Released transactions for " + cashbookId);
+        }
+        if (tombstonesListener != null) {
+            tombstonesQuery.removeEventListener(tombstonesListener);
+            tombstonesListener = null;
+        }
+        if (serverTimeOffsetListener != null) {
+            serverTimeOffsetRef.removeEventListener(serverTimeOffsetListener);
+            serverTimeOffsetListener = null;
+        }
+        pendingChanged.clear();
+        pendingDeleted.clear();
+        transactionList.clear();
+        snapshot = Collections.emptyList();
+        snapshotTimestamps = new long[0];
+        loaded = false;
+    }
+
+    /**
+     * Hands the new snapshot to every observer. {@code reloaded} when the list was filled
+     * without deltas, i.e. by a first load.
+     */
+    private void publish(boolean reloaded) {
+        if (!loaded) return;
+        snapshot = transactionList.snapshot();
+        long[] timestamps = new long[snapshot.size()];
+        for (int i = 0; i < timestamps.length; i++) timestamps[i] = snapshot.get(i).getTimestamp();
+        snapshotTimestamps = timestamps;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            if (reloaded) {
+                listener.onTransactionsReloaded(snapshot);
+            } else {
+                listener.onTransactionsChanged(snapshot);
+            }
+        }
+    }
+
+    @Nullable
+    private TransactionModel parseTransaction(DataSnapshot snapshot) {
+        try {
+            TransactionModel transaction = snapshot.getValue(TransactionModel.class);
+            if (transaction != null) {
+                transaction.setTransactionId(snapshot.getKey());
+            }
+            return transaction;
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing transaction: " + snapshot.getKey(), e);
+            return null;
+        }
+    }
+
+    // Index of the first timestamp (newest first) that is <= the bound
+    private static int firstAtOrBefore(long[] timestamps, long bound) {
+        int low = 0, high = timestamps.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] > bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int firstAtOrBefore(List<TransactionModel> newestFirst, long bound) {
+        int low = 0, high = newestFirst.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (newestFirst.get(mid).getTimestamp() > bound) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
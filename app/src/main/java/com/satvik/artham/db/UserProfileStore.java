@@ -0,0 +1,292 @@
+package com.satvik.artham.db;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.satvik.artham.models.Users;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UserProfileStore - Process-wide cache of the signed-in user's profile.
+ * The profile lives in its own small node (users/{uid}/userProfile) so reading it
+ * never downloads the cashbooks stored beside it. A single Firebase listener is
+ * shared by every observer, and the last known profile is kept in memory and in
+ * SharedPreferences so screens can render it before the network responds.
+ */
+public class UserProfileStore {
+
+    private static final String TAG = "UserProfileStore";
+    private static final String PREFS_NAME = "UserProfileCache";
+    static final String PROFILE_NODE = "userProfile";
+
+    // Legacy layout kept the profile fields directly under users/{uid}
+    private static final String[] LEGACY_FIELDS = {
+            "userId", "mail", "userName", "profile", "phoneNumber", "dateOfBirthTimestamp"
+    };
+
+    private static volatile UserProfileStore INSTANCE;
+
+    private final SharedPreferences prefs;
+    private final FirebaseAuth mAuth;
+    private final DatabaseReference usersRef;
+    private final List<DataRepository.DataCallback<Users>> observers = new ArrayList<>();
+
+    private Users cachedProfile;
+    private String cachedUserId;
+    private DatabaseReference profileRef;
+    private ValueEventListener profileListener;
+
+    private UserProfileStore(Application application) {
+        prefs = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        mAuth = FirebaseAuth.getInstance();
+        usersRef = FirebaseDatabase.getInstance().getReference("users");
+    }
+
+    public static UserProfileStore getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (UserProfileStore.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new UserProfileStore(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the last known profile for the current user from memory or disk.
+     */
+    @Nullable
+    public Users getCachedProfile() {
+        String uid = getCurrentUserId();
+        if (uid == null) return null;
+        if (cachedProfile == null || !uid.equals(cachedUserId)) {
+            cachedProfile = readFromDisk(uid);
+            cachedUserId = uid;
+        }
+        return cachedProfile;
+    }
+
+    /**
+     * Registers an observer. The cached profile (if any) is delivered immediately,
+     * then again whenever the remote profile node changes.
+     */
+    public void observe(@NonNull DataRepository.DataCallback<Users> observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+        }
+        Users cached = getCachedProfile();
+        if (cached != null) {
+            observer.onCallback(cached);
+        }
+        startListening();
+    }
+
+    public void removeObserver(@NonNull DataRepository.DataCallback<Users> observer) {
+        observers.remove(observer);
+        if (observers.isEmpty()) {
+            stopListening();
+        }
+    }
+
+    /**
+     * Writes the given fields to the profile node and updates the local cache.
+     */
+    public void updateProfile(@NonNull Map<String, Object> updates, @Nullable DataRepository.DataCallback<Boolean> callback) {
+        DatabaseReference ref = getProfileRef();
+        if (ref == null) {
+            if (callback != null) callback.onCallback(false);
+            return;
+        }
+
+        ref.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Profile updated");
+                    Users profile = getCachedProfile();
+                    if (profile == null) profile = new Users();
+                    applyUpdates(profile, updates);
+                    cacheProfile(profile);
+                    if (callback != null) callback.onCallback(true);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error updating profile", e);
+                    if (callback != null) callback.onCallback(false);
+                });
+    }
+
+    /**
+     * Saves a freshly created profile, e.g. right after sign-up.
+     */
+    public void saveProfile(@NonNull String userId, @NonNull Users profile) {
+        usersRef.child(userId).child(PROFILE_NODE).setValue(profile)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "New user profile saved.");
+                    if (userId.equals(getCurrentUserId())) cacheProfile(profile);
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to save new user profile", e));
+    }
+
+    /**
+     * Drops the in-memory and on-disk copies, e.g. on sign-out or account deletion.
+     */
+    public void clearCache() {
+        stopListening();
+        cachedProfile = null;
+        cachedUserId = null;
+        prefs.edit().clear().apply();
+    }
+
+    private void startListening() {
+        if (profileListener != null) return;
+        DatabaseReference ref = getProfileRef();
+        if (ref == null) return;
+
+        profileRef = ref;
+        profileListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (!snapshot.exists()) {
+                    migrateLegacyProfile();
+                    return;
+                }
+                Users profile = snapshot.getValue(Users.class);
+                if (profile != null) {
+                    cacheProfile(profile);
+                    notifyObservers(profile);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Profile listener cancelled", error.toException());
+            }
+        };
+        profileRef.addValueEventListener(profileListener);
+    }
+
+    private void stopListening() {
+        if (profileRef != null && profileListener != null) {
+            profileRef.removeEventListener(profileListener);
+        }
+        profileRef = null;
+        profileListener = null;
+    }
+
+    /**
+     * Copies the profile fields of an account created before the profile node existed.
+     * Each field is read on its own so the cashbooks under users/{uid} are never fetched.
+     */
+    private void migrateLegacyProfile() {
+        String uid = getCurrentUserId();
+        if (uid == null) return;
+
+        DatabaseReference userRef = usersRef.child(uid);
+        Users legacy = new Users();
+        final int[] pending = {LEGACY_FIELDS.length};
+
+        for (String field : LEGACY_FIELDS) {
+            userRef.child(field).addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    applyLegacyField(legacy, field, snapshot.getValue());
+                    if (--pending[0] == 0) finishMigration(uid, legacy);
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    Log.w(TAG, "Legacy profile field read cancelled: " + field);
+                    if (--pending[0] == 0) finishMigration(uid, legacy);
+                }
+            });
+        }
+    }
+
+    private void finishMigration(String uid, Users legacy) {
+        if (legacy.getUserId() == null) legacy.setUserId(uid);
+        Log.d(TAG, "Migrating legacy profile to " + PROFILE_NODE);
+        // The profile listener picks up the written node and notifies observers
+        usersRef.child(uid).child(PROFILE_NODE).setValue(legacy);
+    }
+
+    private void notifyObservers(Users profile) {
+        for (DataRepository.DataCallback<Users> observer : new ArrayList<>(observers)) {
+            observer.onCallback(profile);
+        }
+    }
+
+    private void cacheProfile(Users profile) {
+        String uid = getCurrentUserId();
+        if (uid == null) return;
+        cachedProfile = profile;
+        cachedUserId = uid;
+        prefs.edit()
+                .putString(uid + "_userId", profile.getUserId())
+                .putString(uid + "_mail", profile.getMail())
+                .putString(uid + "_userName", profile.getUserName())
+                .putString(uid + "_profile", profile.getProfile())
+                .putString(uid + "_phoneNumber", profile.getPhoneNumber())
+                .putLong(uid + "_dateOfBirthTimestamp", profile.getDateOfBirthTimestamp())
+                .putBoolean(uid + "_cached", true)
+                .apply();
+    }
+
+    @Nullable
+    private Users readFromDisk(String uid) {
+        if (!prefs.getBoolean(uid + "_cached", false)) return null;
+        Users profile = new Users();
+        profile.setUserId(prefs.getString(uid + "_userId", uid));
+        profile.setMail(prefs.getString(uid + "_mail", null));
+        profile.setUserName(prefs.getString(uid + "_userName", null));
+        profile.setProfile(prefs.getString(uid + "_profile", null));
+        profile.setPhoneNumber(prefs.getString(uid + "_phoneNumber", null));
+        profile.setDateOfBirthTimestamp(prefs.getLong(uid + "_dateOfBirthTimestamp", 0));
+        return profile;
+    }
+
+    private static void applyUpdates(Users profile, Map<String, Object> updates) {
+        for (Map.Entry<String, Object> entry : updates.entrySet()) {
+            applyLegacyField(profile, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void applyLegacyField(Users profile, String field, Object value) {
+        if (value == null) return;
+        switch (field) {
+            case "userId": profile.setUserId(String.valueOf(value)); break;
+            case "mail": profile.setMail(String.valueOf(value)); break;
+            case "userName": profile.setUserName(String.valueOf(value)); break;
+            case "profile": profile.setProfile(String.valueOf(value)); break;
+            case "phoneNumber": profile.setPhoneNumber(String.valueOf(value)); break;
+            case "dateOfBirthTimestamp":
+                if (value instanceof Number) profile.setDateOfBirthTimestamp(((Number) value).longValue());
+                break;
+        }
+    }
+
+    @Nullable
+    private DatabaseReference getProfileRef() {
+        String uid = getCurrentUserId();
+        return uid != null ? usersRef.child(uid).child(PROFILE_NODE) : null;
+    }
+
+    @Nullable
+    private String getCurrentUserId() {
+        FirebaseUser currentUser = mAuth.getCurrentUser();
+        return currentUser != null ? currentUser.getUid() : null;
+    }
+}
@@ -0,0 +1,344 @@
+package com.satvik.artham.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.satvik.artham.TransactionModel;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WriteQueue - Write-behind buffer for transaction adds, edits and deletes.
+ * Writes arriving within one short window are coalesced per transaction (an add followed
+ * by an edit is still one add, an add followed by a delete is nothing at all) and handed
+ * to a {@link Flusher} as a single batch, which DataRepository turns into one multi-path
+ * update. A batch does not wait for the one before it to be acknowledged, so offline
+ * writes keep reaching Firebase's local cache; Firebase applies them in the order sent.
+ * The queue is saved to SharedPreferences on every change, so entries survive process
+ * death and are flushed on the next start. A batch that fails is split up and each entry
+ * is retried alone with a growing delay, so one rejected entry cannot hold up the rest;
+ * an entry that keeps failing is dropped. Callbacks are per entry, run on the main
+ * thread and report only the final outcome; they are not persisted.
+ */
+class WriteQueue {
+
+    private static final String TAG = "WriteQueue";
+    private static final String PREFS_NAME = "WriteQueue";
+    private static final String KEY_PENDING = "pending_writes";
+    static final long FLUSH_WINDOW_MS = 500;
+    private static final long MAX_RETRY_DELAY_MS = 5 * 60_000;
+    // Sends of one entry that may fail before it is dropped
+    static final int MAX_FAILURES = 4;
+
+    enum Op { ADD, UPDATE, DELETE }
+
+    static class PendingWrite {
+        Op op;
+        final String userId;
+        final String cashbookId;
+        final String transactionId;
+        TransactionModel transaction;
+        // Entries read back from disk may already have reached the server once
+        boolean restored;
+        // Failed sends so far; an entry that has failed is only ever sent alone
+        int failures;
+        // Uptime before which a failed entry is not sent again
+        long retryAt;
+        // Order in which entries were sent
+        long sequence;
+        final List<DataRepository.DataCallback<Boolean>> callbacks = new ArrayList<>();
+
+        PendingWrite(Op op, String userId, String cashbookId, String transactionId, TransactionModel transaction) {
+            this.op = op;
+            this.userId = userId;
+            this.cashbookId = cashbookId;
+            this.transactionId = transactionId;
+            this.transaction = transaction;
+        }
+
+        String key() {
+            return keyOf(userId, cashbookId, transactionId);
+        }
+    }
+
+    interface Flusher {
+        String currentUserId();
+
+        /**
+         * Writes the batch and reports the outcome once, when the server has answered.
+         */
+        void flush(List<PendingWrite> batch, DataRepository.DataCallback<Boolean> done);
+    }
+
+    private final SharedPreferences prefs;
+    private final Flusher flusher;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    // Entries handed to the flusher and not yet acknowledged, in the order sent; kept on
+    // disk until they are
+    private final List<PendingWrite> inFlight = new ArrayList<>();
+    private final Runnable flushRunnable = this::flush;
+    private long sent = 0;
+    // Uptime of the scheduled flush, or Long.MAX_VALUE if none is
+    private long flushAt = Long.MAX_VALUE;
+
+    WriteQueue(Context context, Flusher flusher) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.flusher = flusher;
+        restore();
+    }
+
+    /**
+     * Queues a write and schedules a flush at the end of the current window.
+     */
+    void enqueue(Op op, String userId, String cashbookId, TransactionModel transaction,
+                 String transactionId, DataRepository.DataCallback<Boolean> callback) {
+        String key = keyOf(userId, cashbookId, transactionId);
+        PendingWrite existing = pending.get(key);
+
+        PendingWrite write = new PendingWrite(op, userId, cashbookId, transactionId, transaction);
+        if (callback != null) write.callbacks.add(callback);
+        if (existing == null) {
+            pending.put(key, write);
+        } else {
+            coalesce(existing, write);
+        }
+
+        persist();
+        scheduleFlush(FLUSH_WINDOW_MS);
+    }
+
+    /**
+     * Flushes whatever is pending for the signed-in user without waiting for the window.
+     */
+    void flushNow() {
+        mainHandler.removeCallbacks(flushRunnable);
+        flushAt = Long.MAX_VALUE;
+        flush();
+    }
+
+    /**
+     * Folds a later write of the same transaction into the queued one.
+     */
+    private void coalesce(PendingWrite existing, PendingWrite later) {
+        existing.callbacks.addAll(later.callbacks);
+        existing.restored |= later.restored;
+        if (existing.op == Op.ADD && later.op == Op.DELETE && !existing.restored) {
+            // Never reached the server, so there is nothing to write at all
+            pending.remove(existing.key());
+            deliver(existing.callbacks, true);
+        } else {
+            // An unsent add stays an add; otherwise the latest operation wins
+            if (existing.op != Op.ADD || later.op == Op.DELETE) existing.op = later.op;
+            existing.transaction = later.transaction;
+        }
+    }
+
+    private void scheduleFlush(long delayMs) {
+        long at = SystemClock.uptimeMillis() + delayMs;
+        if (at >= flushAt) return;
+        mainHandler.removeCallbacks(flushRunnable);
+        flushAt = at;
+        mainHandler.postDelayed(flushRunnable, delayMs);
+    }
+
+    private void flush() {
+        flushAt = Long.MAX_VALUE;
+        if (pending.isEmpty()) return;
+
+        // Entries queued by another account wait until that account signs in again, and
+        // failed entries until their retry is due
+        String userId = flusher.currentUserId();
+        long now = SystemClock.uptimeMillis();
+        long nextRetry = Long.MAX_VALUE;
+        List<PendingWrite> batch = new ArrayList<>();
+        List<PendingWrite> alone = new ArrayList<>();
+        Iterator<PendingWrite> iterator = pending.values().iterator();
+        while (iterator.hasNext()) {
+            PendingWrite write = iterator.next();
+            if (!write.userId.equals(userId)) continue;
+            if (write.retryAt > now) {
+                nextRetry = Math.min(nextRetry, write.retryAt);
+                continue;
+            }
+            iterator.remove();
+            if (write.failures > 0) alone.add(write); else batch.add(write);
+        }
+
+        if (!batch.isEmpty()) send(batch);
+        for (PendingWrite write : alone) send(Collections.singletonList(write));
+        if (nextRetry != Long.MAX_VALUE) scheduleFlush(nextRetry - now);
+    }
+
+    private void send(List<PendingWrite> batch) {
+        for (PendingWrite write : batch) write.sequence = ++sent;
+        inFlight.addAll(batch);
+        persist();
+        Log.d(TAG, "Flushing " + batch.size() + " queued writes");
+        flusher.flush(batch, success -> {
+            inFlight.removeAll(batch);
+            if (success) {
+                for (PendingWrite write : batch) deliver(write.callbacks, true);
+            } else {
+                retry(batch);
+            }
+            persist();
+        });
+    }
+
+    /**
+     * Puts the entries of a failed batch back at the head of the queue, each to be sent
+     * alone after a delay that grows with its failures, and drops the ones that have
+     * failed too often. Writes of the same transaction queued since happened later, so
+     * they are folded into the failed entry; one already sent since supersedes it.
+     */
+    private void retry(List<PendingWrite> batch) {
+        List<PendingWrite> queuedSince = new ArrayList<>(pending.values());
+        pending.clear();
+        long now = SystemClock.uptimeMillis();
+        long delayMs = MAX_RETRY_DELAY_MS;
+        for (PendingWrite write : batch) {
+            write.failures++;
+            PendingWrite later = sentSince(write);
+            if (later != null) {
+                later.callbacks.addAll(write.callbacks);
+            } else if (write.failures >= MAX_FAILURES) {
+                Log.e(TAG, "Dropping write of transaction " + write.transactionId + " after "
+                        + write.failures + " failed attempts");
+                deliver(write.callbacks, false);
+            } else {
+                // A batch failure only says that something in it was rejected, so the
+                // first retry of each entry goes out at once
+                long entryDelayMs = batch.size() > 1 ? 0
+                        : Math.min(FLUSH_WINDOW_MS << Math.min(write.failures, 20), MAX_RETRY_DELAY_MS);
+                write.retryAt = now + entryDelayMs;
+                delayMs = Math.min(delayMs, entryDelayMs);
+                pending.put(write.key(), write);
+            }
+        }
+        for (PendingWrite write : queuedSince) {
+            PendingWrite failed = pending.get(write.key());
+            if (failed == null) {
+                pending.put(write.key(), write);
+            } else {
+                coalesce(failed, write);
+            }
+        }
+        if (!pending.isEmpty()) {
+            Log.w(TAG, "Flush of " + batch.size() + " writes failed, retrying in " + delayMs + " ms");
+            scheduleFlush(delayMs);
+        }
+    }
+
+    /**
+     * The latest write of the same transaction still in flight, sent after the given one.
+     */
+    private PendingWrite sentSince(PendingWrite write) {
+        for (int i = inFlight.size() - 1; i >= 0; i--) {
+            PendingWrite other = inFlight.get(i);
+            if (other.sequence < write.sequence) break;
+            if (other.key().equals(write.key())) return other;
+        }
+        return null;
+    }
+
+    private void deliver(List<DataRepository.DataCallback<Boolean>> callbacks, boolean success) {
+        List<DataRepository.DataCallback<Boolean>> delivered = new ArrayList<>(callbacks);
+        callbacks.clear();
+        for (DataRepository.DataCallback<Boolean> callback : delivered) {
+            if (callback != null) callback.onCallback(success);
+        }
+    }
+
+    // --- Persistence ---
+
+    private void persist() {
+        JSONArray array = new JSONArray();
+        try {
+            for (PendingWrite write : inFlight) array.put(toJson(write));
+            for (PendingWrite write : pending.values()) array.put(toJson(write));
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not serialize write queue", e);
+            return;
+        }
+        prefs.edit().putString(KEY_PENDING, array.toString()).apply();
+    }
+
+    private void restore() {
+        String json = prefs.getString(KEY_PENDING, null);
+        if (json == null) return;
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                PendingWrite write = fromJson(array.getJSONObject(i));
+                write.restored = true;
+                pending.put(write.key(), write);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Discarding unreadable write queue", e);
+            prefs.edit().remove(KEY_PENDING).apply();
+            return;
+        }
+        if (!pending.isEmpty()) {
+            Log.d(TAG, "Restored " + pending.size() + " queued writes");
+            scheduleFlush(0);
+        }
+    }
+
+    private static JSONObject toJson(PendingWrite write) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("op", write.op.name());
+        json.put("userId", write.userId);
+        json.put("cashbookId", write.cashbookId);
+        json.put("transactionId", write.transactionId);
+        TransactionModel transaction = write.transaction;
+        if (transaction != null) {
+            JSONObject body = new JSONObject();
+            body.put("transactionCategory", transaction.getTransactionCategory());
+            body.put("partyName", transaction.getPartyName());
+            body.put("amount", transaction.getAmount());
+            body.put("type", transaction.getType());
+            body.put("paymentMode", transaction.getPaymentMode());
+            body.put("remark", transaction.getRemark());
+            body.put("timestamp", transaction.getTimestamp());
+            json.put("transaction", body);
+        }
+        return json;
+    }
+
+    private static PendingWrite fromJson(JSONObject json) throws JSONException {
+        TransactionModel transaction = null;
+        JSONObject body = json.optJSONObject("transaction");
+        String transactionId = json.getString("transactionId");
+        if (body != null) {
+            transaction = new TransactionModel();
+            transaction.setTransactionId(transactionId);
+            transaction.setTransactionCategory(body.optString("transactionCategory", null));
+            transaction.setPartyName(body.optString("partyName", null));
+            transaction.setAmount(body.optDouble("amount", 0));
+            transaction.setType(body.optString("type", null));
+            transaction.setPaymentMode(body.optString("paymentMode", null));
+            transaction.setRemark(body.optString("remark", null));
+            transaction.setTimestamp(body.optLong("timestamp", 0));
+        }
+        return new PendingWrite(Op.valueOf(json.getString("op")), json.getString("userId"),
+                json.getString("cashbookId"), transactionId, transaction);
+    }
+
+    private static String keyOf(String userId, String cashbookId, String transactionId) {
+        return userId + "/" + cashbookId + "/" + transactionId;
+    }
+}
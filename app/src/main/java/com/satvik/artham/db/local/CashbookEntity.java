@@ -0,0 +1,55 @@
+package com.satvik.artham.db.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.satvik.artham.CashbookModel;
+
+/**
+ * Local mirror row of a cashbook's metadata (users/{uid}/cashbookMeta/{id}).
+ */
+@Entity(tableName = "cashbooks")
+public class CashbookEntity {
+
+    @PrimaryKey
+    @NonNull
+    public String cashbookId = "";
+
+    public String name;
+    public String description;
+    public String currency;
+    public String userId;
+    public long createdDate;
+    public long lastModified;
+    public boolean active;
+    public boolean favorite;
+
+    public static CashbookEntity fromModel(CashbookModel model) {
+        CashbookEntity entity = new CashbookEntity();
+        entity.cashbookId = model.getCashbookId();
+        entity.name = model.getName();
+        entity.description = model.getDescription();
+        entity.currency = model.getCurrency();
+        entity.userId = model.getUserId();
+        entity.createdDate = model.getCreatedDate();
+        entity.lastModified = model.getLastModified();
+        entity.active = model.isActive();
+        entity.favorite = model.isFavorite();
+        return entity;
+    }
+
+    public CashbookModel toModel() {
+        CashbookModel model = new CashbookModel();
+        model.setCashbookId(cashbookId);
+        model.setName(name);
+        model.setDescription(description);
+        model.setCurrency(currency);
+        model.setUserId(userId);
+        model.setCreatedDate(createdDate);
+        model.setLastModified(lastModified);
+        model.setActive(active);
+        model.setFavorite(favorite);
+        return model;
+    }
+}
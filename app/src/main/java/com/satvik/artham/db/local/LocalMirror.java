@@ -0,0 +1,253 @@
+package com.satvik.artham.db.local;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.satvik.artham.CashbookModel;
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.models.CashbookSummary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * LocalMirror - Asynchronous front for {@link MirrorDatabase}.
+ * Every call runs on one disk thread, in submission order, and read results are posted
+ * back to the main thread. The mirror belongs to one user at a time; it is wiped as soon
+ * as a different user touches it.
+ */
+public class LocalMirror {
+
+    private static final String TAG = "LocalMirror";
+    private static final String PREFS_NAME = "LocalMirror";
+    private static final String KEY_OWNER = "owner_uid";
+
+    private final MirrorDatabase database;
+    private final MirrorDao dao;
+    private final SharedPreferences prefs;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private String ownerUid;
+
+    public LocalMirror(Context context) {
+        database = MirrorDatabase.getInstance(context);
+        dao = database.mirrorDao();
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        ownerUid = prefs.getString(KEY_OWNER, null);
+    }
+
+    /**
+     * Binds the mirror to the given user, clearing rows left by anyone else.
+     */
+    public void ensureOwner(String uid) {
+        if (uid == null || uid.equals(ownerUid)) return;
+        Log.d(TAG, "Mirror owner changed, clearing local copy");
+        ownerUid = uid;
+        prefs.edit().putString(KEY_OWNER, uid).apply();
+        diskExecutor.execute(database::clearAllTables);
+    }
+
+    public void clear() {
+        ownerUid = null;
+        prefs.edit().remove(KEY_OWNER).apply();
+        diskExecutor.execute(database::clearAllTables);
+    }
+
+    // --- Reads (results delivered on the main thread) ---
+
+    public void readTransactionsInRange(String cashbookId, long from, long to,
+                                        DataRepository.DataCallback<List<TransactionModel>> callback) {
+        diskExecutor.execute(() -> {
+            List<TransactionModel> transactions = new ArrayList<>();
+            try {
+                for (TransactionEntity entity : dao.getTransactionsInRange(cashbookId, from, to)) {
+                    transactions.add(entity.toModel());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading mirrored transactions", e);
+            }
+            mainHandler.post(() -> callback.onCallback(transactions));
+        });
+    }
+
+    /**
+     * Mirrored copies of the given transactions, keyed by ID. IDs not in the mirror are
+     * missing from the result.
+     */
+    public void readTransactions(Collection<String> transactionIds,
+                                 DataRepository.DataCallback<Map<String, TransactionModel>> callback) {
+        List<String> ids = new ArrayList<>(transactionIds);
+        diskExecutor.execute(() -> {
+            Map<String, TransactionModel> transactions = new HashMap<>();
+            try {
+                // Stay well below SQLite's limit on bound parameters
+                for (int from = 0; from < ids.size(); from += 500) {
+                    List<String> chunk = ids.subList(from, Math.min(from + 500, ids.size()));
+                    for (TransactionEntity entity : dao.getTransactionsById(chunk)) {
+                        transactions.put(entity.transactionId, entity.toModel());
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading mirrored transactions by ID", e);
+                transactions.clear();
+            }
+            mainHandler.post(() -> callback.onCallback(transactions));
+        });
+    }
+
+    /**
+     * A cashbook's mirrored transactions, newest first, and the mark they are current to.
+     */
+    public static class SyncedCopy {
+        public final List<TransactionModel> transactions;
+        // 0 when the cashbook has never been fully synced
+        public final long syncMark;
+
+        SyncedCopy(List<TransactionModel> transactions, long syncMark) {
+            this.transactions = transactions;
+            this.syncMark = syncMark;
+        }
+    }
+
+    public void readSyncedCopy(String cashbookId, DataRepository.DataCallback<SyncedCopy> callback) {
+        diskExecutor.execute(() -> {
+            List<TransactionModel> transactions = new ArrayList<>();
+            long syncMark = 0;
+            try {
+                Long stored = dao.getSyncMark(cashbookId);
+                if (stored != null) {
+                    for (TransactionEntity entity : dao.getTransactions(cashbookId)) {
+                        transactions.add(entity.toModel());
+                    }
+                    syncMark = stored;
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading synced transactions", e);
+                transactions.clear();
+                syncMark = 0;
+            }
+            SyncedCopy copy = new SyncedCopy(transactions, syncMark);
+            mainHandler.post(() -> callback.onCallback(copy));
+        });
+    }
+
+    public void readCashbooks(DataRepository.DataCallback<List<CashbookModel>> callback) {
+        diskExecutor.execute(() -> {
+            List<CashbookModel> cashbooks = new ArrayList<>();
+            try {
+                for (CashbookEntity entity : dao.getCashbooks()) {
+                    cashbooks.add(entity.toModel());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading mirrored cashbooks", e);
+            }
+            mainHandler.post(() -> callback.onCallback(cashbooks));
+        });
+    }
+
+    /**
+     * Delivers null if the cashbook has no mirrored summary yet.
+     */
+    public void readSummary(String cashbookId, DataRepository.DataCallback<CashbookSummary> callback) {
+        diskExecutor.execute(() -> {
+            CashbookSummary summary = null;
+            try {
+                SummaryEntity entity = dao.getSummary(cashbookId);
+                if (entity != null) summary = entity.toModel();
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading mirrored summary", e);
+            }
+            final CashbookSummary result = summary;
+            mainHandler.post(() -> callback.onCallback(result));
+        });
+    }
+
+    public void readSummaries(DataRepository.DataCallback<Map<String, CashbookSummary>> callback) {
+        diskExecutor.execute(() -> {
+            Map<String, CashbookSummary> summaries = new HashMap<>();
+            try {
+                for (SummaryEntity entity : dao.getSummaries()) {
+                    summaries.put(entity.cashbookId, entity.toModel());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading mirrored summaries", e);
+            }
+            mainHandler.post(() -> callback.onCallback(summaries));
+        });
+    }
+
+    // --- Writes (fire and forget) ---
+
+    public void replaceTransactionsInRange(String cashbookId, long from, long to, List<TransactionModel> transactions) {
+        List<TransactionEntity> entities = toEntities(cashbookId, transactions);
+        diskExecutor.execute(() -> dao.replaceTransactionsInRange(cashbookId, from, to, entities));
+    }
+
+    public void replaceSyncedTransactions(String cashbookId, List<TransactionModel> transactions, long syncMark) {
+        List<TransactionEntity> entities = toEntities(cashbookId, transactions);
+        diskExecutor.execute(() -> dao.replaceSyncedTransactions(cashbookId, entities, syncMark));
+    }
+
+    public void applyDelta(String cashbookId, List<TransactionModel> changed, List<String> deletedIds, long syncMark) {
+        List<TransactionEntity> entities = toEntities(cashbookId, changed);
+        List<String> deleted = new ArrayList<>(deletedIds);
+        diskExecutor.execute(() -> dao.applyDelta(cashbookId, entities, deleted, syncMark));
+    }
+
+    public void upsertTransaction(String cashbookId, TransactionModel transaction) {
+        if (transaction.getTransactionId() == null) return;
+        TransactionEntity entity = TransactionEntity.fromModel(cashbookId, transaction);
+        diskExecutor.execute(() -> dao.upsertTransaction(entity));
+    }
+
+    public void deleteTransaction(String transactionId) {
+        diskExecutor.execute(() -> dao.deleteTransaction(transactionId));
+    }
+
+    public void replaceCashbooks(List<CashbookModel> cashbooks) {
+        List<CashbookEntity> entities = new ArrayList<>();
+        for (CashbookModel cashbook : cashbooks) {
+            if (cashbook.getCashbookId() != null) entities.add(CashbookEntity.fromModel(cashbook));
+        }
+        diskExecutor.execute(() -> dao.replaceCashbooks(entities));
+    }
+
+    public void deleteCashbook(String cashbookId) {
+        diskExecutor.execute(() -> dao.deleteCashbook(cashbookId));
+    }
+
+    public void writeSummary(String cashbookId, CashbookSummary summary) {
+        SummaryEntity entity = SummaryEntity.fromModel(cashbookId, summary);
+        diskExecutor.execute(() -> dao.upsertSummary(entity));
+    }
+
+    public void writeSummaries(Map<String, CashbookSummary> summaries) {
+        List<SummaryEntity> entities = new ArrayList<>();
+        for (Map.Entry<String, CashbookSummary> entry : summaries.entrySet()) {
+            entities.add(SummaryEntity.fromModel(entry.getKey(), entry.getValue()));
+        }
+        diskExecutor.execute(() -> {
+            for (SummaryEntity entity : entities) dao.upsertSummary(entity);
+        });
+    }
+
+    private static List<TransactionEntity> toEntities(String cashbookId, List<TransactionModel> transactions) {
+        List<TransactionEntity> entities = new ArrayList<>();
+        for (TransactionModel transaction : transactions) {
+            if (transaction.getTransactionId() != null) {
+                entities.add(TransactionEntity.fromModel(cashbookId, transaction));
+            }
+        }
+        return entities;
+    }
+}
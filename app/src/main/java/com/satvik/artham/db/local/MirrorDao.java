@@ -0,0 +1,133 @@
+package com.satvik.artham.db.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+/**
+ * Queries against the local mirror. All calls block, so run them off the main thread.
+ */
+@Dao
+public abstract class MirrorDao {
+
+    // --- Transactions ---
+
+    @Query("SELECT * FROM transactions WHERE cashbookId = :cashbookId " +
+            "AND timestamp BETWEEN :from AND :to ORDER BY timestamp DESC")
+    public abstract List<TransactionEntity> getTransactionsInRange(String cashbookId, long from, long to);
+
+    @Query("SELECT * FROM transactions WHERE cashbookId = :cashbookId ORDER BY timestamp DESC")
+    public abstract List<TransactionEntity> getTransactions(String cashbookId);
+
+    @Query("SELECT * FROM transactions WHERE transactionId IN (:transactionIds)")
+    public abstract List<TransactionEntity> getTransactionsById(List<String> transactionIds);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsertTransactions(List<TransactionEntity> transactions);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsertTransaction(TransactionEntity transaction);
+
+    @Query("DELETE FROM transactions WHERE transactionId = :transactionId")
+    public abstract void deleteTransaction(String transactionId);
+
+    @Query("DELETE FROM transactions WHERE cashbookId = :cashbookId AND timestamp BETWEEN :from AND :to")
+    public abstract void deleteTransactionsInRange(String cashbookId, long from, long to);
+
+    @Query("DELETE FROM transactions WHERE cashbookId = :cashbookId")
+    public abstract void deleteTransactions(String cashbookId);
+
+    /**
+     * Makes the mirror of [from, to] match a fresh server result, including deletions.
+     */
+    @Transaction
+    public void replaceTransactionsInRange(String cashbookId, long from, long to, List<TransactionEntity> transactions) {
+        deleteTransactionsInRange(cashbookId, from, to);
+        upsertTransactions(transactions);
+    }
+
+    @Transaction
+    public void replaceTransactions(String cashbookId, List<TransactionEntity> transactions) {
+        deleteTransactions(cashbookId);
+        upsertTransactions(transactions);
+    }
+
+    // --- Delta sync ---
+
+    @Query("SELECT lastModified FROM sync_marks WHERE cashbookId = :cashbookId")
+    public abstract Long getSyncMark(String cashbookId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsertSyncMark(SyncMarkEntity mark);
+
+    @Query("DELETE FROM sync_marks WHERE cashbookId = :cashbookId")
+    public abstract void deleteSyncMark(String cashbookId);
+
+    @Query("DELETE FROM transactions WHERE transactionId IN (:transactionIds)")
+    public abstract void deleteTransactionsById(List<String> transactionIds);
+
+    /**
+     * Stores a complete server copy of a cashbook together with the mark it is current to.
+     */
+    @Transaction
+    public void replaceSyncedTransactions(String cashbookId, List<TransactionEntity> transactions, long syncMark) {
+        replaceTransactions(cashbookId, transactions);
+        upsertSyncMark(SyncMarkEntity.of(cashbookId, syncMark));
+    }
+
+    /**
+     * Applies the changes since the last mark and advances it, all or nothing.
+     */
+    @Transaction
+    public void applyDelta(String cashbookId, List<TransactionEntity> changed, List<String> deletedIds, long syncMark) {
+        upsertTransactions(changed);
+        if (!deletedIds.isEmpty()) deleteTransactionsById(deletedIds);
+        upsertSyncMark(SyncMarkEntity.of(cashbookId, syncMark));
+    }
+
+    // --- Cashbooks ---
+
+    @Query("SELECT * FROM cashbooks")
+    public abstract List<CashbookEntity> getCashbooks();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insertCashbooks(List<CashbookEntity> cashbooks);
+
+    @Query("DELETE FROM cashbooks")
+    public abstract void deleteAllCashbooks();
+
+    @Transaction
+    public void replaceCashbooks(List<CashbookEntity> cashbooks) {
+        deleteAllCashbooks();
+        insertCashbooks(cashbooks);
+    }
+
+    @Transaction
+    public void deleteCashbook(String cashbookId) {
+        deleteCashbookRow(cashbookId);
+        deleteSummary(cashbookId);
+        deleteTransactions(cashbookId);
+        deleteSyncMark(cashbookId);
+    }
+
+    @Query("DELETE FROM cashbooks WHERE cashbookId = :cashbookId")
+    public abstract void deleteCashbookRow(String cashbookId);
+
+    // --- Summaries ---
+
+    @Query("SELECT * FROM cashbook_summaries WHERE cashbookId = :cashbookId")
+    public abstract SummaryEntity getSummary(String cashbookId);
+
+    @Query("SELECT * FROM cashbook_summaries")
+    public abstract List<SummaryEntity> getSummaries();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsertSummary(SummaryEntity summary);
+
+    @Query("DELETE FROM cashbook_summaries WHERE cashbookId = :cashbookId")
+    public abstract void deleteSummary(String cashbookId);
+}
@@ -0,0 +1,37 @@
+package com.satvik.artham.db.local;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+/**
+ * MirrorDatabase - On-device copy of the signed-in user's cashbooks, summaries and
+ * transactions. Firebase stays the source of truth; DataRepository writes every result
+ * it receives through to this database and serves it first on the next cold start.
+ */
+@Database(entities = {CashbookEntity.class, SummaryEntity.class, TransactionEntity.class, SyncMarkEntity.class},
+        version = 2, exportSchema = false)
+public abstract class MirrorDatabase extends RoomDatabase {
+
+    private static final String DB_NAME = "cashflow_mirror.db";
+    private static volatile MirrorDatabase INSTANCE;
+
+    public abstract MirrorDao mirrorDao();
+
+    public static MirrorDatabase getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (MirrorDatabase.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
+                                    MirrorDatabase.class, DB_NAME)
+                            // The mirror is a cache; rebuilding it from Firebase is always safe
+                            .fallbackToDestructiveMigration()
+                            .build();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+}
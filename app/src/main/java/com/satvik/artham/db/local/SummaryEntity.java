@@ -0,0 +1,45 @@
+package com.satvik.artham.db.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.satvik.artham.models.CashbookSummary;
+
+/**
+ * Local mirror row of a cashbook's summary, so balances can be shown before the network answers.
+ */
+@Entity(tableName = "cashbook_summaries")
+public class SummaryEntity {
+
+    @PrimaryKey
+    @NonNull
+    public String cashbookId = "";
+
+    public double totalIn;
+    public double totalOut;
+    public double balance;
+    public long count;
+    public long lastModified;
+
+    public static SummaryEntity fromModel(String cashbookId, CashbookSummary summary) {
+        SummaryEntity entity = new SummaryEntity();
+        entity.cashbookId = cashbookId;
+        entity.totalIn = summary.getTotalIn();
+        entity.totalOut = summary.getTotalOut();
+        entity.balance = summary.getBalance();
+        entity.count = summary.getCount();
+        entity.lastModified = summary.getLastModified();
+        return entity;
+    }
+
+    public CashbookSummary toModel() {
+        CashbookSummary summary = new CashbookSummary();
+        summary.setTotalIn(totalIn);
+        summary.setTotalOut(totalOut);
+        summary.setBalance(balance);
+        summary.setCount(count);
+        summary.setLastModified(lastModified);
+        return summary;
+    }
+}
@@ -0,0 +1,26 @@
+package com.satvik.artham.db.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Server time up to which a cashbook's mirrored transactions are known to be complete.
+ * Kept in the same database as the rows, so the two can never disagree after a wipe.
+ */
+@Entity(tableName = "sync_marks")
+public class SyncMarkEntity {
+
+    @PrimaryKey
+    @NonNull
+    public String cashbookId = "";
+
+    public long lastModified;
+
+    public static SyncMarkEntity of(String cashbookId, long lastModified) {
+        SyncMarkEntity entity = new SyncMarkEntity();
+        entity.cashbookId = cashbookId;
+        entity.lastModified = lastModified;
+        return entity;
+    }
+}
@@ -0,0 +1,66 @@
+package com.satvik.artham.db.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.satvik.artham.TransactionModel;
+
+/**
+ * Local mirror row of one transaction. The composite indices match the lookups the
+ * screens make: a cashbook's rows by date, by category and by party.
+ */
+@Entity(tableName = "transactions",
+        indices = {
+                @Index({"cashbookId", "timestamp"}),
+                @Index({"cashbookId", "category"}),
+                @Index({"cashbookId", "party"})
+        })
+public class TransactionEntity {
+
+    @PrimaryKey
+    @NonNull
+    public String transactionId = "";
+
+    @NonNull
+    public String cashbookId = "";
+
+    public String category;
+    public String party;
+    public double amount;
+    public String type;
+    public String paymentMode;
+    public String remark;
+    public long timestamp;
+    public long lastModified;
+
+    public static TransactionEntity fromModel(String cashbookId, TransactionModel model) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.transactionId = model.getTransactionId();
+        entity.cashbookId = cashbookId;
+        entity.category = model.getTransactionCategory();
+        entity.party = model.getPartyName();
+        entity.amount = model.getAmount();
+        entity.type = model.getType();
+        entity.paymentMode = model.getPaymentMode();
+        entity.remark = model.getRemark();
+        entity.timestamp = model.getTimestamp();
+        entity.lastModified = model.getLastModified();
+        return entity;
+    }
+
+    public TransactionModel toModel() {
+        TransactionModel model = new TransactionModel();
+        model.setTransactionId(transactionId);
+        model.setTransactionCategory(category);
+        model.setPartyName(party);
+        model.setAmount(amount);
+        model.setType(type);
+        model.setPaymentMode(paymentMode);
+        model.setRemark(remark);
+        model.setTimestamp(timestamp);
+        model.setLastModified(lastModified);
+        return model;
+    }
+}
@@ -23,17 +23,16 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.satvik.artham.CashbookModel;
 import com.satvik.artham.R;
 import com.satvik.artham.adapters.CashbookAdapter;
-import com.satvik.artham.utils.ErrorHandler;
+import com.satvik.artham.db.DataRepository;
+import com.satvik.artham.models.CashbookSummary;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class CashbookSwitchDialog extends DialogFragment {
@@ -53,6 +52,10 @@ public class CashbookSwitchDialog extends DialogFragment {
     private CashbookModel selectedCashbook;
     private String currentCashbookId;
 
+    private DataRepository repository;
+    private ValueEventListener summariesListener;
+    private Map<String, CashbookSummary> summaries; // null until the first snapshot
+
     private OnCashbookSelectedListener listener;
 
     public interface OnCashbookSelectedListener {
@@ -93,7 +96,9 @@ public class CashbookSwitchDialog extends DialogFragment {
         initViews(view);
         setupRecyclerView();
         setupListeners();
+        repository = DataRepository.getInstance(requireActivity().getApplication());
         loadCashbooks();
+        listenForSummaries();
     }
 
     private void initViews(View view) {
@@ -185,45 +190,50 @@ public class CashbookSwitchDialog extends DialogFragment {
         }
 
         showLoading(true);
-        String userId = currentUser.getUid();
-
-        FirebaseDatabase.getInstance()
-                .getReference("users").child(userId).child("cashbooks")
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                        allCashbooks.clear();
-
-                        for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                            CashbookModel cashbook = snapshot.getValue(CashbookModel.class);
-                            if (cashbook != null) {
-                                if (cashbook.getCashbookId() == null) {
-                                    cashbook.setCashbookId(snapshot.getKey());
-                                }
-                                cashbook.setCurrent(cashbook.getCashbookId().equals(currentCashbookId));
-                                allCashbooks.add(cashbook);
-                            }
-                        }
-
-                        showLoading(false);
-                        if (allCashbooks.isEmpty()) {
-                            showEmptyState(true);
-                        } else {
-                            showEmptyState(false);
-                            adapter.updateCashbooks(allCashbooks);
-                        }
-
-                        Log.d(TAG, "Loaded " + allCashbooks.size() + " cashbooks");
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        showLoading(false);
-                        if(getContext() != null) {
-                            ErrorHandler.handleFirebaseError(getContext(), error);
-                        }
-                    }
-                });
+
+        // Lists the metadata index only, never the transactions nested under each cashbook
+        repository.getCashbooks(cashbooks -> {
+            allCashbooks.clear();
+
+            for (CashbookModel cashbook : cashbooks) {
+                cashbook.setCurrent(cashbook.getCashbookId().equals(currentCashbookId));
+                repository.applySummary(cashbook, summaries);
+                allCashbooks.add(cashbook);
+            }
+
+            showLoading(false);
+            if (allCashbooks.isEmpty()) {
+                showEmptyState(true);
+            } else {
+                showEmptyState(false);
+                adapter.updateCashbooks(allCashbooks);
+            }
+
+            Log.d(TAG, "Loaded " + allCashbooks.size() + " cashbooks");
+        }, error -> {
+            showLoading(false);
+            showError(error);
+        });
+    }
+
+    private void listenForSummaries() {
+        summariesListener = repository.observeCashbookSummaries(latest -> {
+            summaries = latest;
+            if (allCashbooks.isEmpty() || adapter == null) return;
+            for (CashbookModel cashbook : allCashbooks) {
+                repository.applySummary(cashbook, summaries);
+            }
+            filterCashbooks(searchCashbook != null ? searchCashbook.getText().toString() : null);
+        });
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (summariesListener != null) {
+            repository.removeSummaryListener(null, summariesListener);
+            summariesListener = null;
+        }
     }
 
     private void filterCashbooks(String query) {
@@ -0,0 +1,71 @@
+package com.satvik.artham.models;
+
+import com.google.firebase.database.IgnoreExtraProperties;
+
+/**
+ * Running totals for one cashbook, stored at users/{uid}/cashbookSummaries/{cashbookId}.
+ * Maintained by DataRepository with server-side increments on every transaction write,
+ * so lists of cashbooks never have to read the transactions themselves.
+ */
+@IgnoreExtraProperties
+public class CashbookSummary {
+    private double totalIn;
+    private double totalOut;
+    private double balance;
+    private long count;
+    private long lastModified;
+    // Set only when the totals are computed from the transactions; increments never set it
+    private boolean backfilled;
+
+    public CashbookSummary() {
+        // Default constructor required for Firebase
+    }
+
+    public double getTotalIn() {
+        return totalIn;
+    }
+
+    public void setTotalIn(double totalIn) {
+        this.totalIn = totalIn;
+    }
+
+    public double getTotalOut() {
+        return totalOut;
+    }
+
+    public void setTotalOut(double totalOut) {
+        this.totalOut = totalOut;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    public void setBalance(double balance) {
+        this.balance = balance;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public boolean isBackfilled() {
+        return backfilled;
+    }
+
+    public void setBackfilled(boolean backfilled) {
+        this.backfilled = backfilled;
+    }
+}
@@ -0,0 +1,82 @@
+package com.satvik.artham.models;
+
+import com.google.firebase.database.IgnoreExtraProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Totals for one calendar month of a cashbook, stored at
+ * users/{uid}/rollups/{cashbookId}/{yyyy-MM}. Maintained by DataRepository with
+ * server-side increments on every transaction write, so analytics never has to read
+ * the transactions themselves. Category keys are encoded with FirebaseKeyUtils.
+ */
+@IgnoreExtraProperties
+public class MonthlyRollup {
+    private double totalIn;
+    private double totalOut;
+    private long count;
+    private Map<String, CategoryTotals> categories = new HashMap<>();
+
+    public MonthlyRollup() {
+        // Default constructor required for Firebase
+    }
+
+    public double getTotalIn() {
+        return totalIn;
+    }
+
+    public void setTotalIn(double totalIn) {
+        this.totalIn = totalIn;
+    }
+
+    public double getTotalOut() {
+        return totalOut;
+    }
+
+    public void setTotalOut(double totalOut) {
+        this.totalOut = totalOut;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public Map<String, CategoryTotals> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(Map<String, CategoryTotals> categories) {
+        this.categories = categories != null ? categories : new HashMap<>();
+    }
+
+    @IgnoreExtraProperties
+    public static class CategoryTotals {
+        private double in;
+        private double out;
+
+        public CategoryTotals() {
+            // Default constructor required for Firebase
+        }
+
+        public double getIn() {
+            return in;
+        }
+
+        public void setIn(double in) {
+            this.in = in;
+        }
+
+        public double getOut() {
+            return out;
+        }
+
+        public void setOut(double out) {
+            this.out = out;
+        }
+    }
+}
@@ -66,4 +66,53 @@ public class DateTimeUtils {
         SimpleDateFormat sdf = new SimpleDateFormat(pattern, Locale.getDefault());
         return sdf.format(new Date(timestamp));
     }
-}
\ No newline at end of file
+
+    /**
+     * Start of the day containing the timestamp, in the device time zone
+     * @param timestamp Unix timestamp in milliseconds
+     * @return First millisecond of that day
+     */
+    public static long getDayStart(long timestamp) {
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        return buckets.dayStart(buckets.dayKey(timestamp));
+    }
+
+    /**
+     * End of the day containing the timestamp, in the device time zone
+     * @param timestamp Unix timestamp in milliseconds
+     * @return Last millisecond of that day (inclusive bound)
+     */
+    public static long getDayEnd(long timestamp) {
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        return buckets.dayEnd(buckets.dayKey(timestamp));
+    }
+
+    /**
+     * Start of the month containing the timestamp, in the device time zone
+     * @param timestamp Unix timestamp in milliseconds
+     * @return First millisecond of that month
+     */
+    public static long getMonthStart(long timestamp) {
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        return buckets.monthStart(buckets.monthKey(timestamp));
+    }
+
+    /**
+     * End of the month containing the timestamp, in the device time zone
+     * @param timestamp Unix timestamp in milliseconds
+     * @return Last millisecond of that month (inclusive bound)
+     */
+    public static long getMonthEnd(long timestamp) {
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        return buckets.monthEnd(buckets.monthKey(timestamp));
+    }
+
+    /**
+     * Month key of the timestamp in the device time zone, e.g. "2024-03"
+     * @param timestamp Unix timestamp in milliseconds
+     * @return The yyyy-MM key, always with ASCII digits so it is safe as a database key
+     */
+    public static String getMonthKey(long timestamp) {
+        return TimeBuckets.formatMonthKey(TimeBuckets.getDefault().monthKey(timestamp));
+    }
+}
@@ -0,0 +1,25 @@
+package com.satvik.artham.utils;
+
+/**
+ * Event - A LiveData value to be acted on once, such as a toast. The observer takes it
+ * with {@link #consume()}, so the value LiveData replays to a re-created observer after a
+ * rotation comes back as already handled.
+ */
+public class Event<T> {
+
+    private final T content;
+    private boolean consumed = false;
+
+    public Event(T content) {
+        this.content = content;
+    }
+
+    /**
+     * The content the first time it is asked for, null afterwards.
+     */
+    public T consume() {
+        if (consumed) return null;
+        consumed = true;
+        return content;
+    }
+}
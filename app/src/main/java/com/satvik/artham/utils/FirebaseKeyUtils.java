@@ -0,0 +1,46 @@
+package com.satvik.artham.utils;
+
+import java.util.Locale;
+
+public class FirebaseKeyUtils {
+
+    // Characters Realtime Database does not allow in keys, plus the escape character itself
+    private static final String RESERVED = "%.$#[]/";
+
+    /**
+     * Encode free text (e.g. a category name) for use as a database key
+     * @param text Any string
+     * @return The text with reserved characters percent-encoded
+     */
+    public static String encodeKey(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (RESERVED.indexOf(c) >= 0 || c < 0x20 || c == 0x7F) {
+                builder.append('%').append(String.format(Locale.US, "%02X", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reverse of {@link #encodeKey}
+     * @param key A key produced by encodeKey
+     * @return The original text
+     */
+    public static String decodeKey(String key) {
+        StringBuilder builder = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '%' && i + 2 < key.length()) {
+                builder.append((char) Integer.parseInt(key.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
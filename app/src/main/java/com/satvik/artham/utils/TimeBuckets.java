@@ -0,0 +1,253 @@
+package com.satvik.artham.utils;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * TimeBuckets - Maps millisecond timestamps to day, week, month and year keys in one
+ * time zone without allocating. The zone's UTC offsets are probed once into a table of
+ * transitions, so each lookup is a binary search plus integer arithmetic instead of a
+ * Calendar or SimpleDateFormat per row.
+ *
+ * Keys are plain ints that sort in time order:
+ * - day:   days since 1970-01-01 in local time
+ * - week:  weeks since the Monday before 1970-01-01 (weeks start on Monday)
+ * - month: year * 100 + month, e.g. 202403
+ * - year:  the calendar year, e.g. 2024
+ *
+ * The table covers 1900 to 2100, the same range the date pickers allow; outside it the
+ * nearest known offset is used. Instances are immutable and safe to share across threads.
+ */
+public final class TimeBuckets {
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final int FIRST_YEAR = 1900;
+    private static final int LAST_YEAR = 2100;
+    // Offsets are sampled weekly and each change is narrowed down to the millisecond. Two
+    // changes inside one week that cancel out would be missed; no real zone does that.
+    private static final long PROBE_STEP_MS = 7 * DAY_MS;
+
+    private static volatile TimeBuckets defaultBuckets;
+
+    private final String zoneId;
+    // transitions[i] is the first instant at which offsets[i] applies; transitions[0] is
+    // Long.MIN_VALUE so every instant falls inside some segment
+    private final long[] transitions;
+    private final int[] offsets;
+
+    private TimeBuckets(TimeZone zone) {
+        this.zoneId = zone.getID();
+
+        long from = epochDayOf(FIRST_YEAR, 1, 1) * DAY_MS - DAY_MS;
+        long to = epochDayOf(LAST_YEAR + 1, 1, 1) * DAY_MS + DAY_MS;
+
+        long[] foundTransitions = new long[64];
+        int[] foundOffsets = new int[64];
+        int count = 0;
+        foundTransitions[count] = Long.MIN_VALUE;
+        foundOffsets[count] = zone.getOffset(from);
+        count++;
+
+        int previousOffset = foundOffsets[0];
+        for (long probe = from + PROBE_STEP_MS; probe <= to; probe += PROBE_STEP_MS) {
+            int offset = zone.getOffset(probe);
+            if (offset == previousOffset) continue;
+
+            // Narrow down to the exact millisecond the new offset starts
+            long low = probe - PROBE_STEP_MS;
+            long high = probe;
+            while (high - low > 1) {
+                long mid = low + (high - low) / 2;
+                if (zone.getOffset(mid) == previousOffset) low = mid; else high = mid;
+            }
+
+            if (count == foundTransitions.length) {
+                foundTransitions = Arrays.copyOf(foundTransitions, count * 2);
+                foundOffsets = Arrays.copyOf(foundOffsets, count * 2);
+            }
+            foundTransitions[count] = high;
+            foundOffsets[count] = offset;
+            count++;
+            previousOffset = offset;
+        }
+
+        this.transitions = Arrays.copyOf(foundTransitions, count);
+        this.offsets = Arrays.copyOf(foundOffsets, count);
+    }
+
+    /**
+     * Buckets for the device's current time zone. Rebuilt when the zone changes, so fetch
+     * it once per grouping pass rather than once per row.
+     */
+    public static TimeBuckets getDefault() {
+        TimeZone zone = TimeZone.getDefault();
+        TimeBuckets buckets = defaultBuckets;
+        if (buckets == null || !buckets.zoneId.equals(zone.getID())) {
+            buckets = new TimeBuckets(zone);
+            defaultBuckets = buckets;
+        }
+        return buckets;
+    }
+
+    public static TimeBuckets forZone(TimeZone zone) {
+        return new TimeBuckets(zone);
+    }
+
+    public String getZoneId() {
+        return zoneId;
+    }
+
+    /**
+     * Offset from UTC in effect at the timestamp, in milliseconds.
+     */
+    public int getOffset(long timestamp) {
+        return offsets[segmentOf(timestamp)];
+    }
+
+    public int dayKey(long timestamp) {
+        return (int) Math.floorDiv(timestamp + getOffset(timestamp), DAY_MS);
+    }
+
+    public int weekKey(long timestamp) {
+        return weekOfDay(dayKey(timestamp));
+    }
+
+    public int monthKey(long timestamp) {
+        return monthOfDay(dayKey(timestamp));
+    }
+
+    public int yearKey(long timestamp) {
+        return monthOfDay(dayKey(timestamp)) / 100;
+    }
+
+    /**
+     * First millisecond of the local day. When midnight is skipped by a DST change this
+     * is the moment the clocks jump; when it repeats it is the first occurrence.
+     */
+    public long dayStart(int dayKey) {
+        return startOfLocal(dayKey * DAY_MS);
+    }
+
+    /**
+     * Last millisecond of the local day (inclusive bound).
+     */
+    public long dayEnd(int dayKey) {
+        return dayStart(dayKey + 1) - 1;
+    }
+
+    public long weekStart(int weekKey) {
+        return dayStart(weekKey * 7 - 3);
+    }
+
+    public long monthStart(int monthKey) {
+        return dayStart((int) epochDayOf(monthKey / 100, monthKey % 100, 1));
+    }
+
+    /**
+     * Last millisecond of the month (inclusive bound).
+     */
+    public long monthEnd(int monthKey) {
+        return monthStart(nextMonthKey(monthKey)) - 1;
+    }
+
+    public long yearStart(int year) {
+        return dayStart((int) epochDayOf(year, 1, 1));
+    }
+
+    // --- Key arithmetic, independent of the zone ---
+
+    public static int weekOfDay(int dayKey) {
+        // 1970-01-01 was a Thursday, so shift by three days to start weeks on Monday
+        return Math.floorDiv(dayKey + 3, 7);
+    }
+
+    public static int monthOfDay(int dayKey) {
+        return civilFromDays(dayKey) / 100;
+    }
+
+    public static int nextMonthKey(int monthKey) {
+        return monthKey % 100 == 12 ? (monthKey / 100 + 1) * 100 + 1 : monthKey + 1;
+    }
+
+    public static int previousMonthKey(int monthKey) {
+        return monthKey % 100 == 1 ? (monthKey / 100 - 1) * 100 + 12 : monthKey - 1;
+    }
+
+    /**
+     * The month key as "yyyy-MM", the format used for database keys.
+     */
+    public static String formatMonthKey(int monthKey) {
+        return String.format(Locale.US, "%04d-%02d", monthKey / 100, monthKey % 100);
+    }
+
+    /**
+     * Parses a "yyyy-MM" key back into a month key, or returns -1 if it is malformed.
+     */
+    public static int parseMonthKey(String month) {
+        if (month == null || month.length() != 7 || month.charAt(4) != '-') return -1;
+        try {
+            int year = Integer.parseInt(month.substring(0, 4));
+            int monthOfYear = Integer.parseInt(month.substring(5));
+            return monthOfYear >= 1 && monthOfYear <= 12 ? year * 100 + monthOfYear : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // --- Internals ---
+
+    private int segmentOf(long timestamp) {
+        int index = Arrays.binarySearch(transitions, timestamp);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Earliest instant whose local wall time is at or after the given local time.
+     */
+    private long startOfLocal(long local) {
+        int guess = segmentOf(local - getOffset(local));
+        int first = Math.max(0, guess - 1);
+        int last = Math.min(transitions.length - 1, guess + 1);
+
+        // An instant u shows the local time if u + offset(u) == local; check the segments
+        // around the guess and keep the earliest match (overlaps have two)
+        for (int i = first; i <= last; i++) {
+            long candidate = local - offsets[i];
+            if (candidate >= transitions[i] && (i + 1 == transitions.length || candidate < transitions[i + 1])) {
+                return candidate;
+            }
+        }
+
+        // The local time falls into a gap; the first instant after it is the transition
+        for (int i = Math.max(1, first); i <= last; i++) {
+            if (transitions[i] + offsets[i] > local) return transitions[i];
+        }
+        return local - offsets[guess];
+    }
+
+    /**
+     * Packs the civil date of a day number as yyyyMMdd (proleptic Gregorian).
+     */
+    private static int civilFromDays(long days) {
+        long z = days + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return (int) (year * 10_000 + month * 100 + day);
+    }
+
+    private static long epochDayOf(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
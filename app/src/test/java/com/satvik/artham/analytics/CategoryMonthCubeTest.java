@@ -0,0 +1,195 @@
+package com.satvik.artham.analytics;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.models.MonthlyRollup;
+import com.satvik.artham.utils.FirebaseKeyUtils;
+import com.satvik.artham.utils.TimeBuckets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks CategoryMonthCube against a recount of the book, across category and month
+ * growth, rollups and rounding.
+ */
+public class CategoryMonthCubeTest {
+
+    private static final double EPSILON = 1e-6;
+    private static final long MONTH = 30 * StoreFeed.DAY;
+
+    private final TimeZone originalDefault = TimeZone.getDefault();
+    private CategoryMonthCube cube;
+    private StoreFeed feed;
+
+    @Before
+    public void setUp() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        cube = new CategoryMonthCube(null);
+        feed = new StoreFeed(cube.storeListener);
+    }
+
+    @After
+    public void restoreDefaultZone() {
+        TimeZone.setDefault(originalDefault);
+    }
+
+    @Test
+    public void cells_matchRecount_throughDeltas() {
+        Random random = new Random(15);
+        feed.put(transaction(random, "seed", StoreFeed.START + 24 * MONTH));
+        feed.reload();
+
+        // 40 categories outgrow the initial stride; months spread years before and after
+        // the first one move the origin both ways
+        for (int step = 0; step < 4000; step++) {
+            String id = "t" + random.nextInt(400);
+            if (feed.get(id) != null && random.nextInt(4) == 0) {
+                feed.delete(id);
+            } else {
+                long offset = (long) (random.nextGaussian() * 20 * MONTH);
+                feed.put(transaction(random, id, StoreFeed.START + 24 * MONTH + offset));
+            }
+            if (step % 500 == 0) assertMatchesRecount();
+        }
+        assertMatchesRecount();
+        assertTrue(cube.getCategoryCount() > 16);
+
+        feed.reload();
+        assertMatchesRecount();
+    }
+
+    @Test
+    public void layout_keepsCellsWhenGrowingEitherWay() {
+        feed.reload();
+        feed.put(StoreFeed.transaction("mid", StoreFeed.START + 5 * MONTH, "OUT", 50, "c0"));
+        // Years before the first month, far beyond the slack
+        feed.put(StoreFeed.transaction("early", StoreFeed.START - 60 * MONTH, "IN", 70, "c1"));
+        // And years after it
+        feed.put(StoreFeed.transaction("late", StoreFeed.START + 80 * MONTH, "OUT", 20, "c2"));
+        for (int i = 3; i < 40; i++) {
+            feed.put(StoreFeed.transaction("c" + i, StoreFeed.START + 5 * MONTH, "OUT", i, "c" + i));
+        }
+        assertMatchesRecount();
+
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        assertEquals(50, cube.getOut(buckets.monthKey(StoreFeed.START + 5 * MONTH), cube.getCategoryId("c0")), EPSILON);
+        assertEquals(70, cube.getIn(buckets.monthKey(StoreFeed.START - 60 * MONTH), cube.getCategoryId("c1")), EPSILON);
+        assertEquals(-1, cube.getCategoryId("never"));
+    }
+
+    @Test
+    public void putRollup_replacesTheMonth() {
+        long march = StoreFeed.START + 70 * StoreFeed.DAY;
+        long april = march + MONTH;
+        feed.put(StoreFeed.transaction("a", march, "OUT", 40, "Food"));
+        feed.put(StoreFeed.transaction("b", march, "IN", 500, "Salary"));
+        feed.put(StoreFeed.transaction("c", april, "OUT", 15, "Food"));
+        feed.reload();
+
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        int marchKey = buckets.monthKey(march);
+        int aprilKey = buckets.monthKey(april);
+        MonthlyRollup rollup = new MonthlyRollup();
+        MonthlyRollup.CategoryTotals fuel = new MonthlyRollup.CategoryTotals();
+        fuel.setOut(12.5);
+        rollup.getCategories().put(FirebaseKeyUtils.encodeKey("Fuel.Car"), fuel);
+        rollup.setTotalOut(12.5);
+        rollup.setCount(1);
+        cube.putRollup(marchKey, rollup);
+
+        assertEquals(12.5, cube.getOut(marchKey, cube.getCategoryId("Fuel.Car")), EPSILON);
+        assertEquals(0, cube.getOut(marchKey, cube.getCategoryId("Food")), EPSILON);
+        assertEquals(0, cube.getIn(marchKey, cube.getCategoryId("Salary")), EPSILON);
+        assertEquals(0, cube.getMonthIn(marchKey), EPSILON);
+        assertEquals(12.5, cube.getMonthOut(marchKey), EPSILON);
+        assertEquals(15, cube.getOut(aprilKey, cube.getCategoryId("Food")), EPSILON);
+    }
+
+    @Test
+    public void rollupsAlone_fillACubeWithoutAStore() {
+        CategoryMonthCube rollupCube = new CategoryMonthCube();
+        assertFalse(rollupCube.isReady());
+        MonthlyRollup rollup = new MonthlyRollup();
+        MonthlyRollup.CategoryTotals rent = new MonthlyRollup.CategoryTotals();
+        rent.setOut(900);
+        rollup.getCategories().put("Rent", rent);
+        rollup.setTotalOut(900);
+        rollup.setCount(1);
+        rollupCube.putRollup(202402, rollup);
+        rollupCube.putRollup(202312, new MonthlyRollup());
+
+        assertTrue(rollupCube.isReady());
+        assertEquals(900, rollupCube.getOut(202402, rollupCube.getCategoryId("Rent")), EPSILON);
+        assertEquals(Collections.singletonList(202402), rollupCube.getActiveMonths());
+    }
+
+    @Test
+    public void settle_zeroesRoundingLeftovers() {
+        feed.reload();
+        feed.put(StoreFeed.transaction("a", StoreFeed.START, "IN", 0.1, "Tips"));
+        feed.put(StoreFeed.transaction("b", StoreFeed.START, "IN", 0.2, "Tips"));
+        feed.put(StoreFeed.transaction("c", StoreFeed.START, "IN", 0.7, "Tips"));
+        feed.delete("a");
+        feed.delete("c");
+        feed.delete("b");
+
+        int monthKey = TimeBuckets.getDefault().monthKey(StoreFeed.START);
+        assertEquals(0.0, cube.getIn(monthKey, cube.getCategoryId("Tips")), 0);
+        assertEquals(0.0, cube.getMonthIn(monthKey), 0);
+        assertTrue(cube.getActiveMonths().isEmpty());
+    }
+
+    private void assertMatchesRecount() {
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        Map<String, double[]> cells = new HashMap<>();
+        Map<Integer, double[]> months = new HashMap<>();
+        Set<Integer> active = new HashSet<>();
+        for (TransactionModel transaction : feed.snapshot()) {
+            int monthKey = buckets.monthKey(transaction.getTimestamp());
+            String category = transaction.getTransactionCategory();
+            if (category == null || category.isEmpty()) category = CategoryMonthCube.UNCATEGORIZED;
+            int side = "IN".equalsIgnoreCase(transaction.getType()) ? 0 : 1;
+            cells.computeIfAbsent(monthKey + "|" + category, key -> new double[2])[side] += transaction.getAmount();
+            months.computeIfAbsent(monthKey, key -> new double[2])[side] += transaction.getAmount();
+            active.add(monthKey);
+        }
+
+        for (Map.Entry<String, double[]> cell : cells.entrySet()) {
+            String[] parts = cell.getKey().split("\\|", 2);
+            int monthKey = Integer.parseInt(parts[0]);
+            int categoryId = cube.getCategoryId(parts[1]);
+            assertTrue(cell.getKey(), categoryId >= 0);
+            assertEquals(cell.getKey(), cell.getValue()[0], cube.getIn(monthKey, categoryId), EPSILON);
+            assertEquals(cell.getKey(), cell.getValue()[1], cube.getOut(monthKey, categoryId), EPSILON);
+        }
+        for (int monthKey : cube.getActiveMonths()) {
+            double[] totals = months.get(monthKey);
+            assertNotNull(String.valueOf(monthKey), totals);
+            assertEquals(totals[0], cube.getMonthIn(monthKey), EPSILON);
+            assertEquals(totals[1], cube.getMonthOut(monthKey), EPSILON);
+        }
+
+        List<Integer> expectedMonths = new ArrayList<>(active);
+        expectedMonths.sort(Collections.reverseOrder());
+        assertEquals(expectedMonths, cube.getActiveMonths());
+    }
+
+    private static TransactionModel transaction(Random random, String id, long timestamp) {
+        String category = random.nextInt(20) == 0 ? null : "c" + random.nextInt(40);
+        return StoreFeed.transaction(id, timestamp, random.nextBoolean() ? "IN" : "out",
+                1 + random.nextInt(4000) / 4.0, category);
+    }
+}
@@ -0,0 +1,111 @@
+package com.satvik.artham.analytics;
+
+import com.satvik.artham.TransactionModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks FacetCounter's counts and money in and out against a recount of the book,
+ * while the counter follows deltas and reloads.
+ */
+public class FacetCounterTest {
+
+    private static final double EPSILON = 1e-6;
+
+    private FacetCounter counter;
+    private StoreFeed feed;
+
+    @Before
+    public void setUp() {
+        counter = new FacetCounter(null);
+        feed = new StoreFeed(counter.storeListener);
+    }
+
+    @Test
+    public void facets_matchRecount_throughDeltas() {
+        Random random = new Random(25);
+        for (int i = 0; i < 50; i++) feed.put(StoreFeed.randomTransaction(random, "t" + i, 30 * StoreFeed.DAY));
+        feed.reload();
+        assertTrue(counter.isReady());
+
+        // Few ids, so values keep emptying out and coming back
+        for (int step = 0; step < 3000; step++) {
+            feed.randomChange(random, 60, 30 * StoreFeed.DAY);
+            if (step % 100 == 0) assertMatchesRecount();
+        }
+        assertMatchesRecount();
+        feed.reload();
+        assertMatchesRecount();
+    }
+
+    @Test
+    public void facet_disappearsWhenItsLastEntryGoes() {
+        feed.reload();
+        TransactionModel rent = StoreFeed.transaction("a", StoreFeed.START, "OUT", 900, "Rent");
+        rent.setPartyName("Landlord");
+        rent.setPaymentMode("Online");
+        feed.put(rent);
+        feed.put(StoreFeed.transaction("b", StoreFeed.START, "IN", 50, "Rent"));
+        assertEquals(2, counter.getFacet(FacetCounter.Dimension.CATEGORY, "Rent").getCount());
+        assertEquals(50, counter.getFacet(FacetCounter.Dimension.CATEGORY, "Rent").getIn(), EPSILON);
+        assertEquals(900, counter.getFacet(FacetCounter.Dimension.CATEGORY, "Rent").getOut(), EPSILON);
+
+        // Moving the entry to another category and party empties the old ones
+        TransactionModel moved = StoreFeed.transaction("a", StoreFeed.START, "OUT", 900, "Housing");
+        moved.setPartyName("Agent");
+        feed.put(moved);
+        assertNull(counter.getFacet(FacetCounter.Dimension.PARTY, "Landlord"));
+        assertNull(counter.getFacet(FacetCounter.Dimension.PAYMENT_MODE, "Online"));
+        assertEquals(1, counter.getFacet(FacetCounter.Dimension.CATEGORY, "Rent").getCount());
+
+        feed.delete("b");
+        assertNull(counter.getFacet(FacetCounter.Dimension.CATEGORY, "Rent"));
+        assertEquals(1, counter.getFacets(FacetCounter.Dimension.CATEGORY).size());
+    }
+
+    private void assertMatchesRecount() {
+        for (FacetCounter.Dimension dimension : FacetCounter.Dimension.values()) {
+            Map<String, double[]> expected = new HashMap<>();
+            for (TransactionModel transaction : feed.snapshot()) {
+                String value = valueOf(dimension, transaction);
+                if (value == null || value.isEmpty()) continue;
+                double[] totals = expected.computeIfAbsent(value, key -> new double[3]);
+                totals[0]++;
+                totals["IN".equalsIgnoreCase(transaction.getType()) ? 1 : 2] += transaction.getAmount();
+            }
+
+            List<FacetCounter.Facet> facets = counter.getFacets(dimension);
+            assertEquals(dimension.name(), expected.size(), facets.size());
+            List<String> order = new ArrayList<>(expected.keySet());
+            order.sort((a, b) -> expected.get(a)[0] != expected.get(b)[0]
+                    ? Double.compare(expected.get(b)[0], expected.get(a)[0]) : a.compareTo(b));
+            for (int i = 0; i < facets.size(); i++) {
+                FacetCounter.Facet facet = facets.get(i);
+                double[] totals = expected.get(facet.getValue());
+                String label = dimension + " " + facet.getValue();
+                assertEquals(label, order.get(i), facet.getValue());
+                assertEquals(label, (long) totals[0], facet.getCount());
+                assertEquals(label, totals[1], facet.getIn(), EPSILON);
+                assertEquals(label, totals[2], facet.getOut(), EPSILON);
+                assertSame(facet, counter.getFacet(dimension, facet.getValue()));
+            }
+        }
+    }
+
+    private static String valueOf(FacetCounter.Dimension dimension, TransactionModel transaction) {
+        switch (dimension) {
+            case CATEGORY: return transaction.getTransactionCategory();
+            case PARTY: return transaction.getPartyName();
+            default: return transaction.getPaymentMode();
+        }
+    }
+}
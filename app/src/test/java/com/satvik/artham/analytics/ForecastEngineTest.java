@@ -0,0 +1,157 @@
+package com.satvik.artham.analytics;
+
+import com.satvik.artham.models.MonthlyRollup;
+import com.satvik.artham.utils.FirebaseKeyUtils;
+import com.satvik.artham.utils.TimeBuckets;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ForecastEngine's incrementally moved averages equal the ones computed from
+ * scratch, whatever order the rollups arrive in and however many months close meanwhile.
+ */
+public class ForecastEngineTest {
+
+    private static final double EPSILON = 1e-6;
+    private static final double DECAY = 0.7;
+    private static final String[] CATEGORIES = {"Rent", "Food", "Travel", "Fuel.Car", "Others"};
+
+    @Test
+    public void averages_matchRecompute_forRollupsInAnyOrder() {
+        Random random = new Random(17);
+        for (int round = 0; round < 50; round++) {
+            ForecastEngine engine = new ForecastEngine(null, "book");
+            Map<Integer, MonthlyRollup> latest = new HashMap<>();
+            int currentMonthKey = 202401;
+
+            for (int step = 0; step < 60; step++) {
+                if (random.nextInt(10) == 0) currentMonthKey = TimeBuckets.nextMonthKey(currentMonthKey);
+                // History before the current month, and now and then a future month
+                int monthKey = 202301;
+                for (int n = random.nextInt(16 + (currentMonthKey % 100)); n > 0; n--) {
+                    monthKey = TimeBuckets.nextMonthKey(monthKey);
+                }
+                MonthlyRollup rollup = random.nextInt(8) == 0 ? null : randomRollup(random);
+                latest.put(monthKey, rollup);
+                assertTrue(engine.applyRollup(currentMonthKey, TimeBuckets.formatMonthKey(monthKey), rollup));
+            }
+            // The month may also close with no rollup arriving after it
+            currentMonthKey = TimeBuckets.nextMonthKey(currentMonthKey);
+            engine.applyRollup(currentMonthKey, TimeBuckets.formatMonthKey(currentMonthKey),
+                    latest.get(currentMonthKey));
+
+            ForecastEngine.Forecast incremental = engine.project(currentMonthKey, 10, 30);
+            assertEquals(expectedAverage(latest, currentMonthKey), incremental.getAverage(), EPSILON);
+
+            engine.recompute();
+            ForecastEngine.Forecast recomputed = engine.project(currentMonthKey, 10, 30);
+            assertForecastsEqual(recomputed, incremental);
+        }
+    }
+
+    @Test
+    public void applyRollup_ignoresUnreadableMonths() {
+        ForecastEngine engine = new ForecastEngine(null, "book");
+        assertFalse(engine.applyRollup(202403, "March", randomRollup(new Random(1))));
+        assertEquals(0, engine.project(202403, 1, 31).getProjected(), EPSILON);
+    }
+
+    @Test
+    public void project_blendsRunRateAndAverage() {
+        ForecastEngine engine = new ForecastEngine(null, "book");
+        engine.applyRollup(202403, "2024-02", rollup("Food", 300));
+        engine.applyRollup(202403, "2024-03", rollup("Food", 100));
+
+        // One closed month, so the average is that month's spend
+        ForecastEngine.Forecast forecast = engine.project(202403, 10, 30);
+        assertEquals(300, forecast.getAverage(), EPSILON);
+        assertEquals(100, forecast.getMonthToDate(), EPSILON);
+        double dailyRate = (10.0 / 30) * 100 / 10 + (20.0 / 30) * 300 / 30;
+        assertEquals(100 + dailyRate * 20, forecast.getCategoryProjections().get("Food"), EPSILON);
+
+        // Without history the run rate alone projects
+        ForecastEngine fresh = new ForecastEngine(null, "book");
+        fresh.applyRollup(202403, "2024-03", rollup("Food", 100));
+        assertEquals(300, fresh.project(202403, 10, 30).getProjected(), EPSILON);
+    }
+
+    private static void assertForecastsEqual(ForecastEngine.Forecast expected, ForecastEngine.Forecast actual) {
+        assertEquals(expected.getAverage(), actual.getAverage(), EPSILON);
+        assertEquals(expected.getMonthToDate(), actual.getMonthToDate(), EPSILON);
+        assertEquals(expected.getProjected(), actual.getProjected(), EPSILON);
+        List<String> categories = new ArrayList<>(expected.getCategoryProjections().keySet());
+        categories.addAll(actual.getCategoryProjections().keySet());
+        for (String category : categories) {
+            assertEquals(category, expected.getCategoryProjections().getOrDefault(category, 0.0),
+                    actual.getCategoryProjections().getOrDefault(category, 0.0), EPSILON);
+        }
+    }
+
+    /**
+     * Sum over categories of the weighted average monthly spend of the closed months,
+     * weighted from the first month with any spend.
+     */
+    private static double expectedAverage(Map<Integer, MonthlyRollup> rollups, int currentMonthKey) {
+        int current = ordinalOf(currentMonthKey);
+        int first = Integer.MAX_VALUE;
+        double weightedSpend = 0;
+        for (Map.Entry<Integer, MonthlyRollup> month : rollups.entrySet()) {
+            double spend = spendOf(month.getValue());
+            if (hasSpend(month.getValue())) first = Math.min(first, ordinalOf(month.getKey()));
+            int ordinal = ordinalOf(month.getKey());
+            if (ordinal < current) weightedSpend += Math.pow(DECAY, current - 1 - ordinal) * spend;
+        }
+        double weightTotal = 0;
+        for (int m = first; m < current; m++) weightTotal += Math.pow(DECAY, current - 1 - m);
+        return weightTotal > 0 ? weightedSpend / weightTotal : 0;
+    }
+
+    private static boolean hasSpend(MonthlyRollup rollup) {
+        if (rollup == null) return false;
+        for (MonthlyRollup.CategoryTotals totals : rollup.getCategories().values()) {
+            if (totals.getOut() != 0) return true;
+        }
+        return false;
+    }
+
+    private static double spendOf(MonthlyRollup rollup) {
+        if (rollup == null) return 0;
+        double spend = 0;
+        for (MonthlyRollup.CategoryTotals totals : rollup.getCategories().values()) spend += totals.getOut();
+        return spend;
+    }
+
+    private static MonthlyRollup randomRollup(Random random) {
+        MonthlyRollup rollup = new MonthlyRollup();
+        for (String category : CATEGORIES) {
+            if (random.nextInt(3) == 0) continue;
+            MonthlyRollup.CategoryTotals totals = new MonthlyRollup.CategoryTotals();
+            // Some categories only have income, i.e. no spend
+            if (random.nextInt(5) > 0) totals.setOut(random.nextInt(2000) / 4.0);
+            totals.setIn(random.nextInt(100));
+            rollup.getCategories().put(FirebaseKeyUtils.encodeKey(category), totals);
+        }
+        return rollup;
+    }
+
+    private static MonthlyRollup rollup(String category, double out) {
+        MonthlyRollup rollup = new MonthlyRollup();
+        MonthlyRollup.CategoryTotals totals = new MonthlyRollup.CategoryTotals();
+        totals.setOut(out);
+        rollup.setCategories(new HashMap<>(Collections.singletonMap(category, totals)));
+        return rollup;
+    }
+
+    private static int ordinalOf(int monthKey) {
+        return (monthKey / 100) * 12 + monthKey % 100 - 1;
+    }
+}
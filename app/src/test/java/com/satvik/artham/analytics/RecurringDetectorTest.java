@@ -0,0 +1,142 @@
+package com.satvik.artham.analytics;
+
+import com.satvik.artham.TransactionModel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the bounded window of a recurring-entry group and the series detection on it.
+ */
+public class RecurringDetectorTest {
+
+    private static final long DAY = 86_400_000L;
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    public void add_keepsTheLatestEntriesInAnyOrder() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            RecurringDetector.Group group = new RecurringDetector.Group();
+            List<Long> added = new ArrayList<>();
+            int entries = 1 + random.nextInt(30);
+            for (int i = 0; i < entries; i++) {
+                long time = START + random.nextInt(20) * DAY; // Plenty of equal times
+                group.add(entry("t" + i, time));
+                added.add(time);
+            }
+
+            Collections.sort(added);
+            List<Long> expected = added.subList(Math.max(0, added.size() - group.times.length), added.size());
+            assertEquals(expected.size(), group.size);
+            for (int i = 0; i < group.size; i++) {
+                assertEquals((long) expected.get(i), group.times[i]);
+                assertEquals(group.times[i], group.entries[i].getTimestamp());
+            }
+            for (int i = group.size; i < group.entries.length; i++) assertNull(group.entries[i]);
+        }
+    }
+
+    @Test
+    public void add_dropsEntriesOlderThanAFullWindow() {
+        RecurringDetector.Group group = new RecurringDetector.Group();
+        int window = group.times.length;
+        for (int i = 0; i < window; i++) group.add(entry("t" + i, START + (i + 1) * DAY));
+
+        group.add(entry("old", START));
+        assertEquals(window, group.size);
+        assertEquals(START + DAY, group.times[0]);
+
+        group.add(entry("new", START + (window + 1) * DAY));
+        assertEquals(window, group.size);
+        assertEquals(START + 2 * DAY, group.times[0]);
+        assertEquals("new", group.latest().getTransactionId());
+    }
+
+    @Test
+    public void remove_matchesById() {
+        RecurringDetector.Group group = new RecurringDetector.Group();
+        group.add(entry("a", START));
+        group.add(entry("b", START + DAY));
+        group.add(entry("c", START + DAY)); // Same time as b
+
+        group.remove(entry("b", START + DAY));
+        assertEquals(2, group.size);
+        assertEquals("a", group.entries[0].getTransactionId());
+        assertEquals("c", group.entries[1].getTransactionId());
+        assertNull(group.entries[2]);
+
+        group.remove(entry("missing", START));
+        assertEquals(2, group.size);
+    }
+
+    @Test
+    public void remove_latestFallsBackToThePreviousEntry() {
+        RecurringDetector.Group group = new RecurringDetector.Group();
+        group.add(entry("a", START));
+        group.add(entry("b", START + 30 * DAY));
+        group.add(entry("c", START + 60 * DAY));
+        assertEquals("c", group.latest().getTransactionId());
+
+        group.remove(entry("c", START + 60 * DAY));
+        assertEquals("b", group.latest().getTransactionId());
+
+        group.remove(entry("a", START));
+        group.remove(entry("b", START + 30 * DAY));
+        assertEquals(0, group.size);
+        assertNull(group.latest());
+    }
+
+    @Test
+    public void detect_findsASteadyInterval() {
+        RecurringDetector.Group group = new RecurringDetector.Group();
+        long[] offsets = {0, 31, 59, 90, 120}; // Calendar months
+        for (int i = 0; i < offsets.length; i++) group.add(entry("rent" + i, START + offsets[i] * DAY));
+
+        long last = START + 120 * DAY;
+        RecurringDetector.Series series = RecurringDetector.detect(group, last + 10 * DAY);
+        assertNotNull(series);
+        assertEquals(31, series.getIntervalDays()); // Gaps 31, 28, 31, 30
+        assertEquals(5, series.getOccurrences());
+        assertEquals("monthly", series.getCadence());
+        assertEquals("rent4", series.getTemplate().getTransactionId());
+        assertEquals(last + 31 * DAY, series.getNextDue());
+    }
+
+    @Test
+    public void detect_rejectsIrregularSparseAndStoppedGroups() {
+        RecurringDetector.Group irregular = new RecurringDetector.Group();
+        for (long offset : new long[]{0, 5, 40, 47}) irregular.add(entry("i" + offset, START + offset * DAY));
+        assertNull(RecurringDetector.detect(irregular, START + 50 * DAY));
+
+        RecurringDetector.Group sparse = new RecurringDetector.Group();
+        sparse.add(entry("s0", START));
+        sparse.add(entry("s1", START + 7 * DAY));
+        assertNull(RecurringDetector.detect(sparse, START + 8 * DAY));
+
+        RecurringDetector.Group weekly = new RecurringDetector.Group();
+        for (int i = 0; i < 4; i++) weekly.add(entry("w" + i, START + i * 7 * DAY));
+        assertNotNull(RecurringDetector.detect(weekly, START + 22 * DAY));
+        assertNull(RecurringDetector.detect(weekly, START + 60 * DAY)); // Stopped recurring
+
+        RecurringDetector.Group sameDay = new RecurringDetector.Group();
+        for (int i = 0; i < 4; i++) sameDay.add(entry("d" + i, START + i * 60_000L));
+        assertNull(RecurringDetector.detect(sameDay, START + DAY));
+    }
+
+    private static TransactionModel entry(String id, long timestamp) {
+        TransactionModel transaction = new TransactionModel();
+        transaction.setTransactionId(id);
+        transaction.setTimestamp(timestamp);
+        transaction.setAmount(1000);
+        transaction.setType("OUT");
+        transaction.setTransactionCategory("Rent");
+        return transaction;
+    }
+}
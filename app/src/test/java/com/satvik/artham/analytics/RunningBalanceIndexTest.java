@@ -0,0 +1,132 @@
+package com.satvik.artham.analytics;
+
+import com.satvik.artham.TransactionModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks RunningBalanceIndex against a running sum over the whole book, while the index
+ * follows deltas and reloads.
+ */
+public class RunningBalanceIndexTest {
+
+    private static final double EPSILON = 1e-6;
+
+    private RunningBalanceIndex index;
+    private StoreFeed feed;
+
+    @Before
+    public void setUp() {
+        index = new RunningBalanceIndex(null);
+        feed = new StoreFeed(index.storeListener);
+    }
+
+    @Test
+    public void balances_matchRunningSum_throughDeltas() {
+        Random random = new Random(14);
+        for (int i = 0; i < 100; i++) feed.put(StoreFeed.randomTransaction(random, "t" + i, 10 * StoreFeed.DAY));
+        feed.reload();
+        assertTrue(index.isReady());
+
+        for (int step = 0; step < 3000; step++) {
+            // A short span on whole minutes, so many entries share a timestamp
+            feed.randomChange(random, 250, 2 * StoreFeed.DAY);
+            if (step % 50 == 0) assertBalances(random);
+        }
+        assertBalances(random);
+
+        feed.reload();
+        assertBalances(random);
+    }
+
+    @Test
+    public void balanceAfter_ordersEqualTimestampsById() {
+        long time = StoreFeed.START;
+        feed.put(StoreFeed.transaction("b", time, "IN", 100, "Salary"));
+        feed.put(StoreFeed.transaction("a", time, "OUT", 30, "Rent"));
+        feed.reload();
+        feed.put(StoreFeed.transaction("c", time, "OUT", 5, "Food"));
+
+        assertEquals(-30, index.balanceAfter(feed.get("a")), EPSILON);
+        assertEquals(70, index.balanceAfter(feed.get("b")), EPSILON);
+        assertEquals(65, index.balanceAfter(feed.get("c")), EPSILON);
+        assertEquals(65, index.balanceAt(time), EPSILON);
+        assertEquals(0, index.balanceAt(time - 1), EPSILON);
+
+        // Moving an entry to a new time is a delete and an insert
+        TransactionModel moved = StoreFeed.transaction("a", time + 1, "OUT", 30, "Rent");
+        feed.put(moved);
+        assertEquals(95, index.balanceAt(time), EPSILON);
+        assertEquals(65, index.balanceAfter(moved), EPSILON);
+        assertTrue(Double.isNaN(index.balanceAfter(StoreFeed.transaction("x", time, "IN", 1, null))));
+    }
+
+    @Test
+    public void load_startsFromOpeningBalance() {
+        long time = StoreFeed.START;
+        RunningBalanceIndex month = new RunningBalanceIndex();
+        assertFalse(month.isReady());
+
+        List<TransactionModel> rows = new ArrayList<>();
+        rows.add(StoreFeed.transaction("b", time + 2, "OUT", 40, "Rent"));
+        rows.add(StoreFeed.transaction("a", time + 1, "IN", 100, "Salary"));
+        month.load(rows, 500);
+
+        assertTrue(month.isReady());
+        assertEquals(500, month.balanceAt(time), EPSILON);
+        assertEquals(600, month.balanceAfter(rows.get(1)), EPSILON);
+        assertEquals(560, month.balanceAfter(rows.get(0)), EPSILON);
+        assertEquals(560, month.getBalance(), EPSILON);
+        assertEquals(60, month.netBetween(time, time + 2), EPSILON);
+
+        // An empty slice still answers with the opening balance
+        month.load(new ArrayList<>(), 250);
+        assertEquals(250, month.getBalance(), EPSILON);
+        assertEquals(250, month.balanceAt(time + 2), EPSILON);
+    }
+
+    private void assertBalances(Random random) {
+        List<TransactionModel> snapshot = feed.snapshot();
+        assertEquals(snapshot.size(), index.size());
+
+        // Oldest first, ties by id; the running sum after each entry is its balance
+        List<TransactionModel> ascending = new ArrayList<>(snapshot);
+        ascending.sort((a, b) -> a.getTimestamp() != b.getTimestamp()
+                ? Long.compare(a.getTimestamp(), b.getTimestamp())
+                : a.getTransactionId().compareTo(b.getTransactionId()));
+        double balance = 0;
+        for (TransactionModel transaction : ascending) {
+            balance += signed(transaction);
+            assertEquals(transaction.getTransactionId(), balance, index.balanceAfter(transaction), EPSILON);
+        }
+        assertEquals(balance, index.getBalance(), EPSILON);
+
+        for (int probe = 0; probe < 50; probe++) {
+            long timestamp = StoreFeed.START + (long) (random.nextDouble() * 2 * StoreFeed.DAY) / 60_000 * 60_000
+                    + (random.nextBoolean() ? 0 : random.nextInt(3) - 1);
+            assertEquals(sumUpTo(snapshot, timestamp), index.balanceAt(timestamp), EPSILON);
+            long to = timestamp + random.nextInt(6 * 3_600_000);
+            assertEquals(sumUpTo(snapshot, to) - sumUpTo(snapshot, timestamp - 1),
+                    index.netBetween(timestamp, to), EPSILON);
+        }
+    }
+
+    private static double sumUpTo(List<TransactionModel> snapshot, long timestamp) {
+        double sum = 0;
+        for (TransactionModel transaction : snapshot) {
+            if (transaction.getTimestamp() <= timestamp) sum += signed(transaction);
+        }
+        return sum;
+    }
+
+    private static double signed(TransactionModel transaction) {
+        return "IN".equalsIgnoreCase(transaction.getType()) ? transaction.getAmount() : -transaction.getAmount();
+    }
+}
@@ -0,0 +1,129 @@
+package com.satvik.artham.analytics;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.db.TransactionStore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Plays a TransactionStore for the analytics tests. It holds the transactions and makes
+ * the calls the store makes: a reload with the whole snapshot, then for every change
+ * one delta followed by the new snapshot.
+ */
+final class StoreFeed {
+
+    static final long DAY = 86_400_000L;
+    // 2024-01-01T00:00:00Z
+    static final long START = 1_704_067_200_000L;
+
+    private static final String[] CATEGORIES = {"Rent", "Food", "Travel", "Salary", "Food & Drinks", ""};
+    private static final String[] PARTIES = {"Landlord", "Cafe Mocha", "Metro Rail", "Acme Corp", "cafe", null};
+    private static final String[] MODES = {"Cash", "Online", "Card"};
+    private static final String[] TYPES = {"IN", "OUT", "in", "Out", "OUT"};
+    private static final String[] REMARKS = {"January rent", "lunch with team", "metro card top-up",
+            "salary credit", "rent deposit", "", null, "Dinner (team)"};
+
+    private final Map<String, TransactionModel> byId = new HashMap<>();
+    private final List<TransactionStore.Listener> listeners;
+
+    StoreFeed(TransactionStore.Listener... listeners) {
+        this.listeners = Arrays.asList(listeners);
+    }
+
+    /**
+     * Hands every listener the current snapshot as a reload.
+     */
+    void reload() {
+        List<TransactionModel> snapshot = snapshot();
+        for (TransactionStore.Listener listener : listeners) listener.onTransactionsReloaded(snapshot);
+    }
+
+    /**
+     * Adds or replaces a transaction.
+     */
+    void put(TransactionModel transaction) {
+        TransactionModel before = byId.put(transaction.getTransactionId(), transaction);
+        changed(before, transaction);
+    }
+
+    void delete(String transactionId) {
+        TransactionModel before = byId.remove(transactionId);
+        if (before != null) changed(before, null);
+    }
+
+    TransactionModel get(String transactionId) {
+        return byId.get(transactionId);
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * Newest first, ties by id, like the store.
+     */
+    List<TransactionModel> snapshot() {
+        List<TransactionModel> snapshot = new ArrayList<>(byId.values());
+        snapshot.sort((a, b) -> {
+            int byTime = Long.compare(b.getTimestamp(), a.getTimestamp());
+            return byTime != 0 ? byTime : a.getTransactionId().compareTo(b.getTransactionId());
+        });
+        return snapshot;
+    }
+
+    /**
+     * Applies one random add, edit or delete over ids t0..t(ids - 1).
+     */
+    void randomChange(Random random, int ids, long span) {
+        String id = "t" + random.nextInt(ids);
+        if (byId.containsKey(id) && random.nextInt(4) == 0) {
+            delete(id);
+        } else {
+            put(randomTransaction(random, id, span));
+        }
+    }
+
+    private void changed(TransactionModel before, TransactionModel after) {
+        List<TransactionModel> snapshot = snapshot();
+        for (TransactionStore.Listener listener : listeners) {
+            listener.onTransactionDelta(before, after);
+            listener.onTransactionsChanged(snapshot);
+        }
+    }
+
+    /**
+     * A transaction in [START, START + span), with timestamps on whole minutes so equal
+     * times are common.
+     */
+    static TransactionModel randomTransaction(Random random, String id, long span) {
+        TransactionModel transaction = new TransactionModel();
+        transaction.setTransactionId(id);
+        transaction.setTimestamp(START + (long) (random.nextDouble() * span) / 60_000 * 60_000);
+        transaction.setAmount(1 + random.nextInt(5000) / 4.0);
+        transaction.setType(pick(random, TYPES));
+        transaction.setTransactionCategory(pick(random, CATEGORIES));
+        transaction.setPartyName(pick(random, PARTIES));
+        transaction.setPaymentMode(pick(random, MODES));
+        transaction.setRemark(pick(random, REMARKS));
+        return transaction;
+    }
+
+    static TransactionModel transaction(String id, long timestamp, String type, double amount, String category) {
+        TransactionModel transaction = new TransactionModel();
+        transaction.setTransactionId(id);
+        transaction.setTimestamp(timestamp);
+        transaction.setType(type);
+        transaction.setAmount(amount);
+        transaction.setTransactionCategory(category);
+        return transaction;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
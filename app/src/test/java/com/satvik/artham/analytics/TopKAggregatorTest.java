@@ -0,0 +1,191 @@
+package com.satvik.artham.analytics;
+
+import com.satvik.artham.TransactionModel;
+import com.satvik.artham.utils.TimeBuckets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks TopKAggregator's day-bucket merge and bounded heap against sorting the totals
+ * of every transaction in the window.
+ */
+public class TopKAggregatorTest {
+
+    private static final double EPSILON = 1e-6;
+
+    private final TimeZone originalDefault = TimeZone.getDefault();
+    private TopKAggregator aggregator;
+    private StoreFeed feed;
+
+    @Before
+    public void setUp() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        aggregator = new TopKAggregator(null);
+        feed = new StoreFeed(aggregator.storeListener);
+    }
+
+    @After
+    public void restoreDefaultZone() {
+        TimeZone.setDefault(originalDefault);
+    }
+
+    @Test
+    public void top_matchesSortAndTruncate_throughDeltas() {
+        Random random = new Random(16);
+        for (int i = 0; i < 150; i++) feed.put(StoreFeed.randomTransaction(random, "t" + i, 120 * StoreFeed.DAY));
+        feed.reload();
+        assertTrue(aggregator.isReady());
+
+        for (int step = 0; step < 2000; step++) {
+            feed.randomChange(random, 250, 120 * StoreFeed.DAY);
+            if (step % 100 == 0) assertRandomQueries(random);
+        }
+        feed.reload();
+        assertRandomQueries(random);
+    }
+
+    @Test
+    public void top_keepsTiedValuesAtTheCut() {
+        long day = StoreFeed.START;
+        feed.reload();
+        feed.put(StoreFeed.transaction("a", day, "OUT", 50, "Rent"));
+        feed.put(StoreFeed.transaction("b", day, "OUT", 50, "Food"));
+        feed.put(StoreFeed.transaction("c", day, "OUT", 50, "Travel"));
+        feed.put(StoreFeed.transaction("d", day, "OUT", 80, "Fuel"));
+
+        TopKAggregator.Result top = aggregator.top(TopKAggregator.Dimension.CATEGORY, TopKAggregator.Metric.SPEND,
+                day, day, 2);
+        assertEquals(4, top.getDistinctKeys());
+        assertEquals(2, top.getEntries().size());
+        assertEquals("Fuel", top.getFirst().getKey());
+        assertEquals(50, top.getEntries().get(1).getSpend(), EPSILON);
+    }
+
+    @Test
+    public void top_dropsKeysThatFallToZero() {
+        long day = StoreFeed.START;
+        feed.reload();
+        feed.put(StoreFeed.transaction("a", day, "OUT", 50, "Rent"));
+        feed.put(StoreFeed.transaction("b", day, "IN", 500, "Salary"));
+        feed.put(StoreFeed.transaction("c", day + StoreFeed.DAY, "OUT", 20, "Rent"));
+        feed.delete("a");
+        feed.delete("c");
+
+        TopKAggregator.Result spend = aggregator.top(TopKAggregator.Dimension.CATEGORY, TopKAggregator.Metric.SPEND,
+                day, day + StoreFeed.DAY, 5);
+        assertEquals(0, spend.getDistinctKeys());
+        assertNull(spend.getFirst());
+
+        // Income-only keys count for income and entries, not for spend
+        TopKAggregator.Result count = aggregator.top(TopKAggregator.Dimension.CATEGORY, TopKAggregator.Metric.COUNT,
+                day, day + StoreFeed.DAY, 5);
+        assertEquals(1, count.getDistinctKeys());
+        assertEquals("Salary", count.getFirst().getKey());
+
+        assertTrue(aggregator.top(TopKAggregator.Dimension.CATEGORY, TopKAggregator.Metric.INCOME,
+                day + StoreFeed.DAY, day, 5).getEntries().isEmpty());
+    }
+
+    @Test
+    public void load_replacesEarlierRows() {
+        long day = StoreFeed.START;
+        TopKAggregator month = new TopKAggregator();
+        assertFalse(month.isReady());
+
+        List<TransactionModel> rows = new ArrayList<>();
+        rows.add(StoreFeed.transaction("a", day, "OUT", 50, "Rent"));
+        month.load(rows);
+        assertTrue(month.isReady());
+        assertEquals("Rent", month.top(TopKAggregator.Dimension.CATEGORY, TopKAggregator.Metric.SPEND,
+                day, day, 1).getFirst().getKey());
+
+        // The next month's rows start from scratch
+        rows.clear();
+        rows.add(StoreFeed.transaction("b", day + 40 * StoreFeed.DAY, "OUT", 20, "Food"));
+        month.load(rows);
+        assertEquals(0, month.top(TopKAggregator.Dimension.CATEGORY, TopKAggregator.Metric.SPEND,
+                day, day, 5).getDistinctKeys());
+        assertEquals("Food", month.top(TopKAggregator.Dimension.CATEGORY, TopKAggregator.Metric.SPEND,
+                day, day + 40 * StoreFeed.DAY, 5).getFirst().getKey());
+    }
+
+    private void assertRandomQueries(Random random) {
+        for (int query = 0; query < 20; query++) {
+            long from = StoreFeed.START + (long) (random.nextDouble() * 120 * StoreFeed.DAY);
+            long to = from + (long) (random.nextDouble() * 45 * StoreFeed.DAY);
+            int k = 1 + random.nextInt(6);
+            for (TopKAggregator.Dimension dimension : TopKAggregator.Dimension.values()) {
+                for (TopKAggregator.Metric metric : TopKAggregator.Metric.values()) {
+                    assertTop(dimension, metric, from, to, k);
+                }
+            }
+        }
+    }
+
+    private void assertTop(TopKAggregator.Dimension dimension, TopKAggregator.Metric metric,
+                           long from, long to, int k) {
+        // Windows are whole local days
+        TimeBuckets buckets = TimeBuckets.getDefault();
+        int firstDay = buckets.dayKey(from);
+        int lastDay = buckets.dayKey(to);
+        Map<String, Double> totals = new HashMap<>();
+        for (TransactionModel transaction : feed.snapshot()) {
+            int day = buckets.dayKey(transaction.getTimestamp());
+            if (day < firstDay || day > lastDay) continue;
+            String key = keyOf(dimension, transaction);
+            if (key == null) continue;
+            double value = valueOf(metric, transaction);
+            totals.merge(key, value, Double::sum);
+        }
+        List<Double> expected = new ArrayList<>();
+        for (double value : totals.values()) {
+            if (value > EPSILON) expected.add(value);
+        }
+        expected.sort((a, b) -> Double.compare(b, a));
+
+        String label = dimension + " " + metric + " " + from + ".." + to + " k=" + k;
+        TopKAggregator.Result result = aggregator.top(dimension, metric, from, to, k);
+        assertEquals(label, expected.size(), result.getDistinctKeys());
+        List<TopKAggregator.Entry> entries = result.getEntries();
+        assertEquals(label, Math.min(k, expected.size()), entries.size());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < entries.size(); i++) {
+            TopKAggregator.Entry entry = entries.get(i);
+            assertTrue(label, seen.add(entry.getKey()));
+            // Which of several tied keys makes the cut is not specified; the values are
+            assertEquals(label, expected.get(i), entry.get(metric), EPSILON);
+            assertEquals(label, totals.get(entry.getKey()), entry.get(metric), EPSILON);
+        }
+    }
+
+    private static String keyOf(TopKAggregator.Dimension dimension, TransactionModel transaction) {
+        if (dimension == TopKAggregator.Dimension.CATEGORY) {
+            String category = transaction.getTransactionCategory();
+            return category == null || category.isEmpty() ? CategoryMonthCube.UNCATEGORIZED : category;
+        }
+        String party = transaction.getPartyName();
+        return party == null || party.trim().isEmpty() ? null : party.trim();
+    }
+
+    private static double valueOf(TopKAggregator.Metric metric, TransactionModel transaction) {
+        boolean income = "IN".equalsIgnoreCase(transaction.getType());
+        switch (metric) {
+            case SPEND: return income ? 0 : transaction.getAmount();
+            case INCOME: return income ? transaction.getAmount() : 0;
+            default: return 1;
+        }
+    }
+}
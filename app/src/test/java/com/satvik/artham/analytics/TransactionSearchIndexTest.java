@@ -0,0 +1,225 @@
+package com.satvik.artham.analytics;
+
+import com.satvik.artham.TransactionModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks TransactionSearchIndex against a scan of every transaction with
+ * {@link TransactionSearchIndex#matches}, while the index follows deltas and reloads.
+ */
+public class TransactionSearchIndexTest {
+
+    private static final String[] QUERIES = {"", "r", "rent", "RENT jan", "caf", "cafe mocha", "team",
+            "food drinks", "(team)", "top up", "sal", "zzz", "Me", "landlord deposit"};
+
+    private static final String[] ENTRY_TYPES = {null, "All", "IN", "in", "Out"};
+    private static final List<List<String>> CATEGORIES = Arrays.asList(null, Collections.emptyList(),
+            Collections.singletonList("Food"), Arrays.asList("Food", "Rent"), Arrays.asList("Salary", "Nope"));
+    private static final List<List<String>> PAYMENT_MODES = Arrays.asList(null, Collections.singletonList("All"),
+            Collections.singletonList("Cash"), Arrays.asList("Cash", "Card"));
+
+    private TransactionSearchIndex index;
+    private StoreFeed feed;
+
+    @Before
+    public void setUp() {
+        index = new TransactionSearchIndex(null);
+        feed = new StoreFeed(index.storeListener);
+    }
+
+    @Test
+    public void search_matchesScan_throughDeltas() {
+        Random random = new Random(21);
+        for (int i = 0; i < 200; i++) feed.put(StoreFeed.randomTransaction(random, "t" + i, 90 * StoreFeed.DAY));
+        feed.reload();
+        assertTrue(index.isReady());
+
+        for (int step = 0; step < 3000; step++) {
+            feed.randomChange(random, 300, 90 * StoreFeed.DAY);
+            if (step % 100 == 0) assertQueries();
+        }
+        assertQueries();
+    }
+
+    @Test
+    public void search_matchesScan_acrossCompactionAndReload() {
+        Random random = new Random(5);
+        feed.reload();
+        // Edits and deletes leave dead ordinals behind until they force a rebuild
+        for (int step = 0; step < 5000; step++) {
+            feed.randomChange(random, 40, 30 * StoreFeed.DAY);
+        }
+        assertQueries();
+
+        feed.reload();
+        assertQueries();
+        for (int step = 0; step < 500; step++) feed.randomChange(random, 40, 30 * StoreFeed.DAY);
+        assertQueries();
+    }
+
+    @Test
+    public void search_heldMatchSurvivesLaterChanges() {
+        feed.put(StoreFeed.transaction("a", StoreFeed.START, "OUT", 10, "Rent"));
+        feed.reload();
+        TransactionSearchIndex.Match match = index.search("rent");
+
+        feed.put(StoreFeed.transaction("b", StoreFeed.START + 1, "OUT", 20, "Rent"));
+        feed.delete("a");
+
+        List<TransactionModel> held = match.materialize(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(1, held.size());
+        assertEquals("a", held.get(0).getTransactionId());
+        assertEquals(ids(feed.snapshot()), ids(index.search("rent").materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void snapshot_searchesTheIndexAsTaken() {
+        feed.put(StoreFeed.transaction("a", StoreFeed.START, "OUT", 10, "Rent"));
+        feed.reload();
+        TransactionSearchIndex.Snapshot snapshot = index.snapshot();
+        assertSame(snapshot, index.snapshot());
+
+        // New words, new facet values and removals after the snapshot stay out of it
+        feed.put(StoreFeed.transaction("b", StoreFeed.START + 1, "IN", 20, "Rental income"));
+        feed.delete("a");
+        List<String> rent = Collections.singletonList("Rent");
+        assertEquals(Collections.singletonList("a"), ids(snapshot.search("ren", "OUT", rent, null)
+                .materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertTrue(snapshot.search("income", null, null, null)
+                .materialize(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+
+        assertNotSame(snapshot, index.snapshot());
+        assertEquals(Collections.singletonList("b"), ids(index.search("ren")
+                .materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void facets_matchLinearFilter_throughDeltas() {
+        Random random = new Random(23);
+        feed.reload();
+        for (int step = 0; step < 2000; step++) {
+            feed.randomChange(random, 300, 60 * StoreFeed.DAY);
+            if (step % 250 == 0) assertFacetQueries();
+        }
+        assertFacetQueries();
+    }
+
+    @Test
+    public void facets_entryTypeIgnoresCase() {
+        feed.put(StoreFeed.transaction("a", StoreFeed.START, "IN", 10, "Salary"));
+        feed.put(StoreFeed.transaction("b", StoreFeed.START + 1, "in", 10, "Salary"));
+        feed.put(StoreFeed.transaction("c", StoreFeed.START + 2, "Out", 10, "Rent"));
+        feed.reload();
+        feed.put(StoreFeed.transaction("d", StoreFeed.START + 3, "In", 10, "Salary"));
+
+        for (String type : new String[]{"IN", "in", "In"}) {
+            assertEquals(type, Arrays.asList("d", "b", "a"), ids(index.search("", type, null, null)
+                    .materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+        }
+        assertEquals(Collections.singletonList("c"), ids(index.search("", "OUT", null, null)
+                .materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertTrue(index.search("", "Transfer", null, null).materialize(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void facets_intersectWithTextAndOrWithinOneFacet() {
+        feed.put(StoreFeed.transaction("rent", StoreFeed.START, "OUT", 100, "Rent"));
+        TransactionModel food = StoreFeed.transaction("food", StoreFeed.START + 1, "OUT", 10, "Food");
+        food.setRemark("rent day lunch");
+        feed.put(food);
+        feed.put(StoreFeed.transaction("travel", StoreFeed.START + 2, "OUT", 5, "Travel"));
+        feed.reload();
+
+        List<String> rentOrFood = Arrays.asList("Rent", "Food");
+        assertEquals(Arrays.asList("food", "rent"), ids(index.search("", null, rentOrFood, null)
+                .materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertEquals(Arrays.asList("food", "rent"), ids(index.search("rent", null, rentOrFood, null)
+                .materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertEquals(Collections.singletonList("food"), ids(index.search("lunch", null, rentOrFood, null)
+                .materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertTrue(index.search("lunch", null, Collections.singletonList("Travel"), null)
+                .materialize(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void tokenize_splitsOnAnythingButLettersAndDigits() {
+        assertArrayEquals(new String[]{"food", "drinks", "2024"}, TransactionSearchIndex.tokenize("Food & Drinks, 2024"));
+        assertEquals(0, TransactionSearchIndex.tokenize("  -- ").length);
+        assertEquals(0, TransactionSearchIndex.tokenize(null).length);
+    }
+
+    private void assertQueries() {
+        List<TransactionModel> snapshot = feed.snapshot();
+        long from = StoreFeed.START + 10 * StoreFeed.DAY;
+        long to = StoreFeed.START + 20 * StoreFeed.DAY;
+        for (String query : QUERIES) {
+            List<TransactionModel> expected = new ArrayList<>();
+            List<TransactionModel> expectedInWindow = new ArrayList<>();
+            for (TransactionModel transaction : snapshot) {
+                if (!TransactionSearchIndex.matches(transaction, query)) continue;
+                expected.add(transaction);
+                if (transaction.getTimestamp() >= from && transaction.getTimestamp() <= to) {
+                    expectedInWindow.add(transaction);
+                }
+            }
+            TransactionSearchIndex.Match match = index.search(query);
+            assertEquals(query, ids(expected), ids(match.materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+            assertEquals(query, ids(expectedInWindow), ids(match.materialize(from, to)));
+        }
+    }
+
+    private void assertFacetQueries() {
+        List<TransactionModel> snapshot = feed.snapshot();
+        for (String query : new String[]{"", "rent", "team", "caf"}) {
+            for (String entryType : ENTRY_TYPES) {
+                for (List<String> categories : CATEGORIES) {
+                    for (List<String> paymentModes : PAYMENT_MODES) {
+                        List<TransactionModel> expected = new ArrayList<>();
+                        for (TransactionModel transaction : snapshot) {
+                            if (matches(transaction, query, entryType, categories, paymentModes)) {
+                                expected.add(transaction);
+                            }
+                        }
+                        String label = query + "|" + entryType + "|" + categories + "|" + paymentModes;
+                        assertEquals(label, ids(expected), ids(index.search(query, entryType, categories, paymentModes)
+                                .materialize(Long.MIN_VALUE, Long.MAX_VALUE)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The row-by-row filter the list falls back to while the index loads.
+     */
+    private static boolean matches(TransactionModel transaction, String query, String entryType,
+                                   List<String> categories, List<String> paymentModes) {
+        if (!TransactionSearchIndex.matches(transaction, query)) return false;
+        if (entryType != null && !"All".equalsIgnoreCase(entryType)
+                && !entryType.equalsIgnoreCase(transaction.getType())) {
+            return false;
+        }
+        if (categories != null && !categories.isEmpty()
+                && !categories.contains(transaction.getTransactionCategory())) {
+            return false;
+        }
+        return paymentModes == null || paymentModes.isEmpty() || paymentModes.contains("All")
+                || paymentModes.contains(transaction.getPaymentMode());
+    }
+
+    static List<String> ids(List<TransactionModel> transactions) {
+        List<String> ids = new ArrayList<>(transactions.size());
+        for (TransactionModel transaction : transactions) ids.add(transaction.getTransactionId());
+        return ids;
+    }
+}
@@ -0,0 +1,103 @@
+package com.satvik.artham.db;
+
+import com.satvik.artham.TransactionModel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that applying child added, changed and removed events one at a time keeps
+ * SortedTransactionList equal to sorting the whole book.
+ */
+public class SortedTransactionListTest {
+
+    private static final long START = 1_704_067_200_000L;
+
+    @Test
+    public void childEvents_matchFullSort() {
+        Random random = new Random(1);
+        SortedTransactionList list = new SortedTransactionList();
+        Map<String, TransactionModel> book = new HashMap<>();
+
+        for (int step = 0; step < 5000; step++) {
+            String id = "t" + random.nextInt(200);
+            if (book.containsKey(id) && random.nextInt(4) == 0) {
+                // onChildRemoved
+                assertSame(book.remove(id), list.remove(id));
+            } else {
+                // onChildAdded, or onChildChanged with a fresh parse that may move in time;
+                // minutes over a few days so equal timestamps are common
+                TransactionModel transaction = transaction(id, START + random.nextInt(5000) * 60_000L);
+                assertTrue(list.upsert(transaction));
+                book.put(id, transaction);
+            }
+            if (step % 250 == 0) assertMatchesSort(list, book);
+        }
+        assertMatchesSort(list, book);
+    }
+
+    @Test
+    public void change_movesTheEntryAndKeepsOneCopy() {
+        SortedTransactionList list = new SortedTransactionList();
+        list.upsert(transaction("a", START));
+        list.upsert(transaction("b", START + 1000));
+        list.upsert(transaction("c", START + 1000));
+        assertEquals(Arrays.asList("b", "c", "a"), ids(list.snapshot()));
+
+        TransactionModel edited = transaction("b", START - 1000);
+        list.upsert(edited);
+        assertEquals(Arrays.asList("c", "a", "b"), ids(list.snapshot()));
+        assertSame(edited, list.get("b"));
+        assertEquals(3, list.size());
+    }
+
+    @Test
+    public void remove_ofUnknownIdChangesNothing() {
+        SortedTransactionList list = new SortedTransactionList();
+        list.upsert(transaction("a", START));
+        assertNull(list.remove("missing"));
+        assertNull(list.remove(null));
+        assertFalse(list.upsert(transaction(null, START)));
+        assertFalse(list.upsert(null));
+        assertEquals(1, list.size());
+
+        assertNotNull(list.remove("a"));
+        assertNull(list.get("a"));
+        assertTrue(list.snapshot().isEmpty());
+    }
+
+    private static void assertMatchesSort(SortedTransactionList list, Map<String, TransactionModel> book) {
+        List<TransactionModel> expected = new ArrayList<>(book.values());
+        expected.sort((a, b) -> {
+            int byTime = Long.compare(b.getTimestamp(), a.getTimestamp());
+            return byTime != 0 ? byTime : a.getTransactionId().compareTo(b.getTransactionId());
+        });
+        List<TransactionModel> actual = list.snapshot();
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) assertSame(expected.get(i), actual.get(i));
+    }
+
+    private static TransactionModel transaction(String id, long timestamp) {
+        TransactionModel transaction = new TransactionModel();
+        transaction.setTransactionId(id);
+        transaction.setTimestamp(timestamp);
+        transaction.setType("OUT");
+        transaction.setAmount(10);
+        return transaction;
+    }
+
+    private static List<String> ids(List<TransactionModel> transactions) {
+        List<String> ids = new ArrayList<>(transactions.size());
+        for (TransactionModel transaction : transactions) ids.add(transaction.getTransactionId());
+        return ids;
+    }
+}
@@ -0,0 +1,160 @@
+package com.satvik.artham.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks TimeBuckets against java.time across DST transitions and zone changes.
+ */
+public class TimeBucketsTest {
+
+    private static final String[] ZONES = {
+            "UTC",
+            "Asia/Kolkata",          // no DST, half-hour offset
+            "America/New_York",      // DST at 02:00
+            "Europe/London",         // DST at 01:00 UTC
+            "America/Sao_Paulo",     // historic DST at midnight (skipped midnight)
+            "Asia/Beirut",           // DST at midnight
+            "Australia/Lord_Howe",   // half-hour DST
+            "Pacific/Apia",          // skipped 2011-12-30 entirely
+            "Pacific/Chatham",       // +12:45 / +13:45
+    };
+
+    private final TimeZone originalDefault = TimeZone.getDefault();
+
+    @After
+    public void restoreDefaultZone() {
+        TimeZone.setDefault(originalDefault);
+    }
+
+    @Test
+    public void keys_matchJavaTime_forRandomInstants() {
+        Random random = new Random(42);
+        long from = Instant.parse("1950-01-01T00:00:00Z").toEpochMilli();
+        long to = Instant.parse("2090-01-01T00:00:00Z").toEpochMilli();
+
+        for (String id : ZONES) {
+            TimeBuckets buckets = TimeBuckets.forZone(TimeZone.getTimeZone(id));
+            ZoneId zone = ZoneId.of(id);
+            for (int i = 0; i < 20_000; i++) {
+                long timestamp = from + (long) (random.nextDouble() * (to - from));
+                assertKeys(buckets, zone, timestamp);
+            }
+        }
+    }
+
+    @Test
+    public void keys_matchJavaTime_aroundEveryTransition() {
+        for (String id : ZONES) {
+            TimeBuckets buckets = TimeBuckets.forZone(TimeZone.getTimeZone(id));
+            ZoneId zone = ZoneId.of(id);
+            ZonedDateTime cursor = ZonedDateTime.of(1970, 1, 1, 0, 0, 0, 0, zone);
+            ZonedDateTime end = ZonedDateTime.of(2040, 1, 1, 0, 0, 0, 0, zone);
+            ZoneOffsetTransition transition;
+            while ((transition = zone.getRules().nextTransition(cursor.toInstant())) != null
+                    && transition.getInstant().isBefore(end.toInstant())) {
+                long instant = transition.getInstant().toEpochMilli();
+                for (long delta : new long[]{-3_600_001, -1, 0, 1, 3_600_000}) {
+                    assertKeys(buckets, zone, instant + delta);
+                }
+                cursor = ZonedDateTime.ofInstant(transition.getInstant(), zone);
+            }
+        }
+    }
+
+    @Test
+    public void dayStart_matchesJavaTime_forEveryDay() {
+        for (String id : ZONES) {
+            TimeBuckets buckets = TimeBuckets.forZone(TimeZone.getTimeZone(id));
+            ZoneId zone = ZoneId.of(id);
+            for (LocalDate date = LocalDate.of(1970, 1, 1); date.getYear() < 2040; date = date.plusDays(1)) {
+                int dayKey = (int) date.toEpochDay();
+                long expected = date.atStartOfDay(zone).toInstant().toEpochMilli();
+                assertEquals(id + " " + date, expected, buckets.dayStart(dayKey));
+                // A skipped day starts and ends where the next one starts; see skippedDay_hasNoInstants
+                if (buckets.dayEnd(dayKey) < expected) continue;
+                assertEquals(id + " " + date, dayKey, buckets.dayKey(expected));
+                assertTrue(id + " " + date, buckets.dayKey(expected - 1) < dayKey);
+            }
+        }
+    }
+
+    @Test
+    public void monthBounds_matchJavaTime() {
+        for (String id : ZONES) {
+            TimeBuckets buckets = TimeBuckets.forZone(TimeZone.getTimeZone(id));
+            ZoneId zone = ZoneId.of(id);
+            for (LocalDate month = LocalDate.of(1970, 1, 1); month.getYear() < 2090; month = month.plusMonths(1)) {
+                int monthKey = month.getYear() * 100 + month.getMonthValue();
+                long start = month.atStartOfDay(zone).toInstant().toEpochMilli();
+                long nextStart = month.plusMonths(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                assertEquals(id + " " + month, start, buckets.monthStart(monthKey));
+                assertEquals(id + " " + month, nextStart - 1, buckets.monthEnd(monthKey));
+                assertEquals(id + " " + month, month.getYear(), buckets.yearKey(start));
+            }
+        }
+    }
+
+    @Test
+    public void skippedDay_hasNoInstants() {
+        // Samoa moved across the date line, so 2011-12-30 never happened there
+        TimeBuckets buckets = TimeBuckets.forZone(TimeZone.getTimeZone("Pacific/Apia"));
+        int skipped = (int) LocalDate.of(2011, 12, 30).toEpochDay();
+        assertEquals(buckets.dayStart(skipped), buckets.dayStart(skipped + 1));
+        assertEquals(skipped - 1, buckets.dayKey(buckets.dayStart(skipped) - 1));
+    }
+
+    @Test
+    public void getDefault_followsZoneChanges() {
+        long timestamp = Instant.parse("2024-03-31T23:30:00Z").toEpochMilli();
+
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        TimeBuckets newYork = TimeBuckets.getDefault();
+        assertSame(newYork, TimeBuckets.getDefault());
+        assertEquals(202403, newYork.monthKey(timestamp));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+        TimeBuckets kolkata = TimeBuckets.getDefault();
+        assertEquals("Asia/Kolkata", kolkata.getZoneId());
+        assertEquals(202404, kolkata.monthKey(timestamp));
+    }
+
+    @Test
+    public void monthKeyArithmetic() {
+        assertEquals(202501, TimeBuckets.nextMonthKey(202412));
+        assertEquals(202412, TimeBuckets.previousMonthKey(202501));
+        assertEquals(202404, TimeBuckets.nextMonthKey(202403));
+        assertEquals("2024-03", TimeBuckets.formatMonthKey(202403));
+        assertEquals("0999-12", TimeBuckets.formatMonthKey(99912));
+    }
+
+    private static void assertKeys(TimeBuckets buckets, ZoneId zone, long timestamp) {
+        ZonedDateTime local = Instant.ofEpochMilli(timestamp).atZone(zone);
+        LocalDate date = local.toLocalDate();
+        String message = zone + " " + local;
+
+        assertEquals(message, local.getOffset().getTotalSeconds() * 1000, buckets.getOffset(timestamp));
+        assertEquals(message, date.toEpochDay(), buckets.dayKey(timestamp));
+        assertEquals(message, date.getYear() * 100 + date.getMonthValue(), buckets.monthKey(timestamp));
+        assertEquals(message, date.getYear(), buckets.yearKey(timestamp));
+
+        LocalDate monday = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        int expectedWeek = (int) ChronoUnit.WEEKS.between(LocalDate.of(1969, 12, 29), monday);
+        assertEquals(message, expectedWeek, buckets.weekKey(timestamp));
+        assertEquals(message, monday.atStartOfDay(zone).toInstant().toEpochMilli(),
+                buckets.weekStart(expectedWeek));
+    }
+}